@@ -4,6 +4,7 @@ import android.app.Application;
 import android.util.Log;
 
 import com.mynas.nastv.network.ApiClient;
+import com.mynas.nastv.player.OfflineDownloadManager;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 
 /**
@@ -34,6 +35,9 @@ public class NasTVApplication extends Application {
         // 💾 初始化偏好设置管理器
         SharedPreferencesManager.initialize(this);
         
+        // 📥 恢复未完成的离线下载
+        OfflineDownloadManager.getInstance(this);
+        
         Log.d(TAG, "📦 全局组件初始化完成");
     }
     
@@ -26,6 +26,9 @@ public interface IDanmuController {
     // New API - 使用 title + episode + season + guid + parentGuid 获取弹幕
     void loadDanmaku(String title, int episode, int season, String guid, String parentGuid);
     
+    // 续播时传入起始位置，命中本地缓存时先加载该位置附近的弹幕
+    void loadDanmaku(String title, int episode, int season, String guid, String parentGuid, long startPositionMs);
+    
     void show();
     void hide();
     boolean isVisible();
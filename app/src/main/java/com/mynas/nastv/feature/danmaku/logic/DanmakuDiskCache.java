@@ -0,0 +1,351 @@
+package com.mynas.nastv.feature.danmaku.logic;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+import com.mynas.nastv.utils.LruDiskDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 💾 处理后弹幕的磁盘缓存
+ *
+ * 弹幕服务器是单独的机器，请求延迟决定了弹幕层多久能出来。
+ * 按 (弹幕服务器, 标题, 季, 集) 保存过滤后的弹幕，重看或退出后续播直接读本地：
+ * - 紧凑二进制：时间按分钟分块、块内差分 varint；文本去重成字符串表；颜色查调色板，和模式打包成一个字节
+ * - 读取用内存映射，分块索引支持只解码续播位置附近的时间窗口
+ * - 目录总大小超出上限按 LRU 淘汰
+ *
+ * 文件格式（大端）：
+ * <pre>
+ * int magic 'NDMK' | short version | long savedAt | int itemCount
+ * int paletteSize | str * paletteSize            （颜色）
+ * int stringCount | str * stringCount            （弹幕文本）
+ * int blockCount  | (long startMs | int offset | int count) * blockCount
+ * items: (varint deltaMs | varint textIndex | byte colorIndex&lt;&lt;2|mode [| varint colorIndex | varint mode]) * itemCount
+ * str:   varint byteLength | UTF-8 bytes
+ * </pre>
+ * 颜色索引 ≥ 63 或模式 ≥ 3 时打包字节写 0xFF，后面跟完整的 varint。
+ * 块从整分钟开始，块内第一条的差分相对块起点；offset 相对 items 区起点。
+ */
+final class DanmakuDiskCache {
+    private static final String TAG = "DanmakuDiskCache";
+
+    private static final String DIR_NAME = "danmaku_cache";
+    private static final long MAX_DISK_BYTES = 32L * 1024 * 1024;
+    private static final int MAGIC = 0x4E444D4B; // 'NDMK'
+    private static final short VERSION = 1;
+    private static final long BLOCK_MS = 60_000;
+    private static final int PACKED_ESCAPE = 0xFF;
+
+    /**
+     * 读取结果（弹幕按时间排序，每次读取都是新对象，渲染器可以随意修改/回收）
+     */
+    static final class Loaded {
+        final long savedAt;
+        final List<DanmakuEntity> items;
+
+        Loaded(long savedAt, List<DanmakuEntity> items) {
+            this.savedAt = savedAt;
+            this.items = items;
+        }
+    }
+
+    private static volatile DanmakuDiskCache instance;
+
+    private final LruDiskDirectory directory; // 在 this 锁内访问
+
+    static DanmakuDiskCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DanmakuDiskCache.class) {
+                if (instance == null) {
+                    instance = new DanmakuDiskCache(new File(context.getApplicationContext().getCacheDir(), DIR_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private DanmakuDiskCache(File dir) {
+        this.directory = new LruDiskDirectory(dir, MAX_DISK_BYTES, "Danmaku cache", null);
+    }
+
+    /**
+     * 缓存键：弹幕服务器 + 标题 + 季 + 集
+     */
+    static String keyFor(String server, String title, int season, int episode) {
+        return LruDiskDirectory.sha1(server + "|" + title + "|" + season + "|" + episode);
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 读取全部弹幕，没有缓存或文件损坏时返回 null
+     */
+    synchronized Loaded load(String key) {
+        return load(key, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 只解码与 [fromMs, toMs) 重叠的分钟块，没有缓存或文件损坏时返回 null
+     */
+    synchronized Loaded load(String key, long fromMs, long toMs) {
+        if (!directory.contains(key)) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(directory.file(key), "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                throw new IOException("format changed");
+            }
+            long savedAt = buffer.getLong();
+            int itemCount = buffer.getInt();
+
+            String[] palette = new String[checkCount(buffer.getInt(), buffer)];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = readString(buffer);
+            }
+            StringTable texts = new StringTable(buffer, checkCount(buffer.getInt(), buffer));
+
+            int blockCount = checkCount(buffer.getInt(), buffer);
+            long[] blockStart = new long[blockCount];
+            int[] blockOffset = new int[blockCount];
+            int[] blockItems = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockStart[i] = buffer.getLong();
+                blockOffset[i] = buffer.getInt();
+                blockItems[i] = buffer.getInt();
+            }
+            int itemsStart = buffer.position();
+
+            List<DanmakuEntity> items = new ArrayList<>(fromMs == Long.MIN_VALUE ? itemCount : 64);
+            for (int b = 0; b < blockCount; b++) {
+                if (blockStart[b] + BLOCK_MS <= fromMs || blockStart[b] >= toMs) continue;
+                buffer.position(itemsStart + blockOffset[b]);
+                long time = blockStart[b];
+                for (int i = 0; i < blockItems[b]; i++) {
+                    time += readVarint(buffer);
+                    String text = texts.get(readVarint(buffer));
+                    int packed = buffer.get() & 0xFF;
+                    int colorIndex;
+                    int mode;
+                    if (packed == PACKED_ESCAPE) {
+                        colorIndex = readVarint(buffer);
+                        mode = readVarint(buffer);
+                    } else {
+                        colorIndex = packed >>> 2;
+                        mode = packed & 0x3;
+                    }
+                    if (time < fromMs || time >= toMs) continue;
+
+                    DanmakuEntity entity = new DanmakuEntity();
+                    entity.time = time;
+                    entity.text = text;
+                    entity.color = palette[colorIndex];
+                    entity.mode = mode;
+                    items.add(entity);
+                }
+            }
+
+            directory.markAccessed(key);
+            return new Loaded(savedAt, items);
+        } catch (IOException | RuntimeException e) {
+            // 文件被截断、数据损坏、格式变化等
+            Log.w(TAG, "💾 Cached danmaku unreadable, discarding: " + e.getMessage());
+            directory.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * 字符串表：先扫描一遍记下偏移，用到哪条才解码哪条
+     */
+    private static final class StringTable {
+        private final MappedByteBuffer buffer;
+        private final int[] offsets;
+        private final String[] decoded;
+
+        StringTable(MappedByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.offsets = new int[count];
+            this.decoded = new String[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = buffer.position();
+                int length = readVarint(buffer);
+                if (length > buffer.remaining()) throw new BufferUnderflowException();
+                buffer.position(buffer.position() + length);
+            }
+        }
+
+        String get(int index) {
+            String value = decoded[index];
+            if (value == null) {
+                int position = buffer.position();
+                buffer.position(offsets[index]);
+                value = readString(buffer);
+                buffer.position(position);
+                decoded[index] = value;
+            }
+            return value;
+        }
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 保存弹幕（必须按时间排序；在交给渲染器之前调用，渲染器会回收实体）
+     */
+    void put(String key, List<DanmakuEntity> items) {
+        byte[] data;
+        try {
+            data = encode(items);
+        } catch (IOException e) {
+            Log.w(TAG, "💾 Danmaku encode failed: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            try {
+                directory.write(key, out -> out.write(data));
+            } catch (IOException e) {
+                Log.w(TAG, "💾 Danmaku cache write failed: " + e.getMessage());
+                return;
+            }
+            Log.d(TAG, "💾 Cached " + items.size() + " danmaku (" + data.length + " bytes)");
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    synchronized void clear() {
+        directory.clear();
+    }
+
+    static byte[] encode(List<DanmakuEntity> items) throws IOException {
+        Map<String, Integer> paletteIndex = new HashMap<>();
+        List<String> palette = new ArrayList<>();
+        Map<String, Integer> textIndex = new HashMap<>();
+        List<String> texts = new ArrayList<>();
+
+        // 条目区（块索引需要知道每块的偏移，先单独写）
+        ByteArrayOutputStream itemBytes = new ByteArrayOutputStream(items.size() * 4);
+        List<long[]> blocks = new ArrayList<>(); // [startMs, offset, count]
+        long[] block = null;
+        long previous = 0;
+        for (DanmakuEntity entity : items) {
+            long start = Math.floorDiv(entity.time, BLOCK_MS) * BLOCK_MS;
+            if (block == null || block[0] != start) {
+                block = new long[]{start, itemBytes.size(), 0};
+                blocks.add(block);
+                previous = start;
+            }
+            if (entity.time < previous) {
+                throw new IOException("danmaku not sorted");
+            }
+            writeVarint(itemBytes, entity.time - previous);
+            previous = entity.time;
+            block[2]++;
+
+            String text = entity.text != null ? entity.text : "";
+            Integer ti = textIndex.get(text);
+            if (ti == null) {
+                ti = texts.size();
+                textIndex.put(text, ti);
+                texts.add(text);
+            }
+            writeVarint(itemBytes, ti);
+
+            String color = entity.color != null ? entity.color : "#FFFFFF";
+            Integer ci = paletteIndex.get(color);
+            if (ci == null) {
+                ci = palette.size();
+                paletteIndex.put(color, ci);
+                palette.add(color);
+            }
+            if (ci < 63 && entity.mode >= 0 && entity.mode < 3) {
+                itemBytes.write((ci << 2) | entity.mode);
+            } else {
+                itemBytes.write(PACKED_ESCAPE);
+                writeVarint(itemBytes, ci);
+                writeVarint(itemBytes, Math.max(entity.mode, 0));
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(itemBytes.size() + texts.size() * 16 + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(items.size());
+        out.writeInt(palette.size());
+        for (String color : palette) {
+            writeString(out, color);
+        }
+        out.writeInt(texts.size());
+        for (String text : texts) {
+            writeString(out, text);
+        }
+        out.writeInt(blocks.size());
+        for (long[] b : blocks) {
+            out.writeLong(b[0]);
+            out.writeInt((int) b[1]);
+            out.writeInt((int) b[2]);
+        }
+        itemBytes.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // ==================== 编码工具 ====================
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarint(MappedByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalStateException("malformed varint");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkCount(int count, MappedByteBuffer buffer) {
+        if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+}
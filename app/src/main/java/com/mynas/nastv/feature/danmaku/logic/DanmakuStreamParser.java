@@ -0,0 +1,263 @@
+package com.mynas.nastv.feature.danmaku.logic;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 🎬 弹幕流式解析：边读边过滤
+ *
+ * 热门剧集一集几万条弹幕，原来先整体解析成 Map 再去重、按密度采样，
+ * 峰值内存与原始弹幕数成正比。这里从响应体逐条读取：
+ * - 去重：只记录规范化文本（trim + 小写）的 64 位哈希，不保存原始字符串
+ * - 密度：每分钟一个容量为 maxPerMinute 的蓄水池（reservoir sampling），
+ *   结果等价于对该分钟全部弹幕均匀随机采样
+ * - 只有进入蓄水池的弹幕才创建 DanmakuEntity
+ *
+ * 峰值内存由输出（分钟数 × maxPerMinute）和去重哈希表决定，与原始响应大小无关。
+ * 响应格式: { "1": [ {time, text, color, mode, ...}, ... ], ... }，也兼容顶层直接是数组。
+ */
+final class DanmakuStreamParser {
+
+    // 固定种子：同一份弹幕每次采样结果一致
+    private static final long SAMPLING_SEED = 0x5EEDDA3AL;
+
+    /**
+     * 解析结果（弹幕已按时间排序）
+     */
+    static final class Result {
+        final List<DanmakuEntity> items;
+        final int rawCount;
+        final int emptyCount;
+        final int duplicateCount;
+        final int densityDropped;
+
+        Result(List<DanmakuEntity> items, int rawCount, int emptyCount, int duplicateCount, int densityDropped) {
+            this.items = items;
+            this.rawCount = rawCount;
+            this.emptyCount = emptyCount;
+            this.duplicateCount = duplicateCount;
+            this.densityDropped = densityDropped;
+        }
+    }
+
+    private final int maxPerMinute;
+    private final Random random = new Random(SAMPLING_SEED);
+    private final LongHashSet seenTexts = new LongHashSet();
+    private final Map<Long, MinuteQuota> minutes = new HashMap<>();
+
+    private int rawCount = 0;
+    private int emptyCount = 0;
+    private int duplicateCount = 0;
+
+    DanmakuStreamParser(int maxPerMinute) {
+        this.maxPerMinute = maxPerMinute;
+    }
+
+    /**
+     * 从字符流解析并过滤（一个实例只解析一次）
+     */
+    Result parse(Reader source) throws IOException {
+        JsonReader in = new JsonReader(source);
+        in.setLenient(true);
+
+        JsonToken token = in.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            while (in.hasNext()) {
+                in.nextName();
+                readItems(in);
+            }
+            in.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            readItems(in);
+        } else {
+            in.skipValue();
+        }
+
+        int kept = 0;
+        for (MinuteQuota quota : minutes.values()) {
+            kept += quota.size;
+        }
+        List<DanmakuEntity> items = new ArrayList<>(kept);
+        for (MinuteQuota quota : minutes.values()) {
+            for (int i = 0; i < quota.size; i++) {
+                items.add(quota.kept[i]);
+            }
+        }
+        Collections.sort(items, (a, b) -> Long.compare(a.time, b.time));
+
+        int densityDropped = rawCount - emptyCount - duplicateCount - kept;
+        minutes.clear();
+        return new Result(items, rawCount, emptyCount, duplicateCount, densityDropped);
+    }
+
+    private void readItems(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            in.skipValue();
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.BEGIN_OBJECT) {
+                readItem(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endArray();
+    }
+
+    private void readItem(JsonReader in) throws IOException {
+        double time = 0;
+        String text = null;
+        String color = null;
+        int mode = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "time": time = in.nextDouble(); break;
+                case "text": text = in.nextString(); break;
+                case "color": color = in.nextString(); break;
+                case "mode": mode = in.nextInt(); break;
+                default: in.skipValue(); break; // other/style/border 用不到
+            }
+        }
+        in.endObject();
+        rawCount++;
+
+        long hash = normalizedHash(text);
+        if (hash == 0) {
+            emptyCount++;
+            return;
+        }
+        if (!seenTexts.add(hash)) {
+            duplicateCount++;
+            return;
+        }
+
+        long minute = (long) (time / 60);
+        MinuteQuota quota = minutes.get(minute);
+        if (quota == null) {
+            quota = new MinuteQuota(maxPerMinute);
+            minutes.put(minute, quota);
+        }
+        int slot = quota.claimSlot(random);
+        if (slot < 0) return;
+
+        DanmakuEntity entity = new DanmakuEntity();
+        entity.time = (long) (time * 1000);
+        entity.text = DanmuRepository.sanitizeDanmakuText(text);
+        entity.color = color != null ? color : "#FFFFFF";
+        entity.mode = mode;
+        quota.kept[slot] = entity;
+    }
+
+    /**
+     * trim + 小写后的 64 位哈希（FNV-1a + 混淆），不创建中间字符串；空文本返回 0
+     */
+    static long normalizedHash(String text) {
+        if (text == null) return 0;
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start == end) return 0;
+
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h ^= Character.toLowerCase(text.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * 一分钟内的蓄水池
+     */
+    private static final class MinuteQuota {
+        final DanmakuEntity[] kept;
+        int size = 0;
+        int offered = 0;
+
+        MinuteQuota(int capacity) {
+            kept = new DanmakuEntity[capacity];
+        }
+
+        /**
+         * 返回写入位置，-1 表示这条弹幕落选
+         */
+        int claimSlot(Random random) {
+            offered++;
+            if (size < kept.length) {
+                return size++;
+            }
+            int j = random.nextInt(offered);
+            return j < kept.length ? j : -1;
+        }
+    }
+
+    /**
+     * 开放寻址的 long 集合（0 作为空槽），每个元素 8 字节，没有装箱
+     */
+    static final class LongHashSet {
+        private long[] table = new long[1024];
+        private int size = 0;
+
+        boolean add(long value) {
+            if (size * 2 >= table.length) {
+                resize();
+            }
+            int mask = table.length - 1;
+            int index = (int) value & mask;
+            while (true) {
+                long current = table[index];
+                if (current == 0) {
+                    table[index] = value;
+                    size++;
+                    return true;
+                }
+                if (current == value) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length - 1;
+            for (long value : old) {
+                if (value == 0) continue;
+                int index = (int) value & mask;
+                while (table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+}
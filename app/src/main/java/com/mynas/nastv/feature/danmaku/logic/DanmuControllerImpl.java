@@ -2,6 +2,7 @@ package com.mynas.nastv.feature.danmaku.logic;
 
 import android.content.Context;
 import android.util.Log;
+import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
@@ -9,6 +10,7 @@ import com.mynas.nastv.feature.danmaku.api.IDanmuController;
 import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
 import com.mynas.nastv.feature.danmaku.model.DanmuConfig;
 import com.mynas.nastv.feature.danmaku.view.DanmakuOverlayView;
+import com.mynas.nastv.feature.danmaku.view.DanmakuTextureView;
 import com.mynas.nastv.feature.danmaku.view.DanmuRenderer;
 
 import java.util.List;
@@ -23,6 +25,9 @@ public class DanmuControllerImpl implements IDanmuController {
     
     private Context context;
     private DanmakuOverlayView overlayView;
+    private DanmakuTextureView textureView;
+    // 实际加到容器里的弹幕视图（overlayView 或 textureView）
+    private View danmakuView;
     private DanmuRenderer renderer;
     private DanmuPresenter presenter;
     private DanmuRepository repository;
@@ -39,21 +44,32 @@ public class DanmuControllerImpl implements IDanmuController {
         if (isInitialized) throw new IllegalStateException("Already initialized");
         this.context = context;
         this.config = DanmuConfig.loadFromPrefs();
-        this.overlayView = new DanmakuOverlayView(context);
-        this.overlayView.setDanmakuAlpha(config.opacity);
+        this.renderer = new DanmuRenderer(context, config);
+        
+        if (config.renderThreadEnabled) {
+            // 🎬 渲染线程模式：布局和绘制都不占主线程
+            this.textureView = new DanmakuTextureView(context);
+            this.danmakuView = textureView;
+            this.presenter = new DanmuPresenter(renderer, textureView);
+            presenter.updateConfig(config);
+            Log.d(TAG, "弹幕使用渲染线程模式");
+        } else {
+            this.overlayView = new DanmakuOverlayView(context);
+            this.overlayView.setDanmakuAlpha(config.opacity);
+            this.danmakuView = overlayView;
+            this.presenter = new DanmuPresenter(renderer, overlayView);
+        }
         
-        parentContainer.addView(overlayView, new FrameLayout.LayoutParams(
+        parentContainer.addView(danmakuView, new FrameLayout.LayoutParams(
                 ViewGroup.LayoutParams.MATCH_PARENT,
                 ViewGroup.LayoutParams.MATCH_PARENT
         ));
         
-        this.renderer = new DanmuRenderer(context, config);
-        this.presenter = new DanmuPresenter(renderer, overlayView);
-        this.repository = new DanmuRepository();
+        this.repository = new DanmuRepository(context);
         
-        overlayView.post(() -> {
-            int width = overlayView.getWidth();
-            int height = overlayView.getHeight();
+        danmakuView.post(() -> {
+            int width = danmakuView.getWidth();
+            int height = danmakuView.getHeight();
             if (width > 0 && height > 0) {
                 presenter.updateViewSize(width, height);
             }
@@ -79,8 +95,13 @@ public class DanmuControllerImpl implements IDanmuController {
 
     @Override
     public void loadDanmaku(String title, int episode, int season, String guid, String parentGuid) {
+        loadDanmaku(title, episode, season, guid, parentGuid, 0);
+    }
+
+    @Override
+    public void loadDanmaku(String title, int episode, int season, String guid, String parentGuid, long startPositionMs) {
         checkInitialized();
-        repository.fetchDanmaku(title, episode, season, guid, parentGuid, new DanmuRepository.RepositoryCallback() {
+        repository.fetchDanmaku(title, episode, season, guid, parentGuid, startPositionMs, new DanmuRepository.RepositoryCallback() {
             @Override
             public void onSuccess(Map<String, List<DanmakuEntity>> data) {
                  Log.d(TAG, "New API Danmaku load success: " + data.size() + " buckets");
@@ -139,8 +160,7 @@ public class DanmuControllerImpl implements IDanmuController {
     public void updateConfig(DanmuConfig newConfig) {
         checkInitialized();
         this.config = newConfig != null ? newConfig : DanmuConfig.loadFromPrefs();
-        overlayView.setDanmakuAlpha(config.opacity);
-        renderer.updateConfig(config);
+        // presenter 负责把配置交给 renderer 和弹幕视图（渲染线程模式下由渲染线程应用）
         presenter.updateConfig(config);
     }
 
@@ -155,8 +175,8 @@ public class DanmuControllerImpl implements IDanmuController {
     public void destroy() {
         if (!isInitialized) return;
         if (presenter != null) presenter.destroy();
-        if (overlayView != null && overlayView.getParent() != null) {
-            ((ViewGroup)overlayView.getParent()).removeView(overlayView);
+        if (danmakuView != null && danmakuView.getParent() != null) {
+            ((ViewGroup)danmakuView.getParent()).removeView(danmakuView);
         }
         isInitialized = false;
     }
@@ -8,6 +8,7 @@ import android.util.Log;
 import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
 import com.mynas.nastv.feature.danmaku.model.DanmuConfig;
 import com.mynas.nastv.feature.danmaku.view.DanmakuOverlayView;
+import com.mynas.nastv.feature.danmaku.view.DanmakuTextureView;
 import com.mynas.nastv.feature.danmaku.view.DanmuRenderer;
 
 import java.util.Collections;
@@ -23,6 +24,7 @@ import java.util.Map;
  * - 协调 Renderer 和 OverlayView
  * - 实现 PTS 同步（FR-06, FR-07）
  * - 使用 Choreographer 实现帧同步的线性滚动
+ * - 渲染线程模式下把位置和事件转交给 DanmakuTextureView，主线程不做布局和绘制
  * 
  * @author nastv
  * @version 1.0
@@ -33,6 +35,8 @@ public class DanmuPresenter {
     
     private final DanmuRenderer renderer;
     private final DanmakuOverlayView overlayView;
+    // 🎬 渲染线程模式（为 null 时在主线程渲染）
+    private final DanmakuTextureView textureView;
     private final Handler updateHandler;
     
     private Map<String, List<DanmakuEntity>> danmakuData;
@@ -92,9 +96,21 @@ public class DanmuPresenter {
     public DanmuPresenter(DanmuRenderer renderer, DanmakuOverlayView overlayView) {
         this.renderer = renderer;
         this.overlayView = overlayView;
+        this.textureView = null;
         this.updateHandler = new Handler(Looper.getMainLooper());
     }
     
+    /**
+     * 渲染线程模式：renderer 交给 textureView 的渲染线程，之后只在那里访问
+     */
+    public DanmuPresenter(DanmuRenderer renderer, DanmakuTextureView textureView) {
+        this.renderer = renderer;
+        this.overlayView = null;
+        this.textureView = textureView;
+        this.updateHandler = new Handler(Looper.getMainLooper());
+        textureView.setRenderer(renderer);
+    }
+    
     /**
      * 设置弹幕数据
      * 
@@ -102,7 +118,11 @@ public class DanmuPresenter {
      */
     public void setDanmakuData(Map<String, List<DanmakuEntity>> data) {
         this.danmakuData = data;
-        renderer.setDanmakuData(data);
+        if (textureView != null) {
+            textureView.setDanmakuData(data);
+        } else {
+            renderer.setDanmakuData(data);
+        }
         Log.d(TAG, "弹幕数据已设置");
     }
     
@@ -113,6 +133,10 @@ public class DanmuPresenter {
      */
     public void onPlaybackPositionUpdate(long positionMs) {
         this.currentPositionMs = positionMs;
+        if (textureView != null) {
+            textureView.updatePlaybackPosition(positionMs);
+            return;
+        }
         // 位置更新由 frameCallback 处理，这里只更新时间戳
     }
     
@@ -146,6 +170,10 @@ public class DanmuPresenter {
     public void onSeek(long newPositionMs) {
         Log.d(TAG, "跳转到位置: " + newPositionMs + "ms");
         this.currentPositionMs = newPositionMs;
+        if (textureView != null) {
+            textureView.seekTo(newPositionMs);
+            return;
+        }
         
         // 清除旧弹幕
         renderer.clear();
@@ -162,6 +190,10 @@ public class DanmuPresenter {
         if (!isPlaying) {
             isPlaying = true;
             Log.d(TAG, "开始播放弹幕");
+            if (textureView != null) {
+                textureView.setPlaying(true);
+                return;
+            }
             
             // 重置帧时间
             lastRenderTimeNanos = 0;
@@ -180,6 +212,10 @@ public class DanmuPresenter {
         if (isPlaying) {
             isPlaying = false;
             Log.d(TAG, "暂停播放弹幕");
+            if (textureView != null) {
+                textureView.setPlaying(false);
+                return;
+            }
             Choreographer.getInstance().removeFrameCallback(frameCallback);
         }
     }
@@ -191,7 +227,9 @@ public class DanmuPresenter {
         if (!isVisible) {
             isVisible = true;
             Log.d(TAG, "显示弹幕");
-            if (isPlaying) {
+            if (textureView != null) {
+                textureView.setDanmakuVisible(true);
+            } else if (isPlaying) {
                 lastRenderTimeNanos = 0;
                 Choreographer.getInstance().postFrameCallback(frameCallback);
             }
@@ -205,6 +243,10 @@ public class DanmuPresenter {
         if (isVisible) {
             isVisible = false;
             Log.d(TAG, "隐藏弹幕");
+            if (textureView != null) {
+                textureView.setDanmakuVisible(false);
+                return;
+            }
             overlayView.clearDanmaku();
             Choreographer.getInstance().removeFrameCallback(frameCallback);
         }
@@ -252,6 +294,10 @@ public class DanmuPresenter {
      * @param height 高度
      */
     public void updateViewSize(int width, int height) {
+        if (textureView != null) {
+            textureView.updateViewSize(width, height);
+            return;
+        }
         renderer.updateViewSize(width, height);
         overlayView.setTextSize(renderer.getFontSize());
     }
@@ -262,6 +308,10 @@ public class DanmuPresenter {
      * @param config 新配置
      */
     public void updateConfig(DanmuConfig config) {
+        if (textureView != null) {
+            textureView.updateConfig(config);
+            return;
+        }
         renderer.updateConfig(config);
         overlayView.setDanmakuAlpha(config.opacity);
         overlayView.setTextSize(renderer.getFontSize());
@@ -276,6 +326,10 @@ public class DanmuPresenter {
         pausePlayback();
         this.danmakuData = null;
         this.currentPositionMs = 0;
+        if (textureView != null) {
+            textureView.clearDanmaku(true);
+            return;
+        }
         renderer.clear();
         overlayView.clearDanmaku();
     }
@@ -286,8 +340,12 @@ public class DanmuPresenter {
     public void destroy() {
         pausePlayback();
         Choreographer.getInstance().removeFrameCallback(frameCallback);
-        renderer.clear();
-        overlayView.clearDanmaku();
+        if (textureView != null) {
+            textureView.release();
+        } else {
+            renderer.clear();
+            overlayView.clearDanmaku();
+        }
         Log.d(TAG, "DanmuPresenter 已销毁");
     }
 }
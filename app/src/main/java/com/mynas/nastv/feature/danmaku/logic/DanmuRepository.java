@@ -1,36 +1,32 @@
 package com.mynas.nastv.feature.danmaku.logic;
 
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
-
 import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
-import com.mynas.nastv.model.DanmakuMapResponse;
 import com.mynas.nastv.network.ApiClient;
+import com.mynas.nastv.utils.SharedPreferencesManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
-import retrofit2.Callback;
 import retrofit2.Response;
 
 /**
  * 弹幕数据仓库 - 使用弹幕服务器 (http://192.168.3.20:13401)
  * 
  * 🎬 优化：
- * - 智能过滤弹幕，防止 OOM
+ * - 流式解析响应，边读边过滤（{@link DanmakuStreamParser}），防止 OOM
+ * - 处理结果写入磁盘缓存（{@link DanmakuDiskCache}），重看/续播不再等弹幕服务器
  * - 优先丢弃重复弹幕
  * - 根据播放时长计算合理的弹幕密度
  * - 支持清理已使用的弹幕
@@ -45,12 +41,28 @@ public class DanmuRepository {
     // 🎬 总弹幕数量限制（防止 OOM）
     private static final int MAX_TOTAL_DANMAKU = 3000;
     
+    // 💾 磁盘缓存：新鲜期内不请求弹幕服务器；过期的先显示再后台刷新
+    private static final long CACHE_FRESH_MS = 3L * 24 * 60 * 60 * 1000;
+    
+    // 💾 续播时先解码的时间窗口（续播位置前 30 秒到后 3 分钟）
+    private static final long RESUME_WINDOW_BEFORE_MS = 30_000;
+    private static final long RESUME_WINDOW_AFTER_MS = 180_000;
+    
     private final Handler mainHandler;
     private final Executor backgroundExecutor;
+    private final DanmakuDiskCache diskCache;
     
     public DanmuRepository() {
+        this(null);
+    }
+    
+    /**
+     * @param context 用于定位磁盘缓存目录，为 null 时不使用缓存
+     */
+    public DanmuRepository(Context context) {
         this.mainHandler = new Handler(Looper.getMainLooper());
         this.backgroundExecutor = Executors.newSingleThreadExecutor();
+        this.diskCache = context != null ? DanmakuDiskCache.getInstance(context) : null;
     }
     
     /**
@@ -64,6 +76,15 @@ public class DanmuRepository {
      * 如果传入 guid 但数据库没有记录，服务器会返回空数据
      */
     public void fetchDanmaku(String title, int episode, int season, String guid, String parentGuid, RepositoryCallback callback) {
+        fetchDanmaku(title, episode, season, guid, parentGuid, 0, callback);
+    }
+    
+    /**
+     * 同上，续播时传入起始位置：命中磁盘缓存时先只解码该位置附近的弹幕并回调，
+     * 再回调完整数据（callback.onSuccess 可能被调用多次，每次都是完整替换）
+     */
+    public void fetchDanmaku(String title, int episode, int season, String guid, String parentGuid,
+                             long startPositionMs, RepositoryCallback callback) {
         Log.d(TAG, "Fetching danmaku for title=" + title + ", s" + season + "e" + episode);
         
         if (title == null || title.isEmpty()) {
@@ -72,70 +93,98 @@ public class DanmuRepository {
             return;
         }
 
-        try {
-            // 使用弹幕专用 API 服务 (独立的弹幕服务器)
-            // 不传 guid/parent_guid，直接用 title 搜索弹幕
-            Call<Map<String, List<DanmakuMapResponse.DanmakuItem>>> call = 
-                ApiClient.getDanmuApiService().getDanmakuMap(title, season, episode);
-            
-            call.enqueue(new Callback<Map<String, List<DanmakuMapResponse.DanmakuItem>>>() {
-                @Override
-                public void onResponse(@NonNull Call<Map<String, List<DanmakuMapResponse.DanmakuItem>>> call, 
-                                       @NonNull Response<Map<String, List<DanmakuMapResponse.DanmakuItem>>> response) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        Map<String, List<DanmakuMapResponse.DanmakuItem>> rawData = response.body();
-                        
-                        // 计算原始弹幕数量
-                        int rawCount = 0;
-                        for (List<DanmakuMapResponse.DanmakuItem> list : rawData.values()) {
-                            if (list != null) rawCount += list.size();
+        String cacheKey = DanmakuDiskCache.keyFor(SharedPreferencesManager.getDanmuServerBaseUrl(), title, season, episode);
+        backgroundExecutor.execute(() -> {
+            try {
+                // 💾 先读磁盘缓存
+                DanmakuDiskCache.Loaded cached = null;
+                if (diskCache != null) {
+                    long start = SystemClock.elapsedRealtime();
+                    if (startPositionMs > 0) {
+                        DanmakuDiskCache.Loaded window = diskCache.load(cacheKey,
+                                startPositionMs - RESUME_WINDOW_BEFORE_MS, startPositionMs + RESUME_WINDOW_AFTER_MS);
+                        if (window != null) {
+                            Log.d(TAG, "💾 Resume window from cache: " + window.items.size() + " items ("
+                                    + (SystemClock.elapsedRealtime() - start) + "ms)");
+                            deliver(callback, bucketize(window.items));
                         }
-                        final int finalRawCount = rawCount;
-                        Log.d(TAG, "Danmaku API success, got " + rawCount + " raw danmaku items");
-                        
-                        // Process in background
-                        backgroundExecutor.execute(() -> {
-                            try {
-                                Map<String, List<DanmakuEntity>> data = processDanmakuMap(rawData);
-                                int totalCount = 0;
-                                for (List<DanmakuEntity> list : data.values()) {
-                                    totalCount += list.size();
-                                }
-                                Log.d(TAG, "Processed " + totalCount + " danmaku items into " + data.size() + " buckets (filtered from " + finalRawCount + ")");
-                                mainHandler.post(() -> callback.onSuccess(data));
-                            } catch (OutOfMemoryError e) {
-                                Log.e(TAG, "OOM while processing danmaku, returning empty", e);
-                                mainHandler.post(() -> callback.onSuccess(new HashMap<>()));
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error processing danmaku", e);
-                                mainHandler.post(() -> callback.onError(e));
-                            }
-                        });
-                    } else {
-                        String errorBody = "";
-                        try {
-                            if (response.errorBody() != null) {
-                                errorBody = response.errorBody().string();
-                            }
-                        } catch (Exception e) {
-                            // ignore
+                    }
+                    cached = diskCache.load(cacheKey);
+                    if (cached != null) {
+                        Log.d(TAG, "💾 Danmaku from cache: " + cached.items.size() + " items ("
+                                + (SystemClock.elapsedRealtime() - start) + "ms)");
+                        deliver(callback, bucketize(cached.items));
+                        if (System.currentTimeMillis() - cached.savedAt < CACHE_FRESH_MS) {
+                            return;
                         }
-                        Log.e(TAG, "Danmaku API failed: " + response.code() + " - " + errorBody);
-                        notifyError(callback, new Exception("Request failed: " + response.code()));
+                        Log.d(TAG, "💾 Cached danmaku is stale, refreshing from server");
                     }
                 }
-
-                @Override
-                public void onFailure(@NonNull Call<Map<String, List<DanmakuMapResponse.DanmakuItem>>> call, @NonNull Throwable t) {
-                    Log.e(TAG, "Danmaku API error", t);
-                    notifyError(callback, new Exception(t.getMessage()));
+                
+                List<DanmakuEntity> items;
+                try {
+                    items = download(title, season, episode);
+                } catch (Exception e) {
+                    if (cached != null) {
+                        // 已经显示了过期缓存，刷新失败不再报错
+                        Log.w(TAG, "Danmaku refresh failed, keeping cached copy: " + e.getMessage());
+                        return;
+                    }
+                    throw e;
                 }
-            });
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Danmaku fetch exception", e);
-            notifyError(callback, e);
+                
+                // 渲染器会修改/回收实体，必须在交给界面之前写缓存
+                if (diskCache != null) {
+                    diskCache.put(cacheKey, items);
+                }
+                Map<String, List<DanmakuEntity>> data = bucketize(items);
+                Log.d(TAG, "Processed " + items.size() + " danmaku items into " + data.size() + " buckets");
+                deliver(callback, data);
+            } catch (OutOfMemoryError e) {
+                Log.e(TAG, "OOM while processing danmaku, returning empty", e);
+                mainHandler.post(() -> callback.onSuccess(new HashMap<>()));
+            } catch (Exception e) {
+                Log.e(TAG, "Danmaku fetch exception", e);
+                notifyError(callback, e);
+            }
+        });
+    }
+    
+    /**
+     * 从弹幕服务器流式下载并过滤（后台线程）
+     * 
+     * 使用弹幕专用 API 服务 (独立的弹幕服务器)
+     * 不传 guid/parent_guid，直接用 title 搜索弹幕
+     */
+    private List<DanmakuEntity> download(String title, int season, int episode) throws Exception {
+        Call<ResponseBody> call = ApiClient.getDanmuApiService().getDanmakuStream(title, season, episode);
+        Response<ResponseBody> response = call.execute();
+        
+        if (!response.isSuccessful() || response.body() == null) {
+            String errorBody = "";
+            try {
+                if (response.errorBody() != null) {
+                    errorBody = response.errorBody().string();
+                }
+            } catch (Exception e) {
+                // ignore
+            }
+            Log.e(TAG, "Danmaku API failed: " + response.code() + " - " + errorBody);
+            throw new Exception("Request failed: " + response.code());
         }
+        
+        // 🎬 边读边去重、按分钟限额，原始弹幕不会整体驻留内存
+        DanmakuStreamParser.Result parsed;
+        try (ResponseBody body = response.body()) {
+            parsed = new DanmakuStreamParser(MAX_DANMAKU_PER_MINUTE).parse(body.charStream());
+        }
+        Log.d(TAG, "Danmaku streamed: " + parsed.rawCount + " raw, " + parsed.duplicateCount + " duplicates, "
+                + parsed.emptyCount + " empty, " + parsed.densityDropped + " over density quota");
+        return limitTotal(parsed.items);
+    }
+    
+    private void deliver(RepositoryCallback callback, Map<String, List<DanmakuEntity>> data) {
+        mainHandler.post(() -> callback.onSuccess(data));
     }
 
     /**
@@ -155,71 +204,28 @@ public class DanmuRepository {
     }
     
     /**
-     * 处理弹幕 Map 响应
-     * 
-     * 🎬 优化：
-     * 1. 先去重（相同文本的弹幕只保留一个）
-     * 2. 根据时间密度过滤（每分钟最多 MAX_DANMAKU_PER_MINUTE 条）
-     * 3. 总数限制（最多 MAX_TOTAL_DANMAKU 条）
-     * 4. 按60秒分桶存储
+     * 🎬 总数限制（最多 MAX_TOTAL_DANMAKU 条），超出时按时间均匀采样
      */
-    private Map<String, List<DanmakuEntity>> processDanmakuMap(Map<String, List<DanmakuMapResponse.DanmakuItem>> rawData) {
-        Map<String, List<DanmakuEntity>> result = new HashMap<>();
+    private List<DanmakuEntity> limitTotal(List<DanmakuEntity> items) {
+        if (items.size() <= MAX_TOTAL_DANMAKU) return items;
         
-        if (rawData == null) return result;
-        
-        // 🎬 第一步：收集所有弹幕并去重
-        List<DanmakuMapResponse.DanmakuItem> allItems = new ArrayList<>();
-        Set<String> seenTexts = new HashSet<>();
-        
-        for (Map.Entry<String, List<DanmakuMapResponse.DanmakuItem>> entry : rawData.entrySet()) {
-            List<DanmakuMapResponse.DanmakuItem> items = entry.getValue();
-            if (items == null) continue;
-            
-            for (DanmakuMapResponse.DanmakuItem item : items) {
-                if (item.text == null || item.text.trim().isEmpty()) continue;
-                
-                String normalizedText = item.text.trim().toLowerCase();
-                // 🎬 去重：相同文本只保留第一个
-                if (!seenTexts.contains(normalizedText)) {
-                    seenTexts.add(normalizedText);
-                    allItems.add(item);
-                }
-            }
+        List<DanmakuEntity> sampled = new ArrayList<>(MAX_TOTAL_DANMAKU);
+        float step = (float) items.size() / MAX_TOTAL_DANMAKU;
+        for (int i = 0; i < MAX_TOTAL_DANMAKU; i++) {
+            int index = Math.min((int) (i * step), items.size() - 1);
+            sampled.add(items.get(index));
         }
-        
-        Log.d(TAG, "去重后弹幕数量: " + allItems.size() + " (去除 " + (seenTexts.size() > allItems.size() ? 0 : seenTexts.size() - allItems.size()) + " 条重复)");
-        
-        // 🎬 第二步：按时间排序
-        Collections.sort(allItems, new Comparator<DanmakuMapResponse.DanmakuItem>() {
-            @Override
-            public int compare(DanmakuMapResponse.DanmakuItem a, DanmakuMapResponse.DanmakuItem b) {
-                return Double.compare(a.time, b.time);
-            }
-        });
-        
-        // 🎬 第三步：按时间密度过滤
-        List<DanmakuMapResponse.DanmakuItem> filteredItems = filterByDensity(allItems);
-        
-        Log.d(TAG, "密度过滤后弹幕数量: " + filteredItems.size());
-        
-        // 🎬 第四步：总数限制
-        if (filteredItems.size() > MAX_TOTAL_DANMAKU) {
-            // 均匀采样
-            List<DanmakuMapResponse.DanmakuItem> sampled = new ArrayList<>();
-            float step = (float) filteredItems.size() / MAX_TOTAL_DANMAKU;
-            for (int i = 0; i < MAX_TOTAL_DANMAKU; i++) {
-                int index = Math.min((int) (i * step), filteredItems.size() - 1);
-                sampled.add(filteredItems.get(index));
-            }
-            filteredItems = sampled;
-            Log.d(TAG, "总数限制后弹幕数量: " + filteredItems.size());
-        }
-        
-        // 🎬 第五步：按60秒分桶
-        for (DanmakuMapResponse.DanmakuItem item : filteredItems) {
-            long timeMs = (long) (item.time * 1000);
-            long bucketId = timeMs / 60000;
+        Log.d(TAG, "总数限制后弹幕数量: " + sampled.size());
+        return sampled;
+    }
+    
+    /**
+     * 🎬 按60秒分桶存储（key 为 "开始毫秒-结束毫秒"）
+     */
+    private Map<String, List<DanmakuEntity>> bucketize(List<DanmakuEntity> items) {
+        Map<String, List<DanmakuEntity>> result = new HashMap<>();
+        for (DanmakuEntity entity : items) {
+            long bucketId = entity.time / 60000;
             long bucketStart = bucketId * 60000;
             long bucketEnd = bucketStart + 60000;
             String bucketKey = bucketStart + "-" + bucketEnd;
@@ -229,71 +235,10 @@ public class DanmuRepository {
                 entityList = new ArrayList<>();
                 result.put(bucketKey, entityList);
             }
-            
-            // 创建弹幕实体
-            DanmakuEntity entity = new DanmakuEntity();
-            entity.time = timeMs;
-            entity.text = sanitizeDanmakuText(item.text);
-            entity.color = item.color != null ? item.color : "#FFFFFF";
-            entity.mode = item.mode;
             entityList.add(entity);
         }
         
         Log.d(TAG, "弹幕分桶完成，共 " + result.size() + " 个时间桶");
-        
-        // 清理临时数据帮助 GC
-        allItems.clear();
-        seenTexts.clear();
-        filteredItems.clear();
-        
-        return result;
-    }
-    
-    /**
-     * 🎬 按时间密度过滤弹幕
-     * 每分钟最多保留 MAX_DANMAKU_PER_MINUTE 条弹幕
-     */
-    private List<DanmakuMapResponse.DanmakuItem> filterByDensity(List<DanmakuMapResponse.DanmakuItem> items) {
-        if (items.isEmpty()) return items;
-        
-        List<DanmakuMapResponse.DanmakuItem> result = new ArrayList<>();
-        
-        // 按分钟分组
-        Map<Long, List<DanmakuMapResponse.DanmakuItem>> minuteGroups = new HashMap<>();
-        for (DanmakuMapResponse.DanmakuItem item : items) {
-            long minute = (long) (item.time / 60);
-            List<DanmakuMapResponse.DanmakuItem> group = minuteGroups.get(minute);
-            if (group == null) {
-                group = new ArrayList<>();
-                minuteGroups.put(minute, group);
-            }
-            group.add(item);
-        }
-        
-        // 每分钟最多保留 MAX_DANMAKU_PER_MINUTE 条
-        for (Map.Entry<Long, List<DanmakuMapResponse.DanmakuItem>> entry : minuteGroups.entrySet()) {
-            List<DanmakuMapResponse.DanmakuItem> group = entry.getValue();
-            
-            if (group.size() <= MAX_DANMAKU_PER_MINUTE) {
-                result.addAll(group);
-            } else {
-                // 均匀采样
-                float step = (float) group.size() / MAX_DANMAKU_PER_MINUTE;
-                for (int i = 0; i < MAX_DANMAKU_PER_MINUTE; i++) {
-                    int index = Math.min((int) (i * step), group.size() - 1);
-                    result.add(group.get(index));
-                }
-            }
-        }
-        
-        // 重新按时间排序
-        Collections.sort(result, new Comparator<DanmakuMapResponse.DanmakuItem>() {
-            @Override
-            public int compare(DanmakuMapResponse.DanmakuItem a, DanmakuMapResponse.DanmakuItem b) {
-                return Double.compare(a.time, b.time);
-            }
-        });
-        
         return result;
     }
     
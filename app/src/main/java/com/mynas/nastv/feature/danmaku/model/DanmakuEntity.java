@@ -103,6 +103,11 @@ public class DanmakuEntity implements Serializable {
      */
     public transient float speed;
     
+    /**
+     * 🎬 测量得到的文字宽度（像素，滚动弹幕发射时计算）
+     */
+    public transient float width;
+    
     /**
      * 构造函数
      */
@@ -131,6 +136,7 @@ public class DanmakuEntity implements Serializable {
         this.trackIndex = 0;
         this.startTimeMs = 0;
         this.speed = 0;
+        this.width = 0;
     }
     
     /**
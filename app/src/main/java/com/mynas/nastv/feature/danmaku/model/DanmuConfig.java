@@ -58,6 +58,12 @@ public class DanmuConfig implements Serializable {
      */
     public int maxOnScreenCount = 100;
     
+    /**
+     * 是否在专用渲染线程上布局和绘制弹幕（DanmakuTextureView）
+     * 默认 false（主线程 DanmakuOverlayView）
+     */
+    public boolean renderThreadEnabled = false;
+    
     /**
      * 构造函数
      */
@@ -91,6 +97,7 @@ public class DanmuConfig implements Serializable {
         config.opacity = com.mynas.nastv.utils.SharedPreferencesManager.getDanmakuAlpha() / 255.0f;
         config.fontSize = com.mynas.nastv.utils.SharedPreferencesManager.getDanmakuTextSize();
         config.scrollSpeed = 200f * com.mynas.nastv.utils.SharedPreferencesManager.getDanmakuSpeed();
+        config.renderThreadEnabled = com.mynas.nastv.utils.SharedPreferencesManager.isDanmakuRenderThreadEnabled();
         
         // 默认区域为20%（屏幕上方1/5）
         int region = com.mynas.nastv.utils.SharedPreferencesManager.getDanmakuRegion();
@@ -0,0 +1,210 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🎬 弹幕位图缓存
+ *
+ * 原来每帧对每条弹幕都要解析颜色字符串、setColor，再 drawText 重新排版和光栅化。
+ * 这里在弹幕第一次出现时把它（带描边）光栅化到一张位图里，之后每帧只在新的 X 位置贴图：
+ * - 硬件加速下位图只上传一次纹理，每帧只是一次贴图
+ * - 弹幕离开屏幕后位图回到池里，下一条同高度、宽度相近的弹幕直接复用
+ * - 超过内存上限时返回 null，调用方退回 drawText
+ *
+ * 只在绘制所在的线程使用（主线程 onDraw 或弹幕渲染线程），不加锁。
+ */
+final class DanmakuBitmapCache {
+
+    private static final String TAG = "DanmakuBitmapCache";
+
+    // 屏幕上同时存在的弹幕位图总大小上限
+    private static final long MAX_ACTIVE_BYTES = 12L * 1024 * 1024;
+    private static final int MAX_POOLED_BITMAPS = 24;
+    // 超过这个宽度的弹幕不缓存（GPU 纹理尺寸有上限）
+    private static final int MAX_BITMAP_WIDTH = 4096;
+    // 影院模式描边：半透明黑色，宽度随字号变化
+    static final int STROKE_COLOR = 0xCC000000;
+
+    /**
+     * 一条弹幕的位图；offsetX/offsetY 是位图左上角相对 (currentX, currentY) 基线位置的偏移
+     */
+    static final class Slot {
+        Bitmap bitmap;
+        float offsetX;
+        float offsetY;
+        long lastUsedFrame;
+        DanmakuEntity entity;
+    }
+
+    private final Map<DanmakuEntity, Slot> slots = new IdentityHashMap<>();
+    private final List<Slot> activeSlots = new ArrayList<>();
+    private final List<Slot> spareSlots = new ArrayList<>();
+    private final List<Bitmap> bitmapPool = new ArrayList<>();
+
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint.FontMetrics fontMetrics = new Paint.FontMetrics();
+    private final Canvas rasterCanvas = new Canvas();
+
+    private long activeBytes = 0;
+
+    DanmakuBitmapCache(float textSize) {
+        fillPaint.setStyle(Paint.Style.FILL);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeJoin(Paint.Join.ROUND);
+        strokePaint.setColor(STROKE_COLOR);
+        applyTextSize(textSize);
+    }
+
+    /**
+     * 字号变化后已有位图全部作废
+     */
+    void setTextSize(float textSize) {
+        clear();
+        applyTextSize(textSize);
+    }
+
+    private void applyTextSize(float textSize) {
+        fillPaint.setTextSize(textSize);
+        strokePaint.setTextSize(textSize);
+        strokePaint.setStrokeWidth(strokeWidthFor(textSize));
+        fillPaint.getFontMetrics(fontMetrics);
+    }
+
+    /**
+     * 描边宽度（DanmakuPainter 退回 drawText 时用同样的描边）
+     */
+    static float strokeWidthFor(float textSize) {
+        return Math.max(2f, textSize / 16f);
+    }
+
+    /**
+     * 取这条弹幕的位图，第一次出现时光栅化；无法缓存时返回 null
+     */
+    Slot obtain(DanmakuEntity entity, long frame) {
+        Slot slot = slots.get(entity);
+        if (slot == null) {
+            slot = rasterize(entity);
+            if (slot == null) return null;
+        }
+        slot.lastUsedFrame = frame;
+        return slot;
+    }
+
+    /**
+     * 回收这一帧没有用到的位图（弹幕已离开屏幕）
+     */
+    void sweep(long frame) {
+        int kept = 0;
+        for (int i = 0; i < activeSlots.size(); i++) {
+            Slot slot = activeSlots.get(i);
+            if (slot.lastUsedFrame == frame) {
+                activeSlots.set(kept++, slot);
+            } else {
+                releaseSlot(slot);
+            }
+        }
+        for (int i = activeSlots.size() - 1; i >= kept; i--) {
+            activeSlots.remove(i);
+        }
+    }
+
+    /**
+     * 释放所有位图（视图分离、字号变化时）
+     */
+    void clear() {
+        for (int i = 0; i < activeSlots.size(); i++) {
+            releaseSlot(activeSlots.get(i));
+        }
+        activeSlots.clear();
+        for (int i = 0; i < bitmapPool.size(); i++) {
+            bitmapPool.get(i).recycle();
+        }
+        bitmapPool.clear();
+    }
+
+    private Slot rasterize(DanmakuEntity entity) {
+        String text = entity.text;
+        float padding = (float) Math.ceil(strokePaint.getStrokeWidth());
+        int width = (int) Math.ceil(fillPaint.measureText(text) + padding * 2);
+        int height = (int) Math.ceil(fontMetrics.bottom - fontMetrics.top + padding * 2);
+        if (width <= 0 || height <= 0 || width > MAX_BITMAP_WIDTH) return null;
+        long bytes = (long) width * height * 4;
+        if (activeBytes + bytes > MAX_ACTIVE_BYTES) return null;
+
+        Bitmap bitmap = takePooledBitmap(width, height);
+        try {
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                bitmap.eraseColor(Color.TRANSPARENT);
+            }
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "创建弹幕位图失败，退回 drawText: " + width + "x" + height);
+            return null;
+        }
+
+        int color;
+        try {
+            color = Color.parseColor(entity.color);
+        } catch (Exception e) {
+            color = Color.WHITE;
+        }
+        fillPaint.setColor(color);
+
+        float baseline = padding - fontMetrics.top;
+        rasterCanvas.setBitmap(bitmap);
+        rasterCanvas.drawText(text, padding, baseline, strokePaint);
+        rasterCanvas.drawText(text, padding, baseline, fillPaint);
+        rasterCanvas.setBitmap(null);
+
+        Slot slot = spareSlots.isEmpty() ? new Slot() : spareSlots.remove(spareSlots.size() - 1);
+        slot.bitmap = bitmap;
+        slot.offsetX = -padding;
+        slot.offsetY = -baseline;
+        slot.entity = entity;
+        slots.put(entity, slot);
+        activeSlots.add(slot);
+        activeBytes += bitmap.getAllocationByteCount();
+        return slot;
+    }
+
+    /**
+     * 找一张高度相同、宽度足够且不太浪费的旧位图（多出的部分已擦成透明，整张贴图不影响显示）
+     */
+    private Bitmap takePooledBitmap(int width, int height) {
+        for (int i = 0; i < bitmapPool.size(); i++) {
+            Bitmap bitmap = bitmapPool.get(i);
+            if (bitmap.getHeight() == height && bitmap.getWidth() >= width
+                    && bitmap.getWidth() <= width + width / 2 + 32) {
+                bitmapPool.remove(i);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    private void releaseSlot(Slot slot) {
+        slots.remove(slot.entity);
+        activeBytes -= slot.bitmap.getAllocationByteCount();
+        if (bitmapPool.size() < MAX_POOLED_BITMAPS) {
+            bitmapPool.add(slot.bitmap);
+        } else {
+            slot.bitmap.recycle();
+        }
+        slot.bitmap = null;
+        slot.entity = null;
+        spareSlots.add(slot);
+    }
+}
@@ -3,7 +3,6 @@ package com.mynas.nastv.feature.danmaku.view;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -22,6 +21,9 @@ import java.util.List;
  * - 焦点穿透（不拦截遥控器事件）
  * - 高性能绘制（仅重绘可见弹幕）
  * - 零崩溃保护（所有异常被捕获）
+ * - 每条弹幕只光栅化一次（DanmakuBitmapCache），每帧只贴图
+ * 
+ * 主线程绘制；开启弹幕渲染线程时改用 DanmakuTextureView
  * 
  * @author nastv
  * @version 1.0
@@ -30,8 +32,11 @@ public class DanmakuOverlayView extends View {
     
     private static final String TAG = "DanmakuOverlayView";
     
-    private final Paint textPaint;
+    private final DanmakuPainter painter = new DanmakuPainter();
     private final List<DanmakuEntity> visibleDanmakuList = new ArrayList<>();
+    
+    // onDraw 用的快照（只在主线程使用，每帧复用）
+    private final List<DanmakuEntity> drawList = new ArrayList<>();
     private final Object lockObject = new Object();
     
     private long frameCount = 0;
@@ -52,13 +57,6 @@ public class DanmakuOverlayView extends View {
         setClickable(false);
         setWillNotDraw(false); // 允许绘制
         
-        // 初始化画笔
-        textPaint = new Paint();
-        textPaint.setAntiAlias(true); // 抗锯齿
-        textPaint.setColor(Color.WHITE);
-        textPaint.setTextSize(48); // 默认字体大小，会被动态调整
-        textPaint.setStyle(Paint.Style.FILL);
-        
         Log.d(TAG, "DanmakuOverlayView 初始化完成");
     }
     
@@ -73,8 +71,11 @@ public class DanmakuOverlayView extends View {
     public void renderDanmaku(List<DanmakuEntity> danmakuList) {
         synchronized (lockObject) {
             visibleDanmakuList.clear();
-            if (danmakuList != null && !danmakuList.isEmpty()) {
-                visibleDanmakuList.addAll(danmakuList);
+            if (danmakuList != null) {
+                // 逐个添加：addAll 每次都会 toArray 分配一个数组
+                for (int i = 0, n = danmakuList.size(); i < n; i++) {
+                    visibleDanmakuList.add(danmakuList.get(i));
+                }
             }
         }
         
@@ -95,7 +96,7 @@ public class DanmakuOverlayView extends View {
      * @param textSize 字体大小（像素）
      */
     public void setTextSize(float textSize) {
-        textPaint.setTextSize(textSize);
+        painter.setTextSize(textSize);
         invalidate();
     }
     
@@ -120,23 +121,17 @@ public class DanmakuOverlayView extends View {
             canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
             
             // 获取可见弹幕列表（线程安全）
-            final List<DanmakuEntity> danmakuListSnapshot;
+            final List<DanmakuEntity> danmakuListSnapshot = drawList;
+            danmakuListSnapshot.clear();
             synchronized (lockObject) {
-                if (visibleDanmakuList.isEmpty()) {
-                    return; // 没有弹幕，直接返回
+                for (int i = 0, n = visibleDanmakuList.size(); i < n; i++) {
+                    danmakuListSnapshot.add(visibleDanmakuList.get(i));
                 }
-                danmakuListSnapshot = new ArrayList<>(visibleDanmakuList);
             }
             
-            // 绘制每条弹幕
-            for (DanmakuEntity entity : danmakuListSnapshot) {
-                try {
-                    drawSingleDanmaku(canvas, entity);
-                } catch (Exception e) {
-                    Log.e(TAG, "绘制单条弹幕失败: " + entity, e);
-                    // 继续绘制下一条，不影响整体渲染
-                }
-            }
+            // 绘制每条弹幕：有缓存位图时直接贴图，否则退回 drawText
+            painter.draw(canvas, danmakuListSnapshot, frameCount);
+            danmakuListSnapshot.clear();
             
         } catch (Exception e) {
             Log.e(TAG, "弹幕渲染错误（非致命）", e);
@@ -149,34 +144,6 @@ public class DanmakuOverlayView extends View {
         }
     }
     
-    /**
-     * 绘制单条弹幕
-     * 
-     * @param canvas 画布
-     * @param entity 弹幕实体
-     */
-    private void drawSingleDanmaku(Canvas canvas, DanmakuEntity entity) {
-        if (entity == null || entity.text == null || entity.text.isEmpty()) {
-            return;
-        }
-        
-        // 设置颜色和透明度
-        try {
-            int color = Color.parseColor(entity.color);
-            textPaint.setColor(color);
-        } catch (Exception e) {
-            textPaint.setColor(Color.WHITE); // 默认白色
-        }
-        
-        // 绘制文本
-        canvas.drawText(
-            entity.text,
-            entity.currentX,
-            entity.currentY,
-            textPaint
-        );
-    }
-    
     /**
      * 设置全局透明度
      * 
@@ -184,7 +151,13 @@ public class DanmakuOverlayView extends View {
      */
     public void setDanmakuAlpha(float alpha) {
         int alphaInt = (int) (Math.max(0f, Math.min(1f, alpha)) * 255);
-        textPaint.setAlpha(alphaInt);
+        painter.setAlpha(alphaInt);
         invalidate();
     }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        painter.release();
+    }
 }
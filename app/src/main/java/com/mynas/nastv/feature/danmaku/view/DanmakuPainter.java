@@ -0,0 +1,108 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+
+import java.util.List;
+
+/**
+ * 🎬 弹幕绘制
+ *
+ * DanmakuOverlayView（主线程 onDraw）和 DanmakuTextureView（弹幕渲染线程）共用：
+ * 有缓存位图时直接贴图，否则退回 drawText（描边与位图一致）。
+ * 一个实例只能在一个线程使用。
+ */
+final class DanmakuPainter {
+
+    private static final String TAG = "DanmakuPainter";
+
+    private final Paint textPaint;
+    private final Paint strokePaint;
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final DanmakuBitmapCache bitmapCache;
+
+    DanmakuPainter() {
+        textPaint = new Paint();
+        textPaint.setAntiAlias(true); // 抗锯齿
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(48); // 默认字体大小，会被动态调整
+        textPaint.setStyle(Paint.Style.FILL);
+        strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeJoin(Paint.Join.ROUND);
+        strokePaint.setColor(DanmakuBitmapCache.STROKE_COLOR);
+        strokePaint.setTextSize(textPaint.getTextSize());
+        strokePaint.setStrokeWidth(DanmakuBitmapCache.strokeWidthFor(textPaint.getTextSize()));
+        bitmapCache = new DanmakuBitmapCache(textPaint.getTextSize());
+    }
+
+    void setTextSize(float textSize) {
+        if (textSize == textPaint.getTextSize()) return;
+        textPaint.setTextSize(textSize);
+        strokePaint.setTextSize(textSize);
+        strokePaint.setStrokeWidth(DanmakuBitmapCache.strokeWidthFor(textSize));
+        bitmapCache.setTextSize(textSize);
+    }
+
+    void setAlpha(int alpha) {
+        textPaint.setAlpha(alpha);
+        // 描边自带 0xCC 的透明度，再乘上全局透明度（与贴图时 bitmapPaint 的效果相同）
+        strokePaint.setAlpha(Color.alpha(DanmakuBitmapCache.STROKE_COLOR) * alpha / 255);
+        bitmapPaint.setAlpha(alpha);
+    }
+
+    /**
+     * 绘制一帧；这一帧没画到的弹幕已离开屏幕，位图随之回收
+     */
+    void draw(Canvas canvas, List<DanmakuEntity> danmakuList, long frame) {
+        for (int i = 0, n = danmakuList.size(); i < n; i++) {
+            DanmakuEntity entity = danmakuList.get(i);
+            try {
+                if (entity == null || entity.text == null || entity.text.isEmpty()) {
+                    continue;
+                }
+                DanmakuBitmapCache.Slot slot = bitmapCache.obtain(entity, frame);
+                if (slot != null) {
+                    canvas.drawBitmap(slot.bitmap, entity.currentX + slot.offsetX,
+                        entity.currentY + slot.offsetY, bitmapPaint);
+                } else {
+                    drawSingleDanmaku(canvas, entity);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "绘制单条弹幕失败: " + entity, e);
+                // 继续绘制下一条，不影响整体渲染
+            }
+        }
+        bitmapCache.sweep(frame);
+    }
+
+    /**
+     * 释放所有位图
+     */
+    void release() {
+        bitmapCache.clear();
+    }
+
+    /**
+     * 绘制单条弹幕（没有缓存位图时）
+     */
+    private void drawSingleDanmaku(Canvas canvas, DanmakuEntity entity) {
+        // 设置颜色，保留全局透明度
+        int alpha = textPaint.getAlpha();
+        try {
+            int color = Color.parseColor(entity.color);
+            textPaint.setColor(color);
+        } catch (Exception e) {
+            textPaint.setColor(Color.WHITE); // 默认白色
+        }
+        textPaint.setAlpha(alpha);
+
+        // 先描边再填充，与缓存位图的效果一致
+        canvas.drawText(entity.text, entity.currentX, entity.currentY, strokePaint);
+        canvas.drawText(entity.text, entity.currentX, entity.currentY, textPaint);
+    }
+}
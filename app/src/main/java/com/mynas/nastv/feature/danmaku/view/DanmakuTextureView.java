@@ -0,0 +1,338 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.TextureView;
+
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+import com.mynas.nastv.feature.danmaku.model.DanmuConfig;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🎬 弹幕渲染线程模式的视图
+ *
+ * DanmakuOverlayView 的布局（轨道分配、位置积分）和绘制都在主线程的 Choreographer 回调里，
+ * 弹幕密集时会和遥控器按键、播放器回调抢主线程。这里把两者都放到专用的渲染线程：
+ * - 渲染线程有自己的 Looper 和 Choreographer，按 vsync 节奏出帧
+ * - 播放位置和跳转通过原子变量传递，主线程只写不等
+ * - 数据、尺寸、配置变化投递到渲染线程执行，DanmuRenderer 从此只在渲染线程访问
+ * - 用 Surface.lockHardwareCanvas 绘制到 TextureView，由 UI 合成到 PlayerView 之上
+ * - 统计每帧耗时（平均 / P95 / 最大）和掉帧数，定期打印
+ *
+ * 公开方法都在主线程调用。
+ */
+public class DanmakuTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private static final String TAG = "DanmakuTextureView";
+
+    // 帧间隔超过这个值记一次掉帧
+    private static final long JANK_INTERVAL_NANOS = 25_000_000L;
+    private static final long STATS_LOG_INTERVAL_MS = 5000;
+
+    private final HandlerThread renderThread;
+    private final Handler renderHandler;
+
+    // 主线程 → 渲染线程的无锁交接
+    private final AtomicLong playbackPositionMs = new AtomicLong(0);
+    private final AtomicLong seekGeneration = new AtomicLong(0);
+    private volatile boolean playing = false;
+    private volatile boolean visible = true;
+
+    // 以下字段只在渲染线程访问
+    private DanmuRenderer renderer;
+    private final DanmakuPainter painter = new DanmakuPainter();
+    private final FrameStats stats = new FrameStats();
+    private Choreographer choreographer;
+    private Surface surface;
+    private SurfaceTexture surfaceTexture;
+    private boolean frameScheduled = false;
+    private long handledSeekGeneration = 0;
+    private long lastFrameTimeNanos = 0;
+    private long frameCount = 0;
+    private boolean surfaceHasContent = false;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled = false;
+            renderFrame(frameTimeNanos);
+        }
+    };
+
+    public DanmakuTextureView(Context context) {
+        super(context);
+        setOpaque(false);
+        setFocusable(false);
+        setClickable(false);
+        setSurfaceTextureListener(this);
+
+        renderThread = new HandlerThread("DanmakuRender", Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        renderHandler.post(() -> choreographer = Choreographer.getInstance());
+        Log.d(TAG, "DanmakuTextureView 初始化完成，渲染线程已启动");
+    }
+
+    /**
+     * 交给渲染线程的渲染引擎；调用后主线程不再直接访问它
+     */
+    public void setRenderer(DanmuRenderer renderer) {
+        renderHandler.post(() -> this.renderer = renderer);
+    }
+
+    public void setDanmakuData(Map<String, List<DanmakuEntity>> data) {
+        renderHandler.post(() -> {
+            if (renderer != null) renderer.setDanmakuData(data);
+        });
+    }
+
+    /**
+     * 更新播放位置（无锁，渲染线程下一帧读取）
+     */
+    public void updatePlaybackPosition(long positionMs) {
+        playbackPositionMs.set(positionMs);
+    }
+
+    /**
+     * 跳转：渲染线程下一帧清掉屏幕上的弹幕，并按新位置重新定位
+     */
+    public void seekTo(long positionMs) {
+        playbackPositionMs.set(positionMs);
+        seekGeneration.incrementAndGet();
+    }
+
+    public void setPlaying(boolean playing) {
+        this.playing = playing;
+        renderHandler.post(this::scheduleFrame);
+    }
+
+    public void setDanmakuVisible(boolean visible) {
+        this.visible = visible;
+        renderHandler.post(() -> {
+            lastFrameTimeNanos = 0;
+            if (!visible) clearSurface();
+            scheduleFrame();
+        });
+    }
+
+    public void updateViewSize(int width, int height) {
+        renderHandler.post(() -> {
+            if (renderer == null) return;
+            renderer.updateViewSize(width, height);
+            painter.setTextSize(renderer.getFontSize());
+        });
+    }
+
+    public void updateConfig(DanmuConfig config) {
+        int alpha = (int) (Math.max(0f, Math.min(1f, config.opacity)) * 255);
+        renderHandler.post(() -> {
+            painter.setAlpha(alpha);
+            if (renderer == null) return;
+            renderer.updateConfig(config);
+            painter.setTextSize(renderer.getFontSize());
+        });
+    }
+
+    /**
+     * 清空屏幕上的弹幕；dropData 为 true 时同时丢弃弹幕数据（切换剧集）
+     */
+    public void clearDanmaku(boolean dropData) {
+        renderHandler.post(() -> {
+            if (renderer != null) {
+                renderer.clear();
+                if (dropData) renderer.setDanmakuData(null);
+            }
+            clearSurface();
+        });
+    }
+
+    /**
+     * 停止渲染线程并释放 Surface 和位图（之后不能再使用）
+     */
+    public void release() {
+        playing = false;
+        renderHandler.post(() -> {
+            if (choreographer != null) choreographer.removeFrameCallback(frameCallback);
+            if (renderer != null) renderer.clear();
+            painter.release();
+            releaseSurface();
+            Log.d(TAG, "渲染线程结束 " + stats.summary());
+        });
+        renderThread.quitSafely();
+    }
+
+    /**
+     * 最近一个统计窗口的帧耗时（渲染线程写、任意线程读，只用于诊断）
+     */
+    public String getFrameStats() {
+        return stats.lastSummary;
+    }
+
+    // ==================== SurfaceTextureListener（主线程回调） ====================
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture texture, int width, int height) {
+        renderHandler.post(() -> {
+            surfaceTexture = texture;
+            surface = new Surface(texture);
+            surfaceHasContent = false;
+            Log.d(TAG, "Surface 就绪: " + width + "x" + height);
+            scheduleFrame();
+        });
+        updateViewSize(width, height);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture texture, int width, int height) {
+        updateViewSize(width, height);
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
+        // 渲染线程可能正在绘制，由它自己释放
+        renderHandler.post(this::releaseSurface);
+        return false;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture texture) {
+    }
+
+    // ==================== 渲染线程 ====================
+
+    private void scheduleFrame() {
+        if (frameScheduled || choreographer == null || surface == null) return;
+        if (!playing || !visible) {
+            lastFrameTimeNanos = 0;
+            return;
+        }
+        frameScheduled = true;
+        choreographer.postFrameCallback(frameCallback);
+    }
+
+    private void renderFrame(long frameTimeNanos) {
+        if (!playing || !visible || surface == null || renderer == null) {
+            lastFrameTimeNanos = 0;
+            scheduleFrame();
+            return;
+        }
+        long start = System.nanoTime();
+
+        long generation = seekGeneration.get();
+        if (generation != handledSeekGeneration) {
+            handledSeekGeneration = generation;
+            renderer.clear();
+            lastFrameTimeNanos = 0;
+        }
+        float deltaTimeMs = lastFrameTimeNanos > 0 ? (frameTimeNanos - lastFrameTimeNanos) / 1_000_000f : 0;
+        long interval = lastFrameTimeNanos > 0 ? frameTimeNanos - lastFrameTimeNanos : 0;
+        lastFrameTimeNanos = frameTimeNanos;
+
+        try {
+            List<DanmakuEntity> visibleList = renderer.calculateVisibleDanmakuSmooth(playbackPositionMs.get(), deltaTimeMs);
+            // 上一帧和这一帧都没有弹幕时不提交，省一次合成
+            if (!visibleList.isEmpty() || surfaceHasContent) {
+                Canvas canvas = surface.lockHardwareCanvas();
+                try {
+                    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                    painter.draw(canvas, visibleList, ++frameCount);
+                } finally {
+                    surface.unlockCanvasAndPost(canvas);
+                }
+                surfaceHasContent = !visibleList.isEmpty();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "弹幕渲染错误（非致命）", e);
+        }
+
+        stats.record(System.nanoTime() - start, interval);
+        scheduleFrame();
+    }
+
+    private void clearSurface() {
+        if (surface == null || !surfaceHasContent) return;
+        try {
+            Canvas canvas = surface.lockHardwareCanvas();
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            surface.unlockCanvasAndPost(canvas);
+            surfaceHasContent = false;
+        } catch (Exception e) {
+            Log.w(TAG, "清空 Surface 失败: " + e.getMessage());
+        }
+    }
+
+    private void releaseSurface() {
+        if (surface != null) {
+            surface.release();
+            surface = null;
+        }
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+            surfaceTexture = null;
+        }
+        frameScheduled = false;
+        if (choreographer != null) choreographer.removeFrameCallback(frameCallback);
+    }
+
+    /**
+     * 帧耗时统计（只在渲染线程写入，定期打印，不分配对象）
+     */
+    private static final class FrameStats {
+        private final long[] workNanos = new long[600];
+        private final long[] sorted = new long[600];
+        private int count = 0;
+        private int jankCount = 0;
+        private long windowStartMs = System.currentTimeMillis();
+        private long totalFrames = 0;
+        private long totalJanks = 0;
+        volatile String lastSummary = "no frames";
+
+        void record(long work, long interval) {
+            if (count < workNanos.length) {
+                workNanos[count++] = work;
+            }
+            if (interval > JANK_INTERVAL_NANOS) {
+                jankCount++;
+            }
+            long now = System.currentTimeMillis();
+            if (now - windowStartMs >= STATS_LOG_INTERVAL_MS) {
+                lastSummary = windowSummary(now - windowStartMs);
+                Log.d(TAG, "📊 " + lastSummary);
+                totalFrames += count;
+                totalJanks += jankCount;
+                count = 0;
+                jankCount = 0;
+                windowStartMs = now;
+            }
+        }
+
+        private String windowSummary(long windowMs) {
+            if (count == 0) return "no frames";
+            System.arraycopy(workNanos, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            long sum = 0;
+            for (int i = 0; i < count; i++) sum += sorted[i];
+            return String.format(Locale.US, "fps=%.1f work avg=%.2fms p95=%.2fms max=%.2fms janks=%d",
+                count * 1000f / windowMs, sum / (double) count / 1e6,
+                sorted[Math.min(count - 1, (int) (count * 0.95))] / 1e6, sorted[count - 1] / 1e6, jankCount);
+        }
+
+        String summary() {
+            return "frames=" + (totalFrames + count) + " janks=" + (totalJanks + jankCount) + " last: " + lastSummary;
+        }
+    }
+}
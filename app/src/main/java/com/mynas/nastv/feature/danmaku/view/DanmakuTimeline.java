@@ -0,0 +1,135 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🎬 按时间排序的弹幕存储
+ *
+ * 原来每帧都要拼接 60 秒桶的字符串 key、线性扫描整个桶、
+ * 再逐个比对 activeDanmakuList 判断是否已激活，清理旧桶时还要 split 每个 key。
+ * 这里把弹幕拍平成按时间排序的并行数组，用一个游标随播放前进：
+ * - 每帧只看游标之后、发射窗口内的几条，不分配任何对象
+ * - 已发射的用 boolean[] 标记，不再遍历激活列表
+ * - 拖动进度时二分查找重新定位，往回拖可以重新显示弹幕
+ *
+ * 只在弹幕帧回调所在的线程使用（主线程或弹幕渲染线程），不加锁。
+ */
+final class DanmakuTimeline {
+
+    /**
+     * 发射窗口：播放位置前后这么多毫秒内的弹幕可以发射（没有空轨道时下一帧重试）
+     */
+    static final long LAUNCH_WINDOW_MS = 100;
+
+    /**
+     * 播放位置回退超过这个值视为拖动进度；更小的回退是播放器位置抖动，忽略
+     */
+    private static final long SEEK_BACK_TOLERANCE_MS = 1000;
+
+    private final long[] times;
+    private final DanmakuEntity[] items;
+    private final boolean[] launched;
+
+    private int cursor = 0;
+    private long lastPositionMs = Long.MIN_VALUE;
+
+    DanmakuTimeline(Map<String, List<DanmakuEntity>> buckets) {
+        List<DanmakuEntity> all = new ArrayList<>();
+        if (buckets != null) {
+            for (List<DanmakuEntity> bucket : buckets.values()) {
+                if (bucket == null) continue;
+                for (DanmakuEntity entity : bucket) {
+                    if (entity != null && entity.text != null) all.add(entity);
+                }
+            }
+        }
+        all.sort((a, b) -> Long.compare(a.time, b.time));
+
+        int n = all.size();
+        times = new long[n];
+        items = new DanmakuEntity[n];
+        launched = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = all.get(i);
+            times[i] = items[i].time;
+        }
+    }
+
+    int size() {
+        return items.length;
+    }
+
+    long timeAt(int index) {
+        return times[index];
+    }
+
+    DanmakuEntity get(int index) {
+        return items[index];
+    }
+
+    boolean isLaunched(int index) {
+        return launched[index];
+    }
+
+    void markLaunched(int index) {
+        launched[index] = true;
+    }
+
+    /**
+     * 拖动进度：二分定位到新位置，之后的弹幕都可以重新发射
+     */
+    void seek(long positionMs) {
+        cursor = lowerBound(positionMs - LAUNCH_WINDOW_MS);
+        Arrays.fill(launched, cursor, launched.length, false);
+        lastPositionMs = positionMs;
+    }
+
+    /**
+     * 播放位置是否往回跳了（超过抖动容差），调用方需要清掉屏幕上的弹幕再 {@link #seek}
+     */
+    boolean isSeekBack(long positionMs) {
+        return lastPositionMs != Long.MIN_VALUE && positionMs < lastPositionMs - SEEK_BACK_TOLERANCE_MS;
+    }
+
+    /**
+     * 随播放前进，跳过已发射和已错过发射窗口的弹幕
+     *
+     * @return 第一条可能需要发射的下标；从这里开始遍历到 {@link #timeAt} 超过 positionMs + 窗口为止
+     */
+    int advanceTo(long positionMs) {
+        if (lastPositionMs == Long.MIN_VALUE) {
+            seek(positionMs);
+            return cursor;
+        }
+        if (positionMs > lastPositionMs) {
+            lastPositionMs = positionMs;
+        }
+        long windowStart = positionMs - LAUNCH_WINDOW_MS;
+        while (cursor < times.length && (launched[cursor] || times[cursor] < windowStart)) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * 第一个 time ≥ target 的下标
+     */
+    private int lowerBound(long target) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
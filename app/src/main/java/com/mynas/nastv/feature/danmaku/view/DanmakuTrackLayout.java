@@ -0,0 +1,157 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 🎬 滚动弹幕轨道布局
+ *
+ * 原来按 text.length() * fontSize * 0.55 估算宽度（中文、emoji 明显偏窄），固定 2 条轨道、350px 间距，
+ * 从随机轨道开始逐条试，结果是弹幕重叠，或者发射失败被丢掉。这里：
+ * - 用真实的文字测量宽度，按字符串缓存（重复弹幕很多，重试发射时也不用再测）
+ * - 轨道数由弹幕区域高度和行高决定
+ * - 每条轨道算出下一条弹幕最早可以发射的时间，小顶堆取最早空闲的轨道，O(log n)
+ *
+ * 所有滚动弹幕同速，所以后一条只要在前一条完全进入屏幕、并留出间距之后再发射，就不会在屏幕上追上它：
+ * 轨道空闲时间 = 发射时间 + (宽度 + 间距) / 速度，是精确值而不是估算。
+ *
+ * 时间用布局自己的时钟（每帧累加帧间隔），与弹幕按帧间隔移动的位置保持一致。
+ * 只在渲染所在的线程使用，不加锁。
+ */
+final class DanmakuTrackLayout {
+
+    /**
+     * 文字宽度测量（渲染时用 Paint.measureText）
+     */
+    interface TextMeasurer {
+        float measureText(String text);
+    }
+
+    static final int MAX_TRACKS = 32;
+    private static final int MAX_CACHED_WIDTHS = 4096;
+
+    private final TextMeasurer measurer;
+
+    // 按访问顺序淘汰的宽度缓存
+    private final Map<String, Float> widthCache = new LinkedHashMap<String, Float>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+            return size() > MAX_CACHED_WIDTHS;
+        }
+    };
+
+    // 小顶堆：按 readyAtMs 排序的轨道号，时间相同时取靠上的轨道
+    private final int[] heap = new int[MAX_TRACKS];
+    private final double[] readyAtMs = new double[MAX_TRACKS];
+
+    private int trackCount = 1;
+    private float gap = 0;
+    private float speed = 150f; // 像素/秒
+    private double clockMs = 0;
+
+    DanmakuTrackLayout(TextMeasurer measurer) {
+        this.measurer = measurer;
+        reset();
+    }
+
+    /**
+     * 弹幕区域能容纳的轨道数（至少 1 条）
+     */
+    static int trackCountFor(float regionHeight, int lineHeight) {
+        if (lineHeight <= 0) return 1;
+        return Math.max(1, Math.min(MAX_TRACKS, (int) (regionHeight / lineHeight)));
+    }
+
+    /**
+     * 设置轨道数、弹幕间距（像素）和滚动速度（像素/秒）
+     *
+     * 屏幕上的弹幕还在滚动，保留的轨道沿用原来的空闲时间（布局时钟不变），
+     * 只有新增的轨道是空闲的，否则新弹幕会叠在正在滚动的弹幕上
+     */
+    void configure(int trackCount, float gap, float speed) {
+        int oldCount = this.trackCount;
+        this.trackCount = Math.max(1, Math.min(MAX_TRACKS, trackCount));
+        this.gap = Math.max(0f, gap);
+        this.speed = speed > 0 ? speed : 150f;
+        for (int i = oldCount; i < MAX_TRACKS; i++) {
+            readyAtMs[i] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < this.trackCount; i++) {
+            heap[i] = i;
+        }
+        for (int i = this.trackCount / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    int getTrackCount() {
+        return trackCount;
+    }
+
+    /**
+     * 文字宽度（像素），同一字符串只测量一次
+     */
+    float measure(String text) {
+        Float width = widthCache.get(text);
+        if (width == null) {
+            width = measurer.measureText(text);
+            widthCache.put(text, width);
+        }
+        return width;
+    }
+
+    /**
+     * 字号变化后缓存的宽度全部作废
+     */
+    void clearWidthCache() {
+        widthCache.clear();
+    }
+
+    /**
+     * 推进布局时钟（与弹幕移动使用同一个帧间隔）
+     */
+    void advance(float deltaTimeMs) {
+        if (deltaTimeMs > 0) clockMs += deltaTimeMs;
+    }
+
+    /**
+     * 给一条宽度为 width 的滚动弹幕分配轨道；没有空闲轨道时返回 -1（调用方下一帧重试）
+     */
+    int place(float width) {
+        int track = heap[0];
+        if (readyAtMs[track] > clockMs) {
+            return -1;
+        }
+        readyAtMs[track] = clockMs + (width + gap) * 1000.0 / speed;
+        siftDown(0);
+        return track;
+    }
+
+    /**
+     * 清空轨道占用（拖动进度、清屏后）
+     */
+    void reset() {
+        clockMs = 0;
+        for (int i = 0; i < MAX_TRACKS; i++) {
+            heap[i] = i;
+            readyAtMs[i] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private void siftDown(int i) {
+        int track = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= trackCount) break;
+            if (child + 1 < trackCount && before(heap[child + 1], heap[child])) child++;
+            if (!before(heap[child], track)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = track;
+    }
+
+    private boolean before(int a, int b) {
+        return readyAtMs[a] < readyAtMs[b] || (readyAtMs[a] == readyAtMs[b] && a < b);
+    }
+}
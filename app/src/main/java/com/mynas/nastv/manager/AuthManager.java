@@ -11,6 +11,7 @@ import com.mynas.nastv.model.LoginRequest;
 import com.mynas.nastv.model.LoginResponse;
 import com.mynas.nastv.model.QrCodeResponse;
 import com.mynas.nastv.network.ApiClient;
+import com.mynas.nastv.network.ResponseCache;
 import com.mynas.nastv.ui.LoginActivity;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 
@@ -66,6 +67,8 @@ public class AuthManager {
     public void logout() {
         // 🗑️ 清除本地认证信息
         SharedPreferencesManager.clearAuthInfo();
+        ResponseCache.getInstance(context).clear();
+        HomeFeedSnapshot.delete(context);
         
         // 📱 跳转到登录页面
         Intent intent = new Intent(context, LoginActivity.class);
@@ -0,0 +1,286 @@
+package com.mynas.nastv.manager;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mynas.nastv.model.MediaItem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🏠 主页数据加载管线
+ *
+ * 原来主页是串行回调链：媒体库列表 → 统计 → 每个媒体库的预览 → 继续观看，
+ * 8 个媒体库冷启动要好几秒。这里把互不依赖的请求并行发出：
+ * - 继续观看、媒体库列表、媒体库统计同时请求
+ * - 媒体库列表返回后，各媒体库预览按顺序排队，最多 {@link #MAX_CONCURRENT_PREVIEWS} 个同时请求
+ * - 每个区块返回就立即交给界面，不等其他区块
+ *
+ * 继续观看 + 媒体库列表 + 第一个预览区块都到达时记为"可交互"，并记录耗时。
+ * 首轮全部成功后写入 {@link HomeFeedSnapshot}，下次冷启动先显示快照。
+ * 所有回调都在主线程（Retrofit 和响应缓存都回调到主线程），内部状态不需要加锁。
+ */
+public final class HomeFeedLoader {
+    private static final String TAG = "HomeFeedLoader";
+
+    private static final int MAX_CONCURRENT_PREVIEWS = 4;
+
+    /**
+     * 主页各区块的回调（主线程）
+     */
+    public interface Listener {
+        void onContinueWatching(List<MediaItem> items);
+
+        void onLibraries(List<MediaManager.MediaDbItem> libraries);
+
+        void onLibrariesError(String error);
+
+        void onLibraryCounts(Map<String, Integer> counts);
+
+        void onLibraryCountsError(String error);
+
+        void onLibraryPreview(MediaManager.MediaDbItem library, List<MediaItem> items);
+
+        void onLibraryPreviewError(MediaManager.MediaDbItem library, String error);
+
+        /**
+         * 首屏可交互（继续观看、媒体库列表、第一个预览区块都已显示）
+         */
+        void onInteractive(long elapsedMs);
+    }
+
+    private final Context context;
+    private final MediaManager mediaManager;
+    private final Listener listener;
+    private final int previewCount;
+
+    private final ArrayDeque<MediaManager.MediaDbItem> pendingPreviews = new ArrayDeque<>();
+    private int inFlightPreviews = 0;
+    private int generation = 0;
+    private int initialGeneration = -1;  // 首轮预览（媒体库列表返回时发起）
+    private boolean cancelled = false;
+
+    // 首屏计时
+    private long startMs;
+    private boolean continueWatchingReady = false;
+    private boolean librariesReady = false;
+    private boolean firstPreviewReady = false;
+    private boolean interactiveReported = false;
+    private int initialPreviewsRemaining = -1;
+
+    // 快照数据（首轮加载）
+    private List<MediaItem> snapshotContinueWatching;
+    private List<MediaManager.MediaDbItem> snapshotLibraries;
+    private Map<String, Integer> snapshotCounts;
+    private final Map<String, List<MediaItem>> snapshotPreviews = new HashMap<>();
+    private boolean snapshotIncomplete = false;
+    private boolean snapshotSaved = false;
+
+    public HomeFeedLoader(Context context, MediaManager mediaManager, int previewCount, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.mediaManager = mediaManager;
+        this.previewCount = previewCount;
+        this.listener = listener;
+    }
+
+    /**
+     * 🚀 并行发出主页的所有独立请求
+     */
+    public void start() {
+        startMs = SystemClock.elapsedRealtime();
+        Log.d(TAG, "🚀 Home feed loading started");
+
+        mediaManager.getPlayList(new MediaManager.MediaCallback<List<MediaItem>>() {
+            @Override
+            public void onSuccess(List<MediaItem> items) {
+                if (cancelled) return;
+                Log.d(TAG, "✅ Continue watching: " + items.size() + " items (" + elapsed() + "ms)");
+                listener.onContinueWatching(items);
+                continueWatchingReady = true;
+                snapshotContinueWatching = items;
+                checkInteractive();
+                maybeSaveSnapshot();
+            }
+
+            @Override
+            public void onError(String error) {
+                if (cancelled) return;
+                Log.e(TAG, "❌ Continue watching failed: " + error);
+                listener.onContinueWatching(new ArrayList<>());
+                continueWatchingReady = true;
+                snapshotIncomplete = true;
+                checkInteractive();
+            }
+        });
+
+        mediaManager.getMediaDbList(new MediaManager.MediaCallback<List<MediaManager.MediaDbItem>>() {
+            @Override
+            public void onSuccess(List<MediaManager.MediaDbItem> libraries) {
+                if (cancelled) return;
+                Log.d(TAG, "✅ Libraries: " + libraries.size() + " (" + elapsed() + "ms)");
+                listener.onLibraries(libraries);
+                librariesReady = true;
+                initialPreviewsRemaining = libraries.size();
+                snapshotLibraries = libraries;
+                if (libraries.isEmpty()) {
+                    firstPreviewReady = true;
+                    checkInteractive();
+                    maybeSaveSnapshot();
+                    return;
+                }
+                initialGeneration = generation + 1;
+                loadPreviews(libraries);
+            }
+
+            @Override
+            public void onRefreshed(List<MediaManager.MediaDbItem> libraries) {
+                if (cancelled) return;
+                Log.d(TAG, "🔄 Libraries refreshed: " + libraries.size());
+                listener.onLibraries(libraries);
+                if (initialPreviewsRemaining > 0) {
+                    // 首轮还没加载完列表就变了：首轮计数作废，保留旧快照
+                    initialPreviewsRemaining = 0;
+                    snapshotIncomplete = true;
+                    firstPreviewReady = true;
+                    checkInteractive();
+                }
+                loadPreviews(libraries);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (cancelled) return;
+                Log.e(TAG, "❌ Libraries failed: " + error);
+                listener.onLibrariesError(error);
+                librariesReady = true;
+                firstPreviewReady = true;
+                initialPreviewsRemaining = 0;
+                snapshotIncomplete = true;
+                checkInteractive();
+            }
+        });
+
+        // 统计只用于标题里的数量，不必等媒体库列表
+        mediaManager.getMediaDbSum(new MediaManager.MediaCallback<Map<String, Integer>>() {
+            @Override
+            public void onSuccess(Map<String, Integer> counts) {
+                if (cancelled) return;
+                Log.d(TAG, "✅ Library counts (" + elapsed() + "ms)");
+                snapshotCounts = counts;
+                listener.onLibraryCounts(counts);
+            }
+
+            @Override
+            public void onError(String error) {
+                if (cancelled) return;
+                Log.e(TAG, "❌ Library counts failed: " + error);
+                listener.onLibraryCountsError(error);
+            }
+        });
+    }
+
+    /**
+     * 📚 按顺序加载各媒体库预览（有并发上限），再次调用会丢弃上一轮未完成的结果
+     */
+    public void loadPreviews(List<MediaManager.MediaDbItem> libraries) {
+        generation++;
+        pendingPreviews.clear();
+        pendingPreviews.addAll(libraries);
+        pumpPreviews();
+    }
+
+    /**
+     * 页面销毁时调用，之后的结果全部丢弃
+     */
+    public void cancel() {
+        cancelled = true;
+        pendingPreviews.clear();
+    }
+
+    private void pumpPreviews() {
+        while (!cancelled && inFlightPreviews < MAX_CONCURRENT_PREVIEWS && !pendingPreviews.isEmpty()) {
+            MediaManager.MediaDbItem library = pendingPreviews.poll();
+            final int requestGeneration = generation;
+            inFlightPreviews++;
+            mediaManager.getMediaLibraryItems(library.getGuid(), previewCount, new MediaManager.MediaCallback<List<MediaItem>>() {
+                @Override
+                public void onSuccess(List<MediaItem> items) {
+                    inFlightPreviews--;
+                    if (!cancelled && requestGeneration == generation) {
+                        listener.onLibraryPreview(library, items);
+                        if (requestGeneration == initialGeneration) snapshotPreviews.put(library.getGuid(), items);
+                        onPreviewDone(requestGeneration);
+                    }
+                    pumpPreviews();
+                }
+
+                @Override
+                public void onRefreshed(List<MediaItem> items) {
+                    // 后台刷新：已经计过数，只更新内容
+                    if (!cancelled && requestGeneration == generation) {
+                        listener.onLibraryPreview(library, items);
+                    }
+                }
+
+                @Override
+                public void onError(String error) {
+                    inFlightPreviews--;
+                    if (!cancelled && requestGeneration == generation) {
+                        listener.onLibraryPreviewError(library, error);
+                        if (requestGeneration == initialGeneration) snapshotIncomplete = true;
+                        onPreviewDone(requestGeneration);
+                    }
+                    pumpPreviews();
+                }
+            });
+        }
+    }
+
+    private void onPreviewDone(int requestGeneration) {
+        // 只统计首轮加载
+        if (requestGeneration != initialGeneration || initialPreviewsRemaining <= 0) return;
+        firstPreviewReady = true;
+        checkInteractive();
+        if (--initialPreviewsRemaining == 0) {
+            Log.d(TAG, "🏁 Home feed fully loaded in " + elapsed() + "ms");
+            maybeSaveSnapshot();
+        }
+    }
+
+    /**
+     * 📸 首轮全部成功时保存快照；有任何区块失败就保留旧快照
+     */
+    private void maybeSaveSnapshot() {
+        if (snapshotSaved || snapshotIncomplete || snapshotContinueWatching == null
+                || snapshotLibraries == null || initialPreviewsRemaining != 0) {
+            return;
+        }
+        snapshotSaved = true;
+        if (snapshotCounts != null) {
+            for (MediaManager.MediaDbItem library : snapshotLibraries) {
+                Integer count = snapshotCounts.get(library.getGuid());
+                if (count != null) library.setItemCount(count);
+            }
+        }
+        HomeFeedSnapshot.save(context, new HomeFeedSnapshot(
+                new ArrayList<>(snapshotContinueWatching), new ArrayList<>(snapshotLibraries),
+                new HashMap<>(snapshotPreviews)));
+    }
+
+    private void checkInteractive() {
+        if (interactiveReported || !continueWatchingReady || !librariesReady || !firstPreviewReady) return;
+        interactiveReported = true;
+        long elapsedMs = elapsed();
+        Log.d(TAG, "🏁 Home interactive in " + elapsedMs + "ms");
+        listener.onInteractive(elapsedMs);
+    }
+
+    private long elapsed() {
+        return SystemClock.elapsedRealtime() - startMs;
+    }
+}
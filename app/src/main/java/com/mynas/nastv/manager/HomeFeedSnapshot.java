@@ -0,0 +1,319 @@
+package com.mynas.nastv.manager;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mynas.nastv.model.MediaItem;
+import com.mynas.nastv.utils.SharedPreferencesManager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 📸 主页快照：冷启动时先显示上次的主页，再用网络数据更新
+ *
+ * 上次完整加载成功的主页（继续观看、媒体库列表、数量、各媒体库预览，含海报 URL）
+ * 保存为紧凑的二进制文件，启动时内存映射读取，不经过 Gson 反射，几毫秒即可解析完。
+ *
+ * 文件格式（大端）：
+ * <pre>
+ * int magic 'NHFS' | short version | long savedAt | str scope
+ * int continueCount | item * continueCount
+ * int libraryCount  | (str guid | str name | str category | int itemCount | int previewCount | item * previewCount) * libraryCount
+ * item: str id | str title | str subtitle | str type | str posterUrl | str year | double voteAverage
+ *       | long totalDuration | long watchedTs | str parentGuid | str ancestorGuid | str mediaGuid
+ *       | long doubanId | int seasonNumber | int episodeNumber | str tvTitle
+ * str:  int byteLength (-1 表示 null) | UTF-8 bytes
+ * </pre>
+ * 格式变化时提升 {@link #VERSION}，旧文件直接丢弃。
+ * scope 为服务器地址 + 登录 token 摘要，换服务器或换账号后不会显示别人的主页。
+ */
+public final class HomeFeedSnapshot {
+    private static final String TAG = "HomeFeedSnapshot";
+
+    private static final String FILE_NAME = "home_feed.snapshot";
+    private static final int MAGIC = 0x4E484653; // 'NHFS'
+    private static final short VERSION = 1;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "HomeSnapshot-Writer");
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final long savedAt;
+    private final List<MediaItem> continueWatching;
+    private final List<MediaManager.MediaDbItem> libraries;
+    private final Map<String, List<MediaItem>> previews;
+
+    public HomeFeedSnapshot(List<MediaItem> continueWatching, List<MediaManager.MediaDbItem> libraries,
+                            Map<String, List<MediaItem>> previews) {
+        this(System.currentTimeMillis(), continueWatching, libraries, previews);
+    }
+
+    private HomeFeedSnapshot(long savedAt, List<MediaItem> continueWatching, List<MediaManager.MediaDbItem> libraries,
+                             Map<String, List<MediaItem>> previews) {
+        this.savedAt = savedAt;
+        this.continueWatching = continueWatching;
+        this.libraries = libraries;
+        this.previews = previews;
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    public List<MediaItem> getContinueWatching() {
+        return continueWatching;
+    }
+
+    public List<MediaManager.MediaDbItem> getLibraries() {
+        return libraries;
+    }
+
+    /**
+     * 某个媒体库的预览项目，快照里没有时返回空列表
+     */
+    public List<MediaItem> getPreview(String libraryGuid) {
+        List<MediaItem> items = previews.get(libraryGuid);
+        return items != null ? items : Collections.emptyList();
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 📸 读取快照（主线程直接调用，内存映射 + 顺序解析），不存在、版本不符或不属于当前账号时返回 null
+     */
+    public static HomeFeedSnapshot load(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) return null;
+
+        long start = SystemClock.elapsedRealtime();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Reader reader = new Reader(buffer);
+
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                Log.w(TAG, "📸 Snapshot format changed, discarding");
+                file.delete();
+                return null;
+            }
+            long savedAt = buffer.getLong();
+            if (!currentScope().equals(reader.readString())) {
+                Log.d(TAG, "📸 Snapshot belongs to another server/account, ignoring");
+                return null;
+            }
+
+            List<MediaItem> continueWatching = reader.readItems(buffer.getInt());
+
+            int libraryCount = buffer.getInt();
+            List<MediaManager.MediaDbItem> libraries = new ArrayList<>(libraryCount);
+            Map<String, List<MediaItem>> previews = new LinkedHashMap<>();
+            for (int i = 0; i < libraryCount; i++) {
+                MediaManager.MediaDbItem library = new MediaManager.MediaDbItem(
+                        reader.readString(), reader.readString(), reader.readString());
+                library.setItemCount(buffer.getInt());
+                libraries.add(library);
+                previews.put(library.getGuid(), reader.readItems(buffer.getInt()));
+            }
+
+            Log.d(TAG, "📸 Snapshot loaded in " + (SystemClock.elapsedRealtime() - start) + "ms: "
+                    + libraries.size() + " libraries, " + continueWatching.size() + " continue watching");
+            return new HomeFeedSnapshot(savedAt, continueWatching, libraries, previews);
+        } catch (IOException | RuntimeException e) {
+            // 文件被截断、数据损坏等
+            Log.w(TAG, "📸 Snapshot unreadable, discarding: " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * 顺序读取映射缓冲区，字符串解码复用同一个字节数组
+     */
+    private static final class Reader {
+        private final MappedByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        Reader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        String readString() {
+            int length = buffer.getInt();
+            if (length < 0) return null;
+            if (length > buffer.remaining()) throw new BufferUnderflowException();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        List<MediaItem> readItems(int count) {
+            if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+            List<MediaItem> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MediaItem item = new MediaItem();
+                item.setId(readString());
+                item.setTitle(readString());
+                item.setSubtitle(readString());
+                item.setType(readString());
+                item.setPosterUrl(readString());
+                item.setYear(readString());
+                item.setVoteAverage(buffer.getDouble());
+                long totalDuration = buffer.getLong();
+                item.setDuration(totalDuration);
+                item.setWatchedTs(buffer.getLong()); // 在时长之后设置，才能算出观看进度
+                item.setParentGuid(readString());
+                item.setAncestorGuid(readString());
+                item.setMediaGuid(readString());
+                item.setDoubanId(buffer.getLong());
+                item.setSeasonNumber(buffer.getInt());
+                item.setEpisodeNumber(buffer.getInt());
+                item.setTvTitle(readString());
+                items.add(item);
+            }
+            return items;
+        }
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 💾 后台写入快照（先写临时文件再重命名，不会留下半个文件）
+     */
+    public static void save(Context context, HomeFeedSnapshot snapshot) {
+        File dir = context.getApplicationContext().getFilesDir();
+        String scope = currentScope();
+        writer.execute(() -> {
+            File tmp = new File(dir, FILE_NAME + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(snapshot.savedAt);
+                writeString(out, scope);
+
+                writeItems(out, snapshot.continueWatching);
+                out.writeInt(snapshot.libraries.size());
+                for (MediaManager.MediaDbItem library : snapshot.libraries) {
+                    writeString(out, library.getGuid());
+                    writeString(out, library.getName());
+                    writeString(out, library.getCategory());
+                    out.writeInt(library.getItemCount());
+                    writeItems(out, snapshot.getPreview(library.getGuid()));
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "📸 Snapshot write failed: " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            if (tmp.renameTo(new File(dir, FILE_NAME))) {
+                Log.d(TAG, "💾 Snapshot saved (" + tmp.length() + " bytes)");
+            } else {
+                tmp.delete();
+            }
+        });
+    }
+
+    /**
+     * 🗑️ 删除快照（退出登录时调用）
+     */
+    public static void delete(Context context) {
+        File dir = context.getApplicationContext().getFilesDir();
+        writer.execute(() -> new File(dir, FILE_NAME).delete());
+    }
+
+    private static void writeItems(DataOutputStream out, List<MediaItem> items) throws IOException {
+        out.writeInt(items.size());
+        for (MediaItem item : items) {
+            writeString(out, item.getId());
+            writeString(out, item.getTitle());
+            writeString(out, item.getSubtitle());
+            writeString(out, item.getType());
+            writeString(out, item.getPosterUrl());
+            writeString(out, item.getYear());
+            out.writeDouble(item.getVoteAverage());
+            out.writeLong(item.getTotalDuration());
+            out.writeLong(item.getWatchedTs());
+            writeString(out, item.getParentGuid());
+            writeString(out, item.getAncestorGuid());
+            writeString(out, item.getMediaGuid());
+            out.writeLong(item.getDoubanId());
+            out.writeInt(item.getSeasonNumber());
+            out.writeInt(item.getEpisodeNumber());
+            writeString(out, item.getTvTitle());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String currentScope() {
+        String token = SharedPreferencesManager.getAuthToken();
+        return SharedPreferencesManager.getServerBaseUrl() + "|" + (token != null ? Integer.toHexString(token.hashCode()) : "");
+    }
+
+    // ==================== 比较 ====================
+
+    /**
+     * 两组媒体库是否一致（GUID、名称、类型相同且顺序相同），一致时界面可以保留现有区块
+     */
+    public static boolean sameLibraries(List<MediaManager.MediaDbItem> a, List<MediaManager.MediaDbItem> b) {
+        if (a == null || b == null || a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            MediaManager.MediaDbItem x = a.get(i);
+            MediaManager.MediaDbItem y = b.get(i);
+            if (!Objects.equals(x.getGuid(), y.getGuid()) || !Objects.equals(x.getName(), y.getName())
+                    || !Objects.equals(x.getCategory(), y.getCategory())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 两组项目显示上是否一致（顺序、标题、海报、进度），一致时不必刷新列表
+     */
+    public static boolean sameItems(List<MediaItem> a, List<MediaItem> b) {
+        if (a == null || b == null || a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            MediaItem x = a.get(i);
+            MediaItem y = b.get(i);
+            if (!Objects.equals(x.getId(), y.getId()) || !Objects.equals(x.getTitle(), y.getTitle())
+                    || !Objects.equals(x.getPosterUrl(), y.getPosterUrl())
+                    || x.getWatchedTs() != y.getWatchedTs()
+                    || x.getVoteAverage() != y.getVoteAverage()
+                    || x.getSeasonNumber() != y.getSeasonNumber()
+                    || x.getEpisodeNumber() != y.getEpisodeNumber()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
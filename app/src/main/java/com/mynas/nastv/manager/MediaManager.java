@@ -6,6 +6,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import com.mynas.nastv.model.BaseResponse;
 import com.mynas.nastv.model.FavoriteListResponse;
 import com.mynas.nastv.model.FavoriteRequest;
@@ -23,9 +24,12 @@ import com.mynas.nastv.model.SeasonListResponse;
 import com.mynas.nastv.model.WatchHistoryResponse;
 import com.mynas.nastv.network.ApiClient;
 import com.mynas.nastv.network.ApiService;
+import com.mynas.nastv.network.JsonAdapters;
+import com.mynas.nastv.network.ResponseCache;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 import com.mynas.nastv.utils.SignatureUtils;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -54,11 +58,38 @@ public class MediaManager {
         SharedPreferencesManager.initialize(context);
     }
     
+    /**
+     * 📚 Get Media DB List（带响应缓存）
+     */
+    public void getMediaDbList(MediaCallback<List<MediaDbItem>> callback) {
+        withCache(ResponseCache.Endpoint.MEDIA_DB_LIST, null, null,
+                new TypeToken<List<MediaDbItem>>() {}.getType(),
+                new MediaCallback<List<MediaDbItem>>() {
+                    @Override
+                    public void onSuccess(List<MediaDbItem> data) {
+                        mediaDbList = data;
+                        callback.onSuccess(data);
+                    }
+
+                    @Override
+                    public void onRefreshed(List<MediaDbItem> data) {
+                        mediaDbList = data;
+                        callback.onRefreshed(data);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                },
+                this::fetchMediaDbList);
+    }
+
     /**
      * 📚 Get Media DB List
      * Matches web: GetMediaDbList
      */
-    public void getMediaDbList(MediaCallback<List<MediaDbItem>> callback) {
+    private void fetchMediaDbList(MediaCallback<List<MediaDbItem>> callback) {
         Log.d(TAG, "🔍 [MediaManager] Getting media DB list...");
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -86,9 +117,9 @@ public class MediaManager {
                     if (response.isSuccessful() && response.body() != null) {
                         MediaDbListResponse dbResponse = response.body();
                         if (dbResponse.getCode() == 0) {
-                            mediaDbList = convertToMediaDbItems(dbResponse.getData());
-                            Log.d(TAG, "✅ Media DB list success: " + mediaDbList.size());
-                            callback.onSuccess(mediaDbList);
+                            List<MediaDbItem> items = convertToMediaDbItems(dbResponse.getData());
+                            Log.d(TAG, "✅ Media DB list success: " + items.size());
+                            callback.onSuccess(items);
                         } else {
                             callback.onError("API Error: " + dbResponse.getMessage());
                         }
@@ -121,29 +152,53 @@ public class MediaManager {
      * 使用与 Web 端一致的请求参数
      */
     public void getMediaLibraryItems(String guid, int limit, MediaCallback<List<MediaItem>> callback) {
+        // 使用与 Web 端一致的请求参数
+        Map<String, Object> requestData = new HashMap<>();
+        requestData.put("ancestor_guid", guid);  // Web 端使用 ancestor_guid
+
+        // tags 过滤
+        Map<String, Object> tags = new HashMap<>();
+        tags.put("type", new String[]{"Movie", "TV", "Directory", "Video"});
+        requestData.put("tags", tags);
+
+        requestData.put("exclude_grouped_video", 1);
+        requestData.put("sort_type", "DESC");
+        requestData.put("sort_column", "create_time");
+        requestData.put("page_size", limit);  // Web 端使用 page_size
+
+        withCache(ResponseCache.Endpoint.ITEM_LIST, null, requestData,
+                new TypeToken<List<MediaItem>>() {}.getType(),
+                new MediaCallback<List<MediaItem>>() {
+                    @Override
+                    public void onSuccess(List<MediaItem> data) {
+                        mediaDbInfos.put(guid, data);
+                        callback.onSuccess(data);
+                    }
+
+                    @Override
+                    public void onRefreshed(List<MediaItem> data) {
+                        mediaDbInfos.put(guid, data);
+                        callback.onRefreshed(data);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        callback.onError(error);
+                    }
+                },
+                cb -> fetchMediaLibraryItems(guid, limit, new HashMap<>(requestData), cb));
+    }
+
+    private void fetchMediaLibraryItems(String guid, int limit, Map<String, Object> requestData, MediaCallback<List<MediaItem>> callback) {
         Log.d(TAG, "🔍 [MediaManager] Getting item list for: " + guid + ", limit: " + limit);
-        
+
         String token = SharedPreferencesManager.getAuthToken();
         if (token == null || token.isEmpty()) {
             callback.onError("User not logged in");
             return;
         }
-        
+
         try {
-            // 使用与 Web 端一致的请求参数
-            Map<String, Object> requestData = new HashMap<>();
-            requestData.put("ancestor_guid", guid);  // Web 端使用 ancestor_guid
-            
-            // tags 过滤
-            Map<String, Object> tags = new HashMap<>();
-            tags.put("type", new String[]{"Movie", "TV", "Directory", "Video"});
-            requestData.put("tags", tags);
-            
-            requestData.put("exclude_grouped_video", 1);
-            requestData.put("sort_type", "DESC");
-            requestData.put("sort_column", "create_time");
-            requestData.put("page_size", limit);  // Web 端使用 page_size
-            
             // 🔑 关键：Web端在POST请求时会添加nonce字段用于防重放
             String nonce = String.format("%06d", (int)(Math.random() * 900000) + 100000);
             requestData.put("nonce", nonce);
@@ -166,9 +221,7 @@ public class MediaManager {
                     if (response.isSuccessful() && response.body() != null) {
                         MediaItemListResponse itemResponse = response.body();
                         if (itemResponse.getCode() == 0) {
-                            List<MediaItem> mediaItems = convertToMediaItems(itemResponse.getData());
-                            mediaDbInfos.put(guid, mediaItems);
-                            callback.onSuccess(mediaItems);
+                            callback.onSuccess(convertToMediaItems(itemResponse.getData()));
                         } else {
                             callback.onError(itemResponse.getMessage());
                         }
@@ -283,6 +336,16 @@ public class MediaManager {
         String token = SharedPreferencesManager.getAuthToken();
         if (token == null || token.isEmpty()) return;
 
+        RequestCoalescer.execute("MEDIA_DB_SUM", "/v/api/v1/mediadb/sum", callback, this::fetchMediaDbSum);
+    }
+
+    private void fetchMediaDbSum(MediaCallback<Map<String, Integer>> callback) {
+        String token = SharedPreferencesManager.getAuthToken();
+        if (token == null || token.isEmpty()) {
+            callback.onError("User not logged in");
+            return;
+        }
+
         try {
             String method = "GET";
             String url = "/v/api/v1/mediadb/sum";
@@ -313,6 +376,10 @@ public class MediaManager {
      * 使用 Web 端的 /v/api/v1/play/list 接口
      */
     public void getPlayList(MediaCallback<List<MediaItem>> callback) {
+        RequestCoalescer.execute("PLAY_LIST", "/v/api/v1/play/list", callback, this::fetchPlayList);
+    }
+
+    private void fetchPlayList(MediaCallback<List<MediaItem>> callback) {
         String token = SharedPreferencesManager.getAuthToken();
         if (token == null || token.isEmpty()) {
             callback.onError("User not logged in");
@@ -394,7 +461,10 @@ public class MediaManager {
      */
     private void getWatchHistoryFallback(MediaCallback<List<MediaItem>> callback) {
         String token = SharedPreferencesManager.getAuthToken();
-        if (token == null || token.isEmpty()) return;
+        if (token == null || token.isEmpty()) {
+            callback.onError("User not logged in");
+            return;
+        }
 
         try {
             String method = "GET";
@@ -441,11 +511,20 @@ public class MediaManager {
         }
     }
 
+    /**
+     * 🎬 Get Item Detail（带响应缓存）
+     */
+    public void getItemDetail(String guid, MediaCallback<MediaDetailResponse> callback) {
+        withCache(ResponseCache.Endpoint.ITEM_DETAIL, guid, null,
+                new TypeToken<MediaDetailResponse>() {}.getType(), callback,
+                cb -> fetchItemDetail(guid, cb));
+    }
+
     /**
      * 🎬 Get Item Detail
      * 使用 Web 端的 GET /v/api/v1/item/{guid} 接口
      */
-    public void getItemDetail(String guid, MediaCallback<MediaDetailResponse> callback) {
+    private void fetchItemDetail(String guid, MediaCallback<MediaDetailResponse> callback) {
         Log.d(TAG, "🎬 [MediaManager] Getting item detail: " + guid);
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -520,11 +599,20 @@ public class MediaManager {
         });
     }
 
+    /**
+     * 📺 Get Season List（带响应缓存）
+     */
+    public void getSeasonList(String tvGuid, MediaCallback<List<SeasonListResponse.Season>> callback) {
+        withCache(ResponseCache.Endpoint.SEASON_LIST, tvGuid, null,
+                new TypeToken<List<SeasonListResponse.Season>>() {}.getType(), callback,
+                cb -> fetchSeasonList(tvGuid, cb));
+    }
+
     /**
      * 📺 Get Season List
      * 使用 Web 端的 GET /v/api/v1/season/list/{tv_guid} 接口
      */
-    public void getSeasonList(String tvGuid, MediaCallback<List<SeasonListResponse.Season>> callback) {
+    private void fetchSeasonList(String tvGuid, MediaCallback<List<SeasonListResponse.Season>> callback) {
         Log.d(TAG, "📺 [MediaManager] Getting season list: " + tvGuid);
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -575,8 +663,14 @@ public class MediaManager {
     /**
      * 🎬 Get Play Info
      * Matches web: getPlayInfo
+     * startPlay / startPlayWithInfo / 详情页回退同时请求同一个 guid 时只发一次
      */
     public void getPlayInfo(String itemGuid, MediaCallback<PlayInfoResponse> callback) {
+        RequestCoalescer.execute("PLAY_INFO", "/v/api/v1/play/info|" + itemGuid, callback,
+                cb -> fetchPlayInfo(itemGuid, cb));
+    }
+
+    private void fetchPlayInfo(String itemGuid, MediaCallback<PlayInfoResponse> callback) {
         Log.d(TAG, "🎬 [MediaManager] Getting play info: " + itemGuid);
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -701,6 +795,7 @@ public class MediaManager {
      */
     public void startPlayWithInfo(String itemGuid, MediaCallback<com.mynas.nastv.model.PlayStartInfo> callback) {
         Log.d(TAG, "🎬 startPlayWithInfo: " + itemGuid);
+        final long requestStart = android.os.SystemClock.elapsedRealtime();
         
         getPlayInfo(itemGuid, new MediaCallback<PlayInfoResponse>() {
             @Override
@@ -722,6 +817,7 @@ public class MediaManager {
                         playStartInfo.setVideoGuid(data.getVideoGuid());
                         playStartInfo.setAudioGuid(data.getAudioGuid());
                         playStartInfo.setSubtitleGuid(data.getSubtitleGuid());
+                        playStartInfo.setPlayInfoLatencyMs(android.os.SystemClock.elapsedRealtime() - requestStart);
                         
                         Log.d(TAG, "🎬 PlayStartInfo: " + playStartInfo);
                         callback.onSuccess(playStartInfo);
@@ -808,13 +904,14 @@ public class MediaManager {
                 public void onResponse(@NonNull Call<ResponseBody> call, @NonNull Response<ResponseBody> response) {
                     if (response.isSuccessful() && response.body() != null) {
                         try {
-                            String responseBody = response.body().string();
-                            Log.d(TAG, "🎬 Stream响应长度: " + responseBody.length());
-                            Log.d(TAG, "🎬 Stream响应: " + responseBody.substring(0, Math.min(1000, responseBody.length())));
+                            Log.d(TAG, "🎬 Stream响应长度: " + response.body().contentLength());
                             
-                            // 解析响应
-                            com.mynas.nastv.model.StreamResponse streamResponse = 
-                                gson.fromJson(responseBody, com.mynas.nastv.model.StreamResponse.class);
+                            // 直接从字符流解析，不先把整个响应体读成字符串
+                            com.mynas.nastv.model.StreamResponse streamResponse;
+                            try (java.io.Reader reader = response.body().charStream()) {
+                                streamResponse = JsonAdapters.gson()
+                                        .fromJson(reader, com.mynas.nastv.model.StreamResponse.class);
+                            }
                             
                             if (streamResponse != null && streamResponse.getCode() == 0 && streamResponse.getData() != null) {
                                 String directUrl = streamResponse.getData().getOriginalQualityUrl();
@@ -863,9 +960,18 @@ public class MediaManager {
     }
 
     /**
-     * 🎬 Get Episode List
+     * 🎬 Get Episode List（带响应缓存）
      */
     public void getEpisodeList(String seasonGuid, MediaCallback<List<EpisodeListResponse.Episode>> callback) {
+        withCache(ResponseCache.Endpoint.EPISODE_LIST, seasonGuid, null,
+                new TypeToken<List<EpisodeListResponse.Episode>>() {}.getType(), callback,
+                cb -> fetchEpisodeList(seasonGuid, cb));
+    }
+
+    /**
+     * 🎬 Get Episode List
+     */
+    private void fetchEpisodeList(String seasonGuid, MediaCallback<List<EpisodeListResponse.Episode>> callback) {
          Log.d(TAG, "🎬 Getting episode list: " + seasonGuid);
          
          String token = SharedPreferencesManager.getAuthToken();
@@ -908,11 +1014,20 @@ public class MediaManager {
          }
     }
 
+    /**
+     * 👥 Get Person List（带响应缓存）
+     */
+    public void getPersonList(String itemGuid, MediaCallback<List<PersonInfo>> callback) {
+        withCache(ResponseCache.Endpoint.PERSON_LIST, itemGuid, null,
+                new TypeToken<List<PersonInfo>>() {}.getType(), callback,
+                cb -> fetchPersonList(itemGuid, cb));
+    }
+
     /**
      * 👥 Get Person List (演职人员列表)
      * Web端使用: GET /v/api/v1/person/list/{item_guid}
      */
-    public void getPersonList(String itemGuid, MediaCallback<List<PersonInfo>> callback) {
+    private void fetchPersonList(String itemGuid, MediaCallback<List<PersonInfo>> callback) {
         Log.d(TAG, "👥 Getting person list: " + itemGuid);
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -960,11 +1075,20 @@ public class MediaManager {
         }
     }
 
+    /**
+     * 🎬 Get Stream List（带响应缓存）
+     */
+    public void getStreamList(String itemGuid, MediaCallback<StreamListResponse> callback) {
+        withCache(ResponseCache.Endpoint.STREAM_LIST, itemGuid, null,
+                new TypeToken<StreamListResponse>() {}.getType(), callback,
+                cb -> fetchStreamList(itemGuid, cb));
+    }
+
     /**
      * 🎬 Get Stream List (流信息列表)
      * Web端使用: GET /v/api/v1/stream/list/{item_guid}
      */
-    public void getStreamList(String itemGuid, MediaCallback<StreamListResponse> callback) {
+    private void fetchStreamList(String itemGuid, MediaCallback<StreamListResponse> callback) {
         Log.d(TAG, "🎬 Getting stream list: " + itemGuid);
         
         String token = SharedPreferencesManager.getAuthToken();
@@ -1104,6 +1228,7 @@ public class MediaManager {
                         BaseResponse<Object> res = response.body();
                         if (res.getCode() == 0) {
                             Log.d(TAG, "✅ Added to favorites");
+                            ResponseCache.getInstance(context).invalidateUserState();
                             callback.onSuccess(true);
                         } else {
                             callback.onError(res.getMessage() != null ? res.getMessage() : "Failed to add favorite");
@@ -1155,6 +1280,7 @@ public class MediaManager {
                         BaseResponse<Object> res = response.body();
                         if (res.getCode() == 0) {
                             Log.d(TAG, "✅ Removed from favorites");
+                            ResponseCache.getInstance(context).invalidateUserState();
                             callback.onSuccess(true);
                         } else {
                             callback.onError(res.getMessage() != null ? res.getMessage() : "Failed to remove favorite");
@@ -1175,6 +1301,83 @@ public class MediaManager {
         }
     }
 
+    // ==================== 🗂️ 响应缓存 ====================
+
+    /**
+     * 🗂️ 先查响应缓存再请求网络
+     * - TTL 内：直接返回缓存，不请求网络
+     * - 已过期：先返回缓存，后台重新请求并更新缓存；新数据与缓存不同时通过
+     *   {@link MediaCallback#onRefreshed} 再交给调用方一次
+     * - 未命中：请求网络，成功后写入缓存
+     * 请求期间缓存被清空或失效（退出登录、修改类接口成功）时不写入，避免旧数据覆盖
+     * 网络请求经过 {@link RequestCoalescer}，同一个 key 同时只有一个请求在进行
+     */
+    private <T> void withCache(ResponseCache.Endpoint endpoint, String pathParam, Map<String, Object> body,
+                               Type type, MediaCallback<T> callback, RequestCoalescer.Fetcher<T> fetcher) {
+        String token = SharedPreferencesManager.getAuthToken();
+        if (token == null || token.isEmpty()) {
+            // 未登录沿用原来的错误处理
+            fetcher.fetch(callback);
+            return;
+        }
+
+        ResponseCache cache = ResponseCache.getInstance(context);
+        String key = ResponseCache.keyFor(endpoint, pathParam, body);
+        cache.<T>get(endpoint, key, type, (cached, stale) -> {
+            int generation = cache.generation();
+            if (cached == null) {
+                RequestCoalescer.execute(endpoint.name(), key,
+                        storeInCache(cache, key, generation, callback, false), fetcher);
+                return;
+            }
+            Log.d(TAG, "🗂️ Cache hit: " + endpoint + (stale ? " (stale, revalidating)" : ""));
+            callback.onSuccess(cached);
+            if (stale) {
+                RequestCoalescer.execute(endpoint.name(), key,
+                        storeInCache(cache, key, generation, callback, true), fetcher);
+            }
+        });
+    }
+
+    /**
+     * 网络结果写入缓存后再转给调用方
+     *
+     * @param revalidate 后台刷新：调用方已拿到缓存，只有内容变化时才回调 onRefreshed，失败只记日志
+     */
+    private <T> MediaCallback<T> storeInCache(ResponseCache cache, String key, int generation,
+                                              MediaCallback<T> callback, boolean revalidate) {
+        return new MediaCallback<T>() {
+            @Override
+            public void onSuccess(T data) {
+                if (!revalidate) {
+                    cache.put(key, data, generation, null);
+                    callback.onSuccess(data);
+                    return;
+                }
+                cache.put(key, data, generation, () -> {
+                    Log.d(TAG, "🗂️ Revalidated with new content: " + key);
+                    callback.onRefreshed(data);
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                if (!revalidate) {
+                    callback.onError(error);
+                } else {
+                    Log.w(TAG, "🗂️ Revalidate failed: " + error);
+                }
+            }
+        };
+    }
+
+    /**
+     * 🔗 请求合并统计（总请求数、合并数、各接口重复率）
+     */
+    public static String getRequestStats() {
+        return RequestCoalescer.describeStats();
+    }
+
     // Helper conversion methods...
     private List<MediaDbItem> convertToMediaDbItems(List<MediaDbListResponse.MediaDb> data) {
         List<MediaDbItem> result = new ArrayList<>();
@@ -1252,5 +1455,13 @@ public class MediaManager {
     public interface MediaCallback<T> {
         void onSuccess(T data);
         void onError(String error);
+
+        /**
+         * 已返回过期缓存后，后台刷新拿到了不同的数据（主线程）
+         * 默认再走一次 onSuccess；只能处理一次结果的调用方（计数、跳转、下载）需要覆盖
+         */
+        default void onRefreshed(T data) {
+            onSuccess(data);
+        }
     }
 }
@@ -0,0 +1,162 @@
+package com.mynas.nastv.manager;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mynas.nastv.utils.SharedPreferencesManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 🔗 相同请求合并（single-flight）
+ *
+ * 焦点切换、Activity 重建、startPlay/startPlayWithInfo 等经常同时发出同一个请求。
+ * 同一个 key 的请求在返回前只发一次网络调用，结果分发给所有等待的 MediaCallback。
+ *
+ * 全局共享（MediaManager 每个页面一个实例），并统计重复率。
+ * - key 按服务器和 token 隔离，切换账号或服务器后不会拿到上一个账号的结果
+ * - 正在进行的请求超过 IN_FLIGHT_TIMEOUT_MS 仍未回调时不再合并，新请求重新发起；
+ *   旧请求之后返回时仍然回调它自己的等待者，不会有回调丢失
+ */
+final class RequestCoalescer {
+    private static final String TAG = "RequestCoalescer";
+
+    // 比 ApiClient 的连接 + 读取超时（30s + 60s）更长，正常请求在此之前已经回调
+    private static final long IN_FLIGHT_TIMEOUT_MS = 120_000;
+
+    interface Fetcher<T> {
+        void fetch(MediaManager.MediaCallback<T> callback);
+    }
+
+    private static final Object lock = new Object();
+    private static final Map<String, InFlight> inFlight = new HashMap<>();
+
+    // 按接口统计：[请求数, 被合并数]
+    private static final Map<String, long[]> stats = new TreeMap<>();
+    private static long totalRequests = 0;
+    private static long totalCoalesced = 0;
+
+    /**
+     * 一次进行中的网络调用及其等待者
+     */
+    private static final class InFlight {
+        final long startedAt = SystemClock.elapsedRealtime();
+        final List<MediaManager.MediaCallback<?>> waiters = new ArrayList<>(2);
+    }
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * 执行请求；已有相同 key 的请求在进行中时只登记回调，不再发起网络调用
+     *
+     * @param endpoint 统计用的接口名
+     * @param key      请求标识（接口 + 参数），内部再加上服务器和 token
+     */
+    static <T> void execute(String endpoint, String key, MediaManager.MediaCallback<T> callback, Fetcher<T> fetcher) {
+        final String scopedKey = SharedPreferencesManager.getServerBaseUrl() + '|'
+                + SharedPreferencesManager.getAuthToken() + '|' + key;
+        final InFlight call;
+        synchronized (lock) {
+            long[] counters = stats.get(endpoint);
+            if (counters == null) {
+                counters = new long[2];
+                stats.put(endpoint, counters);
+            }
+            counters[0]++;
+            totalRequests++;
+
+            InFlight existing = inFlight.get(scopedKey);
+            if (existing != null) {
+                if (SystemClock.elapsedRealtime() - existing.startedAt < IN_FLIGHT_TIMEOUT_MS) {
+                    existing.waiters.add(callback);
+                    counters[1]++;
+                    totalCoalesced++;
+                    Log.d(TAG, "🔗 Coalesced " + endpoint + " (" + existing.waiters.size() + " waiting, duplicate rate "
+                            + formatRate(totalCoalesced, totalRequests) + ")");
+                    return;
+                }
+                Log.w(TAG, "⚠️ " + endpoint + " still in flight after " + IN_FLIGHT_TIMEOUT_MS + "ms, starting a new request");
+            }
+            call = new InFlight();
+            call.waiters.add(callback);
+            inFlight.put(scopedKey, call);
+        }
+
+        fetcher.fetch(new MediaManager.MediaCallback<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onSuccess(T data) {
+                for (MediaManager.MediaCallback<?> waiter : complete(scopedKey, call)) {
+                    try {
+                        ((MediaManager.MediaCallback<T>) waiter).onSuccess(data);
+                    } catch (Exception e) {
+                        Log.e(TAG, "❌ Callback failed for " + endpoint, e);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                for (MediaManager.MediaCallback<?> waiter : complete(scopedKey, call)) {
+                    try {
+                        waiter.onError(error);
+                    } catch (Exception e) {
+                        Log.e(TAG, "❌ Callback failed for " + endpoint, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 取出这次调用的等待者；超时后已被新请求替换时只移除自己，不影响新请求
+     */
+    private static List<MediaManager.MediaCallback<?>> complete(String key, InFlight call) {
+        synchronized (lock) {
+            inFlight.remove(key, call);
+            List<MediaManager.MediaCallback<?>> waiters = new ArrayList<>(call.waiters);
+            call.waiters.clear();
+            return waiters;
+        }
+    }
+
+    /**
+     * 统计摘要：总请求数、合并数和各接口的重复率
+     */
+    static String describeStats() {
+        synchronized (lock) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("请求 ").append(totalRequests).append(" 次，合并 ").append(totalCoalesced)
+              .append(" 次 (").append(formatRate(totalCoalesced, totalRequests)).append(")");
+            for (Map.Entry<String, long[]> e : stats.entrySet()) {
+                long[] c = e.getValue();
+                if (c[1] == 0) continue;
+                sb.append("\n  ").append(e.getKey()).append(": ").append(c[1]).append("/").append(c[0])
+                  .append(" (").append(formatRate(c[1], c[0])).append(")");
+            }
+            return sb.toString();
+        }
+    }
+
+    static long getTotalRequests() {
+        synchronized (lock) {
+            return totalRequests;
+        }
+    }
+
+    static long getTotalCoalesced() {
+        synchronized (lock) {
+            return totalCoalesced;
+        }
+    }
+
+    private static String formatRate(long part, long total) {
+        return total > 0 ? String.format(Locale.US, "%.1f%%", part * 100.0 / total) : "0%";
+    }
+}
@@ -1,6 +1,12 @@
 package com.mynas.nastv.model;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -148,5 +154,53 @@ public class EpisodeListResponse {
                     ", stillPath='" + stillPath + '\'' +
                     '}';
         }
+        
+        /**
+         * ⚡ 流式解析（整季剧集列表，字段名与 @SerializedName 一致）
+         */
+        public static final class Adapter extends TypeAdapter<Episode> {
+            @Override
+            public Episode read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                Episode episode = new Episode();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "guid": episode.guid = JsonFields.nextString(in); break;
+                        case "title": episode.title = JsonFields.nextString(in); break;
+                        case "episode_number": episode.episodeNumber = JsonFields.nextInt(in, 0); break;
+                        case "season_number": episode.seasonNumber = JsonFields.nextInt(in, 0); break;
+                        case "air_date": episode.airDate = JsonFields.nextString(in); break;
+                        case "overview": episode.overview = JsonFields.nextString(in); break;
+                        case "runtime": episode.runtime = JsonFields.nextInt(in, 0); break;
+                        case "still_path": episode.stillPath = JsonFields.nextString(in); break;
+                        default: in.skipValue(); break;
+                    }
+                }
+                in.endObject();
+                return episode;
+            }
+            
+            @Override
+            public void write(JsonWriter out, Episode episode) throws IOException {
+                if (episode == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                out.name("guid").value(episode.guid);
+                out.name("title").value(episode.title);
+                out.name("episode_number").value(episode.episodeNumber);
+                out.name("season_number").value(episode.seasonNumber);
+                out.name("air_date").value(episode.airDate);
+                out.name("overview").value(episode.overview);
+                out.name("runtime").value(episode.runtime);
+                out.name("still_path").value(episode.stillPath);
+                out.endObject();
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,6 +1,12 @@
 package com.mynas.nastv.model;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -150,5 +156,102 @@ public class MediaItemListResponse {
         public int getDuration() { return duration; }
         public String getVideoGuid() { return videoGuid; }
         public String getFileName() { return fileName; }
+
+        /**
+         * ⚡ 流式解析（列表接口一次返回上百项，避免反射逐字段赋值）
+         * 字段名与上面的 @SerializedName 一一对应，新增字段时两边都要改
+         */
+        public static final class Adapter extends TypeAdapter<MediaItemInfo> {
+            @Override
+            public MediaItemInfo read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                MediaItemInfo item = new MediaItemInfo();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "guid": item.guid = JsonFields.nextString(in); break;
+                        case "lan": item.lan = JsonFields.nextString(in); break;
+                        case "douban_id": item.doubanId = JsonFields.nextLong(in, 0L); break;
+                        case "imdb_id": item.imdbId = JsonFields.nextString(in); break;
+                        case "trim_id": item.trimId = JsonFields.nextString(in); break;
+                        case "tv_title": item.tvTitle = JsonFields.nextString(in); break;
+                        case "parent_guid": item.parentGuid = JsonFields.nextString(in); break;
+                        case "parent_title": item.parentTitle = JsonFields.nextString(in); break;
+                        case "title": item.title = JsonFields.nextString(in); break;
+                        case "type": item.type = JsonFields.nextString(in); break;
+                        case "poster": item.poster = JsonFields.nextString(in); break;
+                        case "poster_width": item.posterWidth = JsonFields.nextInt(in, 0); break;
+                        case "poster_height": item.posterHeight = JsonFields.nextInt(in, 0); break;
+                        case "runtime": item.runtime = JsonFields.nextInt(in, 0); break;
+                        case "is_favorite": item.isFavorite = JsonFields.nextInt(in, 0); break;
+                        case "watched": item.watched = JsonFields.nextInt(in, 0); break;
+                        case "watched_ts": item.watchedTs = JsonFields.nextLong(in, 0L); break;
+                        case "vote_average": item.voteAverage = JsonFields.nextString(in); break;
+                        case "season_number": item.seasonNumber = JsonFields.nextInt(in, 0); break;
+                        case "episode_number": item.episodeNumber = JsonFields.nextInt(in, 0); break;
+                        case "air_date": item.airDate = JsonFields.nextString(in); break;
+                        case "number_of_seasons": item.numberOfSeasons = JsonFields.nextInt(in, 0); break;
+                        case "number_of_episodes": item.numberOfEpisodes = JsonFields.nextInt(in, 0); break;
+                        case "status": item.status = JsonFields.nextString(in); break;
+                        case "overview": item.overview = JsonFields.nextString(in); break;
+                        case "ancestor_guid": item.ancestorGuid = JsonFields.nextString(in); break;
+                        case "ancestor_name": item.ancestorName = JsonFields.nextString(in); break;
+                        case "ancestor_category": item.ancestorCategory = JsonFields.nextString(in); break;
+                        case "ts": item.ts = JsonFields.nextLong(in, 0L); break;
+                        case "duration": item.duration = JsonFields.nextInt(in, 0); break;
+                        case "video_guid": item.videoGuid = JsonFields.nextString(in); break;
+                        case "file_name": item.fileName = JsonFields.nextString(in); break;
+                        default: in.skipValue(); break;
+                    }
+                }
+                in.endObject();
+                return item;
+            }
+
+            @Override
+            public void write(JsonWriter out, MediaItemInfo item) throws IOException {
+                if (item == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                out.name("guid").value(item.guid);
+                out.name("lan").value(item.lan);
+                out.name("douban_id").value(item.doubanId);
+                out.name("imdb_id").value(item.imdbId);
+                out.name("trim_id").value(item.trimId);
+                out.name("tv_title").value(item.tvTitle);
+                out.name("parent_guid").value(item.parentGuid);
+                out.name("parent_title").value(item.parentTitle);
+                out.name("title").value(item.title);
+                out.name("type").value(item.type);
+                out.name("poster").value(item.poster);
+                out.name("poster_width").value(item.posterWidth);
+                out.name("poster_height").value(item.posterHeight);
+                out.name("runtime").value(item.runtime);
+                out.name("is_favorite").value(item.isFavorite);
+                out.name("watched").value(item.watched);
+                out.name("watched_ts").value(item.watchedTs);
+                out.name("vote_average").value(item.voteAverage);
+                out.name("season_number").value(item.seasonNumber);
+                out.name("episode_number").value(item.episodeNumber);
+                out.name("air_date").value(item.airDate);
+                out.name("number_of_seasons").value(item.numberOfSeasons);
+                out.name("number_of_episodes").value(item.numberOfEpisodes);
+                out.name("status").value(item.status);
+                out.name("overview").value(item.overview);
+                out.name("ancestor_guid").value(item.ancestorGuid);
+                out.name("ancestor_name").value(item.ancestorName);
+                out.name("ancestor_category").value(item.ancestorCategory);
+                out.name("ts").value(item.ts);
+                out.name("duration").value(item.duration);
+                out.name("video_guid").value(item.videoGuid);
+                out.name("file_name").value(item.fileName);
+                out.endObject();
+            }
+        }
     }
 }
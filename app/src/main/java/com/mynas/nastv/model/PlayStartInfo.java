@@ -12,6 +12,7 @@ public class PlayStartInfo {
     private String videoGuid;
     private String audioGuid;
     private String subtitleGuid;
+    private long playInfoLatencyMs = -1; // play/info 接口耗时（用于起播指标）
     
     public PlayStartInfo(String playUrl, long resumePositionSeconds) {
         this.playUrl = playUrl;
@@ -25,6 +26,7 @@ public class PlayStartInfo {
     public String getVideoGuid() { return videoGuid; }
     public String getAudioGuid() { return audioGuid; }
     public String getSubtitleGuid() { return subtitleGuid; }
+    public long getPlayInfoLatencyMs() { return playInfoLatencyMs; }
     
     // Setters
     public void setPlayUrl(String playUrl) { this.playUrl = playUrl; }
@@ -33,6 +35,7 @@ public class PlayStartInfo {
     public void setVideoGuid(String videoGuid) { this.videoGuid = videoGuid; }
     public void setAudioGuid(String audioGuid) { this.audioGuid = audioGuid; }
     public void setSubtitleGuid(String subtitleGuid) { this.subtitleGuid = subtitleGuid; }
+    public void setPlayInfoLatencyMs(long playInfoLatencyMs) { this.playInfoLatencyMs = playInfoLatencyMs; }
     
     @Override
     public String toString() {
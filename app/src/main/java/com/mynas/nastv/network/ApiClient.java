@@ -4,7 +4,6 @@ import android.content.Context;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 import com.mynas.nastv.utils.SignatureUtils;
 
@@ -22,6 +21,7 @@ import retrofit2.converter.gson.GsonConverterFactory;
 /**
  * API客户端
  * 负责网络请求的统一管理，包括签名、认证等
+ * 各服务的 OkHttpClient 都从 {@link SharedHttpClient} 派生，共享连接池和调度器
  */
 public class ApiClient {
     private static final String TAG = "ApiClient";
@@ -57,7 +57,7 @@ public class ApiClient {
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC); // 🔧 改为BASIC级别，避免打印大量响应体
         
         // 🔧 OkHttp客户端配置
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+        OkHttpClient okHttpClient = SharedHttpClient.newBuilder()
                 .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
                 .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
                 .writeTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
@@ -65,10 +65,8 @@ public class ApiClient {
                 .addInterceptor(new AuthInterceptor())
                 .build();
         
-        // 🎯 Gson配置
-        Gson gson = new GsonBuilder()
-                .setLenient()
-                .create();
+        // 🎯 Gson配置（共享实例，列表模型走流式 TypeAdapter）
+        Gson gson = JsonAdapters.gson();
         
         // 🚀 Retrofit配置
         Log.d(TAG, "🔍 [DEBUG] 即将创建Retrofit实例，BASE_URL: " + baseUrl);
@@ -96,7 +94,7 @@ public class ApiClient {
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC); // 🔧 改为BASIC级别，避免打印大量响应体
         
         // 🔧 OkHttp客户端配置（专门为播放API使用更长的超时时间）
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+        OkHttpClient okHttpClient = SharedHttpClient.newBuilder()
                 .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
                 .readTimeout(PLAY_API_TIMEOUT, TimeUnit.SECONDS)  // 使用播放API专用超时
                 .writeTimeout(PLAY_API_TIMEOUT, TimeUnit.SECONDS)  // 使用播放API专用超时
@@ -104,10 +102,8 @@ public class ApiClient {
                 .addInterceptor(new AuthInterceptor())
                 .build();
         
-        // 🎯 Gson配置
-        Gson gson = new GsonBuilder()
-                .setLenient()
-                .create();
+        // 🎯 Gson配置（共享实例，列表模型走流式 TypeAdapter）
+        Gson gson = JsonAdapters.gson();
         
         // 🚀 Retrofit配置
         Log.d(TAG, "🎬 [DEBUG] 即将创建播放API Retrofit实例，超时: " + PLAY_API_TIMEOUT + "秒");
@@ -148,7 +144,7 @@ public class ApiClient {
         HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC); // 🔧 改为BASIC级别，避免打印大量响应体
         
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+        OkHttpClient okHttpClient = SharedHttpClient.newBuilder()
                 .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
                 .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
                 .writeTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
@@ -156,9 +152,7 @@ public class ApiClient {
                 .addInterceptor(new AuthInterceptor())
                 .build();
         
-        Gson gson = new GsonBuilder()
-                .setLenient()
-                .create();
+        Gson gson = JsonAdapters.gson();
         
         Log.d(TAG, "🎬 [DEBUG] 即将创建弹幕API Retrofit实例，使用弹幕服务器: " + danmuBaseUrl);
         Retrofit retrofit = new Retrofit.Builder()
@@ -221,7 +215,7 @@ public class ApiClient {
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC); // 🔧 改为BASIC级别，避免打印大量响应体
         
         // 🔧 OkHttp客户端配置
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+        OkHttpClient okHttpClient = SharedHttpClient.newBuilder()
                 .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
                 .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
                 .writeTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
@@ -229,10 +223,8 @@ public class ApiClient {
                 .addInterceptor(new AuthInterceptor())
                 .build();
         
-        // 🎯 Gson配置
-        Gson gson = new GsonBuilder()
-                .setLenient()
-                .create();
+        // 🎯 Gson配置（共享实例，列表模型走流式 TypeAdapter）
+        Gson gson = JsonAdapters.gson();
         
         // 🚀 Retrofit配置，使用FnOS地址
         Retrofit retrofit = new Retrofit.Builder()
@@ -252,6 +244,8 @@ public class ApiClient {
         @Override
         public Response intercept(Chain chain) throws IOException {
             Request originalRequest = chain.request();
+            // 逐请求日志默认关闭，避免首页批量请求时占用调度线程（日志拦截器仍输出 BASIC 级别）
+            boolean verbose = SignatureUtils.isDebugLogging();
             
             // 🔧 添加通用请求头
             Request.Builder requestBuilder = originalRequest.newBuilder()
@@ -269,7 +263,9 @@ public class ApiClient {
                     // 🔧 关键修复：使用与Web端一致的Cookie名称 Trim-MC-token
                     requestBuilder.addHeader("Cookie", "Trim-MC-token=" + authToken);
                     
-                    Log.d(TAG, "🔐 已添加认证Token（Header + Cookie: Trim-MC-token）");
+                    if (verbose) {
+                        Log.d(TAG, "🔐 已添加认证Token（Header + Cookie: Trim-MC-token）");
+                    }
                 }
             }
             
@@ -278,15 +274,19 @@ public class ApiClient {
                 String signature = SignatureUtils.generateSignature(originalRequest);
                 if (signature != null) {
                     requestBuilder.addHeader("authx", signature);
-                    Log.d(TAG, "🔑 已添加API签名: " + signature.substring(0, Math.min(16, signature.length())) + "...");
+                    if (verbose) {
+                        Log.d(TAG, "🔑 已添加API签名: " + signature.substring(0, Math.min(16, signature.length())) + "...");
+                    }
                 }
-            } else if (originalRequest.header("authx") != null) {
+            } else if (verbose && originalRequest.header("authx") != null) {
                 Log.d(TAG, "🔑 使用已有的authx签名，不重新生成");
             }
             
             Request newRequest = requestBuilder.build();
             
-            Log.d(TAG, "🌐 请求: " + newRequest.method() + " " + newRequest.url());
+            if (verbose) {
+                Log.d(TAG, "🌐 请求: " + newRequest.method() + " " + newRequest.url());
+            }
             
             return chain.proceed(newRequest);
         }
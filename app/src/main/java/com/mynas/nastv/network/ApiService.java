@@ -35,6 +35,7 @@ import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 /**
  * 🌐 API Service Interface
@@ -229,8 +230,10 @@ public interface ApiService {
     // 响应格式: { "1": [...], "2": [...] } - key 是集数
     // 参数: title, season_number, episode_number (guid/parent_guid 可选，用于缓存)
     // 注意：如果传入guid但数据库没有记录，会返回空数据，所以首次请求不传guid
+    // 流式：响应体不缓冲，由 DanmuRepository 边读边过滤，需要在后台线程 execute()
+    @Streaming
     @GET("/danmu/get")
-    Call<Map<String, List<com.mynas.nastv.model.DanmakuMapResponse.DanmakuItem>>> getDanmakuMap(
+    Call<ResponseBody> getDanmakuStream(
         @Query("title") String title,
         @Query("season_number") int seasonNumber,
         @Query("episode_number") int episodeNumber
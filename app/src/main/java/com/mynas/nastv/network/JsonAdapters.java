@@ -0,0 +1,29 @@
+package com.mynas.nastv.network;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mynas.nastv.model.EpisodeListResponse;
+import com.mynas.nastv.model.MediaItemListResponse;
+
+/**
+ * ⚡ 全局共享的 Gson 实例
+ *
+ * 列表类响应（媒体库项目、剧集）数量大，注册了手写的流式 TypeAdapter，
+ * 不再走反射逐字段赋值；其他小响应仍由 Gson 反射处理。
+ * Gson 线程安全，所有 Retrofit 实例共用同一个，TypeAdapter 缓存只需构建一次。
+ */
+public final class JsonAdapters {
+
+    private static final Gson GSON = new GsonBuilder()
+            .setLenient()
+            .registerTypeAdapter(MediaItemListResponse.MediaItemInfo.class, new MediaItemListResponse.MediaItemInfo.Adapter())
+            .registerTypeAdapter(EpisodeListResponse.Episode.class, new EpisodeListResponse.Episode.Adapter())
+            .create();
+
+    private JsonAdapters() {
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+}
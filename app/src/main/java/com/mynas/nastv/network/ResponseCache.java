@@ -0,0 +1,326 @@
+package com.mynas.nastv.network;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.mynas.nastv.utils.LruDiskDirectory;
+import com.mynas.nastv.utils.SharedPreferencesManager;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🗂️ 目录类接口的应用层响应缓存
+ *
+ * authx 签名每次请求都变，OkHttp 的 HTTP 缓存永远命中不了，
+ * 这里按 (接口, 路径参数, 去掉 nonce/timestamp 的请求体) 缓存解析后的数据：
+ * - 磁盘保存在 cacheDir/api_cache，总大小超出上限按 LRU 淘汰
+ * - 每个接口有自己的 TTL，过期但未超过 {@link #MAX_STALE_MS} 的数据先返回，再后台刷新
+ * - 缓存按服务器地址 + 登录 token 隔离，退出登录时整体清空
+ * - 收藏、播放进度等修改接口成功后 {@link #invalidateUserState} 清掉相关缓存
+ *
+ * 磁盘读写都在单独的 IO 线程，结果回到主线程。
+ */
+public final class ResponseCache {
+    private static final String TAG = "ResponseCache";
+
+    private static final String DIR_NAME = "api_cache";
+    private static final long MAX_DISK_BYTES = 16L * 1024 * 1024;
+    private static final long MAX_STALE_MS = 7L * 24 * 60 * 60 * 1000;   // 超过7天的数据不再返回
+    private static final int MAX_MEMORY_CHARS = 1024 * 1024;             // 内存层保存最近的 JSON 文本
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long MINUTE = 60 * 1000;
+
+    // Gson 线程安全，缓存键计算和 IO 线程共用一个实例
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 可缓存的接口及其 TTL（TTL 内直接返回，不请求网络）
+     */
+    public enum Endpoint {
+        MEDIA_DB_LIST("/v/api/v1/mediadb/list", 10 * MINUTE),
+        ITEM_LIST("/v/api/v1/item/list", 5 * MINUTE),
+        ITEM_DETAIL("/v/api/v1/item", 30 * MINUTE),
+        SEASON_LIST("/v/api/v1/season/list", 30 * MINUTE),
+        EPISODE_LIST("/v/api/v1/episode/list", 15 * MINUTE),
+        PERSON_LIST("/v/api/v1/person/list", 24 * 60 * MINUTE),
+        STREAM_LIST("/v/api/v1/stream/list", 60 * MINUTE);
+
+        final String path;
+        final long ttlMs;
+
+        Endpoint(String path, long ttlMs) {
+            this.path = path;
+            this.ttlMs = ttlMs;
+        }
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+    }
+
+    /**
+     * 查询结果（主线程回调），未命中或已超过最大过期时间时 value 为 null
+     */
+    public interface Lookup<T> {
+        void onResult(T value, boolean stale);
+    }
+
+    private static volatile ResponseCache instance;
+
+    private final LruDiskDirectory directory;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ResponseCache-IO");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+
+    // 以下只在 IO 线程访问（directory 也是）
+    // 每次 clear/invalidate 加一：请求发出前记下，返回时已变化说明结果可能早于修改，不写入缓存
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(32, 0.75f, true);
+    private int memoryChars = 0;
+
+    private static final class Entry {
+        final long storedAt;
+        final String json;
+
+        Entry(long storedAt, String json) {
+            this.storedAt = storedAt;
+            this.json = json;
+        }
+    }
+
+    public static ResponseCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ResponseCache.class) {
+                if (instance == null) {
+                    instance = new ResponseCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ResponseCache(Context context) {
+        // 磁盘淘汰时内存层一起丢掉
+        directory = new LruDiskDirectory(new File(context.getCacheDir(), DIR_NAME), MAX_DISK_BYTES,
+            "Response cache", this::forget);
+    }
+
+    /**
+     * 生成缓存键：服务器 + token + 接口 + 路径参数 + 规范化的请求体（忽略 nonce/timestamp）
+     */
+    public static String keyFor(Endpoint endpoint, String pathParam, Map<String, Object> body) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(SharedPreferencesManager.getServerBaseUrl()).append('|')
+          .append(SharedPreferencesManager.getAuthToken()).append('|')
+          .append(endpoint.path).append('|')
+          .append(pathParam != null ? pathParam : "").append('|');
+        if (body != null && !body.isEmpty()) {
+            sb.append(GSON.toJson(canonicalize(body)));
+        }
+        return endpoint.name().toLowerCase() + "_" + LruDiskDirectory.sha1(sb.toString());
+    }
+
+    /**
+     * 异步查询缓存，结果回调到主线程
+     */
+    public <T> void get(Endpoint endpoint, String key, Type type, Lookup<T> lookup) {
+        io.execute(() -> {
+            T value = null;
+            boolean stale = false;
+            try {
+                Entry entry = read(key);
+                if (entry != null) {
+                    long age = System.currentTimeMillis() - entry.storedAt;
+                    if (age >= 0 && age < MAX_STALE_MS) {
+                        value = GSON.fromJson(entry.json, type);
+                        stale = age >= endpoint.ttlMs;
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "🗂️ Cache read failed: " + key + " - " + e.getMessage());
+                remove(key);
+            }
+            final T result = value;
+            final boolean isStale = stale;
+            mainHandler.post(() -> lookup.onResult(result, isStale));
+        });
+    }
+
+    /**
+     * 当前缓存代数，发起网络请求前记下，写入时传给 {@link #put}
+     */
+    public int generation() {
+        return generation.get();
+    }
+
+    /**
+     * 写入网络结果（序列化和磁盘写入在 IO 线程）
+     *
+     * @param requestGeneration 发起请求时的 {@link #generation()}，期间缓存被清空或失效过则丢弃本次写入
+     * @param onChanged         与原有缓存内容不同时回调（主线程），用于把后台刷新的结果再交给页面
+     */
+    public void put(String key, Object value, int requestGeneration, Runnable onChanged) {
+        if (value == null) return;
+        io.execute(() -> {
+            if (generation.get() != requestGeneration) {
+                Log.d(TAG, "🗂️ Skip outdated response: " + key);
+                return;
+            }
+            try {
+                String json = GSON.toJson(value);
+                Entry old;
+                try {
+                    old = read(key);
+                } catch (IOException e) {
+                    old = null; // 旧文件损坏，直接覆盖
+                }
+                write(key, new Entry(System.currentTimeMillis(), json));
+                if (onChanged != null && (old == null || !old.json.equals(json))) {
+                    mainHandler.post(onChanged);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "🗂️ Cache write failed: " + key + " - " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 删除这些接口的全部缓存（修改类接口成功后调用，下次打开页面重新请求）
+     */
+    public void invalidate(Endpoint... endpoints) {
+        generation.incrementAndGet();
+        io.execute(() -> {
+            for (Endpoint endpoint : endpoints) {
+                String prefix = endpoint.name().toLowerCase() + "_";
+                Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Entry> e = it.next();
+                    if (!e.getKey().startsWith(prefix)) continue;
+                    memoryChars -= e.getValue().json.length();
+                    it.remove();
+                }
+                int removed = directory.removeByPrefix(prefix);
+                Log.d(TAG, "🗑️ Invalidated " + endpoint + ": " + removed + " entries");
+            }
+        });
+    }
+
+    /**
+     * 收藏、观看进度变化后调用：这些状态会出现在列表、详情和剧集列表的数据里
+     */
+    public void invalidateUserState() {
+        invalidate(Endpoint.ITEM_LIST, Endpoint.ITEM_DETAIL, Endpoint.EPISODE_LIST);
+    }
+
+    /**
+     * 清空全部缓存（退出登录、切换服务器时调用）
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        io.execute(() -> {
+            memory.clear();
+            memoryChars = 0;
+            directory.clear();
+            Log.d(TAG, "🗑️ Response cache cleared");
+        });
+    }
+
+    // ==================== IO 线程 ====================
+
+    private Entry read(String key) throws IOException {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            directory.contains(key); // 刷新 LRU 顺序
+            return entry;
+        }
+        if (!directory.contains(key)) return null;
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(directory.file(key)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("version mismatch");
+            }
+            long storedAt = in.readLong();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            entry = new Entry(storedAt, new String(data, StandardCharsets.UTF_8));
+        }
+        directory.markAccessed(key);
+        remember(key, entry);
+        return entry;
+    }
+
+    private void write(String key, Entry entry) throws IOException {
+        byte[] data = entry.json.getBytes(StandardCharsets.UTF_8);
+        directory.write(key, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(entry.storedAt);
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+        });
+        remember(key, entry);
+    }
+
+    private void remove(String key) {
+        forget(key);
+        directory.remove(key);
+    }
+
+    private void forget(String key) {
+        Entry entry = memory.remove(key);
+        if (entry != null) memoryChars -= entry.json.length();
+    }
+
+    private void remember(String key, Entry entry) {
+        Entry old = memory.put(key, entry);
+        memoryChars += entry.json.length() - (old != null ? old.json.length() : 0);
+        Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+        while (memoryChars > MAX_MEMORY_CHARS && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            memoryChars -= eldest.getValue().json.length();
+            it.remove();
+        }
+    }
+
+    // ==================== 键 ====================
+
+    /**
+     * 递归排序 Map 的键并去掉 nonce/timestamp，保证同样的请求得到同样的键
+     */
+    @SuppressWarnings("unchecked")
+    private static Object canonicalize(Object value) {
+        if (value instanceof Map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                String k = String.valueOf(e.getKey());
+                if ("nonce".equals(k) || "timestamp".equals(k)) continue;
+                sorted.put(k, canonicalize(e.getValue()));
+            }
+            return sorted;
+        }
+        return value;
+    }
+}
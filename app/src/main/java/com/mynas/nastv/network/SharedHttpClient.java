@@ -0,0 +1,115 @@
+package com.mynas.nastv.network;
+
+import android.util.Log;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+
+/**
+ * 🌐 全局共享的 OkHttp 根客户端
+ *
+ * API 服务、播放器数据源、预缓存、离线下载都从这里派生客户端：
+ * {@code SharedHttpClient.newBuilder().readTimeout(...).addInterceptor(...).build()}。
+ * newBuilder() 派生的客户端共享同一个调度器、连接池和 DNS 缓存，
+ * 切换剧集时到 NAS 和云盘 CDN 的 TLS 连接可以直接复用，不用重新握手。
+ *
+ * 超时、拦截器等按用途在派生时设置，根客户端本身不带拦截器。
+ */
+public final class SharedHttpClient {
+    private static final String TAG = "SharedHttpClient";
+
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static volatile OkHttpClient root;
+
+    private SharedHttpClient() {
+    }
+
+    /**
+     * 获取根客户端（默认超时：连接30秒，读写60秒）
+     */
+    public static OkHttpClient get() {
+        OkHttpClient client = root;
+        if (client == null) {
+            synchronized (SharedHttpClient.class) {
+                client = root;
+                if (client == null) {
+                    Dispatcher dispatcher = new Dispatcher();
+                    dispatcher.setMaxRequests(MAX_REQUESTS);
+                    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+                    client = new OkHttpClient.Builder()
+                        .dispatcher(dispatcher)
+                        .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                        .dns(new CachingDns())
+                        .connectTimeout(30, TimeUnit.SECONDS)
+                        .readTimeout(60, TimeUnit.SECONDS)
+                        .writeTimeout(60, TimeUnit.SECONDS)
+                        .retryOnConnectionFailure(true)
+                        .build();
+                    root = client;
+                    Log.d(TAG, "🌐 Root client created");
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 从根客户端派生，共享调度器、连接池和 DNS 缓存
+     */
+    public static OkHttpClient.Builder newBuilder() {
+        return get().newBuilder();
+    }
+
+    /**
+     * 🌐 带 TTL 的 DNS 缓存
+     *
+     * 系统解析在部分电视盒子上很慢且不缓存；解析失败时退回过期的结果，避免网络抖动时无法起播。
+     */
+    private static final class CachingDns implements Dns {
+        private static final long TTL_MS = 5 * 60 * 1000;
+
+        private static final class Entry {
+            final List<InetAddress> addresses;
+            final long resolvedAt;
+
+            Entry(List<InetAddress> addresses, long resolvedAt) {
+                this.addresses = addresses;
+                this.resolvedAt = resolvedAt;
+            }
+        }
+
+        private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            long now = System.currentTimeMillis();
+            Entry entry = cache.get(hostname);
+            if (entry != null && now - entry.resolvedAt < TTL_MS) {
+                return entry.addresses;
+            }
+            try {
+                List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+                cache.put(hostname, new Entry(addresses, now));
+                return addresses;
+            } catch (UnknownHostException e) {
+                if (entry != null) {
+                    Log.w(TAG, "🌐 DNS lookup failed, using stale entry for " + hostname);
+                    return entry.addresses;
+                }
+                throw e;
+            }
+        }
+    }
+}
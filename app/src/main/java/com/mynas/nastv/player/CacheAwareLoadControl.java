@@ -0,0 +1,181 @@
+package com.mynas.nastv.player;
+
+import android.util.Log;
+
+import androidx.media3.common.C;
+import androidx.media3.common.Timeline;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.LoadControl;
+import androidx.media3.exoplayer.Renderer;
+import androidx.media3.exoplayer.analytics.PlayerId;
+import androidx.media3.exoplayer.source.MediaSource.MediaPeriodId;
+import androidx.media3.exoplayer.source.TrackGroupArray;
+import androidx.media3.exoplayer.trackselection.ExoTrackSelection;
+import androidx.media3.exoplayer.upstream.Allocator;
+import androidx.media3.exoplayer.upstream.DefaultAllocator;
+
+/**
+ * 🧠 感知磁盘缓存的 LoadControl
+ *
+ * 原来的 DefaultLoadControl 固定缓冲90秒、占用30%内存，即使这些字节已经在 SimpleCache 里。
+ * 这里在每次决定是否继续加载时查询"已加载位置之后磁盘上连续缓存了多少秒"：
+ * - 磁盘覆盖充足：内存只保留 15 秒左右，读到哪里再从本地磁盘取
+ * - 磁盘覆盖不足：内存缓冲随之增长，最多回到原来的 90 秒 / 字节上限
+ * 内存缓冲 + 磁盘覆盖 ≈ 90 秒，总前瞻量不变，卡顿不会增加。
+ *
+ * 起播判定、回看缓冲仍由内部的 DefaultLoadControl 负责。
+ * 只实现带 PlayerId / Parameters 的接口（media3 1.4 起旧的无 PlayerId 版本已废弃，
+ * DefaultLoadControl 不再实现它们，转发过去会抛 IllegalStateException）。
+ * 每次播放新建一个实例，只服务一个播放器。
+ */
+public final class CacheAwareLoadControl implements LoadControl {
+    private static final String TAG = "CacheAwareLoadControl";
+
+    private static final long MAX_BUFFER_MS = 90000;           // 磁盘无覆盖时的内存缓冲（与原配置一致）
+    private static final long DISK_BACKED_BUFFER_MS = 15000;   // 磁盘完全覆盖时的内存缓冲
+    private static final long MIN_RESUME_BUFFER_MS = 10000;    // 低于此值无论字节上限都继续加载
+    private static final int MIN_TARGET_BYTES = 32 * 1024 * 1024;
+    private static final int TARGET_BYTES_STEP = 8 * 1024 * 1024; // 字节目标按8MB取整，避免频繁调整分配器
+
+    /**
+     * 磁盘缓存覆盖查询（在播放线程调用，需要足够轻量）
+     */
+    public interface DiskCoverage {
+        /**
+         * 从 positionMs 开始磁盘上连续已缓存的时长（毫秒），未知时返回 0
+         */
+        long getCachedDurationAheadMs(long positionMs);
+    }
+
+    private final DefaultLoadControl delegate;
+    private final int maxTargetBytes;
+    private final DiskCoverage coverage;
+
+    // 以下只在播放线程访问
+    private boolean isLoading = false;
+    private int appliedTargetBytes = C.LENGTH_UNSET;
+    private long lastLoggedTargetMs = -1;
+
+    /**
+     * @param delegate       负责起播阈值、回看缓冲和分配器的 DefaultLoadControl
+     * @param maxTargetBytes 磁盘无覆盖时允许的最大内存缓冲字节数
+     * @param coverage       磁盘缓存覆盖查询
+     */
+    public CacheAwareLoadControl(DefaultLoadControl delegate, int maxTargetBytes, DiskCoverage coverage) {
+        this.delegate = delegate;
+        this.maxTargetBytes = Math.max(MIN_TARGET_BYTES, maxTargetBytes);
+        this.coverage = coverage;
+    }
+
+    @Override
+    public void onPrepared(PlayerId playerId) {
+        delegate.onPrepared(playerId);
+        resetState();
+    }
+
+    @Override
+    public void onTracksSelected(PlayerId playerId, Timeline timeline, MediaPeriodId mediaPeriodId,
+                                 Renderer[] renderers, TrackGroupArray trackGroups,
+                                 ExoTrackSelection[] trackSelections) {
+        delegate.onTracksSelected(playerId, timeline, mediaPeriodId, renderers, trackGroups, trackSelections);
+        // DefaultLoadControl 会把分配器目标设回它自己的值，下次加载判定时重新应用
+        appliedTargetBytes = C.LENGTH_UNSET;
+    }
+
+    @Override
+    public void onStopped(PlayerId playerId) {
+        delegate.onStopped(playerId);
+        resetState();
+    }
+
+    @Override
+    public void onReleased(PlayerId playerId) {
+        delegate.onReleased(playerId);
+        resetState();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return delegate.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs(PlayerId playerId) {
+        return delegate.getBackBufferDurationUs(playerId);
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe(PlayerId playerId) {
+        return delegate.retainBackBufferFromKeyframe(playerId);
+    }
+
+    @Override
+    public boolean shouldContinueLoading(LoadControl.Parameters parameters) {
+        long playbackPositionUs = parameters.playbackPositionUs;
+        long bufferedDurationUs = parameters.bufferedDurationUs;
+        float playbackSpeed = parameters.playbackSpeed;
+        long loadedEndMs = (playbackPositionUs + bufferedDurationUs) / 1000;
+        long diskAheadMs = 0;
+        try {
+            diskAheadMs = Math.max(0, coverage.getCachedDurationAheadMs(loadedEndMs));
+        } catch (Exception e) {
+            // 缓存切换中，按无覆盖处理
+        }
+
+        // 内存缓冲 + 磁盘覆盖 ≈ MAX_BUFFER_MS
+        long targetMs = Math.max(DISK_BACKED_BUFFER_MS, MAX_BUFFER_MS - diskAheadMs);
+        long resumeMs = Math.max(MIN_RESUME_BUFFER_MS, targetMs / 3);
+        int targetBytes = targetBytesFor(targetMs);
+        applyAllocatorTarget(targetBytes);
+
+        // 按倍速换算成媒体时长
+        long bufferedMs = bufferedDurationUs / 1000;
+        if (playbackSpeed > 1f) {
+            bufferedMs = (long) (bufferedMs / playbackSpeed);
+        }
+        boolean bytesExceeded = getAllocator().getTotalBytesAllocated() >= targetBytes;
+
+        if (bufferedMs < resumeMs) {
+            // 优先保证时间缓冲（与原来的 prioritizeTimeOverSizeThresholds 一致）
+            isLoading = true;
+        } else if (bufferedMs >= targetMs || bytesExceeded) {
+            isLoading = false;
+        }
+
+        if (lastLoggedTargetMs < 0 || Math.abs(targetMs - lastLoggedTargetMs) >= 15000) {
+            lastLoggedTargetMs = targetMs;
+            Log.d(TAG, "🧠 Buffer target " + (targetMs / 1000) + "s / " + (targetBytes / 1024 / 1024) +
+                  "MB (disk ahead " + (diskAheadMs / 1000) + "s, buffered " + (bufferedMs / 1000) + "s)");
+        }
+        return isLoading;
+    }
+
+    @Override
+    public boolean shouldStartPlayback(LoadControl.Parameters parameters) {
+        return delegate.shouldStartPlayback(parameters);
+    }
+
+    private int targetBytesFor(long targetMs) {
+        long bytes = maxTargetBytes * targetMs / MAX_BUFFER_MS;
+        bytes = (bytes + TARGET_BYTES_STEP - 1) / TARGET_BYTES_STEP * TARGET_BYTES_STEP;
+        return (int) Math.min(maxTargetBytes, Math.max(MIN_TARGET_BYTES, bytes));
+    }
+
+    /**
+     * 同步分配器的目标大小，目标变小时 DefaultAllocator 会立即释放多余的空闲块
+     */
+    private void applyAllocatorTarget(int targetBytes) {
+        if (targetBytes == appliedTargetBytes) return;
+        Allocator allocator = getAllocator();
+        if (allocator instanceof DefaultAllocator) {
+            ((DefaultAllocator) allocator).setTargetBufferSize(targetBytes);
+        }
+        appliedTargetBytes = targetBytes;
+    }
+
+    private void resetState() {
+        isLoading = false;
+        appliedTargetBytes = C.LENGTH_UNSET;
+        lastLoggedTargetMs = -1;
+    }
+}
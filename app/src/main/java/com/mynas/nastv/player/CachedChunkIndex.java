@@ -0,0 +1,287 @@
+package com.mynas.nastv.player;
+
+import android.util.Log;
+
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheSpan;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 🗂️ 单个 cacheKey 的内存缓存索引
+ *
+ * 通过 Cache.Listener 跟踪 SimpleCache 的 span 增删，维护两份结构：
+ * - 合并后的已缓存区间（TreeMap 起点 → 终点），O(log n) 回答"位置 P 之后连续缓存了多少"、"P 之后第一个空洞"
+ * - 每个块已缓存的字节数，O(1) 回答"块 N 是否已缓存"
+ *
+ * 查询不再进入 SimpleCache 的同步块，也不遍历 span 集合，ExoPlayer 加载线程不会被预缓存调度卡住。
+ * 同一个 (cache, cacheKey) 的使用方通过 acquire/release 共享一个索引。
+ */
+final class CachedChunkIndex implements Cache.Listener {
+    private static final String TAG = "CachedChunkIndex";
+
+    private static final double CHUNK_CACHED_RATIO = 0.9;  // 块内缓存超过90%视为已缓存
+
+    /**
+     * 索引变化回调（在 SimpleCache 锁内调用，只能做轻量工作）
+     */
+    interface Listener {
+        void onRangeAdded(long position, long length);
+
+        void onRangeRemoved(long position, long length);
+    }
+
+    private static final Map<String, CachedChunkIndex> indexes = new HashMap<>();
+
+    private final Cache cache;
+    private final String cacheKey;
+    private final int chunkSize;
+    private int refCount = 1; // 由 indexes 保护
+
+    // 以下由 this 保护
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();  // 合并后的区间：起点 → 终点（不含）
+    private int[] chunkCachedBytes = new int[64];
+    private long totalCachedBytes = 0;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 获取 (cache, cacheKey) 的共享索引，不再使用时调用 {@link #release()}
+     */
+    static CachedChunkIndex acquire(Cache cache, String cacheKey, int chunkSize) {
+        String registryKey = registryKey(cache, cacheKey);
+        synchronized (indexes) {
+            CachedChunkIndex index = indexes.get(registryKey);
+            if (index != null && index.cache == cache && index.chunkSize == chunkSize) {
+                index.refCount++;
+                return index;
+            }
+            index = new CachedChunkIndex(cache, cacheKey, chunkSize);
+            indexes.put(registryKey, index);
+            return index;
+        }
+    }
+
+    // 播放缓存和离线缓存可能存有同一个 cacheKey，按缓存实例区分
+    private static String registryKey(Cache cache, String cacheKey) {
+        return System.identityHashCode(cache) + ":" + cacheKey;
+    }
+
+    private CachedChunkIndex(Cache cache, String cacheKey, int chunkSize) {
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+        this.chunkSize = chunkSize;
+        // 先持有缓存锁再注册，保证初始快照与后续回调之间不会漏掉或重复事件（锁顺序与回调一致：cache → this）
+        synchronized (cache) {
+            NavigableSet<CacheSpan> spans = cache.addListener(cacheKey, this);
+            synchronized (this) {
+                for (CacheSpan span : spans) {
+                    if (span.isCached) {
+                        addRange(span.position, span.length);
+                    }
+                }
+            }
+        }
+        Log.d(TAG, "🗂️ Index created for " + cacheKey + ", ranges=" + ranges.size() +
+              ", cached=" + (totalCachedBytes / 1024 / 1024) + "MB");
+    }
+
+    void release() {
+        synchronized (indexes) {
+            if (--refCount > 0) return;
+            String registryKey = registryKey(cache, cacheKey);
+            if (indexes.get(registryKey) == this) {
+                indexes.remove(registryKey);
+            }
+        }
+        try {
+            cache.removeListener(cacheKey, this);
+        } catch (Exception e) {
+            // 缓存已释放
+        }
+        listeners.clear();
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    // ==================== Cache.Listener ====================
+
+    @Override
+    public void onSpanAdded(Cache cache, CacheSpan span) {
+        if (!span.isCached) return;
+        synchronized (this) {
+            addRange(span.position, span.length);
+        }
+        for (Listener listener : listeners) {
+            listener.onRangeAdded(span.position, span.length);
+        }
+    }
+
+    @Override
+    public void onSpanRemoved(Cache cache, CacheSpan span) {
+        if (!span.isCached) return;
+        synchronized (this) {
+            removeRange(span.position, span.length);
+        }
+        for (Listener listener : listeners) {
+            listener.onRangeRemoved(span.position, span.length);
+        }
+    }
+
+    @Override
+    public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+        // 只更新访问时间，覆盖范围不变
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 块 N 是否已缓存（块内超过90%的字节已缓存）
+     */
+    synchronized boolean isChunkCached(int chunkIndex, long chunkLength) {
+        return chunkLength > 0 && getChunkCachedBytesLocked(chunkIndex) >= chunkLength * CHUNK_CACHED_RATIO;
+    }
+
+    synchronized long getChunkCachedBytes(int chunkIndex) {
+        return getChunkCachedBytesLocked(chunkIndex);
+    }
+
+    /**
+     * 从 position 开始连续已缓存的字节数
+     */
+    synchronized long getContiguousCachedBytes(long position) {
+        Map.Entry<Long, Long> entry = ranges.floorEntry(position);
+        if (entry == null || entry.getValue() <= position) return 0;
+        return entry.getValue() - position;
+    }
+
+    /**
+     * position 及之后第一个未缓存的字节位置（区间已合并，所在区间的终点就是空洞起点）
+     */
+    synchronized long findFirstGap(long position) {
+        Map.Entry<Long, Long> entry = ranges.floorEntry(position);
+        return entry != null && entry.getValue() > position ? entry.getValue() : position;
+    }
+
+    /**
+     * [position, position + length) 内已缓存的字节数
+     */
+    synchronized long getCachedBytes(long position, long length) {
+        long end = position + length;
+        long cached = 0;
+        Map.Entry<Long, Long> first = ranges.floorEntry(position);
+        if (first != null && first.getValue() > position) {
+            cached += Math.min(first.getValue(), end) - position;
+        }
+        for (Map.Entry<Long, Long> entry : ranges.subMap(position, false, end, false).entrySet()) {
+            cached += Math.min(entry.getValue(), end) - entry.getKey();
+        }
+        return cached;
+    }
+
+    /**
+     * 从 startChunk 开始连续已缓存的块数（单块允许少量空洞，与 isChunkCached 的判定一致）
+     */
+    synchronized int countCachedChunksFrom(int startChunk, long contentLength) {
+        if (contentLength <= 0) return 0;
+        int totalChunks = (int) ((contentLength + chunkSize - 1) / chunkSize);
+        long start = (long) startChunk * chunkSize;
+        Map.Entry<Long, Long> entry = ranges.floorEntry(start);
+        long contiguousEnd = entry != null && entry.getValue() > start ? entry.getValue() : start;
+        // 连续区间覆盖的整块直接计数，之后逐块检查
+        int count = contiguousEnd >= contentLength
+            ? totalChunks - startChunk
+            : (int) ((contiguousEnd - start) / chunkSize);
+        for (int i = startChunk + count; i < totalChunks; i++) {
+            long chunkLength = Math.min(chunkSize, contentLength - (long) i * chunkSize);
+            if (getChunkCachedBytesLocked(i) < chunkLength * CHUNK_CACHED_RATIO) break;
+            count++;
+        }
+        return Math.max(0, count);
+    }
+
+    synchronized long getTotalCachedBytes() {
+        return totalCachedBytes;
+    }
+
+    synchronized int getRangeCount() {
+        return ranges.size();
+    }
+
+    // ==================== 内部维护 ====================
+
+    private long getChunkCachedBytesLocked(int chunkIndex) {
+        return chunkIndex >= 0 && chunkIndex < chunkCachedBytes.length ? chunkCachedBytes[chunkIndex] : 0;
+    }
+
+    private void addRange(long position, long length) {
+        if (length <= 0) return;
+        long start = position;
+        long end = position + length;
+        // SimpleCache 的 span 互不重叠，只需与相邻区间合并
+        Map.Entry<Long, Long> lower = ranges.floorEntry(start);
+        if (lower != null && lower.getValue() >= start) {
+            start = lower.getKey();
+            end = Math.max(end, lower.getValue());
+            ranges.remove(lower.getKey());
+        }
+        Long higherEnd = ranges.get(end);
+        if (higherEnd != null) {
+            ranges.remove(end);
+            end = higherEnd;
+        }
+        ranges.put(start, end);
+        totalCachedBytes += length;
+        updateChunkBytes(position, length, 1);
+    }
+
+    private void removeRange(long position, long length) {
+        if (length <= 0) return;
+        long end = position + length;
+        Map.Entry<Long, Long> containing = ranges.floorEntry(position);
+        if (containing == null || containing.getValue() < end) {
+            return; // 不在索引中
+        }
+        ranges.remove(containing.getKey());
+        if (containing.getKey() < position) {
+            ranges.put(containing.getKey(), position);
+        }
+        if (containing.getValue() > end) {
+            ranges.put(end, containing.getValue());
+        }
+        totalCachedBytes -= length;
+        updateChunkBytes(position, length, -1);
+    }
+
+    private void updateChunkBytes(long position, long length, int sign) {
+        long end = position + length;
+        int lastChunk = (int) ((end - 1) / chunkSize);
+        if (lastChunk >= chunkCachedBytes.length) {
+            int newLength = chunkCachedBytes.length;
+            while (newLength <= lastChunk) {
+                newLength <<= 1;
+            }
+            chunkCachedBytes = Arrays.copyOf(chunkCachedBytes, newLength);
+        }
+        for (int chunk = (int) (position / chunkSize); chunk <= lastChunk; chunk++) {
+            long chunkStart = (long) chunk * chunkSize;
+            long overlap = Math.min(end, chunkStart + chunkSize) - Math.max(position, chunkStart);
+            chunkCachedBytes[chunk] += sign * (int) overlap;
+        }
+    }
+}
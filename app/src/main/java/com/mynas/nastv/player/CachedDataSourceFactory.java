@@ -1,8 +1,10 @@
 package com.mynas.nastv.player;
 
 import android.content.Context;
+import android.net.Uri;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.media3.datasource.DataSource;
 import androidx.media3.datasource.DataSpec;
 import androidx.media3.datasource.TransferListener;
@@ -14,8 +16,8 @@ import androidx.media3.datasource.okhttp.OkHttpDataSource;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
 
 import okhttp3.OkHttpClient;
 
@@ -43,7 +45,14 @@ public class CachedDataSourceFactory implements DataSource.Factory {
     private final Map<String, String> headers;
     private final String cacheKey;
     
-    private VideoPrefetchService prefetchService;
+    private volatile VideoPrefetchService prefetchService;
+    private CachedChunkIndex chunkIndex;
+    private volatile PlaybackSessionRecorder sessionRecorder;
+    
+    // 读取诊断：每 READ_DIAGNOSTICS_SAMPLE 次打开记录一次缓存状态
+    // 默认关闭，adb shell setprop log.tag.CachedDataSourceFactory VERBOSE 后下一次播放生效
+    private static final int READ_DIAGNOSTICS_SAMPLE = 32;
+    private final boolean readDiagnosticsEnabled = Log.isLoggable(TAG, Log.VERBOSE);
     
     public CachedDataSourceFactory(Context context, OkHttpClient httpClient, 
                                     Map<String, String> headers, String cacheKey) {
@@ -58,7 +67,7 @@ public class CachedDataSourceFactory implements DataSource.Factory {
     /**
      * 获取或创建共享缓存
      */
-    private static Cache getSharedCache(Context context) {
+    static Cache getSharedCache(Context context) {
         if (cacheInitFailed) {
             return null;
         }
@@ -115,7 +124,29 @@ public class CachedDataSourceFactory implements DataSource.Factory {
      * 释放共享缓存并清除所有缓存文件（切换视频时使用）
      */
     public static void releaseAndClearCache(Context context) {
+        releaseAndClearCache(context, null);
+    }
+    
+    /**
+     * 清除缓存数据，但保留 keepCacheKey 的数据（下一集预热的内容）
+     *
+     * 预热的块可能还在写入，所以这种情况下不释放缓存实例，新的工厂继续使用同一个实例。
+     */
+    public static void releaseAndClearCache(Context context, String keepCacheKey) {
         synchronized (cacheLock) {
+            if (keepCacheKey != null && sharedCache != null) {
+                try {
+                    for (String key : sharedCache.getKeys()) {
+                        if (!key.equals(keepCacheKey)) {
+                            sharedCache.removeResource(key);
+                        }
+                    }
+                    Log.e(TAG, "Shared cache cleared, kept " + keepCacheKey);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error clearing cache", e);
+                }
+                return;
+            }
             if (sharedCache != null) {
                 try {
                     sharedCache.release();
@@ -162,6 +193,10 @@ public class CachedDataSourceFactory implements DataSource.Factory {
             upstreamFactory.setDefaultRequestProperties(headers);
             Log.e(TAG, "Headers set: " + headers.size() + " headers");
         }
+        final PlaybackSessionRecorder recorder = sessionRecorder;
+        if (recorder != null) {
+            upstreamFactory.setTransferListener(new NetworkBytesListener(recorder));
+        }
         
         // 尝试获取缓存
         Cache cache = getSharedCache(context);
@@ -171,76 +206,17 @@ public class CachedDataSourceFactory implements DataSource.Factory {
         }
         
         // 检查缓存状态
-        try {
-            NavigableSet<androidx.media3.datasource.cache.CacheSpan> cachedSpans = 
-                cache.getCachedSpans(cacheKey);
-            if (cachedSpans != null && !cachedSpans.isEmpty()) {
-                long totalCached = 0;
-                for (androidx.media3.datasource.cache.CacheSpan span : cachedSpans) {
-                    totalCached += span.length;
-                }
-                Log.e(TAG, "Found existing cache: " + (totalCached / 1024 / 1024) + "MB in " + 
-                      cachedSpans.size() + " spans");
-            } else {
-                Log.e(TAG, "No existing cache found for this video");
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Failed to check cache status", e);
+        final CachedChunkIndex index = getChunkIndex(cache);
+        if (index.getTotalCachedBytes() > 0) {
+            Log.e(TAG, "Found existing cache: " + (index.getTotalCachedBytes() / 1024 / 1024) + "MB in " + 
+                  index.getRangeCount() + " ranges");
+        } else {
+            Log.e(TAG, "No existing cache found for this video");
         }
         
-        // 创建统一的CacheKeyFactory
+        // 创建统一的CacheKeyFactory：直接返回预先确定的 key，不做任何查询、日志或分配
         final String key = cacheKey;
-        final Cache finalCache = cache;
-        final CachedDataSourceFactory factory = this;
-        androidx.media3.datasource.cache.CacheKeyFactory cacheKeyFactory = 
-            new androidx.media3.datasource.cache.CacheKeyFactory() {
-                @Override
-                public String buildCacheKey(DataSpec dataSpec) {
-                    // 检查请求的数据是否在缓存中
-                    long pos = dataSpec.position;
-                    long len = dataSpec.length > 0 ? dataSpec.length : 2 * 1024 * 1024;
-                    long cached = finalCache.getCachedBytes(key, pos, len);
-                    
-                    // 通知预缓存服务 ExoPlayer 的实际读取位置
-                    // 只有当读取位置在文件前 90% 时才更新（排除文件尾部 MKV cues 的读取）
-                    if (prefetchService != null && pos > 0) {
-                        long contentLength = prefetchService.getContentLength();
-                        long currentPrefetchPos = prefetchService.getCurrentPlaybackPosition();
-                        
-                        // 只有当读取位置在文件前 90% 且超过当前预缓存位置时才更新
-                        boolean isNotTailRead = contentLength <= 0 || pos < contentLength * 0.9;
-                        if (isNotTailRead && pos > currentPrefetchPos) {
-                            // 使用强制更新，确保不会被 VideoPlayerActivity 的定时更新覆盖
-                            prefetchService.forceUpdatePlaybackPosition(pos);
-                            Log.e(TAG, "[EXOPLAYER-JUMP] ExoPlayer jumped to " + (pos/1024/1024) + "MB, force updating prefetch position");
-                        }
-                    }
-                    
-                    // 详细日志：检查缓存 spans
-                    try {
-                        NavigableSet<androidx.media3.datasource.cache.CacheSpan> spans = 
-                            finalCache.getCachedSpans(key);
-                        int spanCount = spans != null ? spans.size() : 0;
-                        long totalCached = 0;
-                        String nearbySpan = "none";
-                        if (spans != null) {
-                            for (androidx.media3.datasource.cache.CacheSpan span : spans) {
-                                totalCached += span.length;
-                                // 找到包含或接近请求位置的 span
-                                if (span.position <= pos && span.position + span.length > pos) {
-                                    nearbySpan = String.format("pos=%d len=%d", span.position, span.length);
-                                }
-                            }
-                        }
-                        Log.e(TAG, String.format("[EXOPLAYER-READ] pos=%dMB len=%dKB cached=%dKB spans=%d total=%dMB nearby=%s key=%s", 
-                            pos/1024/1024, len/1024, cached/1024, spanCount, totalCached/1024/1024, nearbySpan, key));
-                    } catch (Exception e) {
-                        Log.e(TAG, String.format("[EXOPLAYER-READ] pos=%dMB len=%dKB cached=%dKB key=%s err=%s", 
-                            pos/1024/1024, len/1024, cached/1024, key, e.getMessage()));
-                    }
-                    return key;
-                }
-            };
+        androidx.media3.datasource.cache.CacheKeyFactory cacheKeyFactory = dataSpec -> key;
         
         // 创建缓存数据源
         Log.e(TAG, "Creating CacheDataSource with unified cache key");
@@ -256,8 +232,25 @@ public class CachedDataSourceFactory implements DataSource.Factory {
                         .setFragmentSize(2 * 1024 * 1024) // 2MB fragments，与预缓存一致
                 )
                 .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+            CacheDataSource.EventListener cacheEventListener = recorder != null ? new CacheBytesListener(recorder) : null;
+            cacheFactory.setEventListener(cacheEventListener);
+            
+            // 离线缓存区有这个视频时优先读取离线数据（只读），未命中再走播放缓存和网络
+            DataSource.Factory playbackFactory = cacheFactory;
+            Cache offline = OfflineDownloadManager.getOfflineCache(context);
+            if (offline != null && !offline.getCachedSpans(key).isEmpty()) {
+                Log.e(TAG, "Offline copy found, reading offline cache first");
+                playbackFactory = new CacheDataSource.Factory()
+                    .setCache(offline)
+                    .setUpstreamDataSourceFactory(cacheFactory)
+                    .setCacheKeyFactory(cacheKeyFactory)
+                    .setCacheWriteDataSinkFactory(null)
+                    .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+                    .setEventListener(cacheEventListener);
+            }
             
-            DataSource dataSource = cacheFactory.createDataSource();
+            // 读取位置通过单独的通道通知预缓存服务，与 cache key 计算分离
+            DataSource dataSource = new PositionReportingDataSource(playbackFactory.createDataSource(), this, index);
             Log.e(TAG, "CacheDataSource created successfully");
             return dataSource;
         } catch (Exception e) {
@@ -266,6 +259,33 @@ public class CachedDataSourceFactory implements DataSource.Factory {
         }
     }
     
+    /**
+     * 📊 设置播放会话指标记录器（在 startPrefetch 和 ExoPlayer 创建数据源之前调用）
+     */
+    public void setSessionRecorder(PlaybackSessionRecorder recorder) {
+        this.sessionRecorder = recorder;
+    }
+    
+    /**
+     * ExoPlayer 打开一个 DataSpec 时调用，把实际读取位置通知预缓存服务
+     */
+    void onLoaderOpen(long position) {
+        VideoPrefetchService service = prefetchService;
+        if (service != null) {
+            service.onLoaderOpen(position);
+        }
+    }
+    
+    /**
+     * 当前视频的缓存索引（与预缓存服务共享）
+     */
+    private synchronized CachedChunkIndex getChunkIndex(Cache cache) {
+        if (chunkIndex == null) {
+            chunkIndex = CachedChunkIndex.acquire(cache, cacheKey, VideoPrefetchService.CHUNK_SIZE);
+        }
+        return chunkIndex;
+    }
+    
     private android.os.Handler monitorHandler;
     private Runnable monitorRunnable;
     
@@ -281,6 +301,7 @@ public class CachedDataSourceFactory implements DataSource.Factory {
         
         Log.e(TAG, "[FACTORY] Creating VideoPrefetchService...");
         prefetchService = new VideoPrefetchService(context, httpClient, headers, cache, cacheKey);
+        prefetchService.setSessionRecorder(sessionRecorder);
         Log.e(TAG, "[FACTORY] Calling prefetchService.start()...");
         prefetchService.start(url);
         Log.e(TAG, "[FACTORY] prefetchService.start() returned, isRunning=" + prefetchService.isRunning());
@@ -318,15 +339,10 @@ public class CachedDataSourceFactory implements DataSource.Factory {
                     count, running, contentLen/1024/1024, cachedChunks, threads, progress));
                 
                 // 检查缓存状态
-                Cache cache = getSharedCache(context);
-                if (cache != null && contentLen > 0) {
-                    try {
-                        long cachedBytes = cache.getCachedBytes(cacheKey, 0, contentLen);
-                        Log.e(TAG, String.format("[MONITOR] Cache: %dMB / %dMB", 
-                            cachedBytes/1024/1024, contentLen/1024/1024));
-                    } catch (Exception e) {
-                        Log.e(TAG, "[MONITOR] Cache check error: " + e.getMessage());
-                    }
+                CachedChunkIndex index = chunkIndex;
+                if (index != null && contentLen > 0) {
+                    Log.e(TAG, String.format("[MONITOR] Cache: %dMB / %dMB", 
+                        index.getTotalCachedBytes()/1024/1024, contentLen/1024/1024));
                 }
                 
                 if (running && count < 60) {
@@ -357,6 +373,13 @@ public class CachedDataSourceFactory implements DataSource.Factory {
             prefetchService.stop();
             prefetchService = null;
         }
+        
+        synchronized (this) {
+            if (chunkIndex != null) {
+                chunkIndex.release();
+                chunkIndex = null;
+            }
+        }
     }
     
     /**
@@ -372,4 +395,109 @@ public class CachedDataSourceFactory implements DataSource.Factory {
     public String getCacheKey() {
         return cacheKey;
     }
+    
+    /**
+     * 📊 统计 ExoPlayer 直接从网络读取的字节
+     */
+    private static final class NetworkBytesListener implements TransferListener {
+        private final PlaybackSessionRecorder recorder;
+        
+        NetworkBytesListener(PlaybackSessionRecorder recorder) {
+            this.recorder = recorder;
+        }
+        
+        @Override
+        public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+        
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+        
+        @Override
+        public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            recorder.addNetworkBytes(bytesTransferred);
+        }
+        
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+    }
+    
+    /**
+     * 📊 统计 ExoPlayer 从磁盘缓存（播放缓存或离线缓存）读取的字节
+     */
+    private static final class CacheBytesListener implements CacheDataSource.EventListener {
+        private final PlaybackSessionRecorder recorder;
+        
+        CacheBytesListener(PlaybackSessionRecorder recorder) {
+            this.recorder = recorder;
+        }
+        
+        @Override
+        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+            recorder.addCacheBytes(cachedBytesRead);
+        }
+        
+        @Override
+        public void onCacheIgnored(int reason) {
+        }
+    }
+    
+    /**
+     * 在打开数据源时上报读取位置的包装层
+     * 
+     * 只在 open() 时做一次通知，read() 直接透传，不在加载线程上做额外工作
+     */
+    private static final class PositionReportingDataSource implements DataSource {
+        private static int openCount = 0; // 只用于诊断采样，计数不精确无妨
+        
+        private final DataSource delegate;
+        private final CachedDataSourceFactory factory;
+        private final CachedChunkIndex index;
+        
+        PositionReportingDataSource(DataSource delegate, CachedDataSourceFactory factory, CachedChunkIndex index) {
+            this.delegate = delegate;
+            this.factory = factory;
+            this.index = index;
+        }
+        
+        @Override
+        public void addTransferListener(TransferListener transferListener) {
+            delegate.addTransferListener(transferListener);
+        }
+        
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            factory.onLoaderOpen(dataSpec.position);
+            if (factory.readDiagnosticsEnabled && ++openCount % READ_DIAGNOSTICS_SAMPLE == 0) {
+                long pos = dataSpec.position;
+                Log.d(TAG, "[EXOPLAYER-READ] pos=" + (pos / 1024 / 1024) + "MB contiguous=" +
+                      (index.getContiguousCachedBytes(pos) / 1024) + "KB ranges=" + index.getRangeCount() +
+                      " total=" + (index.getTotalCachedBytes() / 1024 / 1024) + "MB");
+            }
+            return delegate.open(dataSpec);
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return delegate.read(buffer, offset, length);
+        }
+        
+        @Nullable
+        @Override
+        public Uri getUri() {
+            return delegate.getUri();
+        }
+        
+        @Override
+        public Map<String, List<String>> getResponseHeaders() {
+            return delegate.getResponseHeaders();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
 }
@@ -0,0 +1,610 @@
+package com.mynas.nastv.player;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 🎯 容器关键帧索引：播放时间 → 文件字节位置
+ *
+ * 原来用 currentPosition * contentLength / duration 线性估算字节位置，
+ * 对 VBR 片源（动作场景码率可能是平均的几倍）误差很大，预缓存会跑到错误的位置。
+ * 这里解析容器自带的索引，得到每个关键帧的时间和字节位置：
+ * - MKV：Segment 下的 Cues（CueTime + CueClusterPosition），位置由 SeekHead 给出
+ * - MP4：第一条视频轨的 stss / stts / stsc / stsz / stco(co64)
+ *
+ * 只解析一次，查找时二分，不分配对象。纯 Java，不依赖 Android。
+ */
+final class ContainerSeekIndex {
+
+    /**
+     * 按位置读取文件内容（实现方可以从缓存读，未缓存的部分从网络补齐）
+     */
+    interface Source {
+        long length();
+
+        /**
+         * 读满 length 字节，读不到抛 IOException
+         */
+        void readFully(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    // 解析时单次读取的上限，防止损坏的长度字段导致超大分配
+    private static final int MAX_HEADER_READ = 64 * 1024;
+    private static final int MAX_INDEX_READ = 16 * 1024 * 1024;
+    private static final int MAX_TOP_LEVEL_ELEMENTS = 64;
+    // 没有 stss（全部是关键帧）时，每隔这么久取一个点
+    private static final long MIN_ENTRY_INTERVAL_MS = 1000;
+
+    private final long[] timesMs;
+    private final long[] offsets;
+    private final long mediaEndOffset;
+    private final String format;
+
+    private ContainerSeekIndex(long[] timesMs, long[] offsets, int count, long mediaEndOffset, String format) {
+        this.timesMs = Arrays.copyOf(timesMs, count);
+        this.offsets = Arrays.copyOf(offsets, count);
+        this.mediaEndOffset = mediaEndOffset;
+        this.format = format;
+    }
+
+    /**
+     * 解析容器索引；不是 MKV/MP4 或者文件里没有索引时返回 null
+     */
+    static ContainerSeekIndex parse(Source source) throws IOException {
+        long length = source.length();
+        if (length < 16) return null;
+        byte[] head = new byte[12];
+        source.readFully(0, head, 0, head.length);
+        if (u32(head, 0) == EBML_HEADER) {
+            return parseMatroska(source, length);
+        }
+        if (u32(head, 4) == FTYP || u32(head, 4) == MOOV || u32(head, 4) == MDAT || u32(head, 4) == FREE) {
+            return parseMp4(source, length);
+        }
+        return null;
+    }
+
+    int size() {
+        return timesMs.length;
+    }
+
+    String getFormat() {
+        return format;
+    }
+
+    /**
+     * 媒体数据结束的位置：索引放在文件尾部时为索引的起点，否则为文件长度。
+     * 读取位置超过它说明是在读索引，不是播放位置
+     */
+    long getMediaEndOffset() {
+        return mediaEndOffset;
+    }
+
+    /**
+     * 不晚于 timeMs 的最近关键帧的字节位置（解码器从这里开始读）
+     */
+    long byteOffsetFor(long timeMs) {
+        int i = floorIndex(timesMs, timeMs);
+        return i < 0 ? 0 : offsets[i];
+    }
+
+    /**
+     * 字节位置所在的关键帧时间（byteOffsetFor 的反查，结果偏保守）
+     */
+    long timeFor(long byteOffset) {
+        int i = floorIndex(offsets, byteOffset);
+        return i < 0 ? 0 : timesMs[i];
+    }
+
+    /**
+     * 最后一个 ≤ key 的下标，没有返回 -1
+     */
+    private static int floorIndex(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * 收集关键帧，丢弃时间或位置没有严格递增的点（保证两个方向都能二分）
+     */
+    private static final class Builder {
+        long[] times = new long[256];
+        long[] offsets = new long[256];
+        int count = 0;
+
+        void add(long timeMs, long offset) {
+            if (count > 0 && (timeMs <= times[count - 1] || offset <= offsets[count - 1])) {
+                return;
+            }
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            times[count] = timeMs;
+            offsets[count] = offset;
+            count++;
+        }
+
+        ContainerSeekIndex build(long mediaEndOffset, String format) {
+            return count > 0 ? new ContainerSeekIndex(times, offsets, count, mediaEndOffset, format) : null;
+        }
+    }
+
+    // ==================== Matroska ====================
+
+    private static final int EBML_HEADER = 0x1A45DFA3;
+    private static final int MKV_SEGMENT = 0x18538067;
+    private static final int MKV_SEEK_HEAD = 0x114D9B74;
+    private static final int MKV_SEEK = 0x4DBB;
+    private static final int MKV_SEEK_ID = 0x53AB;
+    private static final int MKV_SEEK_POSITION = 0x53AC;
+    private static final int MKV_INFO = 0x1549A966;
+    private static final int MKV_TIMECODE_SCALE = 0x2AD7B1;
+    private static final int MKV_CLUSTER = 0x1F43B675;
+    private static final int MKV_CUES = 0x1C53BB6B;
+    private static final int MKV_CUE_POINT = 0xBB;
+    private static final int MKV_CUE_TIME = 0xB3;
+    private static final int MKV_CUE_TRACK_POSITIONS = 0xB7;
+    private static final int MKV_CUE_CLUSTER_POSITION = 0xF1;
+    private static final long UNKNOWN_SIZE = -1;
+
+    private static ContainerSeekIndex parseMatroska(Source source, long length) throws IOException {
+        byte[] buf = readRange(source, 0, (int) Math.min(MAX_HEADER_READ, length));
+        Ebml e = new Ebml(buf, 0, buf.length);
+
+        // EBML 头
+        if (e.readId() != EBML_HEADER) return null;
+        long headerSize = e.readSize();
+        if (headerSize == UNKNOWN_SIZE) return null;
+        if (headerSize > e.limit - e.pos) throw new IOException("Truncated EBML header");
+        e.pos += (int) headerSize;
+
+        // Segment：子元素的位置都相对于它的数据起点
+        if (e.readId() != MKV_SEGMENT) return null;
+        e.readSize();
+        long segmentStart = e.pos;
+
+        long timecodeScale = 1_000_000L;
+        long cuesPosition = -1;
+        long firstClusterPosition = -1;
+
+        long pos = segmentStart;
+        byte[] elementHeader = new byte[12];
+        for (int n = 0; n < MAX_TOP_LEVEL_ELEMENTS && pos < length; n++) {
+            int headerLength = (int) Math.min(elementHeader.length, length - pos);
+            source.readFully(pos, elementHeader, 0, headerLength);
+            Ebml h = new Ebml(elementHeader, 0, headerLength);
+            int id = h.readId();
+            long size = h.readSize();
+            long dataStart = pos + h.pos;
+
+            if (id == MKV_CLUSTER) {
+                firstClusterPosition = pos;
+                break;
+            }
+            if (id == MKV_CUES) {
+                cuesPosition = pos;
+            } else if (id == MKV_SEEK_HEAD && size > 0 && size <= MAX_HEADER_READ) {
+                long seekCues = parseSeekHead(readRange(source, dataStart, (int) size));
+                if (seekCues >= 0 && cuesPosition < 0) {
+                    cuesPosition = segmentStart + seekCues;
+                }
+            } else if (id == MKV_INFO && size > 0 && size <= MAX_HEADER_READ) {
+                Ebml info = new Ebml(readRange(source, dataStart, (int) size), 0, (int) size);
+                while (info.hasMore()) {
+                    int childId = info.readId();
+                    int childSize = info.readChildSize();
+                    if (childId == MKV_TIMECODE_SCALE) {
+                        timecodeScale = info.readUInt(childSize);
+                    } else {
+                        info.pos += childSize;
+                    }
+                }
+            }
+            if (size == UNKNOWN_SIZE) break;
+            pos = dataStart + size;
+        }
+
+        if (cuesPosition < 0 || cuesPosition >= length) return null;
+
+        byte[] cuesHeader = new byte[12];
+        int cuesHeaderLength = (int) Math.min(cuesHeader.length, length - cuesPosition);
+        source.readFully(cuesPosition, cuesHeader, 0, cuesHeaderLength);
+        Ebml ch = new Ebml(cuesHeader, 0, cuesHeaderLength);
+        if (ch.readId() != MKV_CUES) return null;
+        long cuesSize = ch.readSize();
+        long cuesDataStart = cuesPosition + ch.pos;
+        if (cuesSize == UNKNOWN_SIZE) cuesSize = length - cuesDataStart;
+        if (cuesSize <= 0 || cuesSize > MAX_INDEX_READ || cuesDataStart + cuesSize > length) return null;
+
+        Builder builder = new Builder();
+        Ebml cues = new Ebml(readRange(source, cuesDataStart, (int) cuesSize), 0, (int) cuesSize);
+        while (cues.hasMore()) {
+            int id = cues.readId();
+            int size = cues.readChildSize();
+            int end = cues.pos + size;
+            if (id != MKV_CUE_POINT) {
+                cues.pos = end;
+                continue;
+            }
+            long cueTime = -1;
+            long clusterPosition = -1;
+            while (cues.pos < end) {
+                int childId = cues.readId();
+                int childSize = cues.readChildSize();
+                if (childId == MKV_CUE_TIME) {
+                    cueTime = cues.readUInt(childSize);
+                } else if (childId == MKV_CUE_TRACK_POSITIONS && clusterPosition < 0) {
+                    // 多条轨道时取第一条（通常是视频轨）
+                    int trackEnd = cues.pos + childSize;
+                    while (cues.pos < trackEnd) {
+                        int trackChildId = cues.readId();
+                        int trackChildSize = cues.readChildSize();
+                        if (trackChildId == MKV_CUE_CLUSTER_POSITION) {
+                            clusterPosition = cues.readUInt(trackChildSize);
+                        } else {
+                            cues.pos += trackChildSize;
+                        }
+                    }
+                    cues.pos = trackEnd;
+                } else {
+                    cues.pos += childSize;
+                }
+            }
+            cues.pos = end;
+            if (cueTime >= 0 && clusterPosition >= 0) {
+                builder.add(cueTime * timecodeScale / 1_000_000L, segmentStart + clusterPosition);
+            }
+        }
+
+        long mediaEnd = firstClusterPosition >= 0 && cuesPosition > firstClusterPosition ? cuesPosition : length;
+        return builder.build(mediaEnd, "mkv");
+    }
+
+    /**
+     * SeekHead 中 Cues 的位置（相对 Segment 数据起点），没有返回 -1
+     */
+    private static long parseSeekHead(byte[] body) throws IOException {
+        Ebml e = new Ebml(body, 0, body.length);
+        while (e.hasMore()) {
+            int id = e.readId();
+            int size = e.readChildSize();
+            int end = e.pos + size;
+            if (id == MKV_SEEK) {
+                long seekId = -1;
+                long seekPosition = -1;
+                while (e.pos < end) {
+                    int childId = e.readId();
+                    int childSize = e.readChildSize();
+                    if (childId == MKV_SEEK_ID) {
+                        seekId = e.readUInt(childSize);
+                    } else if (childId == MKV_SEEK_POSITION) {
+                        seekPosition = e.readUInt(childSize);
+                    } else {
+                        e.pos += childSize;
+                    }
+                }
+                if (seekId == MKV_CUES) return seekPosition;
+            }
+            e.pos = end;
+        }
+        return -1;
+    }
+
+    /**
+     * EBML 变长整数读取
+     */
+    private static final class Ebml {
+        final byte[] buf;
+        final int limit;
+        int pos;
+
+        Ebml(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        boolean hasMore() {
+            return pos < limit;
+        }
+
+        /**
+         * 元素 ID（保留长度标记位，1~4 字节）
+         */
+        int readId() throws IOException {
+            int first = byteAt(pos) & 0xFF;
+            int length = Integer.numberOfLeadingZeros(first) - 23;
+            if (length < 1 || length > 4) throw new IOException("Invalid EBML id at " + pos);
+            int value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (byteAt(pos + i) & 0xFF);
+            }
+            pos += length;
+            return value;
+        }
+
+        /**
+         * 元素大小（去掉长度标记位，1~8 字节）；全 1 表示未知大小
+         */
+        long readSize() throws IOException {
+            int first = byteAt(pos) & 0xFF;
+            int length = Integer.numberOfLeadingZeros(first) - 23;
+            if (length < 1 || length > 8) throw new IOException("Invalid EBML size at " + pos);
+            long value = first & (0xFF >> length);
+            boolean allOnes = value == (0xFF >> length);
+            for (int i = 1; i < length; i++) {
+                int b = byteAt(pos + i) & 0xFF;
+                value = (value << 8) | b;
+                allOnes &= b == 0xFF;
+            }
+            pos += length;
+            return allOnes ? UNKNOWN_SIZE : value;
+        }
+
+        /**
+         * 完整读入的元素内部的子元素大小，不允许未知大小或越界
+         */
+        int readChildSize() throws IOException {
+            long size = readSize();
+            if (size < 0 || size > limit - pos) {
+                throw new IOException("EBML child size out of range at " + pos);
+            }
+            return (int) size;
+        }
+
+        long readUInt(int length) throws IOException {
+            if (length < 0 || length > 8) throw new IOException("Invalid EBML uint length " + length);
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (byteAt(pos + i) & 0xFF);
+            }
+            pos += length;
+            return value;
+        }
+
+        private byte byteAt(int index) throws IOException {
+            if (index >= limit) throw new IOException("Unexpected end of EBML data");
+            return buf[index];
+        }
+    }
+
+    // ==================== MP4 ====================
+
+    private static final int FTYP = 0x66747970;
+    private static final int MOOV = 0x6D6F6F76;
+    private static final int MDAT = 0x6D646174;
+    private static final int FREE = 0x66726565;
+    private static final int TRAK = 0x7472616B;
+    private static final int MDIA = 0x6D646961;
+    private static final int MDHD = 0x6D646864;
+    private static final int HDLR = 0x68646C72;
+    private static final int MINF = 0x6D696E66;
+    private static final int STBL = 0x7374626C;
+    private static final int STTS = 0x73747473;
+    private static final int STSS = 0x73747373;
+    private static final int STSC = 0x73747363;
+    private static final int STSZ = 0x7374737A;
+    private static final int STCO = 0x7374636F;
+    private static final int CO64 = 0x636F3634;
+    private static final int VIDE = 0x76696465;
+
+    private static ContainerSeekIndex parseMp4(Source source, long length) throws IOException {
+        long moovPosition = -1;
+        long moovSize = -1;
+        int moovHeaderSize = 8;
+        long mdatPosition = -1;
+
+        long pos = 0;
+        byte[] boxHeader = new byte[16];
+        for (int n = 0; n < MAX_TOP_LEVEL_ELEMENTS && pos + 8 <= length; n++) {
+            int headerLength = (int) Math.min(boxHeader.length, length - pos);
+            source.readFully(pos, boxHeader, 0, headerLength);
+            long size = u32(boxHeader, 0) & 0xFFFFFFFFL;
+            int type = u32(boxHeader, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (headerLength < 16) return null;
+                size = u64(boxHeader, 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = length - pos;
+            }
+            if (size < headerSize) return null;
+
+            if (type == MOOV) {
+                moovPosition = pos;
+                moovSize = size;
+                moovHeaderSize = headerSize;
+            } else if (type == MDAT && mdatPosition < 0) {
+                mdatPosition = pos;
+            }
+            if (moovPosition >= 0 && mdatPosition >= 0) break;
+            pos += size;
+        }
+
+        if (moovPosition < 0 || moovSize > MAX_INDEX_READ) return null;
+        byte[] moov = readRange(source, moovPosition, (int) moovSize);
+
+        Builder builder = new Builder();
+        int[] trak = {moovHeaderSize, moov.length};
+        while ((trak = findBox(moov, trak[0], moov.length, TRAK)) != null) {
+            if (parseVideoTrack(moov, trak[0], trak[1], builder)) break;
+            trak[0] = trak[1];
+        }
+
+        long mediaEnd = mdatPosition >= 0 && moovPosition > mdatPosition ? moovPosition : length;
+        return builder.build(mediaEnd, "mp4");
+    }
+
+    /**
+     * 解析一条 trak；不是视频轨返回 false
+     */
+    private static boolean parseVideoTrack(byte[] b, int start, int end, Builder builder) throws IOException {
+        int[] mdia = findBox(b, start, end, MDIA);
+        if (mdia == null) return false;
+        int[] hdlr = findBox(b, mdia[0], mdia[1], HDLR);
+        if (hdlr == null) return false;
+        requireContent(hdlr, 12);
+        if (u32(b, hdlr[0] + 8) != VIDE) return false;
+        int[] mdhd = findBox(b, mdia[0], mdia[1], MDHD);
+        int[] minf = findBox(b, mdia[0], mdia[1], MINF);
+        int[] stbl = minf != null ? findBox(b, minf[0], minf[1], STBL) : null;
+        if (mdhd == null || stbl == null) return false;
+
+        requireContent(mdhd, 4);
+        int version = b[mdhd[0]] & 0xFF;
+        requireContent(mdhd, version == 1 ? 24 : 16);
+        long timescale = u32(b, mdhd[0] + (version == 1 ? 20 : 12)) & 0xFFFFFFFFL;
+        if (timescale <= 0) return false;
+
+        int[] stts = findBox(b, stbl[0], stbl[1], STTS);
+        int[] stss = findBox(b, stbl[0], stbl[1], STSS);
+        int[] stsc = findBox(b, stbl[0], stbl[1], STSC);
+        int[] stsz = findBox(b, stbl[0], stbl[1], STSZ);
+        int[] stco = findBox(b, stbl[0], stbl[1], STCO);
+        boolean largeOffsets = false;
+        if (stco == null) {
+            stco = findBox(b, stbl[0], stbl[1], CO64);
+            largeOffsets = true;
+        }
+        if (stts == null || stsc == null || stsz == null || stco == null) return false;
+
+        int sttsCount = checkedCount(b, stts, 8);
+        int stscCount = checkedCount(b, stsc, 12);
+        int chunkCount = checkedCount(b, stco, largeOffsets ? 8 : 4);
+        int syncCount = stss != null ? checkedCount(b, stss, 4) : -1;
+        requireContent(stsz, 12);
+        int fixedSampleSize = u32(b, stsz[0] + 4);
+        int sampleCount = u32(b, stsz[0] + 8);
+        if (sampleCount < 0 || (fixedSampleSize == 0 && stsz[0] + 12 + (long) sampleCount * 4 > stsz[1])) {
+            throw new IOException("Truncated stsz");
+        }
+
+        // stts 游标
+        int sttsEntry = 0;
+        long sttsRemaining = sttsCount > 0 ? u32(b, stts[0] + 8) & 0xFFFFFFFFL : 0;
+        long decodeTime = 0;
+        // stsc 游标
+        int stscEntry = 0;
+        // stss 游标
+        int syncEntry = 0;
+        long lastAddedTimeMs = Long.MIN_VALUE;
+
+        int sample = 0;
+        for (int chunk = 1; chunk <= chunkCount && sample < sampleCount; chunk++) {
+            while (stscEntry + 1 < stscCount && u32(b, stsc[0] + 8 + (stscEntry + 1) * 12) <= chunk) {
+                stscEntry++;
+            }
+            int samplesInChunk = u32(b, stsc[0] + 8 + stscEntry * 12 + 4);
+            long offset = largeOffsets
+                ? u64(b, stco[0] + 8 + (chunk - 1) * 8)
+                : u32(b, stco[0] + 8 + (chunk - 1) * 4) & 0xFFFFFFFFL;
+
+            for (int s = 0; s < samplesInChunk && sample < sampleCount; s++, sample++) {
+                boolean sync;
+                if (syncCount < 0) {
+                    sync = true;
+                } else {
+                    while (syncEntry < syncCount && u32(b, stss[0] + 8 + syncEntry * 4) - 1 < sample) {
+                        syncEntry++;
+                    }
+                    sync = syncEntry < syncCount && u32(b, stss[0] + 8 + syncEntry * 4) - 1 == sample;
+                }
+                if (sync) {
+                    long timeMs = decodeTime * 1000 / timescale;
+                    if (syncCount >= 0 || lastAddedTimeMs == Long.MIN_VALUE
+                            || timeMs - lastAddedTimeMs >= MIN_ENTRY_INTERVAL_MS) {
+                        builder.add(timeMs, offset);
+                        lastAddedTimeMs = timeMs;
+                    }
+                }
+
+                offset += fixedSampleSize != 0 ? fixedSampleSize & 0xFFFFFFFFL
+                                               : u32(b, stsz[0] + 12 + sample * 4) & 0xFFFFFFFFL;
+                while (sttsRemaining == 0 && sttsEntry + 1 < sttsCount) {
+                    sttsEntry++;
+                    sttsRemaining = u32(b, stts[0] + 8 + sttsEntry * 8) & 0xFFFFFFFFL;
+                }
+                if (sttsRemaining > 0) {
+                    decodeTime += u32(b, stts[0] + 8 + sttsEntry * 8 + 4) & 0xFFFFFFFFL;
+                    sttsRemaining--;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 全盒子的条目数，并检查条目没有越过盒子末尾
+     */
+    private static int checkedCount(byte[] b, int[] box, int entrySize) throws IOException {
+        requireContent(box, 8);
+        int count = u32(b, box[0] + 4);
+        if (count < 0 || box[0] + 8 + (long) count * entrySize > box[1]) {
+            throw new IOException("Truncated box table");
+        }
+        return count;
+    }
+
+    /**
+     * 盒子内容不足 length 字节时抛 IOException（损坏的文件不能读到盒子外面）
+     */
+    private static void requireContent(int[] box, int length) throws IOException {
+        if (box[1] - box[0] < length) {
+            throw new IOException("Truncated box at " + box[0]);
+        }
+    }
+
+    /**
+     * 在 [start, end) 中找第一个指定类型的子盒子，返回 {内容起点, 盒子终点}
+     */
+    private static int[] findBox(byte[] b, int start, int end, int type) throws IOException {
+        int pos = start;
+        while (pos + 8 <= end) {
+            long size = u32(b, pos) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (size == 1) {
+                if (pos + 16 > end) break;
+                size = u64(b, pos + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize || pos + size > end) {
+                throw new IOException("Invalid box size at " + pos);
+            }
+            if (u32(b, pos + 4) == type) {
+                return new int[]{pos + headerSize, (int) (pos + size)};
+            }
+            pos += (int) size;
+        }
+        return null;
+    }
+
+    // ==================== 工具 ====================
+
+    private static byte[] readRange(Source source, long position, int length) throws IOException {
+        byte[] buf = new byte[length];
+        source.readFully(position, buf, 0, length);
+        return buf;
+    }
+
+    private static int u32(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16)
+            | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    private static long u64(byte[] b, int offset) {
+        return ((long) u32(b, offset) << 32) | (u32(b, offset + 4) & 0xFFFFFFFFL);
+    }
+}
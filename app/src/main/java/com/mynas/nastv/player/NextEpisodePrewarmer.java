@@ -0,0 +1,213 @@
+package com.mynas.nastv.player;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheDataSink;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+
+import com.mynas.nastv.manager.MediaManager;
+import com.mynas.nastv.model.EpisodeListResponse;
+import com.mynas.nastv.model.PlayStartInfo;
+import com.mynas.nastv.network.SharedHttpClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 🔥 下一集预热
+ *
+ * 当前集播放到片尾附近时，提前解析下一集的播放信息，并把文件头约12MB和文件尾（MKV cues）
+ * 下载到播放缓存。切换剧集时：
+ * - 直接使用已解析的 PlayStartInfo，省掉 play/info 往返
+ * - 清理缓存时保留预热的数据，预缓存服务使用已知文件大小跳过探测，关键块已就绪，无需等待
+ *
+ * 切换剧集时共享缓存实例不释放（见 CachedDataSourceFactory.releaseAndClearCache），
+ * 还没下载完的预热块继续写入同一个缓存。
+ */
+public final class NextEpisodePrewarmer {
+    private static final String TAG = "NextEpisodePrewarmer";
+
+    private static final int CHUNK_SIZE = VideoPrefetchService.CHUNK_SIZE;
+    private static final int HEAD_CHUNKS = 6;    // 文件头 6 × 2MB ≈ 12MB
+    private static final int TAIL_CHUNKS = 2;    // 文件尾（MKV cues / MP4 moov）
+
+    private final Context context;
+    private final MediaManager mediaManager;
+    private final OkHttpClient httpClient;
+    private final RangeDownloadEngine engine = RangeDownloadEngine.getInstance();
+
+    // 以下由 this 保护
+    private String episodeGuid;
+    private PlayStartInfo playInfo;
+    private String cacheKey;
+    private final List<RangeDownloadEngine.Task<Void>> tasks = new ArrayList<>();
+
+    public NextEpisodePrewarmer(Context context, MediaManager mediaManager) {
+        this.context = context.getApplicationContext();
+        this.mediaManager = mediaManager;
+        this.httpClient = SharedHttpClient.newBuilder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .addInterceptor(RangeRequestSigner.INSTANCE)
+            .build();
+    }
+
+    /**
+     * 预热指定剧集；同一集重复调用会被忽略，换了剧集会取消之前的预热
+     */
+    public void prewarm(EpisodeListResponse.Episode episode) {
+        final String guid = episode.getGuid();
+        synchronized (this) {
+            if (guid == null || guid.equals(episodeGuid)) return;
+            cancelLocked();
+            episodeGuid = guid;
+        }
+        Log.d(TAG, "🔥 Prewarming episode " + episode.getEpisodeNumber());
+
+        mediaManager.startPlayWithInfo(guid, new MediaManager.MediaCallback<PlayStartInfo>() {
+            @Override
+            public void onSuccess(PlayStartInfo info) {
+                synchronized (NextEpisodePrewarmer.this) {
+                    if (!guid.equals(episodeGuid)) return;
+                    playInfo = info;
+                    cacheKey = OfflineDownloadManager.cacheKeyFor(info.getMediaGuid());
+                }
+                new Thread(() -> warmCache(guid, info), "NextEpisodePrewarm").start();
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "🔥 Resolve next episode failed: " + error);
+                synchronized (NextEpisodePrewarmer.this) {
+                    if (guid.equals(episodeGuid)) {
+                        episodeGuid = null;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 取出预热好的播放信息；不是这一集时返回 null
+     */
+    public synchronized PlayStartInfo takePlayInfo(String guid) {
+        if (guid == null || !guid.equals(episodeGuid) || playInfo == null) return null;
+        PlayStartInfo info = playInfo;
+        playInfo = null;
+        return info;
+    }
+
+    /**
+     * 预热数据所在的 cacheKey，切换剧集清理缓存时需要保留
+     */
+    public synchronized String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * 取消预热（当前集切走或页面销毁时）
+     */
+    public synchronized void cancel() {
+        cancelLocked();
+    }
+
+    private void cancelLocked() {
+        for (RangeDownloadEngine.Task<Void> task : tasks) {
+            engine.release(task);
+        }
+        tasks.clear();
+        episodeGuid = null;
+        playInfo = null;
+        cacheKey = null;
+    }
+
+    private synchronized boolean isCurrent(String guid) {
+        return guid.equals(episodeGuid);
+    }
+
+    private void warmCache(String guid, PlayStartInfo info) {
+        Cache cache = CachedDataSourceFactory.getSharedCache(context);
+        if (cache == null) return;
+        String url = info.getPlayUrl();
+        String key = OfflineDownloadManager.cacheKeyFor(info.getMediaGuid());
+
+        long contentLength = fetchContentLength(url);
+        if (contentLength <= 0 || !isCurrent(guid)) {
+            Log.e(TAG, "🔥 Skip prewarm, length=" + contentLength);
+            return;
+        }
+        VideoPrefetchService.rememberContentLength(key, contentLength);
+
+        CacheDataSource.Factory writerFactory = new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(new OkHttpDataSource.Factory(httpClient))
+            .setCacheKeyFactory(dataSpec -> key)
+            .setCacheWriteDataSinkFactory(new CacheDataSink.Factory().setCache(cache).setFragmentSize(CHUNK_SIZE)
+                .setBufferSize(0))
+            .setFlags(CacheDataSource.FLAG_BLOCK_ON_CACHE);
+
+        int totalChunks = (int) ((contentLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        List<Integer> chunks = new ArrayList<>();
+        for (int i = 0; i < Math.min(HEAD_CHUNKS, totalChunks); i++) {
+            chunks.add(i);
+        }
+        for (int i = Math.max(HEAD_CHUNKS, totalChunks - TAIL_CHUNKS); i < totalChunks; i++) {
+            chunks.add(i);
+        }
+
+        for (int chunk : chunks) {
+            long start = (long) chunk * CHUNK_SIZE;
+            long length = Math.min(CHUNK_SIZE, contentLength - start);
+            RangeDownloadEngine.Task<Void> task = engine.submit(key, start, start + length - 1,
+                RangeDownloadEngine.Priority.BACKGROUND, () -> {
+                    DataSpec dataSpec = new DataSpec.Builder()
+                        .setUri(url)
+                        .setPosition(start)
+                        .setLength(length)
+                        .setKey(key)
+                        .build();
+                    new CacheWriter(writerFactory.createDataSource(), dataSpec,
+                        RangeDownloadEngine.copyBuffer(), null).cache();
+                    return null;
+                });
+            synchronized (this) {
+                if (!guid.equals(episodeGuid)) {
+                    engine.release(task);
+                    return;
+                }
+                tasks.add(task);
+            }
+        }
+        Log.d(TAG, "🔥 Prewarm scheduled " + chunks.size() + " chunks for " + key +
+              " (" + (contentLength / 1024 / 1024) + "MB)");
+    }
+
+    private long fetchContentLength(String url) {
+        Request request = new Request.Builder()
+            .url(url)
+            .header("Range", "bytes=0-0")
+            .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String contentRange = response.header("Content-Range");
+            if (contentRange != null && contentRange.contains("/")) {
+                String total = contentRange.substring(contentRange.indexOf('/') + 1);
+                if (!total.equals("*")) {
+                    return Long.parseLong(total);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "🔥 Content length probe failed: " + e.getMessage());
+        }
+        return -1;
+    }
+}
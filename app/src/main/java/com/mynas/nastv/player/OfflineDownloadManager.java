@@ -0,0 +1,678 @@
+package com.mynas.nastv.player;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DataSpec;
+import androidx.media3.datasource.cache.Cache;
+import androidx.media3.datasource.cache.CacheDataSink;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.CacheWriter;
+import androidx.media3.datasource.cache.NoOpCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.datasource.okhttp.OkHttpDataSource;
+
+import com.mynas.nastv.manager.MediaManager;
+import com.mynas.nastv.model.EpisodeListResponse;
+import com.mynas.nastv.model.PlayInfoResponse;
+import com.mynas.nastv.network.SharedHttpClient;
+import com.mynas.nastv.utils.SharedPreferencesManager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 📥 离线缓存 / 预热下载管理器
+ *
+ * 把整集视频（或后续 N 集）下载到独立的离线缓存区：
+ * - 离线缓存使用 NoOpCacheEvictor，存放在 filesDir 下，不参与播放缓存的 LRU 淘汰，切换剧集时也不会被清空
+ * - 按 2MB 块并行 Range 下载，交给共享的 RangeDownloadEngine 以后台优先级执行
+ * - 任务列表持久化到 SharedPreferences，重启后根据离线缓存的 span 索引跳过已下载的块继续下载
+ * - 支持限速；播放进行中自动降为单连接并限制带宽，不和播放抢 NAS 上行
+ *
+ * 播放时 CachedDataSourceFactory 优先从离线缓存读取，未命中再走播放缓存和网络。
+ */
+public final class OfflineDownloadManager {
+    private static final String TAG = "OfflineDownloadManager";
+
+    private static final String OFFLINE_CACHE_DIR = "offline_cache";
+    private static final String KEY_OFFLINE_JOBS = "offline_download_jobs";
+    private static final String KEY_BANDWIDTH_CAP = "offline_bandwidth_cap";
+
+    private static final int CHUNK_SIZE = VideoPrefetchService.CHUNK_SIZE;
+    private static final int MAX_PARALLEL_CHUNKS = 3;                    // 空闲时并行块数
+    private static final int PLAYBACK_PARALLEL_CHUNKS = 1;               // 播放时并行块数
+    private static final long PLAYBACK_BANDWIDTH_CAP = 2 * 1024 * 1024;  // 播放时最多 2MB/s
+    private static final int MAX_PASSES = 3;                             // 每个任务的最大重试轮数
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private static volatile OfflineDownloadManager instance;
+
+    private static volatile Cache offlineCache;
+    private static boolean offlineCacheInitFailed = false;
+
+    /**
+     * 下载任务（按 mediaGuid 唯一）
+     */
+    public static final class Job {
+        final String mediaGuid;
+        final String title;
+        volatile long contentLength;
+        volatile boolean completed;
+
+        Job(String mediaGuid, String title, long contentLength, boolean completed) {
+            this.mediaGuid = mediaGuid;
+            this.title = title;
+            this.contentLength = contentLength;
+            this.completed = completed;
+        }
+
+        public String getMediaGuid() {
+            return mediaGuid;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    private final Context context;
+    private final OkHttpClient httpClient;
+    private final RangeDownloadEngine engine = RangeDownloadEngine.getInstance();
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>(); // 由 this 保护
+    private final Object flightLock = new Object();
+    private int inFlight = 0;                                               // 由 flightLock 保护
+    private final List<RangeDownloadEngine.Task<Void>> chunkTasks = new ArrayList<>(); // 由 flightLock 保护
+    private final List<CacheWriter> chunkWriters = new ArrayList<>();       // 由 flightLock 保护
+    private final BandwidthLimiter limiter = new BandwidthLimiter();
+
+    private volatile boolean playbackActive = false;
+    private volatile long bandwidthCap;                                     // 字节/秒，0 表示不限速
+    private volatile Job currentJob;                                        // 由 this 写入
+    private Thread workerThread;                                            // 由 this 保护
+
+    public static OfflineDownloadManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OfflineDownloadManager.class) {
+                if (instance == null) {
+                    instance = new OfflineDownloadManager(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private OfflineDownloadManager(Context context) {
+        this.context = context;
+        this.httpClient = SharedHttpClient.newBuilder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .addInterceptor(RangeRequestSigner.INSTANCE)
+            .build();
+        this.bandwidthCap = SharedPreferencesManager.getInt(KEY_BANDWIDTH_CAP, 0) * 1024L * 1024L;
+        restoreJobs();
+    }
+
+    /**
+     * 离线缓存区（独立目录，不淘汰）；初始化失败返回 null
+     */
+    public static Cache getOfflineCache(Context context) {
+        if (offlineCacheInitFailed) {
+            return null;
+        }
+        synchronized (OfflineDownloadManager.class) {
+            if (offlineCache == null && !offlineCacheInitFailed) {
+                try {
+                    File cacheDir = new File(context.getFilesDir(), OFFLINE_CACHE_DIR);
+                    if (!cacheDir.exists()) {
+                        cacheDir.mkdirs();
+                    }
+                    offlineCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(),
+                        new StandaloneDatabaseProvider(context.getApplicationContext()));
+                    Log.d(TAG, "📥 Offline cache initialized: " + cacheDir.getAbsolutePath());
+                } catch (Exception e) {
+                    Log.e(TAG, "📥 Failed to create offline cache", e);
+                    offlineCacheInitFailed = true;
+                    return null;
+                }
+            }
+            return offlineCache;
+        }
+    }
+
+    /**
+     * 与 VideoPlayerActivity 使用相同的 cacheKey，播放时才能命中离线数据
+     */
+    public static String cacheKeyFor(String mediaGuid) {
+        return "video_" + mediaGuid;
+    }
+
+    private static String urlFor(String mediaGuid) {
+        return SharedPreferencesManager.getServerBaseUrl() + "/v/api/v1/media/range/" + mediaGuid +
+               "?direct_link_quality_index=0";
+    }
+
+    // ==================== 任务管理 ====================
+
+    /**
+     * 加入一个下载任务；已存在时忽略
+     */
+    public void enqueue(String mediaGuid, String title) {
+        if (mediaGuid == null || mediaGuid.isEmpty()) return;
+        synchronized (this) {
+            if (jobs.containsKey(mediaGuid)) {
+                Log.d(TAG, "📥 Already queued: " + title);
+                return;
+            }
+            jobs.put(mediaGuid, new Job(mediaGuid, title != null ? title : mediaGuid, -1, false));
+            saveJobs();
+        }
+        Log.d(TAG, "📥 Enqueued: " + title + " (" + mediaGuid + ")");
+        ensureWorker();
+    }
+
+    /**
+     * 从剧集列表中找到当前集之后的 count 集并加入下载
+     */
+    public void enqueueNextEpisodes(MediaManager mediaManager, String seasonGuid, int currentEpisodeNumber,
+                                    int count, MediaManager.MediaCallback<Integer> callback) {
+        mediaManager.getEpisodeList(seasonGuid, new MediaManager.MediaCallback<List<EpisodeListResponse.Episode>>() {
+            @Override
+            public void onSuccess(List<EpisodeListResponse.Episode> episodes) {
+                List<EpisodeListResponse.Episode> targets = new ArrayList<>();
+                if (episodes != null) {
+                    for (EpisodeListResponse.Episode episode : episodes) {
+                        if (episode.getEpisodeNumber() > currentEpisodeNumber && targets.size() < count) {
+                            targets.add(episode);
+                        }
+                    }
+                }
+                for (EpisodeListResponse.Episode episode : targets) {
+                    final String title = episode.getTitle() != null ? episode.getTitle()
+                                                                   : "第" + episode.getEpisodeNumber() + "集";
+                    mediaManager.getPlayInfo(episode.getGuid(), new MediaManager.MediaCallback<PlayInfoResponse>() {
+                        @Override
+                        public void onSuccess(PlayInfoResponse data) {
+                            enqueue(data.getData().getMediaGuid(), title);
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            Log.e(TAG, "📥 Resolve play info failed for " + title + ": " + error);
+                        }
+                    });
+                }
+                if (callback != null) callback.onSuccess(targets.size());
+            }
+
+            @Override
+            public void onRefreshed(List<EpisodeListResponse.Episode> episodes) {
+                // 已按缓存的列表加入下载，刷新结果不再重复入队
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "📥 Load episode list failed: " + error);
+                if (callback != null) callback.onError(error);
+            }
+        });
+    }
+
+    /**
+     * 取消任务并删除已下载的数据
+     */
+    public void remove(String mediaGuid) {
+        boolean downloading;
+        synchronized (this) {
+            Job job = jobs.remove(mediaGuid);
+            if (job == null) return;
+            saveJobs();
+            downloading = job == currentJob;
+        }
+        if (downloading) {
+            // 正在下载：取消进行中的块，数据由下载线程等写入停下后再删除（见 workerLoop）
+            cancelInFlightChunks();
+        } else {
+            removeResource(mediaGuid);
+        }
+        Log.d(TAG, "📥 Removed: " + mediaGuid);
+    }
+
+    private void removeResource(String mediaGuid) {
+        Cache cache = getOfflineCache(context);
+        if (cache == null) return;
+        try {
+            cache.removeResource(cacheKeyFor(mediaGuid));
+        } catch (Exception e) {
+            Log.e(TAG, "📥 Remove resource failed: " + e.getMessage());
+        }
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * 该 cacheKey 是否已完整下载到离线缓存
+     */
+    public boolean isComplete(String cacheKey) {
+        Job job = findJobByCacheKey(cacheKey);
+        return job != null && job.completed && getDownloadedBytes(job) >= job.contentLength;
+    }
+
+    /**
+     * 下载进度百分比；未知时返回 0
+     */
+    public int getProgress(String mediaGuid) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(mediaGuid);
+        }
+        if (job == null || job.contentLength <= 0) return 0;
+        return (int) Math.min(100, getDownloadedBytes(job) * 100 / job.contentLength);
+    }
+
+    public String getStatusSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Job job : getJobs()) {
+            sb.append(job.completed ? "✅ " : job == currentJob ? "⬇️ " : "⏳ ")
+              .append(job.title).append("  ").append(getProgress(job.mediaGuid)).append("%\n");
+        }
+        long cap = effectiveBandwidthCap();
+        sb.append(playbackActive ? "播放中（已限速）" : "空闲")
+          .append(" | 限速: ").append(cap > 0 ? (cap / 1024 / 1024) + "MB/s" : "不限");
+        return sb.toString();
+    }
+
+    private long getDownloadedBytes(Job job) {
+        Cache cache = getOfflineCache(context);
+        if (cache == null) return 0;
+        CachedChunkIndex index = CachedChunkIndex.acquire(cache, cacheKeyFor(job.mediaGuid), CHUNK_SIZE);
+        try {
+            return index.getTotalCachedBytes();
+        } finally {
+            index.release();
+        }
+    }
+
+    private synchronized Job findJobByCacheKey(String cacheKey) {
+        for (Job job : jobs.values()) {
+            if (cacheKeyFor(job.mediaGuid).equals(cacheKey)) return job;
+        }
+        return null;
+    }
+
+    // ==================== 节流 ====================
+
+    /**
+     * 播放器进入/离开播放状态时调用
+     */
+    public void setPlaybackActive(boolean active) {
+        if (playbackActive == active) return;
+        playbackActive = active;
+        Log.d(TAG, "📥 Playback " + (active ? "started, throttling" : "stopped, full speed"));
+        synchronized (flightLock) {
+            flightLock.notifyAll();
+        }
+    }
+
+    /**
+     * 设置限速（MB/s），0 表示不限速
+     */
+    public void setBandwidthCapMBps(int mbps) {
+        bandwidthCap = Math.max(0, mbps) * 1024L * 1024L;
+        SharedPreferencesManager.putInt(KEY_BANDWIDTH_CAP, Math.max(0, mbps));
+    }
+
+    public int getBandwidthCapMBps() {
+        return (int) (bandwidthCap / 1024 / 1024);
+    }
+
+    private long effectiveBandwidthCap() {
+        long cap = bandwidthCap;
+        if (playbackActive) {
+            cap = cap > 0 ? Math.min(cap, PLAYBACK_BANDWIDTH_CAP) : PLAYBACK_BANDWIDTH_CAP;
+        }
+        return cap;
+    }
+
+    private int parallelLimit() {
+        return playbackActive ? PLAYBACK_PARALLEL_CHUNKS : MAX_PARALLEL_CHUNKS;
+    }
+
+    // ==================== 下载线程 ====================
+
+    private synchronized void ensureWorker() {
+        if (workerThread != null && workerThread.isAlive()) return;
+        workerThread = new Thread(this::workerLoop, "OfflineDownloader");
+        workerThread.setPriority(Thread.MIN_PRIORITY);
+        workerThread.start();
+    }
+
+    /**
+     * 取下一个待下载的任务；没有时在同一个锁内注销下载线程，
+     * 这样之后的 enqueue 一定能在 ensureWorker 里启动新线程，不会丢任务
+     */
+    private synchronized Job takeNextJob(List<Job> skipped) {
+        for (Job job : jobs.values()) {
+            if (!job.completed && !skipped.contains(job)) {
+                currentJob = job;
+                return job;
+            }
+        }
+        currentJob = null;
+        workerThread = null;
+        return null;
+    }
+
+    private void workerLoop() {
+        Log.d(TAG, "📥 Worker started");
+        List<Job> skipped = new ArrayList<>();
+        Job job;
+        try {
+            while ((job = takeNextJob(skipped)) != null) {
+                boolean done = false;
+                try {
+                    done = downloadJob(job);
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "📥 Worker interrupted");
+                    break;
+                } catch (Exception e) {
+                    Log.e(TAG, "📥 Job failed: " + job.title, e);
+                }
+                if (!isQueued(job)) {
+                    // 任务已被删除：等取消的块停止写入后再删除数据
+                    awaitCancelledWriters();
+                    removeResource(job.mediaGuid);
+                } else if (done) {
+                    job.completed = true;
+                    synchronized (this) {
+                        saveJobs();
+                    }
+                    Log.d(TAG, "📥 Completed: " + job.title);
+                } else {
+                    // 本次运行不再重试，下次启动时继续
+                    skipped.add(job);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                // 被中断退出时 takeNextJob 没有机会注销
+                if (workerThread == Thread.currentThread()) {
+                    currentJob = null;
+                    workerThread = null;
+                }
+            }
+        }
+        Log.d(TAG, "📥 Worker exited");
+    }
+
+    /**
+     * 下载一个任务的全部块，返回是否完整
+     */
+    private boolean downloadJob(Job job) throws Exception {
+        Cache cache = getOfflineCache(context);
+        if (cache == null) return false;
+        String url = urlFor(job.mediaGuid);
+        String cacheKey = cacheKeyFor(job.mediaGuid);
+
+        long contentLength = fetchContentLength(url);
+        if (contentLength <= 0) {
+            Log.e(TAG, "📥 Cannot get content length: " + job.title);
+            return false;
+        }
+        job.contentLength = contentLength;
+        synchronized (this) {
+            saveJobs();
+        }
+        int totalChunks = (int) ((contentLength + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        CacheDataSource.Factory writerFactory = new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(new OkHttpDataSource.Factory(httpClient))
+            .setCacheKeyFactory(dataSpec -> cacheKey)
+            .setCacheWriteDataSinkFactory(new CacheDataSink.Factory().setCache(cache).setFragmentSize(CHUNK_SIZE)
+                .setBufferSize(0))
+            .setFlags(CacheDataSource.FLAG_BLOCK_ON_CACHE);
+
+        CachedChunkIndex index = CachedChunkIndex.acquire(cache, cacheKey, CHUNK_SIZE);
+        try {
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                if (!isQueued(job)) return false;
+                int missing = 0;
+                // 已缓存的块直接跳过（断点续传）
+                for (int chunk = 0; chunk < totalChunks; chunk++) {
+                    if (!isQueued(job)) return false;
+                    long start = (long) chunk * CHUNK_SIZE;
+                    long length = Math.min(CHUNK_SIZE, contentLength - start);
+                    if (index.getChunkCachedBytes(chunk) >= length) continue;
+                    missing++;
+                    acquireSlot();
+                    submitChunk(writerFactory, url, cacheKey, start, length);
+                }
+                awaitAllChunks();
+                if (index.getTotalCachedBytes() >= contentLength) {
+                    return true;
+                }
+                Log.e(TAG, "📥 Pass " + pass + " incomplete for " + job.title + ", missing chunks=" + missing);
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+            return false;
+        } finally {
+            index.release();
+        }
+    }
+
+    private synchronized boolean isQueued(Job job) {
+        return jobs.get(job.mediaGuid) == job;
+    }
+
+    private void acquireSlot() throws InterruptedException {
+        synchronized (flightLock) {
+            while (inFlight >= parallelLimit()) {
+                flightLock.wait();
+            }
+            inFlight++;
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (flightLock) {
+            inFlight--;
+            flightLock.notifyAll();
+        }
+    }
+
+    private void awaitAllChunks() throws InterruptedException {
+        synchronized (flightLock) {
+            while (inFlight > 0) {
+                flightLock.wait();
+            }
+        }
+    }
+
+    /**
+     * 取消的任务会立即回调完成，但执行线程里的 CacheWriter 要到下一次读写才停下
+     */
+    private void awaitCancelledWriters() {
+        synchronized (flightLock) {
+            try {
+                while (inFlight > 0 || !chunkWriters.isEmpty()) {
+                    flightLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 取消当前任务所有进行中和排队中的块
+     */
+    private void cancelInFlightChunks() {
+        List<RangeDownloadEngine.Task<Void>> tasks;
+        List<CacheWriter> writers;
+        synchronized (flightLock) {
+            tasks = new ArrayList<>(chunkTasks);
+            writers = new ArrayList<>(chunkWriters);
+        }
+        for (CacheWriter writer : writers) {
+            writer.cancel();
+        }
+        for (RangeDownloadEngine.Task<Void> task : tasks) {
+            engine.release(task);
+        }
+        Log.d(TAG, "📥 Cancelled " + tasks.size() + " chunks");
+    }
+
+    private void submitChunk(CacheDataSource.Factory writerFactory, String url, String cacheKey,
+                             long start, long length) {
+        RangeDownloadEngine.Task<Void> task = engine.submit("offline:" + cacheKey, start, start + length - 1,
+            RangeDownloadEngine.Priority.BACKGROUND, () -> {
+                DataSpec dataSpec = new DataSpec.Builder()
+                    .setUri(url)
+                    .setPosition(start)
+                    .setLength(length)
+                    .setKey(cacheKey)
+                    .build();
+                // 写缓存过程中按限速器节流
+                CacheWriter writer = new CacheWriter(writerFactory.createDataSource(), dataSpec,
+                    RangeDownloadEngine.copyBuffer(),
+                    (requestLength, bytesCached, newBytesCached) -> limiter.acquire(newBytesCached));
+                synchronized (flightLock) {
+                    chunkWriters.add(writer);
+                }
+                try {
+                    writer.cache();
+                } finally {
+                    synchronized (flightLock) {
+                        chunkWriters.remove(writer);
+                        flightLock.notifyAll();
+                    }
+                }
+                return null;
+            });
+        synchronized (flightLock) {
+            chunkTasks.add(task);
+        }
+        task.addListener(t -> {
+            if (!t.isCancelled()) {
+                try {
+                    t.get();
+                } catch (Exception e) {
+                    Log.e(TAG, "📥 Chunk at " + start + " failed: " + e.getMessage());
+                }
+            }
+            synchronized (flightLock) {
+                chunkTasks.remove(t);
+            }
+            releaseSlot();
+        });
+    }
+
+    private long fetchContentLength(String url) {
+        Request request = new Request.Builder()
+            .url(url)
+            .header("Range", "bytes=0-0")
+            .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String contentRange = response.header("Content-Range");
+            if (contentRange != null && contentRange.contains("/")) {
+                String total = contentRange.substring(contentRange.indexOf('/') + 1);
+                if (!total.equals("*")) {
+                    return Long.parseLong(total);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "📥 Content length probe failed: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    // ==================== 持久化 ====================
+
+    /**
+     * 每行一个任务：mediaGuid \t contentLength \t completed \t title
+     */
+    private void saveJobs() {
+        StringBuilder sb = new StringBuilder();
+        for (Job job : jobs.values()) {
+            sb.append(job.mediaGuid).append('\t')
+              .append(job.contentLength).append('\t')
+              .append(job.completed ? 1 : 0).append('\t')
+              .append(job.title.replace('\t', ' ').replace('\n', ' ')).append('\n');
+        }
+        SharedPreferencesManager.putString(KEY_OFFLINE_JOBS, sb.toString());
+    }
+
+    private void restoreJobs() {
+        String saved = SharedPreferencesManager.getString(KEY_OFFLINE_JOBS, "");
+        boolean hasPending = false;
+        synchronized (this) {
+            for (String line : saved.split("\n")) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length < 4) continue;
+                try {
+                    Job job = new Job(parts[0], parts[3], Long.parseLong(parts[1]), "1".equals(parts[2]));
+                    jobs.put(job.mediaGuid, job);
+                    hasPending |= !job.completed;
+                } catch (NumberFormatException e) {
+                    Log.e(TAG, "📥 Bad job record: " + line);
+                }
+            }
+        }
+        Log.d(TAG, "📥 Restored " + jobs.size() + " jobs");
+        if (hasPending) {
+            ensureWorker();
+        }
+    }
+
+    /**
+     * 令牌桶限速，上限随播放状态实时变化
+     */
+    private final class BandwidthLimiter {
+        private long availableBytes = 0;
+        private long lastRefillTime = System.currentTimeMillis();
+
+        void acquire(long bytes) {
+            if (bytes <= 0) return;
+            try {
+                while (true) {
+                    long cap = effectiveBandwidthCap();
+                    long waitMs;
+                    synchronized (this) {
+                        if (cap <= 0) {
+                            availableBytes = 0;
+                            return;
+                        }
+                        long now = System.currentTimeMillis();
+                        // 最多积攒1秒的额度
+                        availableBytes = Math.min(cap, availableBytes + (now - lastRefillTime) * cap / 1000);
+                        lastRefillTime = now;
+                        if (availableBytes >= bytes || availableBytes >= cap) {
+                            availableBytes -= bytes;
+                            return;
+                        }
+                        waitMs = Math.max(10, (bytes - availableBytes) * 1000 / cap);
+                    }
+                    Thread.sleep(Math.min(waitMs, 1000));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
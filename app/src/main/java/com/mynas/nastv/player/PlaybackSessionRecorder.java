@@ -0,0 +1,459 @@
+package com.mynas.nastv.player;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.media3.common.Format;
+import androidx.media3.common.Player;
+import androidx.media3.exoplayer.DecoderReuseEvaluation;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+
+import com.mynas.nastv.network.JsonAdapters;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📊 单次播放会话的体验指标（QoE）
+ *
+ * 数据来源：
+ * - ExoPlayer AnalyticsListener：首帧、解码器初始化、卡顿、码率、丢帧
+ * - 预缓存服务：文件大小探测耗时、每个块的首字节时间和总耗时、吞吐量控制器最后的决策
+ * - 缓存数据源：ExoPlayer 读取的字节中多少来自磁盘缓存、多少来自网络
+ * - 播放页：play/info 接口耗时、等待关键块耗时
+ *
+ * 首帧时间拆分为 接口 → 探测 → 关键块等待 → prepare 到首帧（含解码器初始化），
+ * 可以直接看出起播慢是 NAS 接口、直链还是解码器的问题。
+ * 会话结束后写入固定槽位的环形文件，只保留最近 {@link #MAX_SESSIONS} 次。
+ */
+public final class PlaybackSessionRecorder implements AnalyticsListener {
+    private static final String TAG = "PlaybackSessionRecorder";
+
+    static final int MAX_SESSIONS = 20;
+    private static final String FILE_NAME = "qoe_sessions.bin";
+    private static final int FILE_MAGIC = 0x514F4531;   // "QOE1"
+    private static final int HEADER_SIZE = 12;          // magic + 下一个槽位 + 已写入数量
+    private static final int SLOT_SIZE = 2048;
+
+    // 块耗时直方图的桶上界（毫秒），最后一个桶为 >= 最后一个上界
+    static final int[] LATENCY_BUCKETS_MS = {100, 250, 500, 1000, 2000, 5000};
+
+    private static final Object fileLock = new Object();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "QoeWriter");
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * 持久化的会话快照（字段名即 JSON 键）
+     */
+    static final class Session {
+        long startedAt;
+        String title;
+        String mediaGuid;
+
+        long ttffMs = -1;
+        long playInfoMs = -1;
+        long probeMs = -1;          // -1 表示未探测（已预热或离线播放）
+        long criticalWaitMs = -1;
+        long prepareToFirstFrameMs = -1;
+        long decoderInitMs = -1;
+        String decoderName;
+
+        int rebufferCount;
+        long rebufferMs;
+        long playedMs;
+        int droppedFrames;
+
+        int videoBitrate;
+        long bandwidthEstimate;
+
+        long cacheBytes;
+        long networkBytes;
+        long prefetchBytes;
+
+        int chunkCount;
+        int chunkFailures;
+        int[] chunkTtfbHistogram = new int[LATENCY_BUCKETS_MS.length + 1];
+        int[] chunkTotalHistogram = new int[LATENCY_BUCKETS_MS.length + 1];
+
+        int prefetchConnections;     // 0 表示本次没有预缓存下载
+        int prefetchRequestBytes;
+        long perConnectionBps;
+        long avgChunkTtfbMs;
+
+        Session copy() {
+            Session copy = new Session();
+            copy.startedAt = startedAt;
+            copy.title = title;
+            copy.mediaGuid = mediaGuid;
+            copy.ttffMs = ttffMs;
+            copy.playInfoMs = playInfoMs;
+            copy.probeMs = probeMs;
+            copy.criticalWaitMs = criticalWaitMs;
+            copy.prepareToFirstFrameMs = prepareToFirstFrameMs;
+            copy.decoderInitMs = decoderInitMs;
+            copy.decoderName = decoderName;
+            copy.rebufferCount = rebufferCount;
+            copy.rebufferMs = rebufferMs;
+            copy.playedMs = playedMs;
+            copy.droppedFrames = droppedFrames;
+            copy.videoBitrate = videoBitrate;
+            copy.bandwidthEstimate = bandwidthEstimate;
+            copy.cacheBytes = cacheBytes;
+            copy.networkBytes = networkBytes;
+            copy.prefetchBytes = prefetchBytes;
+            copy.chunkCount = chunkCount;
+            copy.chunkFailures = chunkFailures;
+            copy.chunkTtfbHistogram = chunkTtfbHistogram.clone();
+            copy.chunkTotalHistogram = chunkTotalHistogram.clone();
+            copy.prefetchConnections = prefetchConnections;
+            copy.prefetchRequestBytes = prefetchRequestBytes;
+            copy.perConnectionBps = perConnectionBps;
+            copy.avgChunkTtfbMs = avgChunkTtfbMs;
+            return copy;
+        }
+    }
+
+    private final Context context;
+    private final long sessionStartElapsed;
+
+    // 以下由 this 保护
+    private final Session session = new Session();
+    private long prepareElapsed = -1;
+    private long rebufferStartElapsed = -1;
+    private long playingSinceElapsed = -1;
+    private boolean firstFrameRendered = false;
+    private boolean seekPending = false;  // 拖动进度引起的缓冲不算卡顿
+    private boolean finished = false;
+
+    // 数据源线程上的高频计数，不加锁
+    private final AtomicLong cacheBytes = new AtomicLong();
+    private final AtomicLong networkBytes = new AtomicLong();
+
+    /**
+     * @param playInfoMs 启动前调用 play/info 接口的耗时，未知时传 -1；会计入首帧时间
+     */
+    public PlaybackSessionRecorder(Context context, String title, String mediaGuid, long playInfoMs) {
+        this.context = context.getApplicationContext();
+        this.sessionStartElapsed = SystemClock.elapsedRealtime() - Math.max(0, playInfoMs);
+        session.startedAt = System.currentTimeMillis();
+        session.title = title;
+        session.mediaGuid = mediaGuid;
+        session.playInfoMs = playInfoMs;
+    }
+
+    // ==================== 起播阶段 ====================
+
+    synchronized void recordProbe(long elapsedMs) {
+        session.probeMs = elapsedMs;
+    }
+
+    public synchronized void recordCriticalWait(long elapsedMs) {
+        session.criticalWaitMs = elapsedMs;
+    }
+
+    // ==================== 数据来源 ====================
+
+    void addCacheBytes(long bytes) {
+        cacheBytes.addAndGet(bytes);
+    }
+
+    void addNetworkBytes(long bytes) {
+        networkBytes.addAndGet(bytes);
+    }
+
+    /**
+     * 预缓存块下载结果
+     *
+     * @param ttfbMs 首批数据写入缓存的时间，失败时为 -1
+     */
+    synchronized void recordChunk(long bytes, long ttfbMs, long totalMs, boolean success) {
+        if (!success) {
+            session.chunkFailures++;
+            return;
+        }
+        session.chunkCount++;
+        session.prefetchBytes += bytes;
+        if (ttfbMs >= 0) {
+            session.chunkTtfbHistogram[bucketFor(ttfbMs)]++;
+        }
+        session.chunkTotalHistogram[bucketFor(totalMs)]++;
+    }
+
+    /**
+     * 吞吐量控制器的当前决策（每个块下载完成后更新，会话里保留最后一次）
+     */
+    synchronized void recordThroughput(int connections, int requestBytes, double perConnectionBps, double ttfbMs) {
+        session.prefetchConnections = connections;
+        session.prefetchRequestBytes = requestBytes;
+        session.perConnectionBps = (long) perConnectionBps;
+        session.avgChunkTtfbMs = (long) ttfbMs;
+    }
+
+    static int bucketFor(long ms) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (ms < LATENCY_BUCKETS_MS[i]) return i;
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    // ==================== AnalyticsListener ====================
+
+    @Override
+    public synchronized void onPlaybackStateChanged(EventTime eventTime, int state) {
+        long now = SystemClock.elapsedRealtime();
+        if (state == Player.STATE_BUFFERING) {
+            if (prepareElapsed < 0) {
+                // IDLE → BUFFERING 即 prepare() 被调用
+                prepareElapsed = now;
+            }
+            if (firstFrameRendered && !seekPending && rebufferStartElapsed < 0) {
+                rebufferStartElapsed = now;
+                session.rebufferCount++;
+            }
+            return;
+        }
+        seekPending = false;
+        if (rebufferStartElapsed >= 0) {
+            session.rebufferMs += now - rebufferStartElapsed;
+            rebufferStartElapsed = -1;
+        }
+    }
+
+    @Override
+    public synchronized void onPositionDiscontinuity(EventTime eventTime, Player.PositionInfo oldPosition,
+                                                     Player.PositionInfo newPosition, int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            seekPending = true;
+        }
+    }
+
+    @Override
+    public synchronized void onIsPlayingChanged(EventTime eventTime, boolean isPlaying) {
+        long now = SystemClock.elapsedRealtime();
+        if (isPlaying) {
+            playingSinceElapsed = now;
+        } else if (playingSinceElapsed >= 0) {
+            session.playedMs += now - playingSinceElapsed;
+            playingSinceElapsed = -1;
+        }
+    }
+
+    @Override
+    public synchronized void onRenderedFirstFrame(EventTime eventTime, Object output, long renderTimeMs) {
+        if (firstFrameRendered) return;
+        firstFrameRendered = true;
+        long now = SystemClock.elapsedRealtime();
+        session.ttffMs = now - sessionStartElapsed;
+        if (prepareElapsed >= 0) {
+            session.prepareToFirstFrameMs = now - prepareElapsed;
+        }
+        Log.d(TAG, "📊 First frame: " + describeStartup(session));
+    }
+
+    @Override
+    public synchronized void onVideoDecoderInitialized(EventTime eventTime, String decoderName,
+                                                       long initializedTimestampMs, long initializationDurationMs) {
+        if (session.decoderInitMs < 0) {
+            session.decoderInitMs = initializationDurationMs;
+            session.decoderName = decoderName;
+        }
+    }
+
+    @Override
+    public synchronized void onVideoInputFormatChanged(EventTime eventTime, Format format,
+                                                       @Nullable DecoderReuseEvaluation decoderReuseEvaluation) {
+        if (format.bitrate > 0) {
+            session.videoBitrate = format.bitrate;
+        }
+    }
+
+    @Override
+    public synchronized void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs,
+                                                 long totalBytesLoaded, long bitrateEstimate) {
+        session.bandwidthEstimate = bitrateEstimate;
+    }
+
+    @Override
+    public synchronized void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        session.droppedFrames += droppedFrames;
+    }
+
+    // ==================== 结束与展示 ====================
+
+    /**
+     * 结束会话并写入环形文件（可重复调用，只写一次）
+     */
+    public void finish() {
+        final Session snapshot;
+        synchronized (this) {
+            if (finished) return;
+            finished = true;
+            snapshot = snapshotLocked();
+        }
+        Log.d(TAG, "📊 Session finished: " + describeSession(snapshot).replace('\n', ' '));
+        writer.execute(() -> append(context, snapshot));
+    }
+
+    /**
+     * 当前会话的实时摘要
+     */
+    public synchronized String describe() {
+        return describeSession(snapshotLocked());
+    }
+
+    private Session snapshotLocked() {
+        long now = SystemClock.elapsedRealtime();
+        Session copy = session.copy();
+        if (playingSinceElapsed >= 0) {
+            copy.playedMs += now - playingSinceElapsed;
+        }
+        if (rebufferStartElapsed >= 0) {
+            copy.rebufferMs += now - rebufferStartElapsed;
+        }
+        copy.cacheBytes = cacheBytes.get();
+        copy.networkBytes = networkBytes.get();
+        return copy;
+    }
+
+    /**
+     * 最近的会话摘要（新的在前）
+     */
+    public static String describeRecent(Context context) {
+        List<Session> sessions = readAll(context.getApplicationContext());
+        if (sessions.isEmpty()) return "暂无记录";
+        StringBuilder sb = new StringBuilder();
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            sb.append(describeSession(sessions.get(i))).append("\n\n");
+        }
+        return sb.toString().trim();
+    }
+
+    static String describeSession(Session s) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("MM-dd HH:mm", Locale.US).format(new Date(s.startedAt)))
+          .append(' ').append(s.title != null ? s.title : "").append('\n');
+        sb.append(describeStartup(s)).append('\n');
+        double ratio = s.playedMs + s.rebufferMs > 0 ? s.rebufferMs * 100.0 / (s.playedMs + s.rebufferMs) : 0;
+        sb.append(String.format(Locale.US, "卡顿 %d次 %.1fs (%.2f%%) | 播放 %ds | 丢帧 %d",
+            s.rebufferCount, s.rebufferMs / 1000.0, ratio, s.playedMs / 1000, s.droppedFrames)).append('\n');
+        long total = s.cacheBytes + s.networkBytes;
+        sb.append(String.format(Locale.US, "码率 %.1fMbps | 带宽 %.1fMbps | 缓存命中 %d%% (%dMB/%dMB) | 预缓存 %dMB",
+            s.videoBitrate / 1e6, s.bandwidthEstimate / 1e6,
+            total > 0 ? s.cacheBytes * 100 / total : 0, s.cacheBytes / 1024 / 1024, total / 1024 / 1024,
+            s.prefetchBytes / 1024 / 1024)).append('\n');
+        sb.append("块 ").append(s.chunkCount).append(" 失败 ").append(s.chunkFailures)
+          .append(" | 首字节 ").append(formatHistogram(s.chunkTtfbHistogram))
+          .append(" | 总耗时 ").append(formatHistogram(s.chunkTotalHistogram));
+        if (s.prefetchConnections > 0) {
+            sb.append('\n').append(String.format(Locale.US, "预缓存并发 %d | 请求 %dMB | 单连接 %.1fMbps | 首字节 %dms",
+                s.prefetchConnections, s.prefetchRequestBytes / 1024 / 1024,
+                s.perConnectionBps * 8 / 1e6, s.avgChunkTtfbMs));
+        }
+        return sb.toString();
+    }
+
+    private static String describeStartup(Session s) {
+        return "首帧 " + formatMs(s.ttffMs) +
+               " = 接口 " + formatMs(s.playInfoMs) +
+               " + 探测 " + formatMs(s.probeMs) +
+               " + 关键块 " + formatMs(s.criticalWaitMs) +
+               " + 起播 " + formatMs(s.prepareToFirstFrameMs) +
+               " (解码器 " + formatMs(s.decoderInitMs) + ")";
+    }
+
+    private static String formatMs(long ms) {
+        return ms < 0 ? "-" : ms + "ms";
+    }
+
+    static String formatHistogram(int[] histogram) {
+        if (histogram == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(i < LATENCY_BUCKETS_MS.length ? "<" + LATENCY_BUCKETS_MS[i] : ">=" + LATENCY_BUCKETS_MS[i - 1])
+              .append(':').append(histogram[i]);
+        }
+        return sb.toString();
+    }
+
+    // ==================== 环形文件 ====================
+    // 头部：magic(4) + 下一个写入槽位(4) + 已写入数量(4)，之后 MAX_SESSIONS 个定长槽位：长度(2) + JSON
+
+    private static void append(Context context, Session session) {
+        byte[] json = JsonAdapters.gson().toJson(session).getBytes(StandardCharsets.UTF_8);
+        if (json.length > SLOT_SIZE - 2) {
+            Log.e(TAG, "📊 Session too large, dropped: " + json.length);
+            return;
+        }
+        synchronized (fileLock) {
+            try (RandomAccessFile file = new RandomAccessFile(new File(context.getFilesDir(), FILE_NAME), "rw")) {
+                int next = 0;
+                int count = 0;
+                if (file.length() >= HEADER_SIZE) {
+                    file.seek(0);
+                    if (file.readInt() == FILE_MAGIC) {
+                        next = file.readInt();
+                        count = file.readInt();
+                    }
+                }
+                if (next < 0 || next >= MAX_SESSIONS) next = 0;
+                file.seek(HEADER_SIZE + (long) next * SLOT_SIZE);
+                file.writeShort(json.length);
+                file.write(json);
+                file.seek(0);
+                file.writeInt(FILE_MAGIC);
+                file.writeInt((next + 1) % MAX_SESSIONS);
+                file.writeInt(Math.min(MAX_SESSIONS, count + 1));
+            } catch (Exception e) {
+                Log.e(TAG, "📊 Save session failed", e);
+            }
+        }
+    }
+
+    /**
+     * 读取所有会话，按时间从旧到新
+     */
+    static List<Session> readAll(Context context) {
+        List<Session> sessions = new ArrayList<>();
+        File path = new File(context.getFilesDir(), FILE_NAME);
+        if (!path.exists()) return sessions;
+        synchronized (fileLock) {
+            try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+                if (file.length() < HEADER_SIZE || file.readInt() != FILE_MAGIC) return sessions;
+                int next = file.readInt();
+                int count = Math.min(MAX_SESSIONS, file.readInt());
+                for (int i = 0; i < count; i++) {
+                    int slot = ((next - count + i) % MAX_SESSIONS + MAX_SESSIONS) % MAX_SESSIONS;
+                    file.seek(HEADER_SIZE + (long) slot * SLOT_SIZE);
+                    int length = file.readUnsignedShort();
+                    if (length <= 0 || length > SLOT_SIZE - 2) continue;
+                    byte[] json = new byte[length];
+                    file.readFully(json);
+                    try {
+                        Session session = JsonAdapters.gson().fromJson(new String(json, StandardCharsets.UTF_8), Session.class);
+                        if (session != null) sessions.add(session);
+                    } catch (Exception e) {
+                        // 损坏的槽位直接跳过
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "📊 Read sessions failed", e);
+            }
+        }
+        return sessions;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mynas.nastv.player;
 
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
@@ -8,6 +9,7 @@ import com.mynas.nastv.manager.MediaManager;
 import com.mynas.nastv.model.PlayRecordRequest;
 import com.mynas.nastv.network.ApiClient;
 import com.mynas.nastv.network.ApiService;
+import com.mynas.nastv.network.ResponseCache;
 import com.mynas.nastv.model.BaseResponse;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 import com.mynas.nastv.utils.SignatureUtils;
@@ -34,6 +36,7 @@ public class ProgressRecorder {
     private static final String TAG = "ProgressRecorder";
     private static final long RECORD_INTERVAL_MS = 10000; // 10秒
     
+    private final Context context;
     private final Handler handler;
     private final Runnable recordRunnable;
     
@@ -49,7 +52,8 @@ public class ProgressRecorder {
     
     private boolean isRecording = false;
     
-    public ProgressRecorder() {
+    public ProgressRecorder(Context context) {
+        this.context = context.getApplicationContext();
         this.handler = new Handler(Looper.getMainLooper());
         this.recordRunnable = new Runnable() {
             @Override
@@ -189,6 +193,8 @@ public class ProgressRecorder {
                         BaseResponse<Object> res = response.body();
                         if (res.getCode() == 0) {
                             Log.d(TAG, "✅ Progress recorded: " + currentPosition + "s / " + duration + "s");
+                            // 列表和详情里的观看进度已变，缓存不能再用
+                            ResponseCache.getInstance(context).invalidateUserState();
                         } else {
                             Log.w(TAG, "⚠️ Record failed: " + res.getMessage());
                         }
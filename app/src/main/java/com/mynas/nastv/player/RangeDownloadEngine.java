@@ -0,0 +1,319 @@
+package com.mynas.nastv.player;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🚀 进程级 Range 下载引擎
+ *
+ * 预缓存调度、拖动预取、下一集预热和离线下载共用同一个引擎：
+ * - 一个有界的共享线程池，切换剧集时不再各开一组线程
+ * - 相同 (cacheKey, 字节范围) 的请求在下载期间只会发出一次，后来者直接复用结果
+ * - 三档优先级：播放头关键块 > 预读 > 后台，高优先级请求可以提升排队中的同范围任务
+ * - 优先级不只决定排队顺序：预读和后台任务最多占用 WORKER_COUNT - CRITICAL_RESERVED_WORKERS 个线程，
+ *   后台任务另有 MAX_BACKGROUND_WORKERS 的上限。下一集预热、离线下载一次排入很多块时，
+ *   拖动目标的关键块仍有空闲线程可用，不会排在几 MB 的后台传输后面
+ *
+ * 同一个 cacheKey 下的请求必须产出同一种结果（目前都是通过 CacheWriter 写入缓存）。
+ * CacheWriter 的拷贝缓冲区用 {@link #copyBuffer()} 按工作线程复用，不再每块分配一次。
+ */
+public final class RangeDownloadEngine {
+    private static final String TAG = "RangeDownloadEngine";
+
+    private static final int WORKER_COUNT = 6;              // 全局下载线程上限
+    private static final long WORKER_KEEP_ALIVE_SEC = 30;   // 空闲线程回收时间
+    private static final int CRITICAL_RESERVED_WORKERS = 2; // 只给 CRITICAL 任务用的线程数
+    private static final int MAX_BACKGROUND_WORKERS = 3;    // 同时运行的 BACKGROUND 任务上限
+    private static final int COPY_BUFFER_SIZE = 128 * 1024; // 与 CacheWriter 默认的临时缓冲区一样大
+
+    // 每个工作线程一块，线程回收时随线程释放
+    private static final ThreadLocal<byte[]> COPY_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[COPY_BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * 下载优先级（数值越小越优先）
+     */
+    public enum Priority {
+        CRITICAL,    // 播放头正在等待的数据
+        READ_AHEAD,  // 播放头前方的预读数据
+        BACKGROUND   // 远期预缓存 / 离线下载
+    }
+
+    /**
+     * 实际执行下载的回调，在引擎工作线程中调用
+     */
+    public interface Fetcher<T> {
+        T fetch() throws Exception;
+    }
+
+    /**
+     * 下载完成回调（成功、失败或取消都会回调一次）
+     */
+    public interface Listener<T> {
+        void onComplete(Task<T> task);
+    }
+
+    private static volatile RangeDownloadEngine instance;
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<RangeKey, Task<?>> inFlight = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    // 以下由 lock 保护：等待分配线程的任务，以及已交给线程池的任务数（按交出时的优先级统计）
+    private final PriorityQueue<Task<?>> pending = new PriorityQueue<>();
+    private final int[] dispatchedByPriority = new int[Priority.values().length];
+    private int dispatched = 0;
+
+    /**
+     * 当前线程复用的拷贝缓冲区，传给 CacheWriter 的 temporaryBuffer
+     *
+     * 只在 {@link Fetcher#fetch()} 里使用，任务结束后不能再持有
+     */
+    public static byte[] copyBuffer() {
+        return COPY_BUFFER.get();
+    }
+
+    public static RangeDownloadEngine getInstance() {
+        if (instance == null) {
+            synchronized (RangeDownloadEngine.class) {
+                if (instance == null) {
+                    instance = new RangeDownloadEngine();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private RangeDownloadEngine() {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "RangeDL-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = new ThreadPoolExecutor(
+            WORKER_COUNT, WORKER_COUNT,
+            WORKER_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        Log.d(TAG, "🚀 Range download engine created, workers=" + WORKER_COUNT +
+              " (critical reserved=" + CRITICAL_RESERVED_WORKERS + ", background max=" + MAX_BACKGROUND_WORKERS + ")");
+    }
+
+    /**
+     * 提交一个 Range 下载
+     *
+     * 如果相同 (cacheKey, start, end) 的任务仍在进行，直接返回该任务并增加引用计数，
+     * 必要时把它提升到更高的优先级。调用方不再需要结果时应调用 {@link #release(Task)}。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Task<T> submit(String cacheKey, long start, long end, Priority priority, Fetcher<T> fetcher) {
+        RangeKey key = new RangeKey(cacheKey, start, end);
+        synchronized (lock) {
+            Task<?> existing = inFlight.get(key);
+            if (existing != null && !existing.isDone()) {
+                existing.refCount++;
+                if (priority.ordinal() < existing.priority.ordinal()) {
+                    promote(existing, priority);
+                }
+                return (Task<T>) existing;
+            }
+
+            Task<T> task = new Task<>(this, key, priority, sequence.getAndIncrement(), fetcher);
+            inFlight.put(key, task);
+            pending.add(task);
+            dispatchLocked();
+            return task;
+        }
+    }
+
+    /**
+     * 释放对任务的引用；最后一个引用释放时取消下载
+     */
+    public void release(Task<?> task) {
+        if (task == null) return;
+        synchronized (lock) {
+            if (task.refCount > 0) {
+                task.refCount--;
+            }
+            if (task.refCount > 0 || task.isDone()) {
+                return;
+            }
+            inFlight.remove(task.key, task);
+            pending.remove(task);
+        }
+        task.cancel(true);
+    }
+
+    private void promote(Task<?> task, Priority priority) {
+        // 还在等待的任务需要重新入队，才能按新的优先级排序；已在运行的只更新优先级
+        if (pending.remove(task)) {
+            task.priority = priority;
+            pending.add(task);
+            dispatchLocked();
+        } else {
+            task.priority = priority;
+        }
+    }
+
+    /**
+     * 按优先级把等待的任务交给线程池，直到线程用完或队首的任务超出它所在档位的线程上限
+     * （队首按优先级排序，它放不下时后面更低档的也放不下）
+     */
+    private void dispatchLocked() {
+        while (!pending.isEmpty()) {
+            Task<?> head = pending.peek();
+            if (!canDispatchLocked(head.priority)) return;
+            pending.poll();
+            head.dispatchedAs = head.priority;
+            dispatchedByPriority[head.priority.ordinal()]++;
+            dispatched++;
+            executor.execute(head);
+        }
+    }
+
+    private boolean canDispatchLocked(Priority priority) {
+        if (dispatched >= WORKER_COUNT) return false;
+        if (priority == Priority.CRITICAL) return true;
+        int nonCritical = dispatched - dispatchedByPriority[Priority.CRITICAL.ordinal()];
+        if (nonCritical >= WORKER_COUNT - CRITICAL_RESERVED_WORKERS) return false;
+        return priority != Priority.BACKGROUND
+            || dispatchedByPriority[Priority.BACKGROUND.ordinal()] < MAX_BACKGROUND_WORKERS;
+    }
+
+    private void onTaskDone(Task<?> task) {
+        synchronized (lock) {
+            inFlight.remove(task.key, task);
+            if (task.dispatchedAs != null) {
+                dispatchedByPriority[task.dispatchedAs.ordinal()]--;
+                dispatched--;
+                task.dispatchedAs = null;
+            }
+            dispatchLocked();
+        }
+    }
+
+    /**
+     * 下载任务
+     */
+    public static final class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        private final RangeDownloadEngine engine;
+        final RangeKey key;
+        final long sequence;
+        volatile Priority priority;
+        int refCount = 1; // 由 engine.lock 保护
+        Priority dispatchedAs; // 交给线程池时的优先级，未交出为 null（由 engine.lock 保护）
+
+        private final List<Listener<T>> listeners = new ArrayList<>();
+        private boolean completed = false; // 由 listeners 保护
+
+        Task(RangeDownloadEngine engine, RangeKey key, Priority priority, long sequence, final Fetcher<T> fetcher) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return fetcher.fetch();
+                }
+            });
+            this.engine = engine;
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        /**
+         * 添加完成回调；任务已完成时立即在当前线程回调
+         */
+        public void addListener(Listener<T> listener) {
+            synchronized (listeners) {
+                if (!completed) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            listener.onComplete(this);
+        }
+
+        @Override
+        protected void done() {
+            engine.onTaskDone(this);
+            List<Listener<T>> toNotify;
+            synchronized (listeners) {
+                completed = true;
+                toNotify = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            for (Listener<T> listener : toNotify) {
+                try {
+                    listener.onComplete(this);
+                } catch (Exception e) {
+                    Log.e(TAG, "🚀 Listener error for " + key, e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            if (byPriority != 0) return byPriority;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 去重键：(cacheKey, 起始字节, 结束字节)
+     */
+    static final class RangeKey {
+        final String cacheKey;
+        final long start;
+        final long end;
+
+        RangeKey(String cacheKey, long start, long end) {
+            this.cacheKey = cacheKey;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RangeKey)) return false;
+            RangeKey other = (RangeKey) o;
+            return start == other.start && end == other.end && cacheKey.equals(other.cacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = cacheKey.hashCode();
+            result = 31 * result + (int) (start ^ (start >>> 32));
+            result = 31 * result + (int) (end ^ (end >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return cacheKey + "[" + start + "-" + end + "]";
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.mynas.nastv.player;
+
+import com.mynas.nastv.utils.SharedPreferencesManager;
+import com.mynas.nastv.utils.SignatureUtils;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 🔑 媒体 Range 请求认证拦截器
+ *
+ * 后台下载（离线缓存、下一集预热）没有播放器传入的请求头，
+ * 由拦截器在每个请求发出前补上认证头并单独签名，长时间下载时 authx 不会过期
+ */
+final class RangeRequestSigner implements Interceptor {
+
+    static final RangeRequestSigner INSTANCE = new RangeRequestSigner();
+
+    private RangeRequestSigner() {
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Request.Builder builder = request.newBuilder()
+            .header("User-Agent", "NasTV-Android/1.0")
+            .header("Accept-Encoding", "identity");
+        String token = SharedPreferencesManager.getAuthToken();
+        if (token != null && !token.isEmpty()) {
+            String authToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+            builder.header("Cookie", "Trim-MC-token=" + authToken)
+                   .header("Authorization", authToken);
+            String signature = SignatureUtils.generateSignature("GET", request.url().toString(), "", null);
+            if (signature != null) {
+                builder.header("authx", signature);
+            }
+        }
+        return chain.proceed(builder.build());
+    }
+}
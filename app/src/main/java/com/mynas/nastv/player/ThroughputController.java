@@ -0,0 +1,197 @@
+package com.mynas.nastv.player;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 📶 吞吐量自适应控制器
+ *
+ * 按主机统计每个预缓存请求的首字节时间（TTFB）和单连接速度，播放过程中动态调整：
+ * - 并发数：爬山法，加一条连接后总吞吐明显提升就继续加（单连接被限速的云盘直链），
+ *   没有提升就退回并保持一段时间
+ * - 请求大小：跟随带宽时延积（单连接速度 × TTFB），让请求往返开销只占下载时间的一小部分。
+ *   缓存索引按固定的 {@link VideoPrefetchService#CHUNK_SIZE} 划块，请求大小取块大小的 1/2/4 倍，
+ *   一个请求覆盖连续的几个块
+ *
+ * 同一主机的多个 VideoPrefetchService 共享一个控制器，切换剧集时不用从头探测。
+ */
+final class ThroughputController {
+    private static final String TAG = "ThroughputController";
+
+    static final int MIN_CONNECTIONS = 1;
+    static final int MAX_CONNECTIONS = 4;                    // 下载引擎留给预读/后台任务的线程数
+    static final int MIN_REQUEST_SIZE = VideoPrefetchService.CHUNK_SIZE;
+    static final int MAX_REQUEST_SIZE = 4 * VideoPrefetchService.CHUNK_SIZE;
+    private static final int DEFAULT_CONNECTIONS = 2;
+
+    private static final int MIN_WINDOW_SAMPLES = 4;         // 每个评估窗口至少的样本数
+    private static final double GAIN_THRESHOLD = 1.10;       // 加连接后总吞吐至少提升10%才算有效
+    private static final double TTFB_BACKOFF_FACTOR = 2.5;   // TTFB 恶化到基线的2.5倍时减少连接
+    private static final int HOLD_WINDOWS = 3;               // 回退后保持的窗口数
+    private static final int BDP_MULTIPLIER = 4;             // 请求大小 ≈ 4 × 带宽时延积
+
+    private static final ConcurrentHashMap<String, ThroughputController> controllers = new ConcurrentHashMap<>();
+
+    static ThroughputController forHost(String host) {
+        String key = host != null ? host : "";
+        ThroughputController controller = controllers.get(key);
+        if (controller == null) {
+            controller = new ThroughputController(key);
+            ThroughputController existing = controllers.putIfAbsent(key, controller);
+            if (existing != null) {
+                controller = existing;
+            }
+        }
+        return controller;
+    }
+
+    private final String host;
+
+    // 当前决策
+    private volatile int connections = DEFAULT_CONNECTIONS;
+    private volatile int requestSize = MIN_REQUEST_SIZE;
+
+    // 当前窗口（由 this 保护）
+    private long windowStartMs = 0;
+    private long windowBytes = 0;
+    private long windowTtfbSumMs = 0;
+    private double windowPerConnSumBps = 0;
+    private int windowSamples = 0;
+
+    // 爬山状态（由 this 保护）
+    private double lastAggregateBps = 0;
+    private double baselineTtfbMs = 0;
+    private boolean probingUp = false;
+    private int holdWindows = 0;
+
+    // 指标
+    private volatile double aggregateBps = 0;
+    private volatile double perConnectionBps = 0;
+    private volatile double avgTtfbMs = 0;
+    private volatile int scaleUpCount = 0;
+    private volatile int backOffCount = 0;
+    private volatile int resizeCount = 0;
+
+    ThroughputController(String host) {
+        this.host = host;
+    }
+
+    int getConnections() {
+        return connections;
+    }
+
+    int getRequestSize() {
+        return requestSize;
+    }
+
+    /**
+     * 记录一个请求的下载结果
+     *
+     * @param bytes   从网络下载的字节数
+     * @param ttfbMs  发出请求到收到首批数据的时间
+     * @param totalMs 发出请求到全部写入缓存的时间
+     */
+    void recordSample(long bytes, long ttfbMs, long totalMs) {
+        recordSample(bytes, ttfbMs, totalMs, System.currentTimeMillis());
+    }
+
+    synchronized void recordSample(long bytes, long ttfbMs, long totalMs, long nowMs) {
+        if (bytes <= 0 || totalMs <= 0 || ttfbMs < 0) return;
+        if (windowSamples == 0) {
+            // 窗口从第一个样本的请求发出时刻算起
+            windowStartMs = nowMs - totalMs;
+        }
+        windowBytes += bytes;
+        windowTtfbSumMs += ttfbMs;
+        windowPerConnSumBps += bytes * 1000.0 / totalMs;
+        windowSamples++;
+
+        if (windowSamples >= Math.max(MIN_WINDOW_SAMPLES, connections * 2)) {
+            long elapsedMs = Math.max(1, nowMs - windowStartMs);
+            evaluateWindow(windowBytes * 1000.0 / elapsedMs,
+                           windowPerConnSumBps / windowSamples,
+                           (double) windowTtfbSumMs / windowSamples);
+            windowBytes = 0;
+            windowTtfbSumMs = 0;
+            windowPerConnSumBps = 0;
+            windowSamples = 0;
+        }
+    }
+
+    private void evaluateWindow(double aggregate, double perConn, double ttfb) {
+        aggregateBps = aggregate;
+        perConnectionBps = perConn;
+        avgTtfbMs = ttfb;
+        if (baselineTtfbMs <= 0 || ttfb < baselineTtfbMs) {
+            baselineTtfbMs = ttfb;
+        }
+
+        int oldConnections = connections;
+        if (baselineTtfbMs > 0 && ttfb > baselineTtfbMs * TTFB_BACKOFF_FACTOR && connections > MIN_CONNECTIONS) {
+            // 服务器或链路开始排队，减少连接
+            connections--;
+            backOffCount++;
+            probingUp = false;
+            holdWindows = HOLD_WINDOWS;
+        } else if (probingUp) {
+            if (aggregate < lastAggregateBps * GAIN_THRESHOLD) {
+                // 多出来的连接没有带来带宽，退回
+                connections = Math.max(MIN_CONNECTIONS, connections - 1);
+                backOffCount++;
+                holdWindows = HOLD_WINDOWS;
+            }
+            probingUp = false;
+        } else if (holdWindows > 0) {
+            holdWindows--;
+        } else if (connections < MAX_CONNECTIONS) {
+            // 尝试加一条连接，下个窗口验证效果
+            connections++;
+            scaleUpCount++;
+            probingUp = true;
+        }
+        lastAggregateBps = aggregate;
+
+        int oldRequestSize = requestSize;
+        requestSize = requestSizeForBdp(perConn, ttfb);
+        if (requestSize != oldRequestSize) {
+            resizeCount++;
+        }
+
+        if (connections != oldConnections || requestSize != oldRequestSize) {
+            Log.d(TAG, "📶 " + host + " decision: " + getMetrics());
+        }
+    }
+
+    /**
+     * 请求大小取不小于 4 × 带宽时延积的 块大小 × 2 的幂，限制在 [1, 4] 个块
+     */
+    static int requestSizeForBdp(double perConnectionBps, double ttfbMs) {
+        double bdp = perConnectionBps * ttfbMs / 1000.0;
+        long target = (long) (bdp * BDP_MULTIPLIER);
+        int size = MIN_REQUEST_SIZE;
+        while (size < target && size < MAX_REQUEST_SIZE) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    String getMetrics() {
+        return String.format(java.util.Locale.US,
+            "conn:%d | req:%dMB | total:%.2fMB/s | perConn:%.2fMB/s | ttfb:%.0fms | up:%d | down:%d | resize:%d",
+            connections, requestSize / 1024 / 1024, aggregateBps / 1024 / 1024, perConnectionBps / 1024 / 1024,
+            avgTtfbMs, scaleUpCount, backOffCount, resizeCount);
+    }
+
+    double getAggregateBps() {
+        return aggregateBps;
+    }
+
+    double getPerConnectionBps() {
+        return perConnectionBps;
+    }
+
+    double getAvgTtfbMs() {
+        return avgTtfbMs;
+    }
+}
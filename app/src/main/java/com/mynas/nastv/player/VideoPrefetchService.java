@@ -4,34 +4,61 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.util.Log;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 
+import androidx.media3.common.C;
 import androidx.media3.datasource.DataSpec;
 import androidx.media3.datasource.cache.Cache;
 import androidx.media3.datasource.cache.CacheDataSource;
 import androidx.media3.datasource.cache.CacheWriter;
 import androidx.media3.datasource.okhttp.OkHttpDataSource;
 
+/**
+ * 🚀 视频预缓存服务
+ * 
+ * 按播放位置向前预取 2MB 块写入 SimpleCache，块下载交给共享的 RangeDownloadEngine 执行
+ * 
+ * 调度线程由事件驱动：块下载完成、播放头跨越块边界、缓存 span 被淘汰时才唤醒，
+ * 预缓存窗口已满时一直休眠，不再定时轮询 SimpleCache
+ * 
+ * 块是否已缓存由 CachedChunkIndex 在内存中回答，不再调用 getCachedBytes
+ * 
+ * 并发数和单个请求覆盖的块数由 ThroughputController 按实测的单连接速度、首字节时间和带宽时延积决定
+ * 
+ * 首尾块缓存好之后在后台线程解析容器索引（ContainerSeekIndex），播放时间到字节位置按关键帧准确换算
+ * 
+ * 用户拖动进度时，拖动目标所在的块在 ExoPlayer 打开新数据源之前就开始下载（prefetchSeekTarget）；
+ * 目标确认跳转后才移动预缓存窗口（commitSeekTarget），没有跳转就释放（cancelSeekPrefetch）
+ */
 public class VideoPrefetchService {
     private static final String TAG = "CachedDataSourceFactory";
     
-    private static final int MAX_THREAD_COUNT = 4;
-    private static final int MIN_THREAD_COUNT = 2;
-    private static final int CHUNK_SIZE = 2 * 1024 * 1024;
+    private static final int MIN_THREAD_COUNT = 2;  // 缓存充足时的并发上限（不超过控制器的决策）
+    static final int CHUNK_SIZE = 2 * 1024 * 1024;
     private static final int PREFETCH_CHUNKS = 15;  // 增加预缓存范围，确保有足够的下载任务
     private static final int LOW_CACHE_THRESHOLD = 10;  // 提高阈值，保持更多并发下载
     private static final long MIN_FREE_MEMORY_MB = 50;
     private static final long SAFE_DISTANCE_BYTES = 3 * 1024 * 1024;
     private static final long STARTUP_DELAY_MS = 500;
+    private static final long CRITICAL_WAIT_MS = 5000;      // 关键块最多等待5秒
+    private static final long LOW_MEMORY_RETRY_MS = 1000;   // 内存不足时的重试间隔（内存没有事件可等）
+    private static final long MEMORY_CHECK_INTERVAL_MS = 1000;
+    private static final long RETRY_BACKOFF_MS = 200;       // 下载失败后重新调度前的退避
+    private static final long SEEK_PREFETCH_SPAN_MS = 5000; // 拖动目标关键帧之后预取的时长
+    private static final int SEEK_PREFETCH_MAX_CHUNKS = 3;
     
     private final OkHttpClient httpClient;
     private final Map<String, String> headers;
@@ -39,12 +66,35 @@ public class VideoPrefetchService {
     private final String cacheKey;
     private final Context context;
     
-    private ExecutorService executorService;
-    private final ConcurrentHashMap<Integer, Future<?>> downloadTasks = new ConcurrentHashMap<>();
+    // 已知的文件大小（下一集预热或之前的探测得到），命中时跳过启动延迟和大小探测
+    private static final ConcurrentHashMap<String, Long> knownContentLengths = new ConcurrentHashMap<>();
+    
+    private final RangeDownloadEngine engine = RangeDownloadEngine.getInstance();
+    private Thread schedulerThread;
+    private volatile Thread seekIndexThread;
+    private CacheDataSource.Factory cacheWriterFactory;
+    // 块 → 覆盖它的下载任务；一个任务可能覆盖连续几个块，在每个块下都登记一次
+    private final ConcurrentHashMap<Integer, RangeDownloadEngine.Task<Void>> downloadTasks = new ConcurrentHashMap<>();
+    private volatile ThroughputController throughput = ThroughputController.forHost(null);
+    // 拖动目标的预取任务（由 seekLock 保护），与调度线程的任务在引擎中按范围去重
+    private final Object seekLock = new Object();
+    private final Map<Integer, RangeDownloadEngine.Task<Void>> seekTasks = new HashMap<>();
+    
+    // 调度线程唤醒信号（由 wakeLock 保护）
+    private final Object wakeLock = new Object();
+    private boolean wakePending = false;
+    private volatile boolean waitingForCritical = false;
+    private final CachedChunkIndex chunkIndex;
+    private final CachedChunkIndex.Listener indexListener = new IndexListener();
+    private final AtomicBoolean indexReleased = new AtomicBoolean(false);
+    private long lastMemoryCheckTime = 0;
+    private boolean lastMemoryOk = true;
+    private int lastFailCount = 0;
     
     private String videoUrl;
     private long contentLength = -1;
-    private int totalChunks = 0;
+    private volatile int totalChunks = 0;
+    private volatile ContainerSeekIndex seekIndex;
     private AtomicLong currentPlaybackPosition = new AtomicLong(0);
     private AtomicBoolean isRunning = new AtomicBoolean(false);
     
@@ -61,6 +111,7 @@ public class VideoPrefetchService {
         void onBufferStatusChanged(int cachedChunks, int threadCount, boolean isLowBuffer);
     }
     private BufferCallback bufferCallback;
+    private volatile PlaybackSessionRecorder sessionRecorder;
     
     public VideoPrefetchService(Context context, OkHttpClient httpClient, Map<String, String> headers, 
                                  Cache cache, String cacheKey) {
@@ -69,6 +120,7 @@ public class VideoPrefetchService {
         this.headers = headers;
         this.cache = cache;
         this.cacheKey = cacheKey;
+        this.chunkIndex = CachedChunkIndex.acquire(cache, cacheKey, CHUNK_SIZE);
         Log.e(TAG, "[PREFETCH] Created, cacheKey=" + cacheKey);
     }
     
@@ -76,6 +128,13 @@ public class VideoPrefetchService {
         this.bufferCallback = callback;
     }
     
+    /**
+     * 📊 设置播放会话指标记录器（在 start() 之前调用）
+     */
+    void setSessionRecorder(PlaybackSessionRecorder recorder) {
+        this.sessionRecorder = recorder;
+    }
+    
     public boolean isRunning() {
         return isRunning.get();
     }
@@ -89,9 +148,12 @@ public class VideoPrefetchService {
         isRunning.set(true);
         Log.e(TAG, "[PREFETCH-START] URL: " + url.substring(0, Math.min(80, url.length())));
         Log.e(TAG, "[PREFETCH-START] cacheKey=" + cacheKey);
-        executorService = Executors.newFixedThreadPool(MAX_THREAD_COUNT + 1);
-        Log.e(TAG, "[PREFETCH-START] ExecutorService created");
-        executorService.submit(new Runnable() {
+        cacheWriterFactory = createCacheWriterFactory();
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        throughput = ThroughputController.forHost(httpUrl != null ? httpUrl.host() : null);
+        Log.e(TAG, "[PREFETCH-START] Throughput: " + throughput.getMetrics());
+        chunkIndex.addListener(indexListener);
+        schedulerThread = new Thread(new Runnable() {
             @Override
             public void run() {
                 Log.e(TAG, "[PREFETCH-THREAD] Started, threadId=" + Thread.currentThread().getId());
@@ -102,20 +164,32 @@ public class VideoPrefetchService {
                 }
                 Log.e(TAG, "[PREFETCH-THREAD] Exited");
             }
-        });
+        }, "PrefetchScheduler");
+        schedulerThread.start();
         Log.e(TAG, "[PREFETCH-START] Done");
     }
     
     public void stop() {
         Log.e(TAG, "[PREFETCH] stop()");
         isRunning.set(false);
-        for (Future<?> task : downloadTasks.values()) {
-            task.cancel(true);
+        for (RangeDownloadEngine.Task<Void> task : new HashSet<>(downloadTasks.values())) {
+            engine.release(task);
         }
         downloadTasks.clear();
-        if (executorService != null) {
-            executorService.shutdownNow();
-            executorService = null;
+        cancelSeekPrefetch();
+        chunkIndex.removeListener(indexListener);
+        if (indexReleased.compareAndSet(false, true)) {
+            chunkIndex.release();
+        }
+        wake();
+        if (schedulerThread != null) {
+            schedulerThread.interrupt();
+            schedulerThread = null;
+        }
+        Thread indexThread = seekIndexThread;
+        if (indexThread != null) {
+            indexThread.interrupt();
+            seekIndexThread = null;
         }
     }
     
@@ -125,6 +199,10 @@ public class VideoPrefetchService {
         long current = currentPlaybackPosition.get();
         if (positionBytes > current || positionBytes < current - 10 * CHUNK_SIZE) {
             currentPlaybackPosition.set(positionBytes);
+            // 只有跨越块边界时预缓存窗口才会变化，块内移动不唤醒调度线程
+            if (positionBytes / CHUNK_SIZE != current / CHUNK_SIZE) {
+                wake();
+            }
         }
     }
     
@@ -132,8 +210,100 @@ public class VideoPrefetchService {
      * 强制更新播放位置（用于 ExoPlayer 跳转检测）
      */
     public void forceUpdatePlaybackPosition(long positionBytes) {
-        currentPlaybackPosition.set(positionBytes);
-        Log.e(TAG, "[PREFETCH] Force position update to " + (positionBytes/1024/1024) + "MB");
+        long previous = currentPlaybackPosition.getAndSet(positionBytes);
+        if (positionBytes / CHUNK_SIZE != previous / CHUNK_SIZE) {
+            Log.d(TAG, "[PREFETCH] Force position update to " + (positionBytes/1024/1024) + "MB");
+            wake();
+        }
+    }
+    
+    /**
+     * ExoPlayer 打开数据源时的读取位置（由 CachedDataSourceFactory 的包装数据源调用）
+     * 
+     * 只有当读取位置在媒体数据范围内且超过当前预缓存位置时才更新（排除文件尾部 MKV cues / MP4 moov 的读取），
+     * 有容器索引时按索引的实际位置判断，没有时仍按文件前 90% 估计；
+     * 使用强制更新，确保不会被 VideoPlayerActivity 的定时更新覆盖
+     */
+    public void onLoaderOpen(long positionBytes) {
+        if (positionBytes <= 0) return;
+        ContainerSeekIndex index = seekIndex;
+        boolean isNotTailRead = index != null
+            ? positionBytes < index.getMediaEndOffset()
+            : contentLength <= 0 || positionBytes < contentLength * 0.9;
+        if (isNotTailRead && positionBytes > currentPlaybackPosition.get()) {
+            forceUpdatePlaybackPosition(positionBytes);
+        }
+    }
+    
+    /**
+     * 🎯 预取拖动目标（主线程调用，只提交任务不等待）
+     * 
+     * 目标时间经容器索引换算到关键帧所在的块，连同之后 SEEK_PREFETCH_SPAN_MS 内的块以最高优先级下载；
+     * 用户继续拖动时，不再属于新目标的旧任务被释放（调度线程没有同时持有时引擎会取消下载）。
+     * 目标还没确认，预缓存窗口不动，跳转时由 {@link #commitSeekTarget} 移过去
+     */
+    public void prefetchSeekTarget(long targetMs, long durationMs) {
+        if (!isRunning.get() || totalChunks <= 0) return;
+        long startByte = timeToBytePosition(targetMs, durationMs);
+        if (startByte < 0) return;
+        long endByte = Math.max(startByte, timeToBytePosition(targetMs + SEEK_PREFETCH_SPAN_MS, durationMs));
+        int firstChunk = (int) Math.min(startByte / CHUNK_SIZE, totalChunks - 1);
+        int lastChunk = (int) Math.min(endByte / CHUNK_SIZE, totalChunks - 1);
+        lastChunk = Math.min(lastChunk, firstChunk + SEEK_PREFETCH_MAX_CHUNKS - 1);
+        
+        int submitted = 0;
+        int cancelled = 0;
+        synchronized (seekLock) {
+            Iterator<Map.Entry<Integer, RangeDownloadEngine.Task<Void>>> it = seekTasks.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, RangeDownloadEngine.Task<Void>> entry = it.next();
+                int chunk = entry.getKey();
+                if (chunk < firstChunk || chunk > lastChunk || entry.getValue().isDone()) {
+                    engine.release(entry.getValue());
+                    it.remove();
+                    cancelled++;
+                }
+            }
+            for (int chunk = firstChunk; chunk <= lastChunk; chunk++) {
+                if (seekTasks.containsKey(chunk) || isChunkCached(chunk)) continue;
+                try {
+                    seekTasks.put(chunk, submitChunk(chunk, RangeDownloadEngine.Priority.CRITICAL));
+                    submitted++;
+                } catch (Exception e) {
+                    Log.e(TAG, "[PREFETCH-SEEK] Submit chunk " + chunk + " failed: " + e.getMessage());
+                }
+            }
+        }
+        Log.d(TAG, "[PREFETCH-SEEK] target=" + (targetMs / 1000) + "s chunks " + firstChunk + "-" + lastChunk +
+              " submitted=" + submitted + " released=" + cancelled + (seekIndex != null ? "" : " (linear)"));
+    }
+    
+    /**
+     * 拖动目标已确认跳转：把预缓存窗口移到目标处，预取任务保留到下载完成
+     */
+    public void commitSeekTarget(long targetMs, long durationMs) {
+        if (!isRunning.get() || totalChunks <= 0) return;
+        long startByte = timeToBytePosition(targetMs, durationMs);
+        if (startByte >= 0) {
+            forceUpdatePlaybackPosition(startByte);
+        }
+    }
+    
+    /**
+     * 拖动结束但没有跳转（收起进度条、离开页面）：释放全部预取任务
+     */
+    public void cancelSeekPrefetch() {
+        int released;
+        synchronized (seekLock) {
+            released = seekTasks.size();
+            for (RangeDownloadEngine.Task<Void> task : seekTasks.values()) {
+                engine.release(task);
+            }
+            seekTasks.clear();
+        }
+        if (released > 0) {
+            Log.d(TAG, "[PREFETCH-SEEK] cancelled, released=" + released);
+        }
     }
     
     public long getCurrentPlaybackPosition() {
@@ -143,6 +313,7 @@ public class VideoPrefetchService {
     public void notifyBufferingStart() {
         isBuffering.set(true);
         Log.e(TAG, "[PREFETCH] BUFFERING! Active:" + activeDownloads.get() + " Cached:" + cachedAheadChunks.get());
+        wake();
     }
     
     public void notifyBufferingEnd() {
@@ -153,24 +324,108 @@ public class VideoPrefetchService {
         return contentLength;
     }
     
+    /**
+     * 🎯 播放时间 → 字节位置：有容器索引时取不晚于该时间的关键帧位置，否则按平均码率线性估算
+     * 
+     * @return 字节位置；文件大小未知时返回 -1
+     */
+    public long timeToBytePosition(long positionMs, long durationMs) {
+        ContainerSeekIndex index = seekIndex;
+        if (index != null) {
+            return index.byteOffsetFor(positionMs);
+        }
+        long length = contentLength;
+        if (length <= 0 || durationMs <= 0) return -1;
+        return positionMs * length / durationMs;
+    }
+    
+    /**
+     * 字节位置 → 播放时间（timeToBytePosition 的反查，有索引时取该位置之前最近的关键帧时间）
+     */
+    public long bytePositionToTime(long positionBytes, long durationMs) {
+        ContainerSeekIndex index = seekIndex;
+        if (index != null) {
+            return index.timeFor(positionBytes);
+        }
+        long length = contentLength;
+        if (length <= 0 || durationMs <= 0) return 0;
+        return positionBytes * durationMs / length;
+    }
+    
+    /**
+     * 是否已解析出容器索引（否则时间与字节位置的换算是线性估算）
+     */
+    public boolean hasSeekIndex() {
+        return seekIndex != null;
+    }
+    
+    /**
+     * 从 positionBytes 开始磁盘上连续已缓存的字节数（查内存索引，可在播放线程调用）
+     */
+    public long getContiguousCachedBytes(long positionBytes) {
+        return chunkIndex.getContiguousCachedBytes(positionBytes);
+    }
+    
+    /**
+     * 唤醒调度线程；可能在 SimpleCache 的锁内被调用，只做最轻量的通知
+     */
+    private void wake() {
+        synchronized (wakeLock) {
+            wakePending = true;
+            wakeLock.notifyAll();
+        }
+    }
+    
+    /**
+     * 等待下一个事件；timeoutMs 为 0 表示一直等到有事件
+     */
+    private void awaitWake(long timeoutMs) throws InterruptedException {
+        synchronized (wakeLock) {
+            if (!wakePending && isRunning.get()) {
+                wakeLock.wait(timeoutMs);
+            }
+            wakePending = false;
+        }
+    }
+    
+    /**
+     * 记录某个 cacheKey 的文件大小，下次启动预缓存时直接使用
+     */
+    static void rememberContentLength(String cacheKey, long length) {
+        if (length > 0) {
+            knownContentLengths.put(cacheKey, length);
+        }
+    }
+    
     private void schedulerLoop() {
         Log.e(TAG, "[PREFETCH-LOOP] Started");
-        try {
-            for (int i = 0; i < STARTUP_DELAY_MS / 100 && isRunning.get(); i++) {
-                Thread.sleep(100);
+        Long knownLength = knownContentLengths.get(cacheKey);
+        if (knownLength != null) {
+            // 已预热过：跳过启动延迟和探测请求，立即开始
+            contentLength = knownLength;
+            Log.e(TAG, "[PREFETCH-LOOP] Known length: " + (contentLength / 1024 / 1024) + "MB");
+        } else {
+            try {
+                Thread.sleep(STARTUP_DELAY_MS);
+                if (!isRunning.get()) {
+                    Log.e(TAG, "[PREFETCH-LOOP] Stopped during delay");
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Log.e(TAG, "[PREFETCH-LOOP] Delay interrupted");
+                return;
             }
-            if (!isRunning.get()) {
-                Log.e(TAG, "[PREFETCH-LOOP] Stopped during delay");
+            Log.e(TAG, "[PREFETCH-LOOP] Fetching content length...");
+            long probeStart = System.currentTimeMillis();
+            if (!fetchContentLength()) {
+                Log.e(TAG, "[PREFETCH-LOOP] Failed to get content length");
                 return;
             }
-        } catch (InterruptedException e) {
-            Log.e(TAG, "[PREFETCH-LOOP] Delay interrupted");
-            return;
-        }
-        Log.e(TAG, "[PREFETCH-LOOP] Fetching content length...");
-        if (!fetchContentLength()) {
-            Log.e(TAG, "[PREFETCH-LOOP] Failed to get content length");
-            return;
+            PlaybackSessionRecorder recorder = sessionRecorder;
+            if (recorder != null) {
+                recorder.recordProbe(System.currentTimeMillis() - probeStart);
+            }
+            rememberContentLength(cacheKey, contentLength);
         }
         totalChunks = (int) Math.ceil((double) contentLength / CHUNK_SIZE);
         Log.e(TAG, "[PREFETCH-LOOP] Total: " + totalChunks + " chunks (" + (contentLength / 1024 / 1024) + "MB)");
@@ -182,7 +437,8 @@ public class VideoPrefetchService {
         int headChunks = Math.min(6, totalChunks);
         for (int i = 0; i < headChunks; i++) {
             if (!isChunkCachedQuiet(i)) {
-                scheduleChunkDownload(i);
+                scheduleChunkDownload(i, i == 0 ? RangeDownloadEngine.Priority.CRITICAL
+                                                : RangeDownloadEngine.Priority.READ_AHEAD);
                 Log.e(TAG, "[PREFETCH-LOOP] Scheduled head chunk " + i);
             }
         }
@@ -192,90 +448,44 @@ public class VideoPrefetchService {
         for (int i = 0; i < tailCount && i < totalChunks; i++) {
             int chunkIndex = totalChunks - 1 - i;
             if (chunkIndex >= headChunks && !isChunkCachedQuiet(chunkIndex)) {
-                scheduleChunkDownload(chunkIndex);
+                scheduleChunkDownload(chunkIndex, RangeDownloadEngine.Priority.CRITICAL);
                 Log.e(TAG, "[PREFETCH-LOOP] Scheduled tail chunk " + chunkIndex);
             }
         }
         
-        // 等待关键缓存完成（至少 chunk 0 和最后一个 chunk）
+        // 等待关键缓存完成（至少 chunk 0 和最后一个 chunk），由 span 写入和块完成事件唤醒
         Log.e(TAG, "[PREFETCH-LOOP] Waiting for critical chunks...");
+        long waitStart = System.currentTimeMillis();
+        waitingForCritical = true;
         try {
-            int waitCount = 0;
-            int maxWait = 50; // 最多等待 5 秒
-            while (waitCount < maxWait && isRunning.get()) {
-                boolean chunk0Ready = isChunkCachedQuiet(0);
-                boolean tailReady = isChunkCachedQuiet(totalChunks - 1);
-                int active = activeDownloads.get();
-                
-                if (waitCount % 10 == 0) {
-                    int headCached = 0;
-                    for (int i = 0; i < headChunks; i++) {
-                        if (isChunkCachedQuiet(i)) headCached++;
-                    }
-                    Log.e(TAG, "[PREFETCH-LOOP] Wait #" + waitCount + " head=" + headCached + "/" + headChunks + 
-                          " tail=" + tailReady + " active=" + active);
-                }
-                
+            while (isRunning.get()) {
                 // 只要 chunk 0 和 tail 准备好就可以开始播放
-                if (chunk0Ready && tailReady) {
+                if (isChunkCachedQuiet(0) && isChunkCachedQuiet(totalChunks - 1)) {
                     Log.e(TAG, "[PREFETCH-LOOP] Critical chunks ready!");
                     printCacheSpans();
                     break;
                 }
-                
-                Thread.sleep(100);
-                waitCount++;
+                long remaining = CRITICAL_WAIT_MS - (System.currentTimeMillis() - waitStart);
+                if (remaining <= 0) break;
+                awaitWake(remaining);
             }
-            Log.e(TAG, "[PREFETCH-LOOP] Critical cache done, waited " + (waitCount * 100) + "ms");
+            Log.e(TAG, "[PREFETCH-LOOP] Critical cache done, waited " + (System.currentTimeMillis() - waitStart) + "ms");
         } catch (InterruptedException e) {
             Log.e(TAG, "[PREFETCH-LOOP] Critical cache wait interrupted");
+        } finally {
+            waitingForCritical = false;
+        }
+        
+        if (isRunning.get()) {
+            startSeekIndexLoader();
         }
         
         int loopCount = 0;
         while (isRunning.get()) {
             try {
                 loopCount++;
-                if (!hasEnoughMemory()) {
-                    Thread.sleep(1000);
-                    continue;
-                }
-                // 从 chunk 0 开始缓存，不跳过文件头
-                long playPos = currentPlaybackPosition.get();
-                int playChunk = (int) (playPos / CHUNK_SIZE);
-                int startChunk = Math.max(0, playChunk); // 确保从0开始
-                
-                cleanupOldChunkStates(startChunk);
-                int cachedAhead = calculateCachedAheadChunks();
-                cachedAheadChunks.set(cachedAhead);
-                if (loopCount % 10 == 1 || System.currentTimeMillis() - lastStatsTime > 2000) {
-                    Log.e(TAG, "[PREFETCH-LOOP] #" + loopCount + " pos=" + (playPos/1024/1024) + 
-                          "MB chunk=" + startChunk + " cached=" + cachedAhead);
-                    printCacheStatus(startChunk);
-                    printDiagnostics(startChunk, cachedAhead);
-                }
-                int maxConcurrent = cachedAhead < LOW_CACHE_THRESHOLD ? MAX_THREAD_COUNT : MIN_THREAD_COUNT;
-                
-                // 调度下载任务：从当前播放位置开始，向前预缓存
-                // 关键：即使前面的 chunks 已缓存，也要继续检查后面的 chunks
-                int scheduledCount = 0;
-                for (int i = startChunk; i < startChunk + PREFETCH_CHUNKS && i < totalChunks; i++) {
-                    if (activeDownloads.get() >= maxConcurrent) break;
-                    if (downloadTasks.containsKey(i)) continue;
-                    if (isChunkCachedQuiet(i)) continue;
-                    if (scheduleChunkDownload(i)) {
-                        Log.e(TAG, "[PREFETCH-LOOP] Scheduled chunk " + i);
-                        scheduledCount++;
-                    }
-                }
-                
-                // 如果没有调度任何任务，且缓存不足，打印诊断信息
-                if (scheduledCount == 0 && cachedAhead < LOW_CACHE_THRESHOLD && activeDownloads.get() == 0) {
-                    Log.e(TAG, "[PREFETCH-LOOP] WARNING: No tasks scheduled! startChunk=" + startChunk + 
-                          " cachedAhead=" + cachedAhead + " checking chunks " + startChunk + "-" + 
-                          Math.min(startChunk + PREFETCH_CHUNKS - 1, totalChunks - 1));
-                }
-                int sleepTime = cachedAhead < LOW_CACHE_THRESHOLD ? 200 : 500;
-                Thread.sleep(sleepTime);
+                long waitMs = runSchedulingPass(loopCount);
+                awaitWake(waitMs);
             } catch (InterruptedException e) {
                 Log.e(TAG, "[PREFETCH-LOOP] Interrupted");
                 Thread.currentThread().interrupt();
@@ -287,27 +497,161 @@ public class VideoPrefetchService {
         Log.e(TAG, "[PREFETCH-LOOP] Exited");
     }
     
+    /**
+     * 在单独的线程解析容器索引：较大的 moov 可能要从网络补齐十几 MB，
+     * 不能让调度线程等它，解析完成前按线性估算调度
+     */
+    private void startSeekIndexLoader() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loadSeekIndex();
+                seekIndexThread = null;
+            }
+        }, "PrefetchSeekIndex");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        seekIndexThread = thread;
+        thread.start();
+    }
+    
+    /**
+     * 🎯 解析容器索引（MKV Cues / MP4 stss+stco）
+     * 
+     * 首尾块已缓存，索引通常直接从磁盘读到；不在首尾块里的部分（例如较大的 moov）
+     * 经缓存写入数据源从网络补齐并写入缓存。失败时继续用线性估算，不影响预缓存
+     */
+    private void loadSeekIndex() {
+        long start = System.currentTimeMillis();
+        try {
+            ContainerSeekIndex index = ContainerSeekIndex.parse(new CacheSource());
+            if (index == null) {
+                Log.e(TAG, "[PREFETCH-INDEX] No container index, using linear estimate");
+                return;
+            }
+            if (!isRunning.get()) return;
+            seekIndex = index;
+            Log.e(TAG, "[PREFETCH-INDEX] " + index.getFormat() + " " + index.size() + " keyframes, media end=" +
+                  (index.getMediaEndOffset() / 1024 / 1024) + "MB, took " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            Log.e(TAG, "[PREFETCH-INDEX] Parse failed, using linear estimate: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 执行一次调度，返回下一次等待的超时时间（0 表示只等事件）
+     */
+    private long runSchedulingPass(int loopCount) throws InterruptedException {
+        // 刚有下载失败时稍作退避，避免失败事件立即触发重试形成空转
+        int fails = downloadFailCount.get();
+        if (fails != lastFailCount) {
+            lastFailCount = fails;
+            Thread.sleep(RETRY_BACKOFF_MS);
+        }
+        if (!hasEnoughMemory()) {
+            return LOW_MEMORY_RETRY_MS;
+        }
+        // 从 chunk 0 开始缓存，不跳过文件头
+        long playPos = currentPlaybackPosition.get();
+        int playChunk = (int) (playPos / CHUNK_SIZE);
+        int startChunk = Math.max(0, playChunk); // 确保从0开始
+        
+        cleanupOldChunkStates(startChunk);
+        int cachedAhead = calculateCachedAheadChunks();
+        cachedAheadChunks.set(cachedAhead);
+        if (loopCount % 10 == 1 || System.currentTimeMillis() - lastStatsTime > 2000) {
+            Log.e(TAG, "[PREFETCH-LOOP] #" + loopCount + " pos=" + (playPos/1024/1024) + 
+                  "MB chunk=" + startChunk + " cached=" + cachedAhead);
+            printCacheStatus(startChunk);
+            printDiagnostics(startChunk, cachedAhead);
+        }
+        // 并发数和请求大小由吞吐量控制器决定；缓存充足时降低并发，把带宽留给播放
+        ThroughputController controller = throughput;
+        int connections = controller.getConnections();
+        int maxConcurrent = cachedAhead < LOW_CACHE_THRESHOLD ? connections : Math.min(connections, MIN_THREAD_COUNT);
+        int spanChunks = Math.max(1, controller.getRequestSize() / CHUNK_SIZE);
+        
+        // 调度下载任务：从当前播放位置开始，向前预缓存
+        // 关键：即使前面的 chunks 已缓存，也要继续检查后面的 chunks；
+        // 已缓存的连续区间由 findFirstGap 一次跳过，只检查空洞所在的块
+        int scheduledCount = 0;
+        int windowEndChunk = Math.min(startChunk + PREFETCH_CHUNKS, totalChunks);
+        long windowEnd = Math.min(contentLength, (long) windowEndChunk * CHUNK_SIZE);
+        long pos = (long) startChunk * CHUNK_SIZE;
+        while (pos < windowEnd && activeTaskCount() < maxConcurrent) {
+            pos = chunkIndex.findFirstGap(pos);
+            if (pos >= windowEnd) break;
+            int i = (int) (pos / CHUNK_SIZE);
+            pos = (long) (i + 1) * CHUNK_SIZE;
+            if (downloadTasks.containsKey(i)) continue;
+            if (isChunkCachedQuiet(i)) continue;
+            // 播放头所在的块单独请求，尽快拿到；之后连续缺失的块合并成一个请求
+            int maxSpan = i <= startChunk ? 1 : spanChunks;
+            int count = 1;
+            while (count < maxSpan && i + count < windowEndChunk
+                   && !downloadTasks.containsKey(i + count) && !isChunkCachedQuiet(i + count)) {
+                count++;
+            }
+            pos = (long) (i + count) * CHUNK_SIZE;
+            if (scheduleSpanDownload(i, count, priorityFor(i, startChunk))) {
+                Log.e(TAG, "[PREFETCH-LOOP] Scheduled chunk " + i + (count > 1 ? "-" + (i + count - 1) : ""));
+                scheduledCount++;
+            }
+        }
+        
+        // 如果没有调度任何任务，且缓存不足，打印诊断信息
+        if (scheduledCount == 0 && cachedAhead < LOW_CACHE_THRESHOLD && downloadTasks.isEmpty()) {
+            Log.e(TAG, "[PREFETCH-LOOP] WARNING: No tasks scheduled! startChunk=" + startChunk + 
+                  " cachedAhead=" + cachedAhead + " checking chunks " + startChunk + "-" + 
+                  Math.min(startChunk + PREFETCH_CHUNKS - 1, totalChunks - 1));
+        }
+        // 窗口内的块要么已缓存要么在下载中：下载完成、播放头移动或 span 淘汰都会唤醒，无需超时
+        return 0;
+    }
+    
     private boolean hasEnoughMemory() {
+        // 频繁的调度事件共用一次查询结果，避免每次都跨进程查询 ActivityManager
+        long now = System.currentTimeMillis();
+        if (now - lastMemoryCheckTime < MEMORY_CHECK_INTERVAL_MS) {
+            return lastMemoryOk;
+        }
+        lastMemoryCheckTime = now;
         try {
             ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
             ActivityManager.MemoryInfo memInfo = new ActivityManager.MemoryInfo();
             am.getMemoryInfo(memInfo);
-            return memInfo.availMem / (1024 * 1024) >= MIN_FREE_MEMORY_MB;
+            lastMemoryOk = memInfo.availMem / (1024 * 1024) >= MIN_FREE_MEMORY_MB;
         } catch (Exception e) {
-            return true;
+            lastMemoryOk = true;
         }
+        return lastMemoryOk;
     }
     
     private void cleanupOldChunkStates(int currentStartChunk) {
         if (currentStartChunk <= 0) return;
-        java.util.Iterator<Map.Entry<Integer, Future<?>>> it = downloadTasks.entrySet().iterator();
+        // 只释放完全落在播放头之前的任务；跨过播放头的任务继续下载后面的块
+        Set<RangeDownloadEngine.Task<Void>> behind = new HashSet<>();
+        Set<RangeDownloadEngine.Task<Void>> ahead = new HashSet<>();
+        java.util.Iterator<Map.Entry<Integer, RangeDownloadEngine.Task<Void>>> it = downloadTasks.entrySet().iterator();
         while (it.hasNext()) {
-            Map.Entry<Integer, Future<?>> entry = it.next();
+            Map.Entry<Integer, RangeDownloadEngine.Task<Void>> entry = it.next();
             if (entry.getKey() < currentStartChunk) {
-                entry.getValue().cancel(true);
+                behind.add(entry.getValue());
                 it.remove();
+            } else {
+                ahead.add(entry.getValue());
             }
         }
+        behind.removeAll(ahead);
+        for (RangeDownloadEngine.Task<Void> task : behind) {
+            engine.release(task);
+        }
+    }
+    
+    /**
+     * 正在进行的下载任务数（一个任务可能登记在几个块下）
+     */
+    private int activeTaskCount() {
+        return new HashSet<>(downloadTasks.values()).size();
     }
     
     private void printDiagnostics(int currentChunk, int cachedAhead) {
@@ -316,9 +660,10 @@ public class VideoPrefetchService {
         long totalBytes = totalBytesDownloaded.get();
         long bytesInPeriod = totalBytes - lastTotalBytes;
         float speedMBps = bytesInPeriod / 1024f / 1024f / ((now - lastStatsTime) / 1000f);
-        Log.e(TAG, String.format("[PREFETCH-STATS] Chunk:%d Cached:%d Active:%d Speed:%.2fMB/s Total:%dMB OK:%d Fail:%d",
+        Log.e(TAG, String.format("[PREFETCH-STATS] Chunk:%d Cached:%d Active:%d Speed:%.2fMB/s Total:%dMB OK:%d Fail:%d [%s]",
             currentChunk, cachedAhead, activeDownloads.get(), speedMBps,
-            (int)(totalBytes / 1024 / 1024), downloadSuccessCount.get(), downloadFailCount.get()));
+            (int)(totalBytes / 1024 / 1024), downloadSuccessCount.get(), downloadFailCount.get(),
+            throughput.getMetrics()));
         lastStatsTime = now;
         lastTotalBytes = totalBytes;
     }
@@ -330,7 +675,7 @@ public class VideoPrefetchService {
                 int chunk = startChunk + i;
                 long start = (long) chunk * CHUNK_SIZE;
                 long length = Math.min(CHUNK_SIZE, contentLength - start);
-                long cachedBytes = cache.getCachedBytes(cacheKey, start, length);
+                long cachedBytes = chunkIndex.getChunkCachedBytes(chunk);
                 sb.append(cachedBytes >= length * 0.9 ? "O" : cachedBytes > 0 ? "~" : "X");
             }
             sb.append("]");
@@ -366,28 +711,24 @@ public class VideoPrefetchService {
         long playPos = currentPlaybackPosition.get();
         int playChunk = (int) (playPos / CHUNK_SIZE);
         int startChunk = Math.max(0, playChunk); // 从当前播放位置开始
-        int count = 0;
-        for (int i = 0; i < totalChunks - startChunk; i++) {
-            if (isChunkCached(startChunk + i)) count++;
-            else break;
-        }
-        return count;
+        return chunkIndex.countCachedChunksFrom(startChunk, contentLength);
+    }
+    
+    private long chunkLength(int chunkIndex) {
+        long start = (long) chunkIndex * CHUNK_SIZE;
+        return Math.min(CHUNK_SIZE, contentLength - start);
     }
     
     private boolean isChunkCachedQuiet(int chunkIndex) {
-        try {
-            long start = (long) chunkIndex * CHUNK_SIZE;
-            long end = Math.min(start + CHUNK_SIZE - 1, contentLength - 1);
-            long length = end - start + 1;
-            long cachedBytes = cache.getCachedBytes(cacheKey, start, length);
-            boolean cached = cachedBytes >= length * 0.9;
-            if (!cached && cachedBytes > 0) {
+        long length = chunkLength(chunkIndex);
+        boolean cached = this.chunkIndex.isChunkCached(chunkIndex, length);
+        if (!cached) {
+            long cachedBytes = this.chunkIndex.getChunkCachedBytes(chunkIndex);
+            if (cachedBytes > 0) {
                 Log.e(TAG, "[PREFETCH-CHECK] Chunk " + chunkIndex + " partial: " + cachedBytes + "/" + length);
             }
-            return cached;
-        } catch (Exception e) {
-            return false;
         }
+        return cached;
     }
 
     private boolean fetchContentLength() {
@@ -429,103 +770,167 @@ public class VideoPrefetchService {
         return false;
     }
     
-    private boolean scheduleChunkDownload(int chunkIndex) {
+    private boolean scheduleChunkDownload(int chunkIndex, RangeDownloadEngine.Priority priority) {
         if (downloadTasks.containsKey(chunkIndex) || isChunkCachedQuiet(chunkIndex)) return false;
-        final int chunk = chunkIndex;
+        return scheduleSpanDownload(chunkIndex, 1, priority);
+    }
+    
+    /**
+     * 调度从 firstChunk 开始的 chunkCount 个连续块，作为一个请求下载
+     */
+    private boolean scheduleSpanDownload(int firstChunk, int chunkCount, RangeDownloadEngine.Priority priority) {
         try {
-            Future<?> task = executorService.submit(() -> downloadChunk(chunk));
-            downloadTasks.put(chunkIndex, task);
+            RangeDownloadEngine.Task<Void> task = submitSpan(firstChunk, chunkCount, priority);
+            for (int i = 0; i < chunkCount; i++) {
+                downloadTasks.put(firstChunk + i, task);
+            }
+            task.addListener(t -> {
+                for (int i = 0; i < chunkCount; i++) {
+                    downloadTasks.remove(firstChunk + i, t);
+                }
+                wake();
+            });
             return true;
         } catch (Exception e) {
             return false;
         }
     }
     
-    private boolean isChunkCached(int chunkIndex) {
-        try {
-            long start = (long) chunkIndex * CHUNK_SIZE;
-            long end = Math.min(start + CHUNK_SIZE - 1, contentLength - 1);
-            long cachedBytes = cache.getCachedBytes(cacheKey, start, end - start + 1);
-            return cachedBytes >= (end - start + 1) * 0.9;
-        } catch (Exception e) {
-            return false;
+    /**
+     * 向引擎提交一个块的下载；相同的块在下载期间只会发出一次请求
+     */
+    private RangeDownloadEngine.Task<Void> submitChunk(int chunkIndex, RangeDownloadEngine.Priority priority) {
+        return submitSpan(chunkIndex, 1, priority);
+    }
+    
+    private RangeDownloadEngine.Task<Void> submitSpan(int firstChunk, int chunkCount, RangeDownloadEngine.Priority priority) {
+        long start = (long) firstChunk * CHUNK_SIZE;
+        long end = Math.min(start + (long) chunkCount * CHUNK_SIZE, contentLength) - 1;
+        return engine.submit(cacheKey, start, end, priority, () -> {
+            downloadSpan(firstChunk, chunkCount);
+            return null;
+        });
+    }
+    
+    /**
+     * 播放头所在块为关键块，紧随其后的低水位范围为预读，更远的为后台
+     */
+    private RangeDownloadEngine.Priority priorityFor(int chunkIndex, int playChunk) {
+        if (chunkIndex <= playChunk) return RangeDownloadEngine.Priority.CRITICAL;
+        if (chunkIndex < playChunk + LOW_CACHE_THRESHOLD) return RangeDownloadEngine.Priority.READ_AHEAD;
+        return RangeDownloadEngine.Priority.BACKGROUND;
+    }
+    
+    private CacheDataSource.Factory createCacheWriterFactory() {
+        OkHttpDataSource.Factory dataSourceFactory = new OkHttpDataSource.Factory(httpClient);
+        if (headers != null && !headers.isEmpty()) {
+            dataSourceFactory.setDefaultRequestProperties(headers);
         }
+        final String key = cacheKey;
+        return new CacheDataSource.Factory()
+            .setCache(cache)
+            .setUpstreamDataSourceFactory(dataSourceFactory)
+            .setCacheKeyFactory(dataSpec -> key)
+            .setCacheWriteDataSinkFactory(
+                new androidx.media3.datasource.cache.CacheDataSink.Factory()
+                    .setCache(cache)
+                    .setFragmentSize(CHUNK_SIZE)
+                    .setBufferSize(0)  // CacheWriter 每次写 128KB，再套一层 20KB 缓冲只会多一次分配
+            )
+            .setFlags(CacheDataSource.FLAG_BLOCK_ON_CACHE);  // 阻塞等待缓存写入
+    }
+    
+    private boolean isChunkCached(int chunkIndex) {
+        return this.chunkIndex.isChunkCached(chunkIndex, chunkLength(chunkIndex));
     }
 
-    private void downloadChunk(int chunkIndex) {
+    /**
+     * 用一个请求下载连续的几个块；结果交给吞吐量控制器调整并发数和请求大小
+     */
+    private void downloadSpan(int firstChunk, int chunkCount) {
         if (!isRunning.get()) return;
         
-        long start = (long) chunkIndex * CHUNK_SIZE;
-        long length = Math.min(CHUNK_SIZE, contentLength - start);
+        long start = (long) firstChunk * CHUNK_SIZE;
+        long length = Math.min((long) chunkCount * CHUNK_SIZE, contentLength - start);
+        String label = chunkCount > 1 ? firstChunk + "-" + (firstChunk + chunkCount - 1) : String.valueOf(firstChunk);
         
         // 下载前再次检查是否已缓存（可能被ExoPlayer缓存了）
-        long cachedBefore = 0;
-        try {
-            cachedBefore = cache.getCachedBytes(cacheKey, start, length);
-            if (cachedBefore >= length * 0.9) {
-                Log.e(TAG, "[PREFETCH-DL] Chunk " + chunkIndex + " already cached by ExoPlayer, skip");
-                return;
-            }
-        } catch (Exception e) {}
+        long cachedBefore = spanCachedBytes(firstChunk, chunkCount);
+        if (cachedBefore >= length * 0.9) {
+            Log.e(TAG, "[PREFETCH-DL] Chunk " + label + " already cached by ExoPlayer, skip");
+            return;
+        }
         
         activeDownloads.incrementAndGet();
         long startTime = System.currentTimeMillis();
-        Log.e(TAG, "[PREFETCH-DL] Chunk " + chunkIndex + " start, range=" + start + "-" + (start+length-1) + ", existing=" + cachedBefore/1024 + "KB");
+        Log.e(TAG, "[PREFETCH-DL] Chunk " + label + " start, range=" + start + "-" + (start+length-1) + ", existing=" + cachedBefore/1024 + "KB");
         try {
-            OkHttpDataSource.Factory dataSourceFactory = new OkHttpDataSource.Factory(httpClient);
-            if (headers != null && !headers.isEmpty()) {
-                dataSourceFactory.setDefaultRequestProperties(headers);
-            }
             final String key = cacheKey;
-            CacheDataSource.Factory cacheFactory = new CacheDataSource.Factory()
-                .setCache(cache)
-                .setUpstreamDataSourceFactory(dataSourceFactory)
-                .setCacheKeyFactory(dataSpec -> key)
-                .setCacheWriteDataSinkFactory(
-                    new androidx.media3.datasource.cache.CacheDataSink.Factory()
-                        .setCache(cache)
-                        .setFragmentSize(CHUNK_SIZE)
-                )
-                .setFlags(CacheDataSource.FLAG_BLOCK_ON_CACHE);  // 阻塞等待缓存写入
-            CacheDataSource cacheDataSource = cacheFactory.createDataSource();
+            CacheDataSource cacheDataSource = cacheWriterFactory.createDataSource();
             DataSpec dataSpec = new DataSpec.Builder()
                 .setUri(videoUrl)
                 .setPosition(start)
                 .setLength(length)
                 .setKey(key)
                 .build();
-            CacheWriter cacheWriter = new CacheWriter(cacheDataSource, dataSpec, null, null);
+            // 首批数据写入缓存的时间近似为首字节时间
+            final long[] firstBytesTime = {-1};
+            CacheWriter cacheWriter = new CacheWriter(cacheDataSource, dataSpec, RangeDownloadEngine.copyBuffer(),
+                (requestLength, bytesCached, newBytesCached) -> {
+                    if (firstBytesTime[0] < 0 && newBytesCached > 0) {
+                        firstBytesTime[0] = System.currentTimeMillis();
+                    }
+                });
             cacheWriter.cache();
             long elapsed = System.currentTimeMillis() - startTime;
+            PlaybackSessionRecorder recorder = sessionRecorder;
             
-            // 验证缓存是否真的写入了
-            long cachedAfter = cache.getCachedBytes(key, start, length);
+            // 验证缓存是否真的写入了（span 在 cache() 返回前已提交，索引已同步更新）
+            long cachedAfter = spanCachedBytes(firstChunk, chunkCount);
             if (cachedAfter < length * 0.9) {
                 // 缓存写入失败，记录详细信息
-                Log.e(TAG, String.format("[PREFETCH-DL] Chunk %d WRITE FAILED: downloaded but cached=%dKB/%dKB", 
-                    chunkIndex, cachedAfter/1024, length/1024));
+                Log.e(TAG, String.format("[PREFETCH-DL] Chunk %s WRITE FAILED: downloaded but cached=%dKB/%dKB", 
+                    label, cachedAfter/1024, length/1024));
                 downloadFailCount.incrementAndGet();
+                if (recorder != null) {
+                    recorder.recordChunk(0, -1, elapsed, false);
+                }
             } else {
+                long ttfb = firstBytesTime[0] >= 0 ? firstBytesTime[0] - startTime : -1;
+                ThroughputController controller = throughput;
+                controller.recordSample(length - cachedBefore, ttfb, elapsed);
                 totalBytesDownloaded.addAndGet(length);
                 downloadSuccessCount.incrementAndGet();
-                Log.e(TAG, String.format("[PREFETCH-DL] Chunk %d done: %dKB in %dms", chunkIndex, length/1024, elapsed));
+                if (recorder != null) {
+                    recorder.recordChunk(length - cachedBefore, ttfb, elapsed, true);
+                    recorder.recordThroughput(controller.getConnections(), controller.getRequestSize(),
+                        controller.getPerConnectionBps(), controller.getAvgTtfbMs());
+                }
+                Log.e(TAG, String.format("[PREFETCH-DL] Chunk %s done: %dKB in %dms", label, length/1024, elapsed));
             }
         } catch (Exception e) {
             downloadFailCount.incrementAndGet();
-            Log.e(TAG, "[PREFETCH-DL] Chunk " + chunkIndex + " error: " + e.getMessage());
+            PlaybackSessionRecorder recorder = sessionRecorder;
+            if (recorder != null) {
+                recorder.recordChunk(0, -1, System.currentTimeMillis() - startTime, false);
+            }
+            Log.e(TAG, "[PREFETCH-DL] Chunk " + label + " error: " + e.getMessage());
         } finally {
             activeDownloads.decrementAndGet();
-            downloadTasks.remove(chunkIndex);
         }
     }
     
+    private long spanCachedBytes(int firstChunk, int chunkCount) {
+        long cached = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            cached += this.chunkIndex.getChunkCachedBytes(firstChunk + i);
+        }
+        return cached;
+    }
+    
     public int getCacheProgress() {
         if (contentLength <= 0) return 0;
-        try {
-            return (int) (cache.getCachedBytes(cacheKey, 0, contentLength) * 100 / contentLength);
-        } catch (Exception e) {
-            return 0;
-        }
+        return (int) (chunkIndex.getTotalCachedBytes() * 100 / contentLength);
     }
     
     public int getCachedAheadChunks() {
@@ -547,6 +952,73 @@ public class VideoPrefetchService {
     }
     
     public String getBufferStatus() {
-        return "cached:" + cachedAheadChunks.get() + " | threads:" + activeDownloads.get();
+        ThroughputController controller = throughput;
+        return "cached:" + cachedAheadChunks.get() + " | threads:" + activeDownloads.get() +
+               "/" + controller.getConnections() + " | req:" + (controller.getRequestSize() / 1024 / 1024) + "MB";
+    }
+    
+    /**
+     * 📶 吞吐量控制器的当前决策和实测指标（并发数、请求大小、总/单连接速度、首字节时间）
+     */
+    public String getThroughputMetrics() {
+        return throughput.getMetrics();
+    }
+    
+    /**
+     * 通过缓存写入数据源读取文件内容（命中缓存读磁盘，未命中从网络下载并写入缓存）
+     */
+    private class CacheSource implements ContainerSeekIndex.Source {
+        @Override
+        public long length() {
+            return contentLength;
+        }
+        
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+            CacheDataSource dataSource = cacheWriterFactory.createDataSource();
+            DataSpec dataSpec = new DataSpec.Builder()
+                .setUri(videoUrl)
+                .setPosition(position)
+                .setLength(length)
+                .setKey(cacheKey)
+                .build();
+            try {
+                dataSource.open(dataSpec);
+                int read = 0;
+                while (read < length) {
+                    int n = dataSource.read(buffer, offset + read, length - read);
+                    if (n == C.RESULT_END_OF_INPUT) {
+                        throw new EOFException("Unexpected end at " + (position + read));
+                    }
+                    read += n;
+                }
+            } finally {
+                dataSource.close();
+            }
+        }
+    }
+    
+    /**
+     * 缓存索引变化监听（在 SimpleCache 锁内回调，索引此时已更新）
+     * 
+     * 区间被淘汰时窗口可能出现空洞，需要重新调度；新增区间只会减少工作量，
+     * 仅在等待关键块时唤醒
+     */
+    private class IndexListener implements CachedChunkIndex.Listener {
+        @Override
+        public void onRangeAdded(long position, long length) {
+            if (waitingForCritical) {
+                wake();
+            }
+        }
+        
+        @Override
+        public void onRangeRemoved(long position, long length) {
+            long windowStart = currentPlaybackPosition.get() / CHUNK_SIZE * CHUNK_SIZE;
+            long windowEnd = windowStart + (long) PREFETCH_CHUNKS * CHUNK_SIZE;
+            if (position < windowEnd && position + length > windowStart) {
+                wake();
+            }
+        }
     }
 }
@@ -264,6 +264,7 @@ public class EpisodeDetailActivity extends AppCompatActivity {
                     intent.putExtra("video_guid", playInfo.getVideoGuid());
                     intent.putExtra("audio_guid", playInfo.getAudioGuid());
                     intent.putExtra("media_guid", playInfo.getMediaGuid());
+                    intent.putExtra("play_info_ms", playInfo.getPlayInfoLatencyMs());
                     
                     if (doubanId > 0) {
                         intent.putExtra("douban_id", String.valueOf(doubanId));
@@ -20,12 +20,16 @@ import com.mynas.nastv.R;
 import com.mynas.nastv.adapter.ContinueWatchingAdapter;
 import com.mynas.nastv.adapter.MediaLibraryAdapter;
 import com.mynas.nastv.adapter.MediaLibraryContentAdapter;
+import com.mynas.nastv.manager.HomeFeedLoader;
+import com.mynas.nastv.manager.HomeFeedSnapshot;
 import com.mynas.nastv.manager.MediaManager;
 import com.mynas.nastv.model.MediaItem;
 import com.mynas.nastv.network.ApiClient;
+import com.mynas.nastv.network.ResponseCache;
 import com.mynas.nastv.utils.SharedPreferencesManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +66,14 @@ public class MainActivity extends AppCompatActivity {
     // 数据管理器
     private MediaManager mediaManager;
     
+    // 主页加载管线
+    private static final int PREVIEW_COUNT = 20;  // 每个媒体库预览20个项目，支持横向滑动
+    private HomeFeedLoader homeFeedLoader;
+    private final Map<String, MediaLibraryContentAdapter> previewAdapters = new HashMap<>();  // 媒体库GUID -> 预览区块适配器
+    private Map<String, Integer> libraryCounts;
+    private final Map<String, List<MediaItem>> shownPreviewItems = new HashMap<>();  // 当前显示的预览内容，用于与新数据比对
+    private List<MediaItem> shownContinueWatching;
+    
     // UI状态管理
     private boolean isShowingLibraryContent = false;  // 是否正在显示单个媒体库的完整内容
     private MediaManager.MediaDbItem currentSelectedLibrary = null;  // 当前选中的媒体库
@@ -276,9 +288,7 @@ public class MainActivity extends AppCompatActivity {
         continueWatchingList.setLayoutManager(layoutManager);
         continueWatchingList.setAdapter(continueWatchingAdapter);
         
-        Log.d(TAG, "🔄 [调试] 继续观看列表设置完成，开始加载数据");
-        // 加载示例的继续观看数据
-        loadContinueWatchingData();
+        Log.d(TAG, "🔄 [调试] 继续观看列表设置完成，数据由主页加载管线填充");
     }
     
     /**
@@ -291,141 +301,138 @@ public class MainActivity extends AppCompatActivity {
     }
     
     /**
-     * 📊 加载继续观看数据
+     * 📊 显示继续观看数据（为空或加载失败时隐藏继续观看区域）
      */
-    private void loadContinueWatchingData() {
-        Log.d(TAG, "📊 [调试] 开始加载继续观看数据");
-        
-        // 从API获取真实的观看记录
-        Log.d(TAG, "📊 [调试] 调用MediaManager.getPlayList()");
-        mediaManager.getPlayList(new MediaManager.MediaCallback<List<MediaItem>>() {
-            @Override
-            public void onSuccess(List<MediaItem> watchedItems) {
-                Log.d(TAG, "📊 [调试] 继续观看API调用成功，返回 " + watchedItems.size() + " 项");
-                runOnUiThread(() -> {
-                    if (watchedItems.isEmpty()) {
-                        Log.d(TAG, "📊 [调试] 暂无继续观看记录，隐藏继续观看区域");
-                        // 隐藏继续观看标题和列表
-                        continueWatchingTitle.setVisibility(View.GONE);
-                        continueWatchingList.setVisibility(View.GONE);
-                    } else {
-                        Log.d(TAG, "✅ [调试] 继续观看数据加载完成，共 " + watchedItems.size() + " 项，显示UI");
-                        // 显示继续观看标题和列表
-                        continueWatchingTitle.setVisibility(View.VISIBLE);
-                        continueWatchingList.setVisibility(View.VISIBLE);
-                        continueWatchingAdapter.updateItems(watchedItems);
-                        Log.d(TAG, "✅ [调试] 继续观看UI更新完成");
-                    }
-                });
-            }
-            
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "❌ [调试] 继续观看数据加载失败: " + error);
-                runOnUiThread(() -> {
-                    // 发生错误时也隐藏继续观看区域
-                    Log.d(TAG, "❌ [调试] 隐藏继续观看区域（错误处理）");
-                    continueWatchingTitle.setVisibility(View.GONE);
-                    continueWatchingList.setVisibility(View.GONE);
-                });
-            }
-        });
-        Log.d(TAG, "📊 [调试] getPlayList()调用已发起");
+    private void showContinueWatching(List<MediaItem> watchedItems) {
+        // 与快照内容一致时不刷新，避免海报闪烁和焦点跳动
+        if (HomeFeedSnapshot.sameItems(shownContinueWatching, watchedItems)) return;
+        shownContinueWatching = watchedItems;
+        
+        if (watchedItems.isEmpty()) {
+            Log.d(TAG, "📊 暂无继续观看记录，隐藏继续观看区域");
+            continueWatchingTitle.setVisibility(View.GONE);
+            continueWatchingList.setVisibility(View.GONE);
+        } else {
+            Log.d(TAG, "✅ 继续观看数据加载完成，共 " + watchedItems.size() + " 项");
+            continueWatchingTitle.setVisibility(View.VISIBLE);
+            continueWatchingList.setVisibility(View.VISIBLE);
+            continueWatchingAdapter.updateItems(watchedItems);
+        }
     }
     
     /**
-     * 📊 加载媒体库数据
+     * 📊 加载主页数据：继续观看、媒体库列表、统计、各媒体库预览并行加载，哪块先到先显示
      */
     private void loadMediaLibraries() {
-        Log.d(TAG, "📊 开始加载媒体库列表");
+        Log.d(TAG, "📊 开始加载主页数据");
         
-        mediaManager.getMediaDbList(new MediaManager.MediaCallback<List<MediaManager.MediaDbItem>>() {
+        // 📸 先显示上次的主页快照，网络数据到达后再逐块比对更新
+        HomeFeedSnapshot snapshot = HomeFeedSnapshot.load(this);
+        if (snapshot != null) {
+            renderSnapshot(snapshot);
+        }
+        
+        homeFeedLoader = new HomeFeedLoader(this, mediaManager, PREVIEW_COUNT, new HomeFeedLoader.Listener() {
+            @Override
+            public void onContinueWatching(List<MediaItem> items) {
+                showContinueWatching(items);
+            }
+            
             @Override
-            public void onSuccess(List<MediaManager.MediaDbItem> libraries) {
+            public void onLibraries(List<MediaManager.MediaDbItem> libraries) {
                 Log.d(TAG, "✅ 媒体库列表加载成功，共 " + libraries.size() + " 个");
-                runOnUiThread(() -> {
-                    mediaLibraryAdapter.updateLibraries(libraries);
-                    if (!libraries.isEmpty()) {
-                        // 🚨 [修复] 先获取统计数据，再创建预览内容，确保数量显示正确
-                        Log.d(TAG, "📚 [修复] 先获取统计数据，再创建预览内容");
-                        loadLibraryItemCountsAndPreview(libraries);
-                        
-                        // 不设置默认选中项，保持主页为纯粹的预览状态
-                        // mediaLibraryAdapter.setSelectedPosition(0);  // 注释掉，避免混淆
-                        // onLibraryClick(libraries.get(0), 0);  // 注释掉自动跳转
-                    }
-                });
+                if (HomeFeedSnapshot.sameLibraries(mediaLibraryAdapter.getLibraries(), libraries)) {
+                    // 与快照一致：保留现有区块，预览内容由加载管线比对更新
+                    Log.d(TAG, "📸 媒体库与快照一致，保留现有区块");
+                    return;
+                }
+                // 统计可能先于列表返回
+                if (libraryCounts != null) {
+                    applyLibraryCounts(libraries, libraryCounts);
+                }
+                mediaLibraryAdapter.updateLibraries(libraries);
+                // 先建好所有区块占位，保持顺序；内容由加载管线逐个填充
+                createPreviewSections(libraries);
             }
             
             @Override
-            public void onError(String error) {
+            public void onLibrariesError(String error) {
                 Log.e(TAG, "❌ 媒体库列表加载失败: " + error);
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "媒体库加载失败: " + error, Toast.LENGTH_LONG).show();
-                });
+                Toast.makeText(MainActivity.this, "媒体库加载失败: " + error, Toast.LENGTH_LONG).show();
             }
-        });
-    }
-    
-    /**
-     * 📊 获取媒体库统计数据并创建预览内容（优化版）
-     */
-    private void loadLibraryItemCountsAndPreview(List<MediaManager.MediaDbItem> libraries) {
-        Log.d(TAG, "📊 开始获取媒体库统计数据并创建预览");
-        
-        // 使用专门的统计API，一次性获取所有媒体库的项目数量
-        mediaManager.getMediaDbSum(new MediaManager.MediaCallback<Map<String, Integer>>() {
+            
             @Override
-            public void onSuccess(Map<String, Integer> sumData) {
-                Log.d(TAG, "✅ 媒体库统计数据获取成功: " + sumData);
-                runOnUiThread(() -> {
-                    // 更新每个媒体库的数量
-                    for (MediaManager.MediaDbItem library : libraries) {
-                        String guid = library.getGuid();
-                        Integer count = sumData.get(guid);
-                        if (count != null) {
-                            library.setItemCount(count);
-                            Log.d(TAG, "📊 设置媒体库 " + library.getName() + " 数量: " + count);
-                        } else {
-                            library.setItemCount(0);
-                            Log.w(TAG, "⚠️ 媒体库 " + library.getName() + " 在统计数据中未找到");
-                        }
-                    }
-                    // 更新左侧媒体库列表
-                    mediaLibraryAdapter.notifyDataSetChanged();
-                    
-                    // 🚨 [修复] 统计数据获取完成后，再创建预览内容，确保标题显示正确数量
-                    loadMediaLibrariesPreview(libraries);
-                    
-                    Log.d(TAG, "✅ 媒体库数量和预览内容加载完成");
-                });
+            public void onLibraryCounts(Map<String, Integer> counts) {
+                Log.d(TAG, "✅ 媒体库统计数据获取成功: " + counts);
+                libraryCounts = counts;
+                applyLibraryCounts(mediaLibraryAdapter.getLibraries(), counts);
             }
             
             @Override
-            public void onError(String error) {
+            public void onLibraryCountsError(String error) {
                 Log.e(TAG, "❌ 获取媒体库统计数据失败: " + error);
-                runOnUiThread(() -> {
-                    // 发生错误时设置所有数量为0
-                    for (MediaManager.MediaDbItem library : libraries) {
-                        library.setItemCount(0);
-                    }
-                    mediaLibraryAdapter.notifyDataSetChanged();
-                    
-                    // 即使统计失败，也要创建预览内容
-                    loadMediaLibrariesPreview(libraries);
-                    
-                    Toast.makeText(MainActivity.this, "获取媒体库统计失败: " + error, Toast.LENGTH_SHORT).show();
-                });
+                Toast.makeText(MainActivity.this, "获取媒体库统计失败: " + error, Toast.LENGTH_SHORT).show();
+            }
+            
+            @Override
+            public void onLibraryPreview(MediaManager.MediaDbItem library, List<MediaItem> items) {
+                Log.d(TAG, "✅ 媒体库 " + library.getName() + " 预览加载成功，共 " + items.size() + " 个项目");
+                showPreviewItems(library.getGuid(), items);
+            }
+            
+            @Override
+            public void onLibraryPreviewError(MediaManager.MediaDbItem library, String error) {
+                Log.e(TAG, "❌ 媒体库 " + library.getName() + " 预览加载失败: " + error);
+                // 快照里已有内容时保留，否则显示空状态
+                if (!shownPreviewItems.containsKey(library.getGuid())) {
+                    showPreviewItems(library.getGuid(), new ArrayList<>());
+                }
+            }
+            
+            @Override
+            public void onInteractive(long elapsedMs) {
+                Log.d(TAG, "🏁 主页可交互，耗时 " + elapsedMs + "ms");
             }
         });
+        homeFeedLoader.start();
     }
     
     /**
-     * 📊 获取媒体库统计数据（旧版本，保留用于兼容）
+     * 📸 显示主页快照：继续观看、媒体库列表、各媒体库预览
      */
-    private void loadLibraryItemCounts(List<MediaManager.MediaDbItem> libraries) {
-        Log.d(TAG, "📊 [兼容] 调用旧版本统计方法，建议使用loadLibraryItemCountsAndPreview");
-        loadLibraryItemCountsAndPreview(libraries);
+    private void renderSnapshot(HomeFeedSnapshot snapshot) {
+        long start = android.os.SystemClock.elapsedRealtime();
+        showContinueWatching(snapshot.getContinueWatching());
+        mediaLibraryAdapter.updateLibraries(snapshot.getLibraries());
+        createPreviewSections(snapshot.getLibraries());
+        for (MediaManager.MediaDbItem library : snapshot.getLibraries()) {
+            showPreviewItems(library.getGuid(), snapshot.getPreview(library.getGuid()));
+        }
+        Log.d(TAG, "📸 主页快照已显示，耗时 " + (android.os.SystemClock.elapsedRealtime() - start) + "ms（保存于 "
+                + ((System.currentTimeMillis() - snapshot.getSavedAt()) / 60000) + " 分钟前）");
+    }
+    
+    /**
+     * 📚 填充某个媒体库的预览区块，内容没有变化时不刷新
+     */
+    private void showPreviewItems(String libraryGuid, List<MediaItem> items) {
+        MediaLibraryContentAdapter adapter = previewAdapters.get(libraryGuid);
+        if (adapter == null) return;
+        if (HomeFeedSnapshot.sameItems(shownPreviewItems.get(libraryGuid), items)) return;
+        shownPreviewItems.put(libraryGuid, items);
+        adapter.updateItems(items);
+    }
+    
+    /**
+     * 📊 把统计数量写入媒体库并刷新左侧列表和预览标题
+     */
+    private void applyLibraryCounts(List<MediaManager.MediaDbItem> libraries, Map<String, Integer> counts) {
+        for (MediaManager.MediaDbItem library : libraries) {
+            Integer count = counts.get(library.getGuid());
+            library.setItemCount(count != null ? count : 0);
+        }
+        mediaLibraryAdapter.notifyDataSetChanged();
+        updatePreviewSectionTitles(libraries);
     }
     
     /**
@@ -558,6 +565,8 @@ public class MainActivity extends AppCompatActivity {
         
         // 清除认证信息
         SharedPreferencesManager.clearAuthInfo();
+        ResponseCache.getInstance(this).clear();
+        HomeFeedSnapshot.delete(this);
         
         // 显示退出消息
         Toast.makeText(this, "已退出登录", Toast.LENGTH_SHORT).show();
@@ -572,7 +581,7 @@ public class MainActivity extends AppCompatActivity {
     private void fetchFnOSServerUrl() {
         new Thread(() -> {
             try {
-                okhttp3.OkHttpClient client = new okhttp3.OkHttpClient();
+                okhttp3.OkHttpClient client = com.mynas.nastv.network.SharedHttpClient.get();
                 okhttp3.Request request = new okhttp3.Request.Builder()
                         .url(SharedPreferencesManager.getSystemApiUrl() + "/getFnUrl")
                         .build();
@@ -612,13 +621,23 @@ public class MainActivity extends AppCompatActivity {
      */
     private void loadMediaLibrariesPreview(List<MediaManager.MediaDbItem> libraries) {
         Log.d(TAG, "📚 开始加载媒体库预览内容（主页模式）");
-        
+        createPreviewSections(libraries);
+        if (homeFeedLoader != null) {
+            homeFeedLoader.loadPreviews(libraries);
+        }
+    }
+    
+    /**
+     * 📚 按顺序创建各媒体库的预览区块（内容由加载管线或快照填充）
+     */
+    private void createPreviewSections(List<MediaManager.MediaDbItem> libraries) {
         // 清空现有内容
         mediaContentContainer.removeAllViews();
+        previewAdapters.clear();
+        shownPreviewItems.clear();
         
         for (MediaManager.MediaDbItem library : libraries) {
-            // 为每个媒体库创建预览区域（显示更多项目支持横向滑动）
-            createMediaLibraryPreviewSection(library, 20);  // 增加到20个项目支持横向滑动
+            createMediaLibraryPreviewSection(library);
         }
     }
     
@@ -633,8 +652,8 @@ public class MainActivity extends AppCompatActivity {
     /**
      * 📚 为单个媒体库创建预览区域（主页用）
      */
-    private void createMediaLibraryPreviewSection(MediaManager.MediaDbItem library, int previewCount) {
-        Log.d(TAG, "📚 创建媒体库预览区域: " + library.getName() + " (预览" + previewCount + "个)");
+    private void createMediaLibraryPreviewSection(MediaManager.MediaDbItem library) {
+        Log.d(TAG, "📚 创建媒体库预览区域: " + library.getName());
         
         // 创建整个区域的容器
         LinearLayout sectionLayout = new LinearLayout(this);
@@ -706,25 +725,8 @@ public class MainActivity extends AppCompatActivity {
         // 添加到主容器
         mediaContentContainer.addView(sectionLayout);
         
-        // 异步加载该媒体库的预览内容（限制数量）
-        mediaManager.getMediaLibraryItems(library.getGuid(), previewCount, new MediaManager.MediaCallback<List<MediaItem>>() {
-            @Override
-            public void onSuccess(List<MediaItem> items) {
-                Log.d(TAG, "✅ 媒体库 " + library.getName() + " 预览加载成功，共 " + items.size() + " 个项目");
-                runOnUiThread(() -> {
-                    adapter.updateItems(items);
-                });
-            }
-            
-            @Override
-            public void onError(String error) {
-                Log.e(TAG, "❌ 媒体库 " + library.getName() + " 预览加载失败: " + error);
-                runOnUiThread(() -> {
-                    // 显示空状态或错误信息
-                    adapter.updateItems(new ArrayList<>());
-                });
-            }
-        });
+        // 预览内容由主页加载管线异步填充
+        previewAdapters.put(library.getGuid(), adapter);
     }
     
     /**
@@ -732,7 +734,7 @@ public class MainActivity extends AppCompatActivity {
      */
     private void createMediaLibraryContentSection(MediaManager.MediaDbItem library) {
         Log.d(TAG, "📚 [废弃] createMediaLibraryContentSection已改用createMediaLibraryPreviewSection");
-        createMediaLibraryPreviewSection(library, 6);
+        createMediaLibraryPreviewSection(library);
     }
     
     /**
@@ -916,7 +918,7 @@ public class MainActivity extends AppCompatActivity {
             String baseUrl = SharedPreferencesManager.getServerBaseUrl();
             String playUrl = baseUrl + "/v/api/v1/media/range/" + mediaGuid + "?direct_link_quality_index=0";
             Log.d(TAG, "🎬 使用媒体URL: " + playUrl);
-            navigateToVideoPlayer(playUrl, mediaItem, mediaGuid, mediaItem.getVideoGuid(), mediaItem.getTs());
+            navigateToVideoPlayer(playUrl, mediaItem, mediaGuid, mediaItem.getVideoGuid(), mediaItem.getTs(), -1);
         } else {
             // 否则调用API获取播放信息
             Log.d(TAG, "🎬 调用API获取播放信息");
@@ -924,7 +926,8 @@ public class MainActivity extends AppCompatActivity {
                 @Override
                 public void onSuccess(com.mynas.nastv.model.PlayStartInfo playInfo) {
                     runOnUiThread(() -> navigateToVideoPlayer(playInfo.getPlayUrl(), mediaItem, 
-                        playInfo.getMediaGuid(), playInfo.getVideoGuid(), playInfo.getResumePositionSeconds()));
+                        playInfo.getMediaGuid(), playInfo.getVideoGuid(), playInfo.getResumePositionSeconds(),
+                        playInfo.getPlayInfoLatencyMs()));
                 }
                 
                 @Override
@@ -941,7 +944,8 @@ public class MainActivity extends AppCompatActivity {
     /**
      * 🎬 跳转到视频播放器
      */
-    private void navigateToVideoPlayer(String playUrl, MediaItem mediaItem, String mediaGuid, String videoGuid, long resumePosition) {
+    private void navigateToVideoPlayer(String playUrl, MediaItem mediaItem, String mediaGuid, String videoGuid, long resumePosition,
+                                       long playInfoMs) {
         Intent intent = new Intent(this, VideoPlayerActivity.class);
         intent.putExtra("video_url", playUrl);
         intent.putExtra("video_title", mediaItem.getTitle());
@@ -951,6 +955,7 @@ public class MainActivity extends AppCompatActivity {
         intent.putExtra("media_guid", mediaGuid);
         intent.putExtra("video_guid", videoGuid);
         intent.putExtra("resume_position", resumePosition);
+        intent.putExtra("play_info_ms", playInfoMs);
         
         // 传递关联信息
         if (mediaItem.getParentGuid() != null) {
@@ -1058,6 +1063,14 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "✅ 预览区域标题更新完成");
     }
     
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (homeFeedLoader != null) {
+            homeFeedLoader.cancel();
+        }
+    }
+    
     /**
      * 📱 处理按键事件
      */
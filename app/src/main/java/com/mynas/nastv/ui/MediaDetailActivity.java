@@ -246,6 +246,13 @@ public class MediaDetailActivity extends AppCompatActivity {
                     }
                 });
             }
+
+            @Override
+            public void onRefreshed(MediaDetailResponse detail) {
+                // 季列表、演职人员已按缓存加载过，只刷新详情
+                mediaDetail = detail;
+                runOnUiThread(() -> updateUI(detail));
+            }
             
             @Override
             public void onError(String error) {
@@ -270,6 +277,11 @@ public class MediaDetailActivity extends AppCompatActivity {
                     }
                 });
             }
+
+            @Override
+            public void onRefreshed(java.util.List<com.mynas.nastv.model.PersonInfo> personList) {
+                // 演职人员区域是追加到页面上的，刷新结果不再重复创建
+            }
             
             @Override
             public void onError(String error) {
@@ -734,6 +746,11 @@ public class MediaDetailActivity extends AppCompatActivity {
                 }
             }
 
+            @Override
+            public void onRefreshed(List<EpisodeListResponse.Episode> episodes) {
+                // 已按缓存的列表开始播放，不再重复跳转
+            }
+
             @Override
             public void onError(String error) {
                  runOnUiThread(() -> Toast.makeText(MediaDetailActivity.this, "加载剧集失败", Toast.LENGTH_SHORT).show());
@@ -766,6 +783,7 @@ public class MediaDetailActivity extends AppCompatActivity {
         intent.putExtra("video_guid", playInfo.getVideoGuid());
         intent.putExtra("audio_guid", playInfo.getAudioGuid());
         intent.putExtra("media_guid", playInfo.getMediaGuid());
+        intent.putExtra("play_info_ms", playInfo.getPlayInfoLatencyMs());
         
         if (mediaDetail != null) {
              intent.putExtra("douban_id", String.valueOf(mediaDetail.getDoubanId()));
@@ -485,6 +485,7 @@ public class SeasonDetailActivity extends AppCompatActivity {
                     intent.putExtra("video_guid", playInfo.getVideoGuid());
                     intent.putExtra("audio_guid", playInfo.getAudioGuid());
                     intent.putExtra("media_guid", playInfo.getMediaGuid());
+                    intent.putExtra("play_info_ms", playInfo.getPlayInfoLatencyMs());
                     
                     // 优先使用从TV传递过来的doubanId，如果没有则尝试从seasonDetail获取
                     long effectiveDoubanId = doubanId;
@@ -73,6 +73,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
     // 🎬 恢复播放位置
     private long resumePositionSeconds = 0;
     
+    // 📊 播放体验指标（每次起播一个会话）
+    private com.mynas.nastv.player.PlaybackSessionRecorder qoeSession;
+    private long initialPlayInfoMs = -1; // 进入页面前 play/info 接口的耗时
+    
     // 🎬 跳过片头标志
     private boolean hasSkippedIntro = false;
     
@@ -87,7 +91,14 @@ public class VideoPlayerActivity extends AppCompatActivity {
     
     // 🚀 缓存预加载相关
     private com.mynas.nastv.player.CachedDataSourceFactory cachedDataSourceFactory;
-    private com.mynas.nastv.player.VideoPrefetchService prefetchService;
+    private volatile com.mynas.nastv.player.VideoPrefetchService prefetchService;
+    private volatile long playbackDurationMs = 0; // 供 CacheAwareLoadControl 在播放线程做时间→字节换算
+    
+    // 🔥 下一集预热（播放到片尾附近时触发）
+    private com.mynas.nastv.player.NextEpisodePrewarmer nextEpisodePrewarmer;
+    private boolean prewarmTriggered = false;
+    private static final long PREWARM_DEFAULT_LEAD_MS = 120 * 1000; // 未设置跳过片尾时，结束前2分钟预热
+    private static final long PREWARM_OUTRO_MARGIN_MS = 30 * 1000;  // 设置了跳过片尾时，提前30秒预热
     
     // Manager
     private MediaManager mediaManager;
@@ -111,6 +122,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
         initializeViews();
         initializePlayer();
         loadMediaContent();
+        
+        // 📥 播放期间离线下载自动降速
+        com.mynas.nastv.player.OfflineDownloadManager.getInstance(this).setPlaybackActive(true);
     }
     
     private void initializeData() {
@@ -142,6 +156,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
         if (resumePositionSeconds <= 0) {
             resumePositionSeconds = intent.getLongExtra("ts", 0);
         }
+        initialPlayInfoMs = intent.getLongExtra("play_info_ms", -1);
         
         // 🎬 电影弹幕修复：电影没有季/集概念，但弹幕API需要season=1, episode=1
         // 参考Web端请求：电影使用 season_number=1, episode_number=1
@@ -158,7 +173,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
         mediaManager = new MediaManager(this);
         
         // 🎬 初始化播放进度记录器
-        progressRecorder = new ProgressRecorder();
+        progressRecorder = new ProgressRecorder(this);
         
         // 📺 加载剧集列表（用于选集和下一集功能）
         if (seasonGuid != null && !seasonGuid.isEmpty()) {
@@ -232,18 +247,19 @@ public class VideoPlayerActivity extends AppCompatActivity {
             android.app.ActivityManager.MemoryInfo memInfo = new android.app.ActivityManager.MemoryInfo();
             am.getMemoryInfo(memInfo);
             
-            // 使用总内存的 30% 作为视频缓冲，最小200MB，最大1GB
+            // 磁盘缓存不足时最多使用总内存的 30% 作为视频缓冲，最小200MB，最大1GB
+            // 磁盘缓存覆盖充足时由 CacheAwareLoadControl 缩小内存缓冲
             long totalMemory = memInfo.totalMem;
             int targetBufferBytes = (int) Math.min(1024 * 1024 * 1024L, 
                                      Math.max(200 * 1024 * 1024, totalMemory * 30 / 100));
             
-            Log.d(TAG, "🎬 Total memory: " + (totalMemory / 1024 / 1024) + "MB, target buffer: " + (targetBufferBytes / 1024 / 1024) + "MB (30%)");
+            Log.d(TAG, "🎬 Total memory: " + (totalMemory / 1024 / 1024) + "MB, max buffer: " + (targetBufferBytes / 1024 / 1024) + "MB (30%)");
             
             // 🔑 优化缓冲策略：快速启动 + 持续缓冲
             // - 首次播放只需2秒缓冲（快速启动）
             // - 卡顿后只需3秒恢复（快速恢复）
             // - 后台持续缓冲到90秒
-            androidx.media3.exoplayer.DefaultLoadControl loadControl = new androidx.media3.exoplayer.DefaultLoadControl.Builder()
+            androidx.media3.exoplayer.DefaultLoadControl defaultLoadControl = new androidx.media3.exoplayer.DefaultLoadControl.Builder()
                 .setBufferDurationsMs(
                     30000,   // minBufferMs: 最小保持30秒缓冲
                     90000,   // maxBufferMs: 最大缓冲90秒
@@ -255,6 +271,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
                 .setBackBuffer(30000, true) // 保留30秒回看缓冲
                 .build();
             
+            // 🧠 按磁盘缓存覆盖动态调整内存缓冲
+            com.mynas.nastv.player.CacheAwareLoadControl loadControl = new com.mynas.nastv.player.CacheAwareLoadControl(
+                defaultLoadControl, targetBufferBytes, this::getCachedDurationAheadMs);
+            
             // 🔧 根据设置选择解码器
             // 优先级：forceUseSoftwareDecoder（硬解崩溃后自动切换）> 用户设置
             ExoPlayer.Builder playerBuilder = new ExoPlayer.Builder(this)
@@ -323,6 +343,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
             }
             
             exoPlayer = playerBuilder.build();
+            if (qoeSession != null) {
+                // 软解重试等场景重建了播放器，继续记录到当前会话
+                exoPlayer.addAnalyticsListener(qoeSession);
+            }
             
             // 设置视频缩放模式
             playerView.setResizeMode(androidx.media3.ui.AspectRatioFrameLayout.RESIZE_MODE_FIT);
@@ -555,12 +579,34 @@ public class VideoPlayerActivity extends AppCompatActivity {
     
     private void loadMediaContent() {
         if (videoUrl != null && !videoUrl.isEmpty()) {
+            startQoeSession(initialPlayInfoMs);
             playMedia(videoUrl);
         } else {
             showError("No video URL provided");
         }
     }
     
+    /**
+     * 📊 开始新的播放会话指标记录（结束上一个会话）
+     */
+    private void startQoeSession(long playInfoMs) {
+        finishQoeSession();
+        qoeSession = new com.mynas.nastv.player.PlaybackSessionRecorder(this, mediaTitle, mediaGuid, playInfoMs);
+        if (exoPlayer != null) {
+            exoPlayer.addAnalyticsListener(qoeSession);
+        }
+    }
+    
+    private void finishQoeSession() {
+        if (qoeSession != null) {
+            if (exoPlayer != null) {
+                exoPlayer.removeAnalyticsListener(qoeSession);
+            }
+            qoeSession.finish();
+            qoeSession = null;
+        }
+    }
+    
     private void playMedia(String url) {
         Log.e(TAG, "playMedia called with URL: " + url);
         Log.e(TAG, "Danmaku params for playback: title=" + tvTitle + ", s" + seasonNumber + "e" + episodeNumber + ", guid=" + episodeGuid);
@@ -587,7 +633,8 @@ public class VideoPlayerActivity extends AppCompatActivity {
             if (danmuController != null) {
                 if (tvTitle != null && !tvTitle.isEmpty()) {
                     Log.e(TAG, "Loading danmaku with title=" + tvTitle + ", s" + seasonNumber + "e" + episodeNumber);
-                    danmuController.loadDanmaku(tvTitle, episodeNumber, seasonNumber, episodeGuid, parentGuid);
+                    danmuController.loadDanmaku(tvTitle, episodeNumber, seasonNumber, episodeGuid, parentGuid,
+                            resumePositionSeconds * 1000);
                 } else {
                     Log.w(TAG, "No valid title for danmaku, skipping. title=" + tvTitle);
                 }
@@ -841,7 +888,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
                     .createMediaSource(subtitleConfig, androidx.media3.common.C.TIME_UNSET);
             
             // 获取当前的视频 MediaSource（需要重新创建）
-            // 由于直连模式使用 ParallelDataSource，我们需要重新创建视频源
+            // 合并字幕需要重新创建视频源
             androidx.media3.exoplayer.source.MediaSource videoSource = createDirectLinkMediaSource(currentVideoUrl);
             
             if (videoSource != null) {
@@ -1018,14 +1065,6 @@ public class VideoPlayerActivity extends AppCompatActivity {
             }
             final String finalReferer = referer;
             
-            // 配置 OkHttpClient
-            okhttp3.Dispatcher dispatcher = new okhttp3.Dispatcher();
-            dispatcher.setMaxRequests(64);
-            dispatcher.setMaxRequestsPerHost(16);
-            
-            okhttp3.ConnectionPool connectionPool = new okhttp3.ConnectionPool(
-                16, 5, java.util.concurrent.TimeUnit.MINUTES);
-            
             // 构建请求头
             Map<String, String> headers = new HashMap<>();
             headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
@@ -1058,9 +1097,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
                 headers.put("Sec-Fetch-Site", "cross-site");
             }
             
-            okhttp3.OkHttpClient directLinkClient = new okhttp3.OkHttpClient.Builder()
-                .dispatcher(dispatcher)
-                .connectionPool(connectionPool)
+            okhttp3.OkHttpClient directLinkClient = com.mynas.nastv.network.SharedHttpClient.newBuilder()
                 .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
                 .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
                 .writeTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
@@ -1212,17 +1249,6 @@ public class VideoPlayerActivity extends AppCompatActivity {
             }
             final String finalReferer = referer;
             
-            // 🔑 多线程加速：使用 Dispatcher 配置并发请求
-            okhttp3.Dispatcher dispatcher = new okhttp3.Dispatcher();
-            dispatcher.setMaxRequests(64);           // 最大并发请求数
-            dispatcher.setMaxRequestsPerHost(16);    // 每个主机最大并发数
-            
-            // 使用连接池优化
-            okhttp3.ConnectionPool connectionPool = new okhttp3.ConnectionPool(
-                16, // 最大空闲连接数
-                5, java.util.concurrent.TimeUnit.MINUTES
-            );
-            
             // 构建请求头
             Map<String, String> headers = new HashMap<>();
             headers.put("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
@@ -1259,10 +1285,8 @@ public class VideoPlayerActivity extends AppCompatActivity {
                 headers.put("Sec-Fetch-Site", "cross-site");
             }
             
-            // 创建 OkHttpClient
-            okhttp3.OkHttpClient directLinkClient = new okhttp3.OkHttpClient.Builder()
-                .dispatcher(dispatcher)
-                .connectionPool(connectionPool)
+            // 从共享根客户端派生：复用调度器、连接池（切换剧集时保留已建立的 TLS 连接）
+            okhttp3.OkHttpClient directLinkClient = com.mynas.nastv.network.SharedHttpClient.newBuilder()
                 .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
                 .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
                 .writeTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
@@ -1277,6 +1301,19 @@ public class VideoPlayerActivity extends AppCompatActivity {
             // 创建缓存数据源工厂
             cachedDataSourceFactory = new com.mynas.nastv.player.CachedDataSourceFactory(
                 this, directLinkClient, headers, cacheKey);
+            cachedDataSourceFactory.setSessionRecorder(qoeSession);
+            
+            // 📥 已完整下载到离线缓存：不需要预缓存，直接播放
+            if (com.mynas.nastv.player.OfflineDownloadManager.getInstance(this).isComplete(cacheKey)) {
+                Log.e(TAG, "Offline copy complete, skipping prefetch");
+                androidx.media3.exoplayer.source.ProgressiveMediaSource mediaSource = 
+                    new androidx.media3.exoplayer.source.ProgressiveMediaSource.Factory(cachedDataSourceFactory)
+                        .createMediaSource(MediaItem.fromUri(url));
+                exoPlayer.setMediaSource(mediaSource);
+                exoPlayer.prepare();
+                exoPlayer.setPlayWhenReady(true);
+                return null;
+            }
             
             // 关键优化：先启动预缓存服务，等待初始数据下载
             Log.e(TAG, "Starting prefetch service for URL: " + url.substring(0, Math.min(80, url.length())));
@@ -1286,9 +1323,11 @@ public class VideoPlayerActivity extends AppCompatActivity {
             // 等待初始缓存：等待关键缓存准备好后再开始播放
             // 这样可以避免ExoPlayer启动时立即卡顿
             if (prefetchService != null) {
+                final com.mynas.nastv.player.PlaybackSessionRecorder session = qoeSession;
                 new Thread(() -> {
                     try {
                         Log.e(TAG, "Waiting for initial cache...");
+                        long waitStart = android.os.SystemClock.elapsedRealtime();
                         int waitCount = 0;
                         int maxWait = 100; // 最多等待 20 秒
                         // 等待条件：至少 4 个 head chunks 缓存好，或者 critical cache 准备好
@@ -1310,6 +1349,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
                         }
                         int cached = prefetchService.getCachedAheadChunks();
                         Log.e(TAG, "Initial cache ready: " + cached + " chunks cached after " + (waitCount * 200) + "ms");
+                        if (session != null) {
+                            session.recordCriticalWait(android.os.SystemClock.elapsedRealtime() - waitStart);
+                        }
                         
                         // 在主线程创建MediaSource并开始播放
                         runOnUiThread(() -> {
@@ -1386,7 +1428,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
             Log.d(TAG, "Headers: " + headers.keySet());
             
             // 使用 OkHttp 作为数据源，优化网络配置
-            okhttp3.OkHttpClient okHttpClient = new okhttp3.OkHttpClient.Builder()
+            okhttp3.OkHttpClient okHttpClient = com.mynas.nastv.network.SharedHttpClient.newBuilder()
                 .connectTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
                 .readTimeout(120, java.util.concurrent.TimeUnit.SECONDS)
                 .writeTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
@@ -1453,6 +1495,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
             if (exoPlayer != null) {
                 long currentPosition = exoPlayer.getCurrentPosition();
                 long duration = exoPlayer.getDuration();
+                playbackDurationMs = duration > 0 ? duration : 0;
                 
                 // 更新弹幕位置
                 if (danmuController != null) {
@@ -1467,10 +1510,9 @@ public class VideoPlayerActivity extends AppCompatActivity {
                 
                 // 🚀 更新预缓存服务的播放位置（用于调整下载优先级）
                 if (prefetchService != null && duration > 0) {
-                    // 将时间位置转换为字节位置（估算）
-                    long contentLength = prefetchService.getContentLength();
-                    if (contentLength > 0) {
-                        long bytePosition = (currentPosition * contentLength) / duration;
+                    // 将时间位置转换为字节位置（有容器索引时按关键帧准确换算，否则线性估算）
+                    long bytePosition = prefetchService.timeToBytePosition(currentPosition, duration);
+                    if (bytePosition >= 0) {
                         prefetchService.updatePlaybackPosition(bytePosition);
                         
                         // 🔧 调试日志：每 5 秒打印一次位置更新
@@ -1482,11 +1524,61 @@ public class VideoPlayerActivity extends AppCompatActivity {
                     }
                 }
                 
+                // 🔥 接近片尾时预热下一集
+                if (!prewarmTriggered && duration > 0) {
+                    maybePrewarmNextEpisode(currentPosition, duration);
+                }
+                
                 positionHandler.postDelayed(this, 100);
             }
         }
     };
     
+    /**
+     * 🔥 剩余时间进入预热阈值后，预热下一集的播放信息和首尾数据
+     */
+    private void maybePrewarmNextEpisode(long currentPosition, long duration) {
+        int skipOutroSeconds = SharedPreferencesManager.getSkipOutro();
+        long leadMs = skipOutroSeconds > 0
+            ? skipOutroSeconds * 1000L + PREWARM_OUTRO_MARGIN_MS
+            : PREWARM_DEFAULT_LEAD_MS;
+        if (duration - currentPosition > leadMs) return;
+        
+        prewarmTriggered = true;
+        if (!isDirectLinkMode || !SharedPreferencesManager.isAutoPlayNext()) return;
+        com.mynas.nastv.model.EpisodeListResponse.Episode next = findNextEpisode();
+        if (next == null) return;
+        
+        if (nextEpisodePrewarmer == null) {
+            nextEpisodePrewarmer = new com.mynas.nastv.player.NextEpisodePrewarmer(this, mediaManager);
+        }
+        Log.d(TAG, "🔥 Prewarm next episode " + next.getEpisodeNumber() + ", remaining " + ((duration - currentPosition) / 1000) + "s");
+        nextEpisodePrewarmer.prewarm(next);
+    }
+    
+    private com.mynas.nastv.model.EpisodeListResponse.Episode findNextEpisode() {
+        if (episodeList == null) return null;
+        for (int i = 0; i < episodeList.size(); i++) {
+            if (episodeList.get(i).getEpisodeNumber() == episodeNumber) {
+                return i + 1 < episodeList.size() ? episodeList.get(i + 1) : null;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 🧠 从 positionMs 开始磁盘上连续缓存的时长（在播放线程调用）
+     */
+    private long getCachedDurationAheadMs(long positionMs) {
+        com.mynas.nastv.player.VideoPrefetchService service = prefetchService;
+        long duration = playbackDurationMs;
+        if (service == null || duration <= 0) return 0;
+        long bytePosition = service.timeToBytePosition(positionMs, duration);
+        if (bytePosition < 0) return 0;
+        long cachedBytes = service.getContiguousCachedBytes(bytePosition);
+        return Math.max(0, service.bytePositionToTime(bytePosition + cachedBytes, duration) - positionMs);
+    }
+    
     private void startPositionUpdate() {
         positionHandler.post(positionRunnable);
     }
@@ -1539,6 +1631,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         stopPositionUpdate();
+        com.mynas.nastv.player.OfflineDownloadManager.getInstance(this).setPlaybackActive(false);
         
         // 🎬 停止播放进度记录
         if (progressRecorder != null) {
@@ -1550,9 +1643,19 @@ public class VideoPlayerActivity extends AppCompatActivity {
         if (hideIconRunnable != null) {
             iconHandler.removeCallbacks(hideIconRunnable);
         }
+        // 还没执行的方向键跳转不再需要
+        seekOverlayHandler.removeCallbacks(commitDpadSeekRunnable);
+        pendingDpadSeekMs = -1;
+        
+        // 📊 保存本次播放指标
+        finishQoeSession();
         
         // 🚀 停止预缓存服务
         stopPrefetchService();
+        if (nextEpisodePrewarmer != null) {
+            nextEpisodePrewarmer.cancel();
+            nextEpisodePrewarmer = null;
+        }
         
         if (exoPlayer != null) {
             exoPlayer.release();
@@ -1596,18 +1699,18 @@ public class VideoPlayerActivity extends AppCompatActivity {
             hideSettingsMenu();
             return true;
         } else if (keyCode == KeyEvent.KEYCODE_DPAD_LEFT && !isMenuVisible) {
-            // 左键快退10秒（菜单不可见时）
+            // 左键快退10秒（菜单不可见时），连按时累加，停下后再跳转
             if (exoPlayer != null) {
-                long newPosition = Math.max(0, exoPlayer.getCurrentPosition() - 10000);
-                exoPlayer.seekTo(newPosition);
+                long newPosition = Math.max(0, dpadSeekBase() - 10000);
+                scheduleDpadSeek(newPosition);
                 showSeekProgressOverlay(newPosition, false);
                 return true;
             }
         } else if (keyCode == KeyEvent.KEYCODE_DPAD_RIGHT && !isMenuVisible) {
-            // 右键快进10秒（菜单不可见时）
+            // 右键快进10秒（菜单不可见时），连按时累加，停下后再跳转
             if (exoPlayer != null) {
-                long newPosition = Math.min(exoPlayer.getDuration(), exoPlayer.getCurrentPosition() + 10000);
-                exoPlayer.seekTo(newPosition);
+                long newPosition = Math.min(exoPlayer.getDuration(), dpadSeekBase() + 10000);
+                scheduleDpadSeek(newPosition);
                 showSeekProgressOverlay(newPosition, true);
                 return true;
             }
@@ -1691,6 +1794,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
                             long duration = exoPlayer.getDuration();
                             long newPosition = (duration * progress) / 100;
                             progressCurrentTime.setText(formatTime(newPosition));
+                            prefetchSeekTarget(newPosition);
                         }
                     }
                     
@@ -1705,7 +1809,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
                         if (exoPlayer != null) {
                             long duration = exoPlayer.getDuration();
                             long newPosition = (duration * seekBar.getProgress()) / 100;
-                            exoPlayer.seekTo(newPosition);
+                            commitSeek(newPosition);
                         }
                     }
                 });
@@ -1837,6 +1941,70 @@ public class VideoPlayerActivity extends AppCompatActivity {
     private Handler seekOverlayHandler = new Handler(Looper.getMainLooper());
     private Runnable hideSeekOverlayRunnable;
     
+    // 🎯 方向键快进快退：松手 DPAD_SEEK_COMMIT_DELAY_MS 后才真正 seekTo，期间只预取目标
+    private static final long DPAD_SEEK_COMMIT_DELAY_MS = 600;
+    private long pendingDpadSeekMs = -1;
+    private boolean seekPrefetchUncommitted = false;
+    private final Runnable commitDpadSeekRunnable = () -> {
+        long target = pendingDpadSeekMs;
+        pendingDpadSeekMs = -1;
+        if (target >= 0) commitSeek(target);
+    };
+    
+    /**
+     * 🎯 拖动目标预取：在 ExoPlayer 打开新数据源之前，开始下载目标关键帧所在的块
+     * 连续拖动时旧目标的下载会被取消；跳转前调用 commitSeek，放弃时调用 cancelSeekPrefetch
+     */
+    private void prefetchSeekTarget(long targetMs) {
+        com.mynas.nastv.player.VideoPrefetchService service = prefetchService;
+        if (service != null && exoPlayer != null) {
+            service.prefetchSeekTarget(targetMs, exoPlayer.getDuration());
+            seekPrefetchUncommitted = true;
+        }
+    }
+    
+    /**
+     * 方向键连按时从上一次的目标继续累加，而不是从还没跳过去的播放位置算
+     */
+    private long dpadSeekBase() {
+        return pendingDpadSeekMs >= 0 ? pendingDpadSeekMs : exoPlayer.getCurrentPosition();
+    }
+    
+    /**
+     * 方向键快进快退：立即预取目标，停止按键一段时间后再跳转
+     */
+    private void scheduleDpadSeek(long targetMs) {
+        pendingDpadSeekMs = targetMs;
+        prefetchSeekTarget(targetMs);
+        seekOverlayHandler.removeCallbacks(commitDpadSeekRunnable);
+        seekOverlayHandler.postDelayed(commitDpadSeekRunnable, DPAD_SEEK_COMMIT_DELAY_MS);
+    }
+    
+    /**
+     * 确认跳转：ExoPlayer seekTo，预缓存窗口随之移到目标处
+     */
+    private void commitSeek(long targetMs) {
+        if (exoPlayer == null) return;
+        exoPlayer.seekTo(targetMs);
+        com.mynas.nastv.player.VideoPrefetchService service = prefetchService;
+        if (service != null) {
+            service.commitSeekTarget(targetMs, exoPlayer.getDuration());
+        }
+        seekPrefetchUncommitted = false;
+    }
+    
+    /**
+     * 拖动结束但没有跳转：释放目标预取，不再占用下载线程
+     */
+    private void cancelSeekPrefetch() {
+        if (!seekPrefetchUncommitted || pendingDpadSeekMs >= 0) return;
+        seekPrefetchUncommitted = false;
+        com.mynas.nastv.player.VideoPrefetchService service = prefetchService;
+        if (service != null) {
+            service.cancelSeekPrefetch();
+        }
+    }
+    
     /**
      * 🎬 显示快进/快退进度条
      */
@@ -1966,6 +2134,8 @@ public class VideoPlayerActivity extends AppCompatActivity {
         // 停止进度更新
         stopProgressUpdate();
         isMenuVisible = false;
+        // 拖动进度条后没有跳转就收起了菜单
+        cancelSeekPrefetch();
     }
     
     private void updateSpeedLabel() {
@@ -2098,75 +2268,20 @@ public class VideoPlayerActivity extends AppCompatActivity {
         Log.e(TAG, "🚀🚀🚀 playEpisode called for episode " + episode.getEpisodeNumber());
         Toast.makeText(this, "正在加载第" + episode.getEpisodeNumber() + "集...", Toast.LENGTH_SHORT).show();
         
+        // 🔥 已预热时直接使用预先解析的播放信息，省掉一次接口往返
+        com.mynas.nastv.model.PlayStartInfo warmPlayInfo = nextEpisodePrewarmer != null
+            ? nextEpisodePrewarmer.takePlayInfo(episode.getGuid()) : null;
+        if (warmPlayInfo != null) {
+            Log.d(TAG, "🔥 Using prewarmed play info for episode " + episode.getEpisodeNumber());
+            warmPlayInfo.setPlayInfoLatencyMs(0); // 预热时已请求，不在本次起播路径上
+            switchToEpisode(episode, warmPlayInfo);
+            return;
+        }
+        
         mediaManager.startPlayWithInfo(episode.getGuid(), new MediaManager.MediaCallback<com.mynas.nastv.model.PlayStartInfo>() {
             @Override
             public void onSuccess(com.mynas.nastv.model.PlayStartInfo playInfo) {
-                runOnUiThread(() -> {
-                    Log.e(TAG, "🔄 Starting FULL REINITIALIZATION for episode switch");
-                    
-                    // 更新当前剧集信息
-                    episodeNumber = episode.getEpisodeNumber();
-                    episodeGuid = episode.getGuid();
-                    videoGuid = playInfo.getVideoGuid();
-                    audioGuid = playInfo.getAudioGuid();
-                    mediaGuid = playInfo.getMediaGuid();
-                    
-                    // 更新标题
-                    String newTitle = episode.getTitle() != null ? episode.getTitle() : "第" + episode.getEpisodeNumber() + "集";
-                    mediaTitle = newTitle;
-                    updateTitleDisplay();
-                    
-                    // 重置恢复位置
-                    resumePositionSeconds = playInfo.getResumePositionSeconds();
-                    
-                    // 🔧 步骤1：停止预缓存服务
-                    Log.e(TAG, "🔄 Step 1: Stopping prefetch service");
-                    stopPrefetchService();
-                    
-                    // 🔧 步骤2：停止并释放 ExoPlayer
-                    Log.e(TAG, "🔄 Step 2: Releasing ExoPlayer");
-                    if (exoPlayer != null) {
-                        exoPlayer.stop();
-                        exoPlayer.clearMediaItems();
-                        exoPlayer.release();
-                        exoPlayer = null;
-                        isPlayerReady = false;
-                    }
-                    
-                    // 🔧 步骤3：释放共享缓存并清除缓存数据
-                    Log.e(TAG, "🔄 Step 3: Releasing and clearing shared cache");
-                    if (cachedDataSourceFactory != null) {
-                        cachedDataSourceFactory.stopPrefetch();
-                        cachedDataSourceFactory = null;
-                    }
-                    com.mynas.nastv.player.CachedDataSourceFactory.releaseAndClearCache(VideoPlayerActivity.this);
-                    
-                    // 🔧 步骤4：清空弹幕缓存
-                    Log.e(TAG, "🔄 Step 4: Clearing danmaku cache");
-                    if (danmuController != null) {
-                        danmuController.clearDanmaku();
-                    }
-                    
-                    // 🔧 步骤5：重置播放器状态
-                    Log.e(TAG, "🔄 Step 5: Resetting player state");
-                    hasSkippedIntro = false;
-                    currentSubtitleIndex = -1;
-                    subtitleStreams = null;
-                    
-                    // 🔧 步骤6：重新初始化 ExoPlayer（就像首次进入）
-                    Log.e(TAG, "🔄 Step 6: Reinitializing ExoPlayer");
-                    initializePlayer();
-                    
-                    // 🔧 步骤7：显示加载界面并播放新视频
-                    Log.e(TAG, "🔄 Step 7: Playing new video");
-                    showLoading("加载中...");  // 显示 loading，等缓存好了会自动隐藏
-                    videoUrl = playInfo.getPlayUrl();
-                    playMedia(videoUrl);
-                    
-                    hideSettingsMenu();
-                    
-                    Log.e(TAG, "🔄 FULL REINITIALIZATION completed");
-                });
+                runOnUiThread(() -> switchToEpisode(episode, playInfo));
             }
             
             @Override
@@ -2178,6 +2293,82 @@ public class VideoPlayerActivity extends AppCompatActivity {
         });
     }
     
+    /**
+     * 📺 切换到已解析播放信息的剧集（主线程）
+     */
+    private void switchToEpisode(com.mynas.nastv.model.EpisodeListResponse.Episode episode,
+                                 com.mynas.nastv.model.PlayStartInfo playInfo) {
+        Log.e(TAG, "🔄 Starting FULL REINITIALIZATION for episode switch");
+        
+        // 更新当前剧集信息
+        episodeNumber = episode.getEpisodeNumber();
+        episodeGuid = episode.getGuid();
+        videoGuid = playInfo.getVideoGuid();
+        audioGuid = playInfo.getAudioGuid();
+        mediaGuid = playInfo.getMediaGuid();
+        
+        // 更新标题
+        String newTitle = episode.getTitle() != null ? episode.getTitle() : "第" + episode.getEpisodeNumber() + "集";
+        mediaTitle = newTitle;
+        updateTitleDisplay();
+        
+        // 重置恢复位置
+        resumePositionSeconds = playInfo.getResumePositionSeconds();
+        
+        // 🔧 步骤1：结束上一集的指标记录，停止预缓存服务
+        Log.e(TAG, "🔄 Step 1: Stopping prefetch service");
+        finishQoeSession();
+        stopPrefetchService();
+        
+        // 🔧 步骤2：停止并释放 ExoPlayer
+        Log.e(TAG, "🔄 Step 2: Releasing ExoPlayer");
+        if (exoPlayer != null) {
+            exoPlayer.stop();
+            exoPlayer.clearMediaItems();
+            exoPlayer.release();
+            exoPlayer = null;
+            isPlayerReady = false;
+        }
+        
+        // 🔧 步骤3：释放共享缓存并清除缓存数据
+        Log.e(TAG, "🔄 Step 3: Releasing and clearing shared cache");
+        if (cachedDataSourceFactory != null) {
+            cachedDataSourceFactory.stopPrefetch();
+            cachedDataSourceFactory = null;
+        }
+        // 🔥 保留下一集预热的数据；此时缓存实例不释放，未完成的预热块继续写入
+        String warmCacheKey = nextEpisodePrewarmer != null ? nextEpisodePrewarmer.getCacheKey() : null;
+        com.mynas.nastv.player.CachedDataSourceFactory.releaseAndClearCache(VideoPlayerActivity.this, warmCacheKey);
+        
+        // 🔧 步骤4：清空弹幕缓存
+        Log.e(TAG, "🔄 Step 4: Clearing danmaku cache");
+        if (danmuController != null) {
+            danmuController.clearDanmaku();
+        }
+        
+        // 🔧 步骤5：重置播放器状态
+        Log.e(TAG, "🔄 Step 5: Resetting player state");
+        hasSkippedIntro = false;
+        prewarmTriggered = false;
+        currentSubtitleIndex = -1;
+        subtitleStreams = null;
+        
+        // 🔧 步骤6：重新初始化 ExoPlayer（就像首次进入）
+        Log.e(TAG, "🔄 Step 6: Reinitializing ExoPlayer");
+        initializePlayer();
+        
+        // 🔧 步骤7：显示加载界面并播放新视频
+        Log.e(TAG, "🔄 Step 7: Playing new video");
+        showLoading("加载中...");  // 显示 loading，等缓存好了会自动隐藏
+        videoUrl = playInfo.getPlayUrl();
+        startQoeSession(playInfo.getPlayInfoLatencyMs());
+        playMedia(videoUrl);
+        
+        hideSettingsMenu();
+        
+        Log.e(TAG, "🔄 FULL REINITIALIZATION completed");
+    }
+    
     /**
      * 📺 播放下一集
      */
@@ -2346,7 +2537,10 @@ public class VideoPlayerActivity extends AppCompatActivity {
             "跳过片头/片尾",
             "画面比例: " + getAspectRatioLabel(SharedPreferencesManager.getAspectRatio()),
             "解码器: " + (SharedPreferencesManager.useSoftwareDecoder() ? "软解" : "硬解"),
-            "音频轨道"
+            "音频轨道",
+            "离线缓存",
+            "播放统计",
+            "弹幕渲染线程: " + (SharedPreferencesManager.isDanmakuRenderThreadEnabled() ? "开" : "关")
         };
         
         new android.app.AlertDialog.Builder(this)
@@ -2368,11 +2562,137 @@ public class VideoPlayerActivity extends AppCompatActivity {
                     case 4: // 音频轨道
                         showAudioTrackDialog();
                         break;
+                    case 5: // 离线缓存
+                        showOfflineDownloadDialog();
+                        break;
+                    case 6: // 播放统计
+                        showPlaybackStatsDialog();
+                        break;
+                    case 7: // 弹幕渲染线程
+                        toggleDanmakuRenderThread();
+                        break;
+                }
+            })
+            .show();
+    }
+    
+    /**
+     * 📊 播放统计：本次播放的实时指标 + 预缓存吞吐量决策 + 最近的会话记录 + 接口请求合并统计
+     */
+    private void showPlaybackStatsDialog() {
+        StringBuilder message = new StringBuilder();
+        if (qoeSession != null) {
+            message.append("【本次播放】\n").append(qoeSession.describe()).append("\n\n");
+        }
+        com.mynas.nastv.player.VideoPrefetchService service = prefetchService;
+        if (service != null) {
+            message.append("【预缓存】\n").append(service.getBufferStatus())
+                   .append("\n").append(service.getThroughputMetrics()).append("\n\n");
+        }
+        
+        // 最近记录需要读文件，放到后台线程
+        new Thread(() -> {
+            String recent = com.mynas.nastv.player.PlaybackSessionRecorder.describeRecent(this);
+            runOnUiThread(() -> {
+                if (isFinishing()) return;
+                message.append("【最近记录】\n").append(recent);
+                message.append("\n\n【接口请求】\n").append(MediaManager.getRequestStats());
+                
+                new android.app.AlertDialog.Builder(this)
+                    .setTitle("播放统计")
+                    .setMessage(message.toString())
+                    .setPositiveButton("确定", null)
+                    .show();
+            });
+        }, "PlaybackStatsLoader").start();
+    }
+    
+    /**
+     * 📥 离线缓存对话框：下载本集 / 后续剧集、限速、查看状态
+     */
+    private void showOfflineDownloadDialog() {
+        com.mynas.nastv.player.OfflineDownloadManager manager =
+            com.mynas.nastv.player.OfflineDownloadManager.getInstance(this);
+        int cap = manager.getBandwidthCapMBps();
+        String[] options = {
+            "下载本集",
+            "下载后续3集",
+            "下载限速: " + (cap > 0 ? cap + "MB/s" : "不限"),
+            "下载状态"
+        };
+        
+        new android.app.AlertDialog.Builder(this)
+            .setTitle("离线缓存")
+            .setItems(options, (dialog, which) -> {
+                switch (which) {
+                    case 0:
+                        if (mediaGuid != null && !mediaGuid.isEmpty()) {
+                            manager.enqueue(mediaGuid, mediaTitle);
+                            Toast.makeText(this, "已加入离线下载", Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(this, "当前视频不支持离线下载", Toast.LENGTH_SHORT).show();
+                        }
+                        break;
+                    case 1:
+                        if (seasonGuid == null || seasonGuid.isEmpty()) {
+                            Toast.makeText(this, "暂无后续剧集", Toast.LENGTH_SHORT).show();
+                            break;
+                        }
+                        manager.enqueueNextEpisodes(mediaManager, seasonGuid, episodeNumber, 3,
+                            new MediaManager.MediaCallback<Integer>() {
+                                @Override
+                                public void onSuccess(Integer count) {
+                                    runOnUiThread(() -> Toast.makeText(VideoPlayerActivity.this,
+                                        count > 0 ? "已加入" + count + "集离线下载" : "暂无后续剧集",
+                                        Toast.LENGTH_SHORT).show());
+                                }
+                                
+                                @Override
+                                public void onError(String error) {
+                                    runOnUiThread(() -> Toast.makeText(VideoPlayerActivity.this,
+                                        "获取剧集列表失败", Toast.LENGTH_SHORT).show());
+                                }
+                            });
+                        break;
+                    case 2:
+                        showOfflineBandwidthDialog(manager);
+                        break;
+                    case 3:
+                        new android.app.AlertDialog.Builder(this)
+                            .setTitle("下载状态")
+                            .setMessage(manager.getStatusSummary())
+                            .setPositiveButton("确定", null)
+                            .show();
+                        break;
                 }
             })
             .show();
     }
     
+    /**
+     * 📥 离线下载限速选择
+     */
+    private void showOfflineBandwidthDialog(com.mynas.nastv.player.OfflineDownloadManager manager) {
+        String[] labels = {"不限", "2MB/s", "5MB/s", "10MB/s"};
+        int[] values = {0, 2, 5, 10};
+        int checkedItem = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == manager.getBandwidthCapMBps()) {
+                checkedItem = i;
+                break;
+            }
+        }
+        
+        new android.app.AlertDialog.Builder(this)
+            .setTitle("下载限速")
+            .setSingleChoiceItems(labels, checkedItem, (dialog, which) -> {
+                manager.setBandwidthCapMBps(values[which]);
+                Toast.makeText(this, "下载限速: " + labels[which], Toast.LENGTH_SHORT).show();
+                dialog.dismiss();
+            })
+            .show();
+    }
+    
     /**
      * ⚙️ 切换自动连播
      */
@@ -2382,6 +2702,16 @@ public class VideoPlayerActivity extends AppCompatActivity {
         Toast.makeText(this, "自动连播: " + (!current ? "开" : "关"), Toast.LENGTH_SHORT).show();
     }
     
+    /**
+     * 🎬 弹幕渲染线程开关：开启后弹幕在独立线程的 TextureView 上绘制，不占主线程；
+     * 弹幕视图在打开播放页时创建，下次打开播放页生效
+     */
+    private void toggleDanmakuRenderThread() {
+        boolean enabled = !SharedPreferencesManager.isDanmakuRenderThreadEnabled();
+        SharedPreferencesManager.setDanmakuRenderThreadEnabled(enabled);
+        Toast.makeText(this, "弹幕渲染线程: " + (enabled ? "开" : "关") + "，下次打开播放页生效", Toast.LENGTH_SHORT).show();
+    }
+    
     /**
      * ⚙️ 显示跳过片头/片尾设置对话框
      */
@@ -0,0 +1,202 @@
+package com.mynas.nastv.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🗄️ 按 LRU 淘汰的缓存目录
+ *
+ * 每个键一个文件，目录总大小超出上限时淘汰最久未访问的文件：
+ * - 首次访问时扫描目录，按文件最后修改时间恢复 LRU 顺序（读取时由调用方 markAccessed 更新）
+ * - 写入先写 .tmp 再重命名，中途崩溃不会留下半个文件；残留的 .tmp 在扫描时删除
+ *
+ * 不加锁，由调用方保证串行访问（ResponseCache 的 IO 线程、DanmakuDiskCache 的对象锁）。
+ */
+public final class LruDiskDirectory {
+    private static final String TAG = "LruDiskDirectory";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * 写入文件内容
+     */
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 文件被淘汰时回调（调用方同步清理自己的内存层）
+     */
+    public interface EvictionListener {
+        void onEvicted(String key);
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final String name;
+    private final EvictionListener evictionListener;
+
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+    private boolean indexLoaded = false;
+
+    /**
+     * @param name 日志中显示的缓存名
+     */
+    public LruDiskDirectory(File dir, long maxBytes, String name, EvictionListener evictionListener) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.name = name;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * 是否有该键的文件（同时刷新 LRU 顺序）
+     */
+    public boolean contains(String key) {
+        ensureIndex();
+        return index.get(key) != null;
+    }
+
+    public File file(String key) {
+        return new File(dir, key);
+    }
+
+    /**
+     * 记录一次读取，重启后按最后访问时间恢复 LRU 顺序
+     */
+    public void markAccessed(String key) {
+        file(key).setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * 写入（替换）一个文件，然后按上限淘汰
+     */
+    public void write(String key, ContentWriter writer) throws IOException {
+        ensureIndex();
+        File tmp = new File(dir, key + TMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            writer.writeTo(out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        File file = file(key);
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("rename failed");
+        }
+
+        long length = file.length();
+        Long old = index.put(key, length);
+        totalBytes += length - (old != null ? old : 0);
+        trim();
+    }
+
+    public void remove(String key) {
+        Long size = index.remove(key);
+        if (size != null) totalBytes -= size;
+        file(key).delete();
+    }
+
+    /**
+     * 删除键以 prefix 开头的全部文件
+     *
+     * @return 删除的文件数
+     */
+    public int removeByPrefix(String prefix) {
+        ensureIndex();
+        int removed = 0;
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (!entry.getKey().startsWith(prefix)) continue;
+            totalBytes -= entry.getValue();
+            file(entry.getKey()).delete();
+            it.remove();
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * 删除目录下的全部文件
+     */
+    public void clear() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        index.clear();
+        totalBytes = 0;
+        // 下次访问时重新扫描：目录还不存在时由 ensureIndex 创建，否则之后的写入全部失败
+        indexLoaded = false;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            totalBytes -= eldest.getValue();
+            file(eldest.getKey()).delete();
+            it.remove();
+            if (evictionListener != null) evictionListener.onEvicted(eldest.getKey());
+            Log.d(TAG, "🗄️ " + name + " evicted " + eldest.getKey());
+        }
+    }
+
+    /**
+     * 首次访问时扫描缓存目录，按最后访问时间建立 LRU 索引
+     */
+    private void ensureIndex() {
+        if (indexLoaded) return;
+        indexLoaded = true;
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "🗄️ Cannot create " + dir);
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        List<File> list = new ArrayList<>(Arrays.asList(files));
+        list.sort((a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : list) {
+            if (f.getName().endsWith(TMP_SUFFIX)) {
+                f.delete();
+                continue;
+            }
+            index.put(f.getName(), f.length());
+            totalBytes += f.length();
+        }
+        trim();
+        Log.d(TAG, "🗄️ " + name + " index loaded: " + index.size() + " entries, " + (totalBytes / 1024) + "KB");
+    }
+
+    /**
+     * 文件名用的键摘要（40 位十六进制）
+     */
+    public static String sha1(String input) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(input.hashCode());
+        }
+    }
+}
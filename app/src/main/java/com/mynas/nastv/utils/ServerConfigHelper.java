@@ -108,7 +108,7 @@ public class ServerConfigHelper {
     public static void testServerConnection(String serverUrl, ServerTestCallback callback) {
         new Thread(() -> {
             try {
-                okhttp3.OkHttpClient client = new okhttp3.OkHttpClient.Builder()
+                okhttp3.OkHttpClient client = com.mynas.nastv.network.SharedHttpClient.newBuilder()
                         .connectTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
                         .readTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
                         .build();
@@ -23,6 +23,7 @@ public class SharedPreferencesManager {
     private static final String KEY_DANMAKU_ALPHA = "danmaku_alpha";
     private static final String KEY_DANMAKU_TEXT_SIZE = "danmaku_text_size_v2";
     private static final String KEY_DANMAKU_REGION = "danmaku_region_v2";
+    private static final String KEY_DANMAKU_RENDER_THREAD = "danmaku_render_thread";
     private static final String KEY_VIDEO_QUALITY = "video_quality";
     
     // 系统设置
@@ -216,6 +217,24 @@ public class SharedPreferencesManager {
         return sharedPreferences != null ? 
                 sharedPreferences.getInt(KEY_DANMAKU_REGION, 100) : 100;
     }
+
+    /**
+     * 保存弹幕渲染线程开关
+     */
+    public static void setDanmakuRenderThreadEnabled(boolean enabled) {
+        if (sharedPreferences != null) {
+            sharedPreferences.edit().putBoolean(KEY_DANMAKU_RENDER_THREAD, enabled).apply();
+            Log.d(TAG, "弹幕渲染线程设置为: " + enabled);
+        }
+    }
+
+    /**
+     * 获取弹幕渲染线程开关 (默认关闭，在主线程渲染)
+     */
+    public static boolean isDanmakuRenderThreadEnabled() {
+        return sharedPreferences != null ? 
+                sharedPreferences.getBoolean(KEY_DANMAKU_RENDER_THREAD, false) : false;
+    }
     
     // 视频设置方法
     
@@ -7,28 +7,62 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
 
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
 
 /**
  * 🔑 API签名工具类
  * 完全复用Web项目(fntv-electron)的签名算法，生成authx头部
- * 
+ *
  * Web端签名算法 (request.ts):
  * signArray = [api_key, url, nonce, timestamp, dataJsonMd5, api_secret]
  * signStr = signArray.join('_')
  * authx = `nonce=${nonce}&timestamp=${timestamp}&sign=${md5(signStr)}`
+ *
+ * 首页加载时会在调度线程上集中签几十个请求，签名路径尽量不分配：
+ * - 每个线程复用一个 MessageDigest、拼接缓冲和十六进制缓冲
+ * - 请求体直接流式写入 MD5，不生成中间字符串
+ * - 路径直接取自 HttpUrl，不重新解析 URL 字符串
+ * - 默认不打日志（{@link #setDebugLogging(boolean)} 开启）
  */
 public class SignatureUtils {
     private static final String TAG = "SignatureUtils";
-    
+
     // 🔑 API密钥，与Web项目(fntv-electron)保持一致
     private static final String API_KEY = "NDzZTVxnRKP8Z0jXg1VAMonaG8akvh";      // api_key
     private static final String API_SECRET = "16CCEB3D-AB42-077D-36A1-F355324E4237"; // api_secret
-    
+
+    private static final String V_API_PREFIX = "/v/api/";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static volatile boolean debugLogging = false;
+
+    private static final ThreadLocal<Signer> signers = new ThreadLocal<Signer>() {
+        @Override
+        protected Signer initialValue() {
+            return new Signer();
+        }
+    };
+
+    /**
+     * 开启/关闭签名调试日志（默认关闭）
+     */
+    public static void setDebugLogging(boolean enabled) {
+        debugLogging = enabled;
+    }
+
+    public static boolean isDebugLogging() {
+        return debugLogging;
+    }
+
     /**
      * 为请求生成API签名
      * @param request HTTP请求对象
@@ -36,21 +70,18 @@ public class SignatureUtils {
      */
     public static String generateSignature(Request request) {
         try {
-            String method = request.method();
-            String url = extractPath(request.url().toString());
-            String data = getRequestBody(request);
-            Map<String, String> params = extractQueryParams(request.url().toString());
-            
-            return generateSignature(method, url, data, params);
+            Signer signer = signers.get();
+            String bodyMd5 = signer.md5Body(request.body());
+            return signer.sign(extractPath(request.url()), bodyMd5, randomNonce(), System.currentTimeMillis());
         } catch (Exception e) {
             Log.e(TAG, "❌ 签名生成失败", e);
             return null;
         }
     }
-    
+
     /**
      * 生成API签名 - 使用与Web项目(fntv-electron)完全相同的算法
-     * 
+     *
      * Web端算法 (request.ts genFnAuthx):
      * 1. nonce = 随机6位数字
      * 2. timestamp = Date.now()
@@ -58,11 +89,11 @@ public class SignatureUtils {
      * 4. signArray = [api_key, url, nonce, timestamp, dataJsonMd5, api_secret]
      * 5. signStr = signArray.join('_')
      * 6. authx = `nonce=${nonce}&timestamp=${timestamp}&sign=${md5(signStr)}`
-     * 
+     *
      * @param method HTTP方法
      * @param url 请求路径 (如 /v/api/v1/stream)
      * @param data 请求体JSON字符串
-     * @param params 查询参数 (GET请求用)
+     * @param params 查询参数（签名算法不使用，保留参数兼容调用方）
      * @return 签名字符串
      */
     public static String generateSignature(String method, String url, String data, Map<String, String> params) {
@@ -70,137 +101,169 @@ public class SignatureUtils {
             // 🔧 确保URL是正确的路径格式
             String path = url;
             if (path.startsWith("http")) {
-                path = extractPath(path);
+                HttpUrl httpUrl = HttpUrl.parse(path);
+                path = httpUrl != null ? extractPath(httpUrl) : "";
             }
-            
-            // 🎲 生成随机数和时间戳 (与Web端一致)
-            String nonce = String.format("%06d", (int)(Math.random() * 900000) + 100000);
-            String timestamp = String.valueOf(System.currentTimeMillis());
-            
-            // 📝 计算数据MD5 - 直接对JSON字符串计算MD5，与Web端一致
-            // Web端: const dataJsonMd5 = getMd5(dataJson);
-            // 其中 dataJson = data ? JSON.stringify(data) : ''
-            String dataJson = (data != null && !data.isEmpty()) ? data : "";
-            String dataJsonMd5 = md5(dataJson);
-            
-            // 🔗 构建签名数组 (与Web端完全一致)
-            // Web端: const signArray = [api_key, url, nonce, timestamp, dataJsonMd5, api_secret]
-            String signStr = API_KEY + "_" + path + "_" + nonce + "_" + timestamp + "_" + dataJsonMd5 + "_" + API_SECRET;
-            
-            // 🔐 生成最终签名
-            String sign = md5(signStr);
-            
-            // 📋 构建最终返回格式: nonce=123456&timestamp=1696080000000&sign=md5hash
-            String finalSignature = "nonce=" + nonce + "&timestamp=" + timestamp + "&sign=" + sign;
-            
-            Log.d(TAG, "🔑 签名生成成功:");
-            Log.d(TAG, "   路径: " + path);
-            Log.d(TAG, "   数据JSON: " + (dataJson.length() > 100 ? dataJson.substring(0, 100) + "..." : dataJson));
-            Log.d(TAG, "   数据MD5: " + dataJsonMd5);
-            Log.d(TAG, "   签名字符串: " + signStr.substring(0, Math.min(80, signStr.length())) + "...");
-            Log.d(TAG, "   最终签名: " + finalSignature);
-            
-            return finalSignature;
-            
+
+            Signer signer = signers.get();
+            String dataJsonMd5 = signer.md5(data != null ? data : "");
+            return signer.sign(path, dataJsonMd5, randomNonce(), System.currentTimeMillis());
         } catch (Exception e) {
             Log.e(TAG, "❌ 签名生成异常", e);
             return null;
         }
     }
-    
+
     /**
-     * 提取URL路径部分
-     * 从完整URL中提取 /v/api/... 格式的路径
+     * 用指定的 nonce 和时间戳生成签名（测试和基准使用）
      */
-    private static String extractPath(String fullUrl) {
-        try {
-            String path = "";
-            
-            // 查找 /v/api/ 开头的路径
-            int vApiIndex = fullUrl.indexOf("/v/api/");
-            if (vApiIndex >= 0) {
-                path = fullUrl.substring(vApiIndex);
-            } else {
-                // 其他情况，尝试提取域名后的路径
-                int pathStart = fullUrl.indexOf('/', 8); // 跳过 http:// 或 https://
-                if (pathStart >= 0) {
-                    path = fullUrl.substring(pathStart);
-                }
-            }
-            
-            // 移除查询参数
-            int queryIndex = path.indexOf('?');
-            if (queryIndex >= 0) {
-                path = path.substring(0, queryIndex);
-            }
-            
-            Log.d(TAG, "🔧 提取路径: " + fullUrl + " -> " + path);
-            return path;
-            
-        } catch (Exception e) {
-            Log.e(TAG, "❌ URL路径提取失败", e);
-            return "";
-        }
+    static String generateSignature(String path, String bodyMd5, int nonce, long timestamp) {
+        return signers.get().sign(path, bodyMd5, nonce, timestamp);
+    }
+
+    static String md5Hex(String input) {
+        return signers.get().md5(input);
+    }
+
+    static String md5Hex(RequestBody body) throws IOException {
+        return signers.get().md5Body(body);
     }
-    
+
     /**
-     * 提取查询参数
+     * 提取签名用的路径：/v/api/ 开头的部分，没有则为完整路径（不含查询参数）
      */
-    private static Map<String, String> extractQueryParams(String fullUrl) {
-        Map<String, String> params = new TreeMap<>();
-        try {
-            int queryIndex = fullUrl.indexOf('?');
-            if (queryIndex >= 0) {
-                String queryString = fullUrl.substring(queryIndex + 1);
-                String[] pairs = queryString.split("&");
-                for (String pair : pairs) {
-                    String[] keyValue = pair.split("=");
-                    if (keyValue.length == 2) {
-                        params.put(keyValue[0], keyValue[1]);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "❌ 查询参数提取失败", e);
-        }
-        return params;
+    static String extractPath(HttpUrl url) {
+        String path = url.encodedPath();
+        int vApiIndex = path.indexOf(V_API_PREFIX);
+        return vApiIndex > 0 ? path.substring(vApiIndex) : path;
+    }
+
+    // 100000 ~ 999999，与 Web 端一致的6位随机数
+    private static int randomNonce() {
+        return ThreadLocalRandom.current().nextInt(100000, 1000000);
     }
-    
+
     /**
-     * 获取请求体内容
+     * 每个线程一份的签名状态
      */
-    private static String getRequestBody(Request request) {
-        try {
-            RequestBody body = request.body();
-            if (body == null) {
-                return "";
+    private static final class Signer {
+        private final MessageDigest digest;
+        private final StringBuilder builder = new StringBuilder(160);
+        private final char[] hexChars = new char[32];
+        private byte[] bytes = new byte[256];
+        private final DigestSink digestSink;
+        private final String emptyMd5;
+
+        Signer() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5 unavailable", e);
             }
-            
-            Buffer buffer = new Buffer();
-            body.writeTo(buffer);
-            return buffer.readUtf8();
-        } catch (IOException e) {
-            Log.e(TAG, "❌ 请求体读取失败", e);
-            return "";
+            digestSink = new DigestSink(digest);
+            emptyMd5 = md5("");
+        }
+
+        String sign(String path, String bodyMd5, int nonce, long timestamp) {
+            StringBuilder sb = builder;
+            sb.setLength(0);
+            sb.append(API_KEY).append('_').append(path).append('_').append(nonce).append('_')
+              .append(timestamp).append('_').append(bodyMd5).append('_').append(API_SECRET);
+            String sign = md5(sb);
+
+            // 📋 最终格式: nonce=123456&timestamp=1696080000000&sign=md5hash
+            sb.setLength(0);
+            sb.append("nonce=").append(nonce).append("&timestamp=").append(timestamp).append("&sign=").append(sign);
+            String signature = sb.toString();
+            if (debugLogging) {
+                Log.d(TAG, "🔑 签名: path=" + path + " dataMd5=" + bodyMd5 + " -> " + signature);
+            }
+            return signature;
+        }
+
+        /**
+         * 请求体流式写入 MD5，不生成中间字符串
+         */
+        String md5Body(RequestBody body) throws IOException {
+            if (body == null || body.contentLength() == 0) {
+                return emptyMd5;
+            }
+            digest.reset();
+            BufferedSink sink = Okio.buffer(digestSink);
+            body.writeTo(sink);
+            sink.flush();
+            return hex(digest.digest());
+        }
+
+        String md5(CharSequence input) {
+            int length = input.length();
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                if (input.charAt(i) >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+            }
+            digest.reset();
+            if (ascii) {
+                // 签名串几乎都是 ASCII，直接写入复用的字节缓冲
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = (byte) input.charAt(i);
+                }
+                digest.update(bytes, 0, length);
+            } else {
+                digest.update(input.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return hex(digest.digest());
+        }
+
+        private String hex(byte[] hash) {
+            char[] out = hexChars;
+            for (int i = 0; i < 16; i++) {
+                int v = hash[i] & 0xff;
+                out[i * 2] = HEX[v >>> 4];
+                out[i * 2 + 1] = HEX[v & 0x0f];
+            }
+            return new String(out, 0, 32);
         }
     }
-    
+
     /**
-     * MD5加密
+     * 把写入的字节直接交给 MessageDigest 的 okio Sink
      */
-    private static String md5(String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
+    private static final class DigestSink implements Sink {
+        private final MessageDigest digest;
+        private final byte[] scratch = new byte[8192];
+
+        DigestSink(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            long remaining = byteCount;
+            while (remaining > 0) {
+                int read = source.read(scratch, 0, (int) Math.min(scratch.length, remaining));
+                if (read < 0) break;
+                digest.update(scratch, 0, read);
+                remaining -= read;
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            Log.e(TAG, "❌ MD5加密失败", e);
-            return "";
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
         }
     }
 }
@@ -0,0 +1,155 @@
+package com.mynas.nastv.benchmark;
+
+import org.junit.Assume;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 单元测试共用的微基准工具
+ *
+ * 基准默认跳过，只在 ./gradlew testDebugUnitTest -Pbenchmark 时运行（见 app/build.gradle）。
+ * 按 JMH 的方式先预热再测量，结果追加到 build/benchmarks/&lt;名称&gt;.txt，不输出到控制台；
+ * 耗时和分配量受机器负载影响，基准里不做与它们相关的断言，正确性只在普通单元测试里校验。
+ */
+public final class Benchmark {
+
+    static final String ENABLED_PROPERTY = "nastv.benchmark";
+    private static final File OUTPUT_DIR = new File("build/benchmarks");
+
+    // HotSpot 提供按线程统计的分配字节数；通过反射调用，其他 JVM 上为 null
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    // 防止 JIT 把被测代码当作死代码消除
+    private static volatile int sink;
+
+    /**
+     * 单次操作，返回值会被消费掉
+     */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    /**
+     * 一轮测量，返回本轮执行的操作数
+     */
+    public interface Pass {
+        long run() throws Exception;
+    }
+
+    /**
+     * 创建下一轮的测量（准备数据不计入耗时）
+     */
+    public interface PassFactory {
+        Pass create() throws Exception;
+    }
+
+    public static final class Result {
+        public final double nanosPerOp;
+        public final long bytesPerOp; // 不支持统计分配时为 -1
+
+        Result(double nanosPerOp, long bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private Benchmark() {
+    }
+
+    /**
+     * 没有打开基准时跳过当前测试
+     */
+    public static void assumeEnabled() {
+        Assume.assumeTrue("benchmarks run with -Pbenchmark", Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    /**
+     * 重复执行同一个操作
+     */
+    public static Result measure(int warmupIterations, int measureIterations, Op op) throws Exception {
+        int hash = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            hash += op.run().hashCode();
+        }
+        sink += hash;
+        return measurePasses(0, 1, () -> () -> {
+            int h = 0;
+            for (int i = 0; i < measureIterations; i++) {
+                h += op.run().hashCode();
+            }
+            sink += h;
+            return measureIterations;
+        });
+    }
+
+    /**
+     * 按轮测量：先执行 warmupPasses 轮预热，再统计 measurePasses 轮的平均每次操作耗时
+     */
+    public static Result measurePasses(int warmupPasses, int measurePasses, PassFactory factory) throws Exception {
+        for (int i = 0; i < warmupPasses; i++) {
+            sink += (int) factory.create().run();
+        }
+
+        long ops = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        boolean allocationSupported = true;
+        for (int i = 0; i < measurePasses; i++) {
+            Pass pass = factory.create();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            ops += pass.run();
+            elapsed += System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                allocated += allocatedAfter - allocatedBefore;
+            } else {
+                allocationSupported = false;
+            }
+        }
+
+        ops = Math.max(1, ops);
+        return new Result((double) elapsed / ops, allocationSupported ? allocated / ops : -1);
+    }
+
+    /**
+     * 追加一行结果到 build/benchmarks/&lt;name&gt;.txt
+     */
+    public static void report(String name, String line) throws IOException {
+        if (!OUTPUT_DIR.isDirectory() && !OUTPUT_DIR.mkdirs()) {
+            throw new IOException("Cannot create " + OUTPUT_DIR.getAbsolutePath());
+        }
+        try (Writer writer = new FileWriter(new File(OUTPUT_DIR, name + ".txt"), StandardCharsets.UTF_8, true)) {
+            writer.write(line);
+            writer.write('\n');
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) return -1;
+        try {
+            return (long) ALLOCATED_BYTES.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    private static Method allocatedBytesMethod() {
+        try {
+            Class<?> hotspot = Class.forName("com.sun.management.ThreadMXBean");
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!hotspot.isInstance(bean)) return null;
+            if (!(boolean) hotspot.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) return null;
+            return hotspot.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mynas.nastv.benchmark.Benchmark;
+import com.mynas.nastv.feature.danmaku.model.DanmakuEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 弹幕时间索引的正确性校验 + 帧耗时基准
+ *
+ * 模拟 60fps 播放一集 40 分钟、2 万条弹幕，每帧执行"过期 + 发射"两步，
+ * 与改造前按 60 秒字符串桶查找的实现（保留在本测试中作为对照）比较每帧耗时和分配字节数（默认跳过，见 Benchmark）。
+ */
+public class DanmakuTimelineBenchmarkTest {
+
+    private static final int COMMENT_COUNT = 20_000;
+    private static final long DURATION_MS = 40 * 60_000L;
+    private static final long FRAME_MS = 16;
+    // 弹幕在屏幕上停留的时长（发射后这么久移出屏幕）
+    private static final long ON_SCREEN_MS = 8_000;
+
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURE_PASSES = 5;
+
+    // ==================== 正确性 ====================
+
+    @Test
+    public void launchesSameCommentsInSameOrderAsLegacy() {
+        // 避开分钟边界：旧实现按桶查找，边界前后 100ms 的弹幕会漏掉
+        List<DanmakuEntity> legacyLaunched = new ArrayList<>();
+        Legacy legacy = new Legacy(bucketize(generate(COMMENT_COUNT, true)));
+        for (long pos = 0; pos <= DURATION_MS; pos += FRAME_MS) {
+            legacy.frame(pos, legacyLaunched);
+        }
+
+        List<DanmakuEntity> launched = new ArrayList<>();
+        Current current = new Current(bucketize(generate(COMMENT_COUNT, true)));
+        for (long pos = 0; pos <= DURATION_MS; pos += FRAME_MS) {
+            current.frame(pos, launched);
+        }
+
+        assertEquals(COMMENT_COUNT, launched.size());
+        assertEquals(legacyLaunched.size(), launched.size());
+        for (int i = 0; i < launched.size(); i++) {
+            assertEquals(legacyLaunched.get(i).time, launched.get(i).time);
+            assertEquals(legacyLaunched.get(i).text, launched.get(i).text);
+        }
+    }
+
+    @Test
+    public void launchesCommentsAcrossMinuteBoundary() {
+        Map<String, List<DanmakuEntity>> buckets = new LinkedHashMap<>();
+        buckets.put("0-60000", new ArrayList<>(List.of(entity(59_990, "a"))));
+        buckets.put("60000-120000", new ArrayList<>(List.of(entity(60_010, "b"))));
+
+        List<DanmakuEntity> launched = new ArrayList<>();
+        Current current = new Current(buckets);
+        current.frame(59_960, launched);
+
+        assertEquals(2, launched.size());
+        assertEquals("a", launched.get(0).text);
+        assertEquals("b", launched.get(1).text);
+    }
+
+    @Test
+    public void seekRepositionsByBinarySearchAndReplaysAfterSeekBack() {
+        Map<String, List<DanmakuEntity>> buckets = new LinkedHashMap<>();
+        List<DanmakuEntity> bucket = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            bucket.add(entity(i * 500L, "d" + i));
+        }
+        buckets.put("0-60000", bucket);
+        DanmakuTimeline timeline = new DanmakuTimeline(buckets);
+
+        // 第一次调用按当前位置二分定位，不会从头扫描
+        assertEquals(20, timeline.advanceTo(10_000));
+        timeline.markLaunched(20);
+        assertEquals(21, timeline.advanceTo(10_016));
+
+        // 往前拖：直接跳到新位置
+        timeline.seek(30_000);
+        assertEquals(60, timeline.advanceTo(30_000));
+        timeline.markLaunched(60);
+
+        // 小幅回退视为位置抖动，不重新定位
+        assertTrue(!timeline.isSeekBack(29_500));
+
+        // 往回拖：已发射的弹幕可以再次发射
+        assertTrue(timeline.isSeekBack(5_000));
+        timeline.seek(5_000);
+        assertEquals(10, timeline.advanceTo(5_000));
+        assertTrue(!timeline.isLaunched(20));
+        assertTrue(!timeline.isLaunched(60));
+
+        // 拖到最后之后
+        timeline.seek(1_000_000);
+        assertEquals(timeline.size(), timeline.advanceTo(1_000_000));
+    }
+
+    @Test
+    public void emptyDataIsSafe() {
+        DanmakuTimeline timeline = new DanmakuTimeline(null);
+        assertEquals(0, timeline.size());
+        assertEquals(0, timeline.advanceTo(12_345));
+        timeline.seek(0);
+        assertEquals(0, timeline.advanceTo(0));
+    }
+
+    // ==================== 基准 ====================
+
+    @Test
+    public void benchmarkFrameCost() throws Exception {
+        Benchmark.assumeEnabled();
+        Benchmark.Result legacy = measure(true);
+        Benchmark.Result current = measure(false);
+
+        Benchmark.report("DanmakuTimeline", String.format(Locale.US,
+            "%d comments | legacy: %.0f ns/frame, %d B/frame | current: %.0f ns/frame, %d B/frame",
+            COMMENT_COUNT, legacy.nanosPerOp, legacy.bytesPerOp, current.nanosPerOp, current.bytesPerOp));
+    }
+
+    private interface Player {
+        void frame(long positionMs, List<DanmakuEntity> launchedOut);
+    }
+
+    private static Benchmark.Result measure(boolean useLegacy) throws Exception {
+        return Benchmark.measurePasses(WARMUP_PASSES, MEASURE_PASSES, () -> {
+            // 旧实现会从桶里删除已发射的弹幕，每一轮都要重新生成数据（不计入测量）
+            Map<String, List<DanmakuEntity>> buckets = bucketize(generate(COMMENT_COUNT, false));
+            Player player = useLegacy ? new Legacy(buckets) : new Current(buckets);
+            return () -> {
+                for (long pos = 0; pos <= DURATION_MS; pos += FRAME_MS) {
+                    player.frame(pos, null);
+                }
+                return DURATION_MS / FRAME_MS + 1;
+            };
+        });
+    }
+
+    // ==================== 数据 ====================
+
+    /**
+     * 固定种子生成按时间排序的弹幕，时间互不相同
+     */
+    private static List<DanmakuEntity> generate(int count, boolean avoidMinuteBoundary) {
+        Random random = new Random(20_000);
+        List<DanmakuEntity> list = new ArrayList<>(count);
+        long step = DURATION_MS / count;
+        for (int i = 0; i < count; i++) {
+            long time = i * step + random.nextInt((int) step);
+            if (avoidMinuteBoundary) {
+                long inMinute = time % 60_000;
+                if (inMinute < 150) time += 150 - inMinute;
+                if (inMinute > 59_850) time -= inMinute - 59_850;
+            }
+            list.add(entity(time, "弹幕" + i));
+        }
+        list.sort((a, b) -> Long.compare(a.time, b.time));
+        return list;
+    }
+
+    private static DanmakuEntity entity(long time, String text) {
+        DanmakuEntity entity = new DanmakuEntity();
+        entity.time = time;
+        entity.text = text;
+        entity.color = "#FFFFFF";
+        entity.mode = 1;
+        return entity;
+    }
+
+    /**
+     * 与 DanmuRepository.bucketize 相同的分桶方式
+     */
+    private static Map<String, List<DanmakuEntity>> bucketize(List<DanmakuEntity> items) {
+        Map<String, List<DanmakuEntity>> buckets = new LinkedHashMap<>();
+        for (DanmakuEntity entity : items) {
+            long bucketId = entity.time / 60000;
+            String key = (bucketId * 60000) + "-" + ((bucketId + 1) * 60000);
+            buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+        }
+        return buckets;
+    }
+
+    // ==================== 两种实现 ====================
+
+    /**
+     * 当前实现：与 DanmuRenderer 中的帧循环相同，发射总是成功
+     */
+    private static final class Current implements Player {
+        private final DanmakuTimeline timeline;
+        private final List<DanmakuEntity> active = new ArrayList<>();
+
+        Current(Map<String, List<DanmakuEntity>> buckets) {
+            timeline = new DanmakuTimeline(buckets);
+        }
+
+        @Override
+        public void frame(long positionMs, List<DanmakuEntity> launchedOut) {
+            int kept = 0;
+            for (int i = 0; i < active.size(); i++) {
+                DanmakuEntity entity = active.get(i);
+                if (positionMs - entity.startTimeMs < ON_SCREEN_MS) {
+                    active.set(kept++, entity);
+                }
+            }
+            for (int i = active.size() - 1; i >= kept; i--) {
+                active.remove(i);
+            }
+
+            long windowEnd = positionMs + DanmakuTimeline.LAUNCH_WINDOW_MS;
+            for (int i = timeline.advanceTo(positionMs); i < timeline.size() && timeline.timeAt(i) <= windowEnd; i++) {
+                if (timeline.isLaunched(i)) continue;
+                DanmakuEntity entity = timeline.get(i);
+                entity.startTimeMs = positionMs;
+                timeline.markLaunched(i);
+                active.add(entity);
+                if (launchedOut != null) launchedOut.add(entity);
+            }
+        }
+    }
+
+    /**
+     * 改造前的帧循环（对照组）：每帧拼接桶 key、扫描整个桶、遍历激活列表去重、split 清理旧桶
+     */
+    private static final class Legacy implements Player {
+        private final Map<String, List<DanmakuEntity>> danmakuDataMap;
+        private final List<DanmakuEntity> activeDanmakuList = new ArrayList<>();
+
+        Legacy(Map<String, List<DanmakuEntity>> buckets) {
+            danmakuDataMap = buckets;
+        }
+
+        @Override
+        public void frame(long currentPositionMs, List<DanmakuEntity> launchedOut) {
+            List<DanmakuEntity> visibleList = new ArrayList<>();
+
+            List<DanmakuEntity> stillActive = new ArrayList<>();
+            for (DanmakuEntity entity : activeDanmakuList) {
+                if (currentPositionMs - entity.startTimeMs < ON_SCREEN_MS) {
+                    visibleList.add(entity);
+                    stillActive.add(entity);
+                }
+            }
+            activeDanmakuList.clear();
+            activeDanmakuList.addAll(stillActive);
+
+            long bucketId = currentPositionMs / 60000;
+            String bucketKey = (bucketId * 60000) + "-" + ((bucketId + 1) * 60000);
+
+            List<DanmakuEntity> bucketData = danmakuDataMap.get(bucketKey);
+            if (bucketData != null) {
+                long timeWindowStart = currentPositionMs - 100;
+                long timeWindowEnd = currentPositionMs + 100;
+
+                Iterator<DanmakuEntity> iterator = bucketData.iterator();
+                while (iterator.hasNext()) {
+                    DanmakuEntity entity = iterator.next();
+                    if (entity.time >= timeWindowStart && entity.time <= timeWindowEnd) {
+                        boolean alreadyActive = false;
+                        for (DanmakuEntity active : activeDanmakuList) {
+                            if (active == entity) {
+                                alreadyActive = true;
+                                break;
+                            }
+                        }
+                        if (!alreadyActive) {
+                            entity.startTimeMs = currentPositionMs;
+                            activeDanmakuList.add(entity);
+                            visibleList.add(entity);
+                            if (launchedOut != null) launchedOut.add(entity);
+                            iterator.remove();
+                        }
+                    }
+                }
+            }
+
+            cleanupOldBuckets(currentPositionMs);
+        }
+
+        private void cleanupOldBuckets(long currentPositionMs) {
+            long cleanupThreshold = currentPositionMs - 120000;
+            Iterator<Map.Entry<String, List<DanmakuEntity>>> iterator = danmakuDataMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, List<DanmakuEntity>> entry = iterator.next();
+                String[] parts = entry.getKey().split("-");
+                if (parts.length == 2 && Long.parseLong(parts[1]) < cleanupThreshold) {
+                    entry.getValue().clear();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
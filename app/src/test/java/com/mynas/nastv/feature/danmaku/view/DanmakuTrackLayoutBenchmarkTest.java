@@ -0,0 +1,284 @@
+package com.mynas.nastv.feature.danmaku.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mynas.nastv.benchmark.Benchmark;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 弹幕轨道布局的正确性校验 + 发射吞吐基准
+ *
+ * 模拟 60fps 播放 10 分钟、每秒涌入大量中文 / 英文 / emoji 混合弹幕，发射规则与 DanmuRenderer 相同
+ * （发射窗口内失败的下一帧重试），校验实际能放上屏幕的弹幕数随轨道数增加；
+ * 基准（默认跳过，见 Benchmark）统计每次发射尝试的耗时和分配字节数。
+ */
+public class DanmakuTrackLayoutBenchmarkTest {
+
+    private static final int VIEW_WIDTH = 1920;
+    private static final float FONT_SIZE = 56f;
+    private static final float GAP = FONT_SIZE * 2;
+    private static final float SPEED = 150f;
+
+    private static final float FRAME_MS = 1000f / 60;
+    private static final long DURATION_MS = 10 * 60_000L;
+    private static final int OFFERED_PER_SECOND = 50;
+    private static final int TEXT_POOL_SIZE = 2000;
+
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURE_PASSES = 5;
+
+    // ==================== 正确性 ====================
+
+    @Test
+    public void placesIntoEarliestFreeTrack() {
+        DanmakuTrackLayout layout = new DanmakuTrackLayout(text -> 0f);
+        layout.configure(3, 100, 100);
+
+        // 全部空闲时从上往下
+        assertEquals(0, layout.place(200)); // 3000ms 后空闲
+        assertEquals(1, layout.place(400)); // 5000ms 后空闲
+        assertEquals(2, layout.place(100)); // 2000ms 后空闲
+        assertEquals(-1, layout.place(50));
+
+        layout.advance(1999);
+        assertEquals(-1, layout.place(50));
+        layout.advance(1);
+        assertEquals(2, layout.place(50)); // 3500ms 后空闲
+
+        layout.advance(1000);
+        assertEquals(0, layout.place(10));
+        assertEquals(-1, layout.place(10));
+
+        // 清屏后全部空闲
+        layout.reset();
+        assertEquals(0, layout.place(10));
+    }
+
+    @Test
+    public void reconfigureKeepsOccupiedTracks() {
+        DanmakuTrackLayout layout = new DanmakuTrackLayout(text -> 0f);
+        layout.configure(2, 100, 100);
+        assertEquals(0, layout.place(200)); // 3000ms 后空闲
+        assertEquals(1, layout.place(400)); // 5000ms 后空闲
+        layout.advance(1000);
+
+        // 视图尺寸或设置变化：原有轨道仍被屏幕上的弹幕占着，只有新增的轨道空闲
+        layout.configure(3, 100, 100);
+        assertEquals(2, layout.place(50)); // 2500ms 后空闲
+        assertEquals(-1, layout.place(50));
+        layout.advance(1500);
+        assertEquals(2, layout.place(50));
+        layout.advance(500);
+        assertEquals(0, layout.place(50));
+
+        // 减少轨道：去掉的轨道不再分配，保留的轨道占用不变
+        layout.configure(1, 100, 100);
+        assertEquals(-1, layout.place(50));
+        layout.advance(1500);
+        assertEquals(0, layout.place(50));
+    }
+
+    @Test
+    public void neverOverlapsOnTheSameTrack() {
+        String[] pool = textPool();
+        DanmakuTrackLayout layout = new DanmakuTrackLayout(text -> measure(text, FONT_SIZE));
+        layout.configure(8, GAP, SPEED);
+
+        double[] lastLaunchMs = new double[8];
+        float[] lastWidth = new float[8];
+        boolean[] used = new boolean[8];
+        Random random = new Random(7);
+        double clockMs = 0;
+        int placed = 0;
+
+        for (int frame = 0; frame < 60 * 600; frame++) {
+            layout.advance(FRAME_MS);
+            clockMs += FRAME_MS;
+            for (int attempt = 0; attempt < 2; attempt++) {
+                float width = layout.measure(pool[random.nextInt(pool.length)]);
+                int track = layout.place(width);
+                if (track < 0) continue;
+                if (used[track]) {
+                    // 上一条的右边缘已经进入屏幕并留出间距；同速滚动，之后距离不变
+                    double rightEdge = VIEW_WIDTH - SPEED * (clockMs - lastLaunchMs[track]) / 1000 + lastWidth[track];
+                    assertTrue("track " + track + " overlaps: rightEdge=" + rightEdge,
+                        rightEdge + GAP <= VIEW_WIDTH + 0.5);
+                }
+                used[track] = true;
+                lastLaunchMs[track] = clockMs;
+                lastWidth[track] = width;
+                placed++;
+            }
+        }
+
+        assertTrue(placed > 0);
+        for (boolean trackUsed : used) {
+            assertTrue(trackUsed);
+        }
+    }
+
+    @Test
+    public void trackCountFollowsRegion() {
+        int lineHeight = (int) FONT_SIZE + 16;
+        // 默认影院模式：1080p 顶部 20%，去掉 30px 留白
+        assertEquals(2, DanmakuTrackLayout.trackCountFor(1080 * 0.2f - 30, lineHeight));
+        assertEquals(14, DanmakuTrackLayout.trackCountFor(1080 - 30, lineHeight));
+        assertEquals(1, DanmakuTrackLayout.trackCountFor(10, lineHeight));
+        assertEquals(DanmakuTrackLayout.MAX_TRACKS, DanmakuTrackLayout.trackCountFor(100_000, lineHeight));
+    }
+
+    @Test
+    public void measuresEachStringOnce() {
+        int[] calls = new int[1];
+        DanmakuTrackLayout layout = new DanmakuTrackLayout(text -> {
+            calls[0]++;
+            return measure(text, FONT_SIZE);
+        });
+
+        assertEquals(FONT_SIZE * 4, layout.measure("前方高能"), 0.001f);
+        layout.measure("前方高能");
+        assertEquals(1, calls[0]);
+
+        // emoji 按一个字宽算，而不是 UTF-16 长度
+        assertEquals(FONT_SIZE * 2, layout.measure("😂😂"), 0.001f);
+        assertEquals(2, calls[0]);
+
+        layout.clearWidthCache();
+        layout.measure("前方高能");
+        assertEquals(3, calls[0]);
+    }
+
+    @Test
+    public void moreTracksPlaceMoreComments() {
+        String[] texts = offeredTexts();
+        int lastPlaced = 0;
+        for (int tracks : new int[] {2, 8, 16}) {
+            int placed = simulate(newLayout(tracks), texts, new boolean[texts.length], new long[1]);
+            // 屏幕能放下多少由轨道数决定
+            assertTrue("tracks=" + tracks + " placed=" + placed, placed > lastPlaced);
+            lastPlaced = placed;
+        }
+    }
+
+    // ==================== 基准 ====================
+
+    @Test
+    public void benchmarkPlacementThroughput() throws Exception {
+        Benchmark.assumeEnabled();
+        String[] texts = offeredTexts();
+
+        for (int tracks : new int[] {2, 8, 16}) {
+            int[] placed = new int[1];
+            Benchmark.Result result = Benchmark.measurePasses(WARMUP_PASSES, MEASURE_PASSES, () -> {
+                DanmakuTrackLayout layout = newLayout(tracks);
+                boolean[] launched = new boolean[texts.length];
+                return () -> {
+                    long[] attempts = new long[1];
+                    placed[0] = simulate(layout, texts, launched, attempts);
+                    return attempts[0];
+                };
+            });
+            double placedPerSecond = placed[0] * 1000.0 / DURATION_MS;
+            double attemptsPerFrame = FRAME_MS * 1_000_000 / result.nanosPerOp;
+
+            Benchmark.report("DanmakuTrackLayout", String.format(Locale.US,
+                "tracks=%d | offered %d/s, placed %.1f/s | %.0f ns/attempt, %d B/attempt"
+                    + " | ~%.0f attempts per 60fps frame (~%.0fk/s)",
+                tracks, OFFERED_PER_SECOND, placedPerSecond, result.nanosPerOp, result.bytesPerOp,
+                attemptsPerFrame, attemptsPerFrame * 60 / 1000));
+        }
+    }
+
+    private static DanmakuTrackLayout newLayout(int tracks) {
+        DanmakuTrackLayout layout = new DanmakuTrackLayout(text -> measure(text, FONT_SIZE));
+        layout.configure(tracks, GAP, SPEED);
+        return layout;
+    }
+
+    /**
+     * 按 60fps 播放 DURATION_MS，返回放上屏幕的弹幕数，attemptsOut[0] 为发射尝试次数
+     */
+    private static int simulate(DanmakuTrackLayout layout, String[] texts, boolean[] launched, long[] attemptsOut) {
+        int cursor = 0;
+        int placed = 0;
+        double positionMs = 0;
+        while (positionMs <= DURATION_MS) {
+            layout.advance(FRAME_MS);
+            // 与 DanmuRenderer 相同：发射窗口内逐条尝试，失败的下一帧重试，过了窗口就丢弃
+            long now = (long) positionMs;
+            while (cursor < texts.length && (launched[cursor] || timeOf(cursor) < now - DanmakuTimeline.LAUNCH_WINDOW_MS)) {
+                cursor++;
+            }
+            long windowEnd = now + DanmakuTimeline.LAUNCH_WINDOW_MS;
+            for (int i = cursor; i < texts.length && timeOf(i) <= windowEnd; i++) {
+                if (launched[i]) continue;
+                attemptsOut[0]++;
+                if (layout.place(layout.measure(texts[i])) >= 0) {
+                    launched[i] = true;
+                    placed++;
+                }
+            }
+            positionMs += FRAME_MS;
+        }
+        return placed;
+    }
+
+    // ==================== 数据 ====================
+
+    /**
+     * 固定种子的弹幕序列，第 i 条出现在 timeOf(i)
+     */
+    private static String[] offeredTexts() {
+        String[] pool = textPool();
+        String[] texts = new String[(int) (DURATION_MS / 1000 * OFFERED_PER_SECOND)];
+        Random random = new Random(25);
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = pool[random.nextInt(pool.length)];
+        }
+        return texts;
+    }
+
+    private static long timeOf(int index) {
+        return index * 1000L / OFFERED_PER_SECOND;
+    }
+
+    /**
+     * 近似 Paint.measureText：ASCII 半个字宽多一点，中文和 emoji 一个字宽
+     */
+    private static float measure(String text, float em) {
+        float width = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            width += codePoint < 0x80 ? em * 0.55f : em;
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * 固定种子生成的弹幕文本：2~20 个字符，中文、英文数字、emoji 混合，有大量重复
+     */
+    private static String[] textPool() {
+        String[] cjk = {"哈", "前", "方", "高", "能", "好", "耶", "绝", "了", "泪", "目"};
+        String[] ascii = {"2", "3", "a", "w", "s", "l", "6", "!"};
+        String[] emoji = {"😂", "👍", "🔥", "😭"};
+        Random random = new Random(2000);
+        String[] pool = new String[TEXT_POOL_SIZE];
+        for (int i = 0; i < pool.length; i++) {
+            int length = 2 + random.nextInt(19);
+            StringBuilder builder = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                int kind = random.nextInt(10);
+                String[] source = kind < 6 ? cjk : kind < 9 ? ascii : emoji;
+                builder.append(source[random.nextInt(source.length)]);
+            }
+            pool[i] = builder.toString();
+        }
+        return pool;
+    }
+}
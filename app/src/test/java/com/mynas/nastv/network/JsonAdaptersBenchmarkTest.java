@@ -0,0 +1,197 @@
+package com.mynas.nastv.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mynas.nastv.benchmark.Benchmark;
+import com.mynas.nastv.model.EpisodeListResponse;
+import com.mynas.nastv.model.MediaItemListResponse;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 流式 TypeAdapter 的正确性校验 + 微基准
+ *
+ * 样本数据按真实接口的结构生成（固定随机种子）：500 项的媒体库列表、
+ * 200 集的剧集列表。正确性用反射 Gson 重新序列化两边的解析结果逐字比较；
+ * 基准（默认跳过，见 Benchmark）统计吞吐量和每次解析的分配字节数，与反射解析对照。
+ */
+public class JsonAdaptersBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURE_ITERATIONS = 100;
+
+    // 改造前 ApiClient 使用的配置（对照组）
+    private final Gson reflective = new GsonBuilder().setLenient().create();
+
+    // ==================== 正确性 ====================
+
+    @Test
+    public void mediaItemListMatchesReflectiveDecode() {
+        String json = mediaItemListJson(500, new Random(17));
+        MediaItemListResponse expected = reflective.fromJson(json, MediaItemListResponse.class);
+        MediaItemListResponse actual = JsonAdapters.gson().fromJson(json, MediaItemListResponse.class);
+
+        assertEquals(500, actual.getData().getList().size());
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+    }
+
+    @Test
+    public void episodeListMatchesReflectiveDecode() {
+        String json = episodeListJson(200, new Random(23));
+        EpisodeListResponse expected = reflective.fromJson(json, EpisodeListResponse.class);
+        EpisodeListResponse actual = JsonAdapters.gson().fromJson(json, EpisodeListResponse.class);
+
+        assertEquals(200, actual.getData().size());
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+    }
+
+    @Test
+    public void nullsQuotedNumbersAndUnknownFieldsAreTolerated() {
+        EpisodeListResponse.Episode episode = JsonAdapters.gson().fromJson(
+            "{\"guid\":\"e1\",\"title\":null,\"episode_number\":\"3\",\"runtime\":null,"
+                + "\"extra\":{\"a\":[1,{\"b\":2}]}}",
+            EpisodeListResponse.Episode.class);
+        assertEquals("e1", episode.getGuid());
+        assertNull(episode.getTitle());
+        assertEquals(3, episode.getEpisodeNumber());
+
+        MediaItemListResponse.MediaItemInfo info = JsonAdapters.gson().fromJson(
+            "{\"guid\":\"g1\",\"vote_average\":8.5,\"douban_id\":\"1292052\",\"tags\":[\"x\"]}",
+            MediaItemListResponse.MediaItemInfo.class);
+        assertNotNull(info);
+        assertEquals("g1", info.getGuid());
+        assertEquals("8.5", info.getVoteAverage());
+        assertEquals(1292052L, info.getDoubanId());
+    }
+
+    @Test
+    public void adaptersRoundTrip() {
+        String json = episodeListJson(50, new Random(7));
+        EpisodeListResponse decoded = JsonAdapters.gson().fromJson(json, EpisodeListResponse.class);
+        String encoded = JsonAdapters.gson().toJson(decoded);
+        EpisodeListResponse again = JsonAdapters.gson().fromJson(encoded, EpisodeListResponse.class);
+        assertEquals(reflective.toJson(decoded), reflective.toJson(again));
+    }
+
+    // ==================== 基准 ====================
+
+    @Test
+    public void benchmarkMediaItemListDecode() throws Exception {
+        Benchmark.assumeEnabled();
+        String json = mediaItemListJson(500, new Random(17));
+        compare("MediaItemList x500", json,
+            () -> reflective.fromJson(new StringReader(json), MediaItemListResponse.class).getData().getList().size(),
+            () -> JsonAdapters.gson().fromJson(new StringReader(json), MediaItemListResponse.class).getData().getList().size());
+    }
+
+    @Test
+    public void benchmarkEpisodeListDecode() throws Exception {
+        Benchmark.assumeEnabled();
+        String json = episodeListJson(200, new Random(23));
+        compare("EpisodeList x200", json,
+            () -> reflective.fromJson(new StringReader(json), EpisodeListResponse.class).getData().size(),
+            () -> JsonAdapters.gson().fromJson(new StringReader(json), EpisodeListResponse.class).getData().size());
+    }
+
+    private static void compare(String name, String json, Benchmark.Op legacyOp, Benchmark.Op currentOp) throws Exception {
+        Benchmark.Result legacy = Benchmark.measure(WARMUP_ITERATIONS, MEASURE_ITERATIONS, legacyOp);
+        Benchmark.Result current = Benchmark.measure(WARMUP_ITERATIONS, MEASURE_ITERATIONS, currentOp);
+
+        double megabytes = json.getBytes(StandardCharsets.UTF_8).length / (1024.0 * 1024.0);
+        Benchmark.report("JsonAdapters", String.format(Locale.US,
+            "%s (%.2f MB) reflective: %.1f MB/s, %d B/op | streaming: %.1f MB/s, %d B/op",
+            name, megabytes,
+            megabytes / (legacy.nanosPerOp / 1e9), legacy.bytesPerOp,
+            megabytes / (current.nanosPerOp / 1e9), current.bytesPerOp));
+    }
+
+    // ==================== 样本数据 ====================
+
+    private static String mediaItemListJson(int count, Random random) {
+        StringBuilder sb = new StringBuilder("{\"code\":0,\"msg\":\"success\",\"data\":{\"total\":")
+            .append(count).append(",\"list\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            boolean episode = random.nextInt(3) == 0;
+            sb.append("{\"guid\":\"").append(hex(random, 32)).append('"')
+              .append(",\"lan\":\"zh\"")
+              .append(",\"douban_id\":").append(1_000_000 + random.nextInt(35_000_000))
+              .append(",\"imdb_id\":\"tt").append(1_000_000 + random.nextInt(9_000_000)).append('"')
+              .append(",\"trim_id\":\"").append(hex(random, 16)).append('"')
+              .append(",\"tv_title\":").append(episode ? "\"示例剧集 " + i + "\"" : "null")
+              .append(",\"parent_guid\":\"").append(hex(random, 32)).append('"')
+              .append(",\"parent_title\":\"第 ").append(1 + random.nextInt(5)).append(" 季\"")
+              .append(",\"title\":\"媒体标题 Title ").append(i).append('"')
+              .append(",\"type\":\"").append(episode ? "Episode" : random.nextBoolean() ? "Movie" : "TV").append('"')
+              .append(",\"poster\":\"/v/api/v1/sys/img/").append(hex(random, 2)).append('/').append(hex(random, 40)).append(".webp\"")
+              .append(",\"poster_width\":").append(300 + random.nextInt(700))
+              .append(",\"poster_height\":").append(450 + random.nextInt(1000))
+              .append(",\"runtime\":").append(20 + random.nextInt(160))
+              .append(",\"is_favorite\":").append(random.nextInt(2))
+              .append(",\"watched\":").append(random.nextInt(2))
+              .append(",\"watched_ts\":").append(random.nextInt(7200))
+              .append(",\"vote_average\":\"").append(random.nextInt(10)).append('.').append(random.nextInt(10)).append('"')
+              .append(",\"season_number\":").append(random.nextInt(8))
+              .append(",\"episode_number\":").append(random.nextInt(40))
+              .append(",\"air_date\":\"20").append(10 + random.nextInt(15)).append("-0").append(1 + random.nextInt(9)).append("-1").append(random.nextInt(10)).append('"')
+              .append(",\"number_of_seasons\":").append(random.nextInt(8))
+              .append(",\"number_of_episodes\":").append(random.nextInt(200))
+              .append(",\"status\":\"Ended\"")
+              .append(",\"overview\":\"").append(overview(random)).append('"')
+              .append(",\"ancestor_guid\":\"").append(hex(random, 32)).append('"')
+              .append(",\"ancestor_name\":\"电影\"")
+              .append(",\"ancestor_category\":\"Movie\"")
+              .append(",\"ts\":").append(1_690_000_000_000L + random.nextInt(100_000_000))
+              .append(",\"duration\":").append(1200 + random.nextInt(6000))
+              .append(",\"video_guid\":\"").append(hex(random, 32)).append('"')
+              .append(",\"file_name\":\"Title.").append(i).append(".2160p.WEB-DL.mkv\"")
+              .append(",\"genres\":[").append(random.nextInt(20)).append(',').append(random.nextInt(20)).append(']')
+              .append('}');
+        }
+        return sb.append("]}}").toString();
+    }
+
+    private static String episodeListJson(int count, Random random) {
+        StringBuilder sb = new StringBuilder("{\"code\":0,\"message\":\"success\",\"data\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"guid\":\"").append(hex(random, 32)).append('"')
+              .append(",\"title\":\"第 ").append(i + 1).append(" 集\"")
+              .append(",\"episode_number\":").append(i + 1)
+              .append(",\"season_number\":").append(1 + i / 24)
+              .append(",\"air_date\":\"2023-0").append(1 + random.nextInt(9)).append("-1").append(random.nextInt(10)).append('"')
+              .append(",\"overview\":\"").append(overview(random)).append('"')
+              .append(",\"runtime\":").append(20 + random.nextInt(40))
+              .append(",\"still_path\":").append(random.nextInt(5) == 0 ? "null" : "\"/v/api/v1/sys/img/" + hex(random, 40) + ".webp\"")
+              .append(",\"watched\":").append(random.nextInt(2))
+              .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String overview(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int sentences = 2 + random.nextInt(4);
+        for (int i = 0; i < sentences; i++) {
+            sb.append("这是一段用于测试的剧情简介，包含中文与 English words ").append(random.nextInt(1000)).append("。");
+        }
+        return sb.toString();
+    }
+
+    private static String hex(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,395 @@
+package com.mynas.nastv.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 容器关键帧索引解析：手工构造的最小 MKV / MP4 文件
+ *
+ * 损坏或截断的输入只能抛 IOException（调用方据此退回线性估算），不能抛数组越界之类的运行时异常。
+ */
+public class ContainerSeekIndexTest {
+
+    // ==================== MKV ====================
+
+    @Test
+    public void matroskaCuesFoundThroughSeekHead() throws IOException {
+        Mkv mkv = new Mkv(false, 1_000_000L);
+        ContainerSeekIndex index = parse(mkv.bytes);
+
+        assertNotNull(index);
+        assertEquals("mkv", index.getFormat());
+        assertEquals(3, index.size());
+        assertEquals(mkv.clusterOffset(0), index.byteOffsetFor(0));
+        assertEquals(mkv.clusterOffset(0), index.byteOffsetFor(1999));
+        assertEquals(mkv.clusterOffset(1), index.byteOffsetFor(2000));
+        assertEquals(mkv.clusterOffset(2), index.byteOffsetFor(60_000));
+        assertEquals(2000, index.timeFor(mkv.clusterOffset(1) + 10));
+        // Cues 在媒体数据之后，读到它说明是在读索引
+        assertEquals(mkv.cuesOffset, index.getMediaEndOffset());
+    }
+
+    @Test
+    public void matroskaUnknownSizeSegment() throws IOException {
+        Mkv mkv = new Mkv(true, 1_000_000L);
+        ContainerSeekIndex index = parse(mkv.bytes);
+
+        assertNotNull(index);
+        assertEquals(3, index.size());
+        assertEquals(mkv.clusterOffset(1), index.byteOffsetFor(2500));
+        assertEquals(mkv.clusterOffset(2), index.byteOffsetFor(4000));
+    }
+
+    @Test
+    public void matroskaTimecodeScale() throws IOException {
+        // 0.1ms 一个时间单位：CueTime 2000 → 200ms
+        Mkv mkv = new Mkv(false, 100_000L);
+        ContainerSeekIndex index = parse(mkv.bytes);
+
+        assertNotNull(index);
+        assertEquals(mkv.clusterOffset(0), index.byteOffsetFor(199));
+        assertEquals(mkv.clusterOffset(1), index.byteOffsetFor(200));
+        assertEquals(mkv.clusterOffset(2), index.byteOffsetFor(400));
+        assertEquals(400, index.timeFor(mkv.clusterOffset(2)));
+    }
+
+    @Test
+    public void matroskaWithoutCuesHasNoIndex() throws IOException {
+        byte[] segment = concat(element(Mkv.CLUSTER, new byte[64]));
+        assertNull(parse(concat(Mkv.ebmlHeader(), element(Mkv.SEGMENT, segment))));
+    }
+
+    // ==================== MP4 ====================
+
+    @Test
+    public void mp4KeyframesFromSyncSampleTable() throws IOException {
+        Mp4 mp4 = new Mp4(false, false, true);
+        ContainerSeekIndex index = parse(mp4.bytes);
+
+        assertNotNull(index);
+        assertEquals("mp4", index.getFormat());
+        // 样本 1 和 4 是关键帧：0ms 和 1500ms，第 4 个样本是第 2 块的第 2 个样本
+        assertEquals(2, index.size());
+        assertEquals(mp4.base, index.byteOffsetFor(1499));
+        assertEquals(mp4.base + 300, index.byteOffsetFor(1500));
+        assertEquals(1500, index.timeFor(mp4.base + 350));
+        // moov 在前，媒体数据一直到文件末尾
+        assertEquals(mp4.bytes.length, index.getMediaEndOffset());
+    }
+
+    @Test
+    public void mp4MoovAtEnd() throws IOException {
+        Mp4 mp4 = new Mp4(true, false, true);
+        ContainerSeekIndex index = parse(mp4.bytes);
+
+        assertNotNull(index);
+        assertEquals(mp4.base + 300, index.byteOffsetFor(2000));
+        assertEquals(mp4.moovOffset, index.getMediaEndOffset());
+    }
+
+    @Test
+    public void mp4LargeChunkOffsets() throws IOException {
+        Mp4 mp4 = new Mp4(false, true, true);
+        ContainerSeekIndex index = parse(mp4.bytes);
+
+        assertNotNull(index);
+        assertEquals(0x1_0000_0000L + 300, index.byteOffsetFor(1500));
+    }
+
+    @Test
+    public void mp4WithoutSyncSampleTableTreatsEverySampleAsKeyframe() throws IOException {
+        Mp4 mp4 = new Mp4(false, false, false);
+        ContainerSeekIndex index = parse(mp4.bytes);
+
+        assertNotNull(index);
+        // 全部是关键帧时至少间隔 1 秒取一个点：0ms、1000ms、2000ms
+        assertEquals(3, index.size());
+        assertEquals(mp4.base, index.byteOffsetFor(999));
+        assertEquals(mp4.base + 200, index.byteOffsetFor(1000));
+        assertEquals(mp4.base + 400, index.byteOffsetFor(2900));
+    }
+
+    @Test
+    public void mp4WithoutMoovHasNoIndex() throws IOException {
+        assertNull(parse(concat(box("ftyp", new byte[8]), box("mdat", new byte[64]))));
+    }
+
+    // ==================== 损坏的输入 ====================
+
+    @Test
+    public void truncatedBoxThrowsIOException() {
+        // hdlr 只有 4 字节内容，且是 moov 的最后一个盒子
+        byte[] moov = box("moov", box("trak", box("mdia", box("hdlr", new byte[4]))));
+        assertThrowsIOException(concat(box("ftyp", new byte[8]), moov));
+    }
+
+    @Test
+    public void oversizedEbmlHeaderThrowsIOException() {
+        byte[] file = concat(u32(Mkv.EBML_HEADER), new byte[] {0x01, 0x00, 0x00, 0x00, (byte) 0x80, 0, 0, 0},
+            new byte[16]);
+        assertThrowsIOException(file);
+    }
+
+    @Test
+    public void truncatedFilesOnlyThrowIOException() {
+        byte[][] files = {
+            new Mkv(false, 1_000_000L).bytes,
+            new Mkv(true, 100_000L).bytes,
+            new Mp4(false, false, true).bytes,
+            new Mp4(true, true, false).bytes,
+        };
+        for (byte[] file : files) {
+            for (int length = 0; length < file.length; length++) {
+                parseOrIOException(Arrays.copyOf(file, length));
+            }
+        }
+    }
+
+    @Test
+    public void corruptedBytesOnlyThrowIOException() {
+        byte[][] files = {
+            new Mkv(false, 1_000_000L).bytes,
+            new Mp4(false, false, true).bytes,
+            new Mp4(true, true, false).bytes,
+        };
+        Random random = new Random(21);
+        for (byte[] file : files) {
+            for (int round = 0; round < 2000; round++) {
+                byte[] corrupted = file.clone();
+                for (int i = 0; i < 3; i++) {
+                    corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt(256);
+                }
+                parseOrIOException(corrupted);
+            }
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    private static ContainerSeekIndex parse(byte[] data) throws IOException {
+        return ContainerSeekIndex.parse(new ByteArraySource(data));
+    }
+
+    private static void parseOrIOException(byte[] data) {
+        try {
+            parse(data);
+        } catch (IOException expected) {
+            // 损坏的文件：调用方退回线性估算
+        } catch (RuntimeException e) {
+            throw new AssertionError("length=" + data.length + " threw " + e, e);
+        }
+    }
+
+    private static void assertThrowsIOException(byte[] data) {
+        try {
+            parse(data);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+    private static final class ByteArraySource implements ContainerSeekIndex.Source {
+        private final byte[] data;
+
+        ByteArraySource(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public long length() {
+            return data.length;
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+            if (position < 0 || position + length > data.length) {
+                throw new EOFException("read " + length + " at " + position + " of " + data.length);
+            }
+            System.arraycopy(data, (int) position, buffer, offset, length);
+        }
+    }
+
+    /**
+     * EBML 头 + Segment（SeekHead、Info、3 个 Cluster、Cues），关键帧在 0 / 2000 / 4000 个时间单位
+     */
+    private static final class Mkv {
+        static final int EBML_HEADER = 0x1A45DFA3;
+        static final int SEGMENT = 0x18538067;
+        static final int SEEK_HEAD = 0x114D9B74;
+        static final int SEEK = 0x4DBB;
+        static final int SEEK_ID = 0x53AB;
+        static final int SEEK_POSITION = 0x53AC;
+        static final int INFO = 0x1549A966;
+        static final int TIMECODE_SCALE = 0x2AD7B1;
+        static final int CLUSTER = 0x1F43B675;
+        static final int CUES = 0x1C53BB6B;
+        static final int CUE_POINT = 0xBB;
+        static final int CUE_TIME = 0xB3;
+        static final int CUE_TRACK_POSITIONS = 0xB7;
+        static final int CUE_TRACK = 0xF7;
+        static final int CUE_CLUSTER_POSITION = 0xF1;
+
+        final byte[] bytes;
+        final long segmentStart;
+        final long[] clusterPositions = new long[3];
+        final long cuesOffset;
+
+        Mkv(boolean unknownSizeSegment, long timecodeScale) {
+            byte[] info = element(INFO, uint(TIMECODE_SCALE, timecodeScale, 3));
+            byte[][] clusters = {
+                element(CLUSTER, new byte[300]),
+                element(CLUSTER, new byte[500]),
+                element(CLUSTER, new byte[200]),
+            };
+            // SeekPosition 固定 4 字节，SeekHead 的长度与 Cues 位置无关
+            int seekHeadLength = seekHead(0).length;
+
+            long position = seekHeadLength + info.length;
+            for (int i = 0; i < clusters.length; i++) {
+                clusterPositions[i] = position;
+                position += clusters[i].length;
+            }
+            long cuesPosition = position;
+
+            byte[][] cuePoints = new byte[clusters.length][];
+            for (int i = 0; i < clusters.length; i++) {
+                cuePoints[i] = element(CUE_POINT,
+                    uint(CUE_TIME, i * 2000L, 2),
+                    element(CUE_TRACK_POSITIONS, uint(CUE_TRACK, 1, 1), uint(CUE_CLUSTER_POSITION, clusterPositions[i], 4)));
+            }
+
+            byte[] body = concat(seekHead(cuesPosition), info, clusters[0], clusters[1], clusters[2],
+                element(CUES, cuePoints));
+            byte[] segmentHeader = unknownSizeSegment
+                ? concat(u32(SEGMENT), new byte[] {0x01, -1, -1, -1, -1, -1, -1, -1})
+                : concat(u32(SEGMENT), size(body.length));
+            byte[] header = ebmlHeader();
+            segmentStart = header.length + segmentHeader.length;
+            cuesOffset = segmentStart + cuesPosition;
+            bytes = concat(header, segmentHeader, body);
+        }
+
+        long clusterOffset(int i) {
+            return segmentStart + clusterPositions[i];
+        }
+
+        static byte[] ebmlHeader() {
+            return element(EBML_HEADER, uint(0x4286, 1, 1), uint(0x42F7, 1, 1));
+        }
+
+        private static byte[] seekHead(long cuesPosition) {
+            return element(SEEK_HEAD, element(SEEK, uint(SEEK_ID, CUES, 4), uint(SEEK_POSITION, cuesPosition, 4)));
+        }
+    }
+
+    /**
+     * ftyp + moov + mdat 的单视频轨 MP4：6 个样本各 500ms、各 100 字节，每块 2 个样本
+     */
+    private static final class Mp4 {
+        final byte[] bytes;
+        final long base;
+        final long moovOffset;
+
+        Mp4(boolean moovAtEnd, boolean largeOffsets, boolean withSyncTable) {
+            byte[] ftyp = box("ftyp", concat("isom".getBytes(), new byte[4]));
+            byte[] mdat = box("mdat", new byte[600]);
+            if (moovAtEnd) {
+                base = largeOffsets ? 0x1_0000_0000L : ftyp.length + 8;
+                moovOffset = ftyp.length + mdat.length;
+                bytes = concat(ftyp, mdat, moov(base, largeOffsets, withSyncTable));
+            } else {
+                int moovLength = moov(0, largeOffsets, withSyncTable).length;
+                base = largeOffsets ? 0x1_0000_0000L : ftyp.length + moovLength + 8;
+                moovOffset = ftyp.length;
+                bytes = concat(ftyp, moov(base, largeOffsets, withSyncTable), mdat);
+            }
+        }
+
+        private static byte[] moov(long base, boolean largeOffsets, boolean withSyncTable) {
+            byte[] stts = fullBox("stts", u32(1), u32(6), u32(500));
+            byte[] stss = withSyncTable ? fullBox("stss", u32(2), u32(1), u32(4)) : new byte[0];
+            byte[] stsc = fullBox("stsc", u32(1), u32(1), u32(2), u32(1));
+            byte[] stsz = fullBox("stsz", u32(0), u32(6), u32(100), u32(100), u32(100), u32(100), u32(100), u32(100));
+            byte[] chunkOffsets = largeOffsets
+                ? fullBox("co64", u32(3), u64(base), u64(base + 200), u64(base + 400))
+                : fullBox("stco", u32(3), u32((int) base), u32((int) base + 200), u32((int) base + 400));
+            byte[] stbl = box("stbl", stts, stss, stsc, stsz, chunkOffsets);
+
+            byte[] mdhd = fullBox("mdhd", u32(0), u32(0), u32(1000), u32(3000), u32(0));
+            byte[] hdlr = fullBox("hdlr", u32(0), "vide".getBytes(), new byte[12], new byte[1]);
+            byte[] mdia = box("mdia", mdhd, hdlr, box("minf", stbl));
+            // 前面放一条音频轨，确认取的是视频轨
+            byte[] audio = box("trak", box("mdia", fullBox("hdlr", u32(0), "soun".getBytes(), new byte[13])));
+            return box("moov", audio, box("trak", mdia));
+        }
+    }
+
+    // ==================== 字节构造 ====================
+
+    private static byte[] element(int id, byte[]... children) {
+        byte[] body = concat(children);
+        return concat(ebmlId(id), size(body.length), body);
+    }
+
+    /**
+     * 固定宽度的无符号整数元素
+     */
+    private static byte[] uint(int id, long value, int width) {
+        byte[] data = new byte[width];
+        for (int i = width - 1; i >= 0; i--) {
+            data[i] = (byte) value;
+            value >>>= 8;
+        }
+        return element(id, data);
+    }
+
+    private static byte[] ebmlId(int id) {
+        int length = id > 0xFFFFFF ? 4 : id > 0xFFFF ? 3 : id > 0xFF ? 2 : 1;
+        return Arrays.copyOfRange(u32(id), 4 - length, 4);
+    }
+
+    /**
+     * 4 字节的 EBML 大小
+     */
+    private static byte[] size(int size) {
+        byte[] data = u32(size);
+        data[0] |= 0x10;
+        return data;
+    }
+
+    private static byte[] box(String type, byte[]... children) {
+        byte[] body = concat(children);
+        return concat(u32(8 + body.length), type.getBytes(), body);
+    }
+
+    private static byte[] fullBox(String type, byte[]... fields) {
+        return box(type, concat(new byte[4], concat(fields)));
+    }
+
+    private static byte[] u32(int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] u64(long value) {
+        return concat(u32((int) (value >>> 32)), u32((int) value));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,122 @@
+package com.mynas.nastv.player;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * 吞吐量控制器：用模拟的时钟喂样本，检查爬山法的并发决策和按带宽时延积的请求大小
+ */
+public class ThroughputControllerTest {
+
+    private static final int MB = 1024 * 1024;
+    private static final long REQUEST_MS = 2000;
+
+    @Test
+    public void scalesUpWhileEachConnectionIsCapped() {
+        // 单连接限速 1MB/s（云盘直链），每多一条连接总吞吐就多 1MB/s
+        ThroughputController controller = new ThroughputController("capped");
+        Clock clock = new Clock();
+        for (int i = 0; i < 8; i++) {
+            runWindow(controller, clock, controller.getConnections(), 50);
+        }
+        assertEquals(ThroughputController.MAX_CONNECTIONS, controller.getConnections());
+    }
+
+    @Test
+    public void backsOffWhenExtraConnectionAddsNothing() {
+        // 链路总带宽固定 4MB/s：加连接只会把带宽分得更细
+        ThroughputController controller = new ThroughputController("shared");
+        Clock clock = new Clock();
+        runSharedWindow(controller, clock, 4 * MB);
+        assertEquals(3, controller.getConnections());   // 第一个窗口后尝试加一条
+
+        runSharedWindow(controller, clock, 4 * MB);
+        assertEquals(2, controller.getConnections());   // 没有带来提升，退回
+
+        for (int i = 0; i < 3; i++) {
+            runSharedWindow(controller, clock, 4 * MB);
+            assertEquals(2, controller.getConnections()); // 回退后保持几个窗口不再试探
+        }
+    }
+
+    @Test
+    public void backsOffWhenTtfbDegrades() {
+        ThroughputController controller = new ThroughputController("queueing");
+        Clock clock = new Clock();
+        runWindow(controller, clock, controller.getConnections(), 50);
+        int before = controller.getConnections();
+
+        runWindow(controller, clock, controller.getConnections(), 400);
+        assertEquals(before - 1, controller.getConnections());
+    }
+
+    @Test
+    public void requestSizeFollowsBandwidthDelayProduct() {
+        // 带宽时延积很小时不低于一个缓存块
+        assertEquals(ThroughputController.MIN_REQUEST_SIZE,
+            ThroughputController.requestSizeForBdp(1.0 * MB, 100));
+        // 5MB/s × 200ms = 1MB，4 倍为 4MB
+        assertEquals(4 * MB, ThroughputController.requestSizeForBdp(5.0 * MB, 200));
+        // 10MB/s × 200ms = 2MB，4 倍为 8MB
+        assertEquals(8 * MB, ThroughputController.requestSizeForBdp(10.0 * MB, 200));
+        // 不超过上限
+        assertEquals(ThroughputController.MAX_REQUEST_SIZE,
+            ThroughputController.requestSizeForBdp(100.0 * MB, 1000));
+    }
+
+    @Test
+    public void requestSizeIsWholeChunks() {
+        for (double bps = 0.5 * MB; bps < 200.0 * MB; bps *= 1.7) {
+            int size = ThroughputController.requestSizeForBdp(bps, 300);
+            assertEquals(0, size % VideoPrefetchService.CHUNK_SIZE);
+        }
+    }
+
+    @Test
+    public void ignoresInvalidSamples() {
+        ThroughputController controller = new ThroughputController("invalid");
+        int connections = controller.getConnections();
+        int requestSize = controller.getRequestSize();
+        for (int i = 0; i < 20; i++) {
+            controller.recordSample(0, 50, 100, i * 100L);
+            controller.recordSample(2 * MB, -1, 100, i * 100L);   // 首字节时间未知
+            controller.recordSample(2 * MB, 50, 0, i * 100L);
+        }
+        assertEquals(connections, controller.getConnections());
+        assertEquals(requestSize, controller.getRequestSize());
+    }
+
+    // ==================== 模拟 ====================
+
+    private static final class Clock {
+        long now = 1_000_000L;
+    }
+
+    /**
+     * 一个评估窗口：connections 条连接并行，每个请求 2MB、耗时 2 秒（单连接 1MB/s）
+     */
+    private static void runWindow(ThroughputController controller, Clock clock, int connections, long ttfbMs) {
+        runWindow(controller, clock, connections, 2 * MB, ttfbMs);
+    }
+
+    /**
+     * 总带宽固定：连接越多，每个 2 秒的请求下载的字节越少
+     */
+    private static void runSharedWindow(ThroughputController controller, Clock clock, long totalBps) {
+        int connections = controller.getConnections();
+        runWindow(controller, clock, connections, totalBps * REQUEST_MS / 1000 / connections, 50);
+    }
+
+    private static void runWindow(ThroughputController controller, Clock clock, int connections,
+                                  long bytesPerRequest, long ttfbMs) {
+        int samples = Math.max(4, connections * 2);
+        long start = clock.now;
+        for (int k = 0; k < samples; k++) {
+            // 同一批并行的请求同时完成
+            long finishedAt = start + REQUEST_MS * (k / connections + 1);
+            controller.recordSample(bytesPerRequest, ttfbMs, REQUEST_MS, finishedAt);
+            clock.now = finishedAt;
+        }
+    }
+}
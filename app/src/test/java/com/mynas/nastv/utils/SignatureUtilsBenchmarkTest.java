@@ -0,0 +1,141 @@
+package com.mynas.nastv.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.mynas.nastv.benchmark.Benchmark;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+/**
+ * 签名路径的正确性校验 + 微基准
+ *
+ * 基准（默认跳过，见 Benchmark）统计每次签名的耗时和分配字节数，
+ * 与改造前的实现（保留在本测试中作为对照）比较。
+ */
+public class SignatureUtilsBenchmarkTest {
+
+    private static final String API_KEY = "NDzZTVxnRKP8Z0jXg1VAMonaG8akvh";
+    private static final String API_SECRET = "16CCEB3D-AB42-077D-36A1-F355324E4237";
+
+    private static final String URL = "http://192.168.3.20:5666/v/api/v1/item/list?page=1&page_size=50";
+    private static final String BODY = "{\"ancestor_guid\":\"6a2b9c1d4e5f\",\"tags\":{\"type\":[\"Movie\",\"TV\"]},"
+        + "\"exclude_grouped_video\":1,\"sort_type\":\"DESC\",\"sort_column\":\"create_time\",\"page\":1,\"page_size\":50}";
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURE_ITERATIONS = 100_000;
+
+    // ==================== 正确性 ====================
+
+    @Test
+    public void signatureMatchesLegacyAlgorithm() throws Exception {
+        Request request = newRequest();
+        String path = SignatureUtils.extractPath(request.url());
+        assertEquals("/v/api/v1/item/list", path);
+
+        String bodyMd5 = SignatureUtils.md5Hex(request.body());
+        assertEquals(LegacySigner.md5(BODY), bodyMd5);
+
+        String expected = LegacySigner.sign(path, LegacySigner.md5(BODY), "123456", "1696080000000");
+        assertEquals(expected, SignatureUtils.generateSignature(path, bodyMd5, 123456, 1696080000000L));
+    }
+
+    @Test
+    public void emptyBodyAndPrefixedPathMatchLegacy() throws Exception {
+        HttpUrl url = HttpUrl.parse("http://nas.local/proxy/v/api/v1/play/info");
+        assertEquals("/v/api/v1/play/info", SignatureUtils.extractPath(url));
+        assertEquals(LegacySigner.extractPath(url.toString()), SignatureUtils.extractPath(url));
+
+        assertEquals(LegacySigner.md5(""), SignatureUtils.md5Hex((RequestBody) null));
+        assertEquals(LegacySigner.md5(""), SignatureUtils.md5Hex(""));
+        assertEquals(LegacySigner.md5("弹幕"), SignatureUtils.md5Hex("弹幕"));
+    }
+
+    @Test
+    public void generatedSignatureHasExpectedShape() {
+        String signature = SignatureUtils.generateSignature(newRequest());
+        assertTrue(signature, signature.matches("nonce=\\d{6}&timestamp=\\d{13}&sign=[0-9a-f]{32}"));
+    }
+
+    // ==================== 基准 ====================
+
+    @Test
+    public void benchmarkPerRequestCost() throws Exception {
+        Benchmark.assumeEnabled();
+        Request request = newRequest();
+
+        Benchmark.Result legacy = Benchmark.measure(WARMUP_ITERATIONS, MEASURE_ITERATIONS,
+            () -> LegacySigner.generateSignature(request));
+        Benchmark.Result current = Benchmark.measure(WARMUP_ITERATIONS, MEASURE_ITERATIONS,
+            () -> SignatureUtils.generateSignature(request));
+
+        Benchmark.report("SignatureUtils", String.format(Locale.US,
+            "legacy: %.0f ns/op, %d B/op | current: %.0f ns/op, %d B/op",
+            legacy.nanosPerOp, legacy.bytesPerOp, current.nanosPerOp, current.bytesPerOp));
+    }
+
+    private static Request newRequest() {
+        return new Request.Builder()
+            .url(URL)
+            .post(RequestBody.create(BODY, MediaType.get("application/json; charset=utf-8")))
+            .build();
+    }
+
+    /**
+     * 改造前的签名实现（对照组）
+     */
+    private static final class LegacySigner {
+        static String generateSignature(Request request) throws Exception {
+            String path = extractPath(request.url().toString());
+            Buffer buffer = new Buffer();
+            request.body().writeTo(buffer);
+            String data = buffer.readUtf8();
+            String nonce = String.format("%06d", (int) (Math.random() * 900000) + 100000);
+            String timestamp = String.valueOf(System.currentTimeMillis());
+            return sign(path, md5(data), nonce, timestamp);
+        }
+
+        static String sign(String path, String dataMd5, String nonce, String timestamp) throws Exception {
+            String signStr = API_KEY + "_" + path + "_" + nonce + "_" + timestamp + "_" + dataMd5 + "_" + API_SECRET;
+            return "nonce=" + nonce + "&timestamp=" + timestamp + "&sign=" + md5(signStr);
+        }
+
+        static String extractPath(String fullUrl) {
+            String path = "";
+            int vApiIndex = fullUrl.indexOf("/v/api/");
+            if (vApiIndex >= 0) {
+                path = fullUrl.substring(vApiIndex);
+            } else {
+                int pathStart = fullUrl.indexOf('/', 8);
+                if (pathStart >= 0) {
+                    path = fullUrl.substring(pathStart);
+                }
+            }
+            int queryIndex = path.indexOf('?');
+            if (queryIndex >= 0) {
+                path = path.substring(0, queryIndex);
+            }
+            return path;
+        }
+
+        static String md5(String input) throws Exception {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+    }
+}